@@ -31,6 +31,10 @@ android {
     buildFeatures {
         viewBinding = true
     }
+    // InMemoryBackend and the backend contract, shared by unit and instrumented tests
+    testFixtures {
+        enable = true
+    }
 }
 
 dependencies {
@@ -45,7 +49,11 @@ dependencies {
     implementation(libs.lifecycle.livedata.ktx)
     implementation(libs.lifecycle.viewmodel.ktx)
     implementation(libs.play.services.location)
+    implementation(libs.android.maps.utils)
     testImplementation(libs.junit)
+    testFixturesApi(libs.play.services.tasks)
+    testFixturesImplementation(libs.annotation)
+    testFixturesImplementation(libs.junit)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
     implementation (libs.circleimageview)
@@ -0,0 +1,40 @@
+package com.example.tinyreminder.backend;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.storage.FirebaseStorage;
+
+import org.junit.Assume;
+import org.junit.runner.RunWith;
+
+/**
+ * Runs the backend contract against the Realtime Database emulator, pinning InMemoryBackend
+ * to Firebase's behavior. Only runs when the emulator argument is set:
+ * {@code firebase --config firebase.emulator.json emulators:exec --only database
+ * "./gradlew connectedAndroidTest -Pandroid.testInstrumentationRunnerArguments.emulator=true"}
+ */
+@RunWith(AndroidJUnit4.class)
+public class FirebaseBackendContractTest extends DatabaseBackendContract {
+    private static final String EMULATOR_HOST = "10.0.2.2"; // Host loopback as seen from the Android emulator
+    private static final int DATABASE_PORT = 9000;
+    private static FirebaseDatabase database;
+
+    @Override
+    protected DatabaseBackend createBackend() {
+        Assume.assumeTrue("true".equals(InstrumentationRegistry.getArguments().getString("emulator")));
+        return new FirebaseBackend(emulatorDatabase(), FirebaseStorage.getInstance());
+    }
+
+    // The emulator can only be selected before the database is first used
+    private static synchronized FirebaseDatabase emulatorDatabase() {
+        if (database == null) {
+            FirebaseApp.initializeApp(InstrumentationRegistry.getInstrumentation().getTargetContext());
+            database = FirebaseDatabase.getInstance();
+            database.useEmulator(EMULATOR_HOST, DATABASE_PORT);
+        }
+        return database;
+    }
+}
@@ -0,0 +1,266 @@
+package com.example.tinyreminder.loadtest;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.tinyreminder.backend.BackendError;
+import com.example.tinyreminder.backend.ChildListener;
+import com.example.tinyreminder.backend.DatabaseBackend;
+import com.example.tinyreminder.backend.ListenerRegistration;
+import com.example.tinyreminder.backend.Snapshot;
+import com.example.tinyreminder.escalation.EscalationStage;
+import com.example.tinyreminder.models.ParkingEvent;
+import com.example.tinyreminder.utils.DatabaseManager;
+import com.google.android.gms.tasks.Task;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulates many families driving DatabaseManager the way the app does: location ticks from
+ * LocationUpdateService, parking events from ParkingDetectionService, answers from
+ * NotificationActionReceiver and alert steps from EscalationActions. Parking events and answers
+ * are the same atomic updates the app queues, written directly: the DurableWriteQueue is one per
+ * phone, so funnelling every simulated phone through this process's queue would measure the queue.
+ * One member per family keeps a child listener on the family's memberLocations node, standing in
+ * for an open MapFragment, which is used to measure listener fan-out latency. The listeners
+ * run on a separate database client: on the writing client, Firebase raises events for a write
+ * locally before it even reaches the server.
+ */
+public class FamilyLoadGenerator {
+    private static final String TAG = "FamilyLoadGenerator";
+    private static final double BASE_LATITUDE = 32.0853;
+    private static final double BASE_LONGITUDE = 34.7818;
+
+    private final LoadTestConfig config;
+    private final DatabaseManager dbManager;
+    private final DatabaseBackend watcherBackend;
+    private final LoadReport report = new LoadReport();
+    private final Random random = new Random(42);
+    private final List<SimulatedDevice> devices = new ArrayList<>();
+    private final List<ListenerRegistration> watchers = new ArrayList<>();
+    // userId -> send time of the most recent location write, consumed by the family watcher
+    private final Map<String, Long> pendingLocationWrites = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param watcherBackend A backend on its own connection to the same database, for the
+     *                       fan-out listeners.
+     */
+    public FamilyLoadGenerator(Context context, LoadTestConfig config, DatabaseBackend watcherBackend) {
+        this.config = config;
+        this.dbManager = new DatabaseManager(context);
+        this.watcherBackend = watcherBackend;
+    }
+
+    /**
+     * Seeds users and families, runs the simulation for the configured duration and returns the report.
+     */
+    public LoadReport run() throws InterruptedException {
+        seed();
+        attachWatchers();
+
+        scheduler = new ScheduledThreadPoolExecutor(config.schedulerThreads);
+        long startMillis = System.currentTimeMillis();
+        for (SimulatedDevice device : devices) {
+            device.start();
+        }
+        scheduler.awaitTermination(config.durationSeconds, TimeUnit.SECONDS);
+        scheduler.shutdownNow();
+        report.elapsedMillis = System.currentTimeMillis() - startMillis;
+
+        for (ListenerRegistration watcher : watchers) {
+            watcher.remove();
+        }
+        Log.i(TAG, report.format(config));
+        return report;
+    }
+
+    // Creates every user and family with one multi-path update per family
+    private void seed() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(config.families);
+        for (int f = 0; f < config.families; f++) {
+            String familyId = "load-family-" + f;
+            Map<String, Object> updates = new HashMap<>();
+            updates.put("/families/" + familyId + "/id", familyId);
+            updates.put("/families/" + familyId + "/name", "Load family " + f);
+            for (int m = 0; m < config.membersPerFamily; m++) {
+                String userId = familyId + "-member-" + m;
+                Map<String, Object> user = new HashMap<>();
+                user.put("id", userId);
+                user.put("name", "Member " + m);
+                user.put("familyId", familyId);
+                user.put("status", "OK");
+                updates.put("/users/" + userId, user);
+                updates.put("/families/" + familyId + "/memberIds/" + userId, true);
+                if (m == 0) {
+                    updates.put("/families/" + familyId + "/adminIds/" + userId, true);
+                }
+                devices.add(new SimulatedDevice(userId, familyId));
+            }
+            dbManager.getBackend().updateChildren("", updates).addOnCompleteListener(task -> latch.countDown());
+        }
+        if (!latch.await(5, TimeUnit.MINUTES)) {
+            Log.w(TAG, "Seeding did not complete in time, continuing with partial data");
+        }
+    }
+
+    private void attachWatchers() {
+        for (int f = 0; f < config.families; f++) {
+            String familyId = "load-family-" + f;
+            watchers.add(watcherBackend.addChildListener("families/" + familyId + "/memberLocations", new ChildListener() {
+                @Override
+                public void onChildAdded(@NonNull Snapshot snapshot, @Nullable String previousChildName) {
+                    onLocationDelivered(snapshot);
+                }
+
+                @Override
+                public void onChildChanged(@NonNull Snapshot snapshot, @Nullable String previousChildName) {
+                    onLocationDelivered(snapshot);
+                }
+
+                @Override
+                public void onChildRemoved(@NonNull Snapshot snapshot) {
+                }
+
+                @Override
+                public void onChildMoved(@NonNull Snapshot snapshot, @Nullable String previousChildName) {
+                }
+
+                @Override
+                public void onCancelled(@NonNull BackendError error) {
+                    Log.e(TAG, "Watcher cancelled for " + familyId + ": " + error.getMessage());
+                }
+            }));
+        }
+    }
+
+    private void onLocationDelivered(Snapshot snapshot) {
+        String userId = snapshot.getKey();
+        Long sentNanos = userId != null ? pendingLocationWrites.remove(userId) : null;
+        if (sentNanos != null) {
+            report.recordFanOut(sentNanos);
+        }
+    }
+
+    private void track(String path, Object payload, Task<?> task) {
+        long start = report.startWrite(path, payload);
+        task.addOnCompleteListener(result -> report.finishWrite(start, result.isSuccessful()));
+    }
+
+    // One simulated phone: periodic location ticks plus randomly timed parking events
+    private class SimulatedDevice {
+        private final String userId;
+        private final String familyId;
+        private double latitude;
+        private double longitude;
+
+        SimulatedDevice(String userId, String familyId) {
+            this.userId = userId;
+            this.familyId = familyId;
+            this.latitude = BASE_LATITUDE + random.nextDouble() * 0.2;
+            this.longitude = BASE_LONGITUDE + random.nextDouble() * 0.2;
+        }
+
+        void start() {
+            long offset = (long) (random.nextDouble() * config.locationIntervalMs);
+            scheduler.scheduleAtFixedRate(this::locationTick, offset, config.locationIntervalMs, TimeUnit.MILLISECONDS);
+            scheduleNextParking();
+        }
+
+        private void locationTick() {
+            latitude += (random.nextDouble() - 0.5) * 0.001;
+            longitude += (random.nextDouble() - 0.5) * 0.001;
+            Map<String, Object> payload = new HashMap<>();
+            payload.put("latitude", latitude);
+            payload.put("longitude", longitude);
+            pendingLocationWrites.put(userId, System.nanoTime());
+            track("families/" + familyId + "/memberLocations/" + userId, payload,
+                    dbManager.updateMemberLocation(userId, familyId, latitude, longitude, System.currentTimeMillis()));
+        }
+
+        // Poisson arrivals at the configured rate
+        private void scheduleNextParking() {
+            if (config.parkingEventsPerDeviceHour <= 0) return;
+            double meanMillis = 3600_000.0 / config.parkingEventsPerDeviceHour;
+            long delay = (long) (-Math.log(1 - random.nextDouble()) * meanMillis);
+            scheduler.schedule(this::park, delay, TimeUnit.MILLISECONDS);
+        }
+
+        private void park() {
+            report.parkingEvents.increment();
+            ParkingEvent event = new ParkingEvent(userId, System.currentTimeMillis(), latitude, longitude);
+            // The event with the PENDING driver status, as queueParkingEvent sends it; assigns the id
+            Map<String, Object> updates = dbManager.parkingEventUpdates(event);
+            track("parkingEvents/$id", updates, dbManager.getBackend().updateChildren("", updates).addOnSuccessListener(aVoid ->
+                    track("parkingHotspots/" + familyId + "/$id", 1L,
+                            dbManager.recordParkingHotspot(userId, event.getLatitude(), event.getLongitude()))));
+            if (random.nextDouble() < config.confirmProbability) {
+                scheduler.schedule(() -> confirm(event.getId()), config.confirmDelayMs, TimeUnit.MILLISECONDS);
+            } else {
+                scheduler.schedule(() -> escalate(event.getId(), EscalationStage.ALERT_NEAREST),
+                        config.notificationTimeoutMs, TimeUnit.MILLISECONDS);
+            }
+            scheduleNextParking();
+        }
+
+        // Mirrors NotificationActionReceiver: the event is removed and the driver set back to OK in one write
+        private void confirm(String eventId) {
+            report.confirmations.increment();
+            Map<String, Object> updates = dbManager.parkingEventAnswerUpdates(eventId, userId);
+            track("parkingEvents/" + eventId, updates, dbManager.getBackend().updateChildren("", updates));
+        }
+
+        // Mirrors EscalationActions: one transaction moves the event to ALERT, the first alert step
+        // moves the driver to ALERT, and each step writes alerts/$id for the dispatch function.
+        // The nearest member is alerted first, then the whole family; the driver answers after that
+        private void escalate(String eventId, EscalationStage stage) {
+            if (stage == EscalationStage.ALERT_NEAREST) {
+                report.timeouts.increment();
+            }
+            long start = report.startWrite("parkingEvents/" + eventId + "/status", "ALERT");
+            dbManager.markParkingEventAlerted(eventId).addOnCompleteListener(task -> {
+                report.finishWrite(start, task.isSuccessful());
+                if (!task.isSuccessful()) return;
+                String previous = task.getResult();
+                if (!"PENDING".equals(previous) && !"ALERT".equals(previous)) return;
+                if ("PENDING".equals(previous)) {
+                    track("users/" + userId + "/status", "ALERT", dbManager.setUserStatus(userId, "ALERT"));
+                }
+                List<String> recipients = null;
+                if (stage == EscalationStage.ALERT_NEAREST) {
+                    recipients = Collections.singletonList(nearestMemberId());
+                }
+                Map<String, Object> alert = new HashMap<>();
+                alert.put("familyId", familyId);
+                alert.put("eventId", eventId);
+                track("alerts/$id", alert, dbManager.createFamilyAlert(familyId, userId, null, eventId, recipients));
+                if (stage == EscalationStage.ALERT_NEAREST) {
+                    scheduler.schedule(() -> escalate(eventId, EscalationStage.ALERT_FAMILY),
+                            config.alertRepeatMs, TimeUnit.MILLISECONDS);
+                } else {
+                    scheduler.schedule(() -> confirm(eventId), config.confirmDelayMs, TimeUnit.MILLISECONDS);
+                }
+            });
+        }
+
+        // Another member of the same family, standing in for AlertContext.nearestMemberId()
+        private String nearestMemberId() {
+            int member = random.nextInt(Math.max(1, config.membersPerFamily - 1));
+            String memberId = familyId + "-member-" + member;
+            return memberId.equals(userId) ? familyId + "-member-" + (config.membersPerFamily - 1) : memberId;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.tinyreminder.loadtest;
+
+import android.content.Context;
+import android.os.Bundle;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.tinyreminder.backend.FirebaseBackend;
+import com.example.tinyreminder.utils.DatabaseManager;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.storage.FirebaseStorage;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the family load generator against the local Realtime Database and Storage emulators.
+ * Start it with scripts/run-load-test.sh, which boots the emulators and passes the arguments.
+ * Not part of the regular test run: it only executes when the loadTest argument is set.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FamilyLoadTest {
+
+    @Test
+    public void familiesUnderLoad() throws InterruptedException, IOException {
+        Bundle args = InstrumentationRegistry.getArguments();
+        if (!"true".equals(args.getString("loadTest"))) {
+            return;
+        }
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        LoadTestConfig config = LoadTestConfig.fromArguments(args);
+
+        FirebaseApp.initializeApp(context);
+        FirebaseDatabase database = FirebaseDatabase.getInstance();
+        database.useEmulator(config.emulatorHost, config.databasePort);
+        FirebaseStorage storage = FirebaseStorage.getInstance();
+        storage.useEmulator(config.emulatorHost, config.storagePort);
+        DatabaseManager.setDefaultBackend(new FirebaseBackend(database, storage));
+
+        // A second app gets its own connection, so watchers only hear writes the server fanned out
+        FirebaseApp watcherApp = FirebaseApp.initializeApp(context, FirebaseApp.getInstance().getOptions(), "load-watchers");
+        FirebaseDatabase watcherDatabase = FirebaseDatabase.getInstance(watcherApp);
+        watcherDatabase.useEmulator(config.emulatorHost, config.databasePort);
+        FirebaseBackend watcherBackend = new FirebaseBackend(watcherDatabase, FirebaseStorage.getInstance(watcherApp));
+
+        LoadReport report;
+        try {
+            report = new FamilyLoadGenerator(context, config, watcherBackend).run();
+        } finally {
+            watcherApp.delete();
+        }
+        String text = report.format(config);
+
+        File output = new File(context.getExternalFilesDir(null), "load_report.txt");
+        try (FileWriter writer = new FileWriter(output)) {
+            writer.write(text);
+        }
+        assertTrue("No writes completed against the emulator", report.getWritesSucceeded() > 0);
+    }
+}
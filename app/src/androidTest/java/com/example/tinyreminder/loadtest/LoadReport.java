@@ -0,0 +1,105 @@
+package com.example.tinyreminder.loadtest;
+
+import com.google.gson.Gson;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe counters collected during a load run, plus the final text report.
+ */
+public class LoadReport {
+    private static final Gson GSON = new Gson();
+
+    final LongAdder writesStarted = new LongAdder();
+    final LongAdder writesSucceeded = new LongAdder();
+    final LongAdder writesFailed = new LongAdder();
+    final LongAdder readsStarted = new LongAdder();
+    final LongAdder bytesWritten = new LongAdder();
+    final LongAdder parkingEvents = new LongAdder();
+    final LongAdder confirmations = new LongAdder();
+    final LongAdder timeouts = new LongAdder();
+    final AtomicLong fanOutDeliveries = new AtomicLong();
+    volatile long elapsedMillis;
+
+    private final List<Long> writeLatenciesMicros = new ArrayList<>();
+    private final List<Long> fanOutLatenciesMicros = new ArrayList<>();
+
+    // Records one write of the given payload and returns its start time for completion tracking
+    long startWrite(String path, Object payload) {
+        writesStarted.increment();
+        bytesWritten.add(estimateBytes(path, payload));
+        return System.nanoTime();
+    }
+
+    void finishWrite(long startNanos, boolean success) {
+        if (success) {
+            writesSucceeded.increment();
+        } else {
+            writesFailed.increment();
+        }
+        long micros = (System.nanoTime() - startNanos) / 1000;
+        synchronized (writeLatenciesMicros) {
+            writeLatenciesMicros.add(micros);
+        }
+    }
+
+    void recordFanOut(long sentNanos) {
+        fanOutDeliveries.incrementAndGet();
+        long micros = (System.nanoTime() - sentNanos) / 1000;
+        synchronized (fanOutLatenciesMicros) {
+            fanOutLatenciesMicros.add(micros);
+        }
+    }
+
+    // Estimate only: JSON payload plus the path, ignoring framing, compression and listener downloads
+    static long estimateBytes(String path, Object payload) {
+        return path.length() + (payload == null ? 4 : GSON.toJson(payload).length());
+    }
+
+    public long getWritesSucceeded() {
+        return writesSucceeded.sum();
+    }
+
+    public String format(LoadTestConfig config) {
+        double seconds = elapsedMillis / 1000.0;
+        double deviceHours = config.deviceCount() * seconds / 3600.0;
+        StringBuilder out = new StringBuilder();
+        out.append("Load test: ").append(config).append('\n');
+        out.append(String.format(Locale.US, "elapsed: %.1f s, devices: %d%n", seconds, config.deviceCount()));
+        out.append(String.format(Locale.US, "writes: %d started, %d ok, %d failed, %.1f ok/s%n",
+                writesStarted.sum(), writesSucceeded.sum(), writesFailed.sum(), writesSucceeded.sum() / seconds));
+        out.append(String.format(Locale.US, "reads: %d%n", readsStarted.sum()));
+        out.append(String.format(Locale.US, "parking events: %d, confirmed: %d, timed out: %d%n",
+                parkingEvents.sum(), confirmations.sum(), timeouts.sum()));
+        out.append("write completion latency (ms): ").append(percentiles(writeLatenciesMicros)).append('\n');
+        out.append("listener fan-out latency (ms): ").append(percentiles(fanOutLatenciesMicros))
+                .append(", deliveries: ").append(fanOutDeliveries.get()).append('\n');
+        out.append(String.format(Locale.US, "estimated upload bytes per device-hour (payload JSON + path): %.0f%n",
+                deviceHours > 0 ? bytesWritten.sum() / deviceHours : 0));
+        return out.toString();
+    }
+
+    private static String percentiles(List<Long> samples) {
+        List<Long> sorted;
+        synchronized (samples) {
+            sorted = new ArrayList<>(samples);
+        }
+        if (sorted.isEmpty()) {
+            return "no samples";
+        }
+        Collections.sort(sorted);
+        return String.format(Locale.US, "p50=%.1f p90=%.1f p99=%.1f max=%.1f (n=%d)",
+                at(sorted, 0.50), at(sorted, 0.90), at(sorted, 0.99),
+                sorted.get(sorted.size() - 1) / 1000.0, sorted.size());
+    }
+
+    private static double at(List<Long> sorted, double quantile) {
+        int index = (int) Math.min(sorted.size() - 1, Math.round(quantile * (sorted.size() - 1)));
+        return sorted.get(index) / 1000.0;
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.tinyreminder.loadtest;
+
+import android.os.Bundle;
+
+import com.example.tinyreminder.escalation.EscalationPolicy;
+import com.example.tinyreminder.escalation.EscalationStage;
+
+/**
+ * Tunables for the family load generator. Every value can be overridden with an
+ * instrumentation argument of the same name, e.g.
+ * {@code -Pandroid.testInstrumentationRunnerArguments.families=1000}.
+ */
+public class LoadTestConfig {
+    public String emulatorHost = "10.0.2.2"; // Host loopback as seen from the Android emulator
+    public int databasePort = 9000;
+    public int storagePort = 9199;
+
+    public int families = 1000;
+    public int membersPerFamily = 10;
+    public long durationSeconds = 300;
+
+    public long locationIntervalMs = 10000; // Busier than the app's one-minute idle rate
+    public double parkingEventsPerDeviceHour = 2;
+    public double confirmProbability = 0.9; // The rest time out and escalate
+    public long confirmDelayMs = 15000;
+    public long notificationTimeoutMs = delayUntil(EscalationStage.ALERT_NEAREST); // Reminder to first alert step
+    public long alertRepeatMs = delayOf(EscalationStage.ALERT_FAMILY);
+    public int schedulerThreads = 8;
+
+    public static LoadTestConfig fromArguments(Bundle args) {
+        LoadTestConfig config = new LoadTestConfig();
+        config.emulatorHost = args.getString("emulatorHost", config.emulatorHost);
+        config.databasePort = intArg(args, "databasePort", config.databasePort);
+        config.storagePort = intArg(args, "storagePort", config.storagePort);
+        config.families = intArg(args, "families", config.families);
+        config.membersPerFamily = intArg(args, "membersPerFamily", config.membersPerFamily);
+        config.durationSeconds = longArg(args, "durationSeconds", config.durationSeconds);
+        config.locationIntervalMs = longArg(args, "locationIntervalMs", config.locationIntervalMs);
+        config.parkingEventsPerDeviceHour = doubleArg(args, "parkingEventsPerDeviceHour", config.parkingEventsPerDeviceHour);
+        config.confirmProbability = doubleArg(args, "confirmProbability", config.confirmProbability);
+        config.confirmDelayMs = longArg(args, "confirmDelayMs", config.confirmDelayMs);
+        config.notificationTimeoutMs = longArg(args, "notificationTimeoutMs", config.notificationTimeoutMs);
+        config.alertRepeatMs = longArg(args, "alertRepeatMs", config.alertRepeatMs);
+        config.schedulerThreads = intArg(args, "schedulerThreads", config.schedulerThreads);
+        return config;
+    }
+
+    // Time from the parking reminder until the stage fires under EscalationPolicy.DEFAULT
+    private static long delayUntil(EscalationStage stage) {
+        long delay = 0;
+        for (EscalationPolicy.Step step : EscalationPolicy.DEFAULT.getSteps()) {
+            delay += step.delayMillis;
+            if (step.stage == stage) break;
+        }
+        return delay;
+    }
+
+    private static long delayOf(EscalationStage stage) {
+        for (EscalationPolicy.Step step : EscalationPolicy.DEFAULT.getSteps()) {
+            if (step.stage == stage) return step.delayMillis;
+        }
+        throw new IllegalArgumentException("No " + stage + " step in the default policy");
+    }
+
+    public int deviceCount() {
+        return families * membersPerFamily;
+    }
+
+    private static int intArg(Bundle args, String key, int defaultValue) {
+        String value = args.getString(key);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+
+    private static long longArg(Bundle args, String key, long defaultValue) {
+        String value = args.getString(key);
+        return value != null ? Long.parseLong(value) : defaultValue;
+    }
+
+    private static double doubleArg(Bundle args, String key, double defaultValue) {
+        String value = args.getString(key);
+        return value != null ? Double.parseDouble(value) : defaultValue;
+    }
+
+    @Override
+    public String toString() {
+        return "families=" + families + ", membersPerFamily=" + membersPerFamily
+                + ", durationSeconds=" + durationSeconds + ", locationIntervalMs=" + locationIntervalMs
+                + ", parkingEventsPerDeviceHour=" + parkingEventsPerDeviceHour
+                + ", confirmProbability=" + confirmProbability;
+    }
+}
@@ -1,14 +1,13 @@
 package com.example.tinyreminder;
 
 import android.app.AlertDialog;
-import android.app.NotificationChannel;
-import android.app.NotificationManager;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.os.Build;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.View;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.activity.OnBackPressedCallback;
@@ -20,20 +19,27 @@ import androidx.fragment.app.Fragment;
 import androidx.fragment.app.FragmentManager;
 import androidx.fragment.app.FragmentTransaction;
 
+import com.example.tinyreminder.backend.BackendError;
+import com.example.tinyreminder.backend.Snapshot;
+import com.example.tinyreminder.backend.ValueListener;
+import com.example.tinyreminder.escalation.EscalationManager;
+import com.example.tinyreminder.escalation.OfflineAlarm;
 import com.example.tinyreminder.fragments.FamilyFragment;
 import com.example.tinyreminder.fragments.LoginFragment;
 import com.example.tinyreminder.fragments.MapFragment;
 import com.example.tinyreminder.fragments.ProfileFragment;
+import com.example.tinyreminder.map.MapWarmup;
 import com.example.tinyreminder.models.ParkingEvent;
 import com.example.tinyreminder.services.LocationUpdateService;
 import com.example.tinyreminder.services.ParkingDetectionService;
+import com.example.tinyreminder.utils.ConnectionMonitor;
 import com.example.tinyreminder.utils.DatabaseManager;
+import com.example.tinyreminder.utils.DurableWriteQueue;
+import com.example.tinyreminder.utils.NotificationDispatcher;
+import com.example.tinyreminder.utils.NotificationHelper;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.ValueEventListener;
 import com.google.firebase.messaging.FirebaseMessaging;
 
 import android.Manifest;
@@ -48,6 +54,9 @@ public class MainActivity extends AppCompatActivity {
     private FirebaseAuth.AuthStateListener mAuthListener;
     private BottomNavigationView bottomNavigationView;
     private DatabaseManager dbManager;
+    private TextView offlineBanner;
+    private final ConnectionMonitor.ConnectionListener connectionListener = online ->
+            runOnUiThread(() -> offlineBanner.setVisibility(online ? View.GONE : View.VISIBLE));
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -56,8 +65,12 @@ public class MainActivity extends AppCompatActivity {
 
         mAuth = FirebaseAuth.getInstance();
         dbManager = new DatabaseManager(this);
+        offlineBanner = findViewById(R.id.offline_banner);
 
-        createNotificationChannel(); // Create notification channel for Android O and above
+        NotificationDispatcher.get(this); // Create all notification channels once
+        EscalationManager.get(this); // Reload pending escalations if the process was restarted
+        DurableWriteQueue.get(this); // Replay queued writes if the process was restarted
+        OfflineAlarm.get(this); // Sync alarms raised while offline once the connection returns
         setupFirebaseMessaging(); // Set up Firebase Messaging to retrieve FCM token
         checkNotificationPermission(); // Check and request notification permissions
         checkLocationPermission(); // Check and request location permissions
@@ -68,20 +81,8 @@ public class MainActivity extends AppCompatActivity {
         checkUserAuthState(); // Check if the user is signed in and navigate accordingly
 
         handleNotificationIntent(getIntent()); // Handle intent received when the activity is started via a notification
-    }
 
-    /**
-     * Creates a notification channel required for notifications on Android O and above.
-     */
-    private void createNotificationChannel() {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            NotificationChannel channel = new NotificationChannel(
-                    "ParkingReminders",
-                    "Parking Reminders",
-                    NotificationManager.IMPORTANCE_HIGH);
-            NotificationManager notificationManager = getSystemService(NotificationManager.class);
-            notificationManager.createNotificationChannel(channel);
-        }
+        MapWarmup.afterFirstFrame(this); // Load the Maps SDK before the map is first opened
     }
 
     /**
@@ -283,6 +284,7 @@ public class MainActivity extends AppCompatActivity {
         super.onStart();
         Log.d(TAG, "MainActivity: onStart");
         mAuth.addAuthStateListener(mAuthListener); // Add auth state listener on start
+        dbManager.getConnectionMonitor().addListener(connectionListener); // Show the offline banner while disconnected
         checkUserAuthState(); // Check auth state again in case it has changed
     }
 
@@ -292,6 +294,7 @@ public class MainActivity extends AppCompatActivity {
         if (mAuthListener != null) {
             mAuth.removeAuthStateListener(mAuthListener); // Remove auth state listener on stop
         }
+        dbManager.getConnectionMonitor().removeListener(connectionListener);
     }
 
     @Override
@@ -307,7 +310,17 @@ public class MainActivity extends AppCompatActivity {
     private void handleNotificationIntent(Intent intent) {
         if (intent.hasExtra("eventId")) {
             String eventId = intent.getStringExtra("eventId");
-            showParkingEventDialog(eventId);
+            String userId = intent.getStringExtra("userId");
+            if (userId != null && OfflineAlarm.get(this).isRaised(eventId)) {
+                // Opened by the full-screen alarm, likely offline: answer from local state, over the lock screen
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+                    setShowWhenLocked(true);
+                    setTurnScreenOn(true);
+                }
+                showParkingEventDialog(eventId, userId);
+            } else {
+                showParkingEventDialog(eventId);
+            }
         }
     }
 
@@ -315,39 +328,43 @@ public class MainActivity extends AppCompatActivity {
      * Shows a dialog to confirm if a child is still in the car, based on a parking event.
      */
     private void showParkingEventDialog(String eventId) {
-        dbManager.getParkingEvent(eventId, new ValueEventListener() {
+        dbManager.getParkingEvent(eventId, new ValueListener() {
             @Override
-            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+            public void onDataChange(@NonNull Snapshot dataSnapshot) {
                 ParkingEvent event = dataSnapshot.getValue(ParkingEvent.class);
                 if (event != null) {
-                    AlertDialog.Builder builder = new AlertDialog.Builder(MainActivity.this);
-                    builder.setTitle("Parking Reminder");
-                    builder.setMessage("Is the child still in the car?");
-                    builder.setPositiveButton("Yes", (dialog, which) -> {
-                        dbManager.updateParkingEventStatus(eventId, "CHILD_PRESENT", task -> {
-                            if (task.isSuccessful()) {
-                                Toast.makeText(MainActivity.this, "Thank you for confirming. Please attend to the child.", Toast.LENGTH_SHORT).show();
-                            }
-                        });
-                    });
-                    builder.setNegativeButton("No", (dialog, which) -> {
-                        dbManager.updateParkingEventStatus(eventId, "CHILD_NOT_PRESENT", task -> {
-                            if (task.isSuccessful()) {
-                                Toast.makeText(MainActivity.this, "Thank you for confirming. The child is safe.", Toast.LENGTH_SHORT).show();
-                            }
-                        });
-                    });
-                    builder.show(); // Show the dialog
+                    showParkingEventDialog(eventId, event.getUserId());
                 }
             }
 
             @Override
-            public void onCancelled(@NonNull DatabaseError databaseError) {
+            public void onCancelled(@NonNull BackendError databaseError) {
                 Log.e(TAG, "Error fetching parking event", databaseError.toException());
             }
         });
     }
 
+    private void showParkingEventDialog(String eventId, String userId) {
+        AlertDialog.Builder builder = new AlertDialog.Builder(MainActivity.this);
+        builder.setTitle("Parking Reminder");
+        builder.setMessage("Is the child still in the car?");
+        builder.setPositiveButton("Yes", (dialog, which) -> {
+            EscalationManager.get(MainActivity.this).cancel(eventId);
+            NotificationHelper.cancelParkingNotification(MainActivity.this, eventId);
+            // Applied locally right away; the write queue delivers it and rolls back if rejected
+            dbManager.queueParkingEventAnswer(eventId, userId, "CHILD_PRESENT");
+            Toast.makeText(MainActivity.this, "Thank you for confirming. Please attend to the child.", Toast.LENGTH_SHORT).show();
+        });
+        builder.setNegativeButton("No", (dialog, which) -> {
+            EscalationManager.get(MainActivity.this).cancel(eventId);
+            NotificationHelper.cancelParkingNotification(MainActivity.this, eventId);
+            // Applied locally right away; the write queue delivers it and rolls back if rejected
+            dbManager.queueParkingEventAnswer(eventId, userId, "CHILD_NOT_PRESENT");
+            Toast.makeText(MainActivity.this, "Thank you for confirming. The child is safe.", Toast.LENGTH_SHORT).show();
+        });
+        builder.show(); // Show the dialog
+    }
+
     @Override
     public void onRequestPermissionsResult(int requestCode, @NonNull String[] permissions, @NonNull int[] grantResults) {
         super.onRequestPermissionsResult(requestCode, permissions, grantResults);
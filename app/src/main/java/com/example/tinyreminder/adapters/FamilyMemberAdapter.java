@@ -1,6 +1,7 @@
 package com.example.tinyreminder.adapters;
 
 import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -16,7 +17,9 @@ import com.example.tinyreminder.models.FamilyMember;
 import com.example.tinyreminder.utils.AvatarUtils;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class FamilyMemberAdapter extends RecyclerView.Adapter<FamilyMemberAdapter.ViewHolder> {
 
@@ -26,6 +29,9 @@ public class FamilyMemberAdapter extends RecyclerView.Adapter<FamilyMemberAdapte
     // Listener to handle click events on family members
     private OnMemberClickListener listener;
 
+    // Last-known avatars, shown while the current picture loads
+    private final Map<String, Bitmap> thumbnails = new HashMap<>();
+
     // Constructor to initialize the adapter with the list of members and the click listener
     public FamilyMemberAdapter(List<FamilyMember> members, OnMemberClickListener listener) {
         this.members = members;
@@ -45,7 +51,7 @@ public class FamilyMemberAdapter extends RecyclerView.Adapter<FamilyMemberAdapte
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
         // Get the current family member and bind it to the view holder
         FamilyMember member = members.get(position);
-        holder.bind(member, listener);
+        holder.bind(member, thumbnails.get(member.getId()), listener);
     }
 
     @Override
@@ -61,6 +67,12 @@ public class FamilyMemberAdapter extends RecyclerView.Adapter<FamilyMemberAdapte
         notifyDataSetChanged();
     }
 
+    // Set the avatars to show until each member's picture is loaded
+    public void setThumbnails(Map<String, Bitmap> newThumbnails) {
+        thumbnails.clear();
+        thumbnails.putAll(newThumbnails);
+    }
+
     // Return a copy of the current list of family members
     public List<FamilyMember> getMembers() {
         return new ArrayList<>(members);
@@ -83,7 +95,7 @@ public class FamilyMemberAdapter extends RecyclerView.Adapter<FamilyMemberAdapte
         }
 
         // Bind the family member data to the views
-        void bind(FamilyMember member, OnMemberClickListener listener) {
+        void bind(FamilyMember member, Bitmap thumbnail, OnMemberClickListener listener) {
             nameTextView.setText(member.getName());
             roleTextView.setText(member.getRole());
 
@@ -91,9 +103,14 @@ public class FamilyMemberAdapter extends RecyclerView.Adapter<FamilyMemberAdapte
             if (member.getProfilePictureUrl() != null && !member.getProfilePictureUrl().isEmpty()) {
                 Glide.with(itemView.getContext())
                         .load(member.getProfilePictureUrl())
+                        .placeholder(thumbnail != null
+                                ? new BitmapDrawable(itemView.getResources(), thumbnail) : null)
                         .circleCrop()
                         .into(avatarImageView);
             } else {
+                if (thumbnail != null) {
+                    avatarImageView.setImageBitmap(thumbnail);
+                }
                 AvatarUtils.loadAvatarData(member.getId(), member.getName(), (initials, color) -> {
                     if (initials != null && color != 0) {
                         Bitmap avatarBitmap = AvatarUtils.createAvatarBitmap(initials, color, 200);
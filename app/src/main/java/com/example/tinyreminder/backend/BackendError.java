@@ -0,0 +1,41 @@
+package com.example.tinyreminder.backend;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Error reported to listeners when a read or listener registration fails.
+ */
+public class BackendError {
+    public static final int UNKNOWN = -999;
+    public static final int PERMISSION_DENIED = -3;
+    public static final int DISCONNECTED = -4;
+    public static final int NETWORK_ERROR = -24;
+
+    private final int code;
+    private final String message;
+
+    public BackendError(int code, @NonNull String message) {
+        this.code = code;
+        this.message = message;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    @NonNull
+    public String getMessage() {
+        return message;
+    }
+
+    @NonNull
+    public BackendException toException() {
+        return new BackendException(code, message);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "BackendError{code=" + code + ", message='" + message + "'}";
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.tinyreminder.backend;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Failure of a backend operation, carrying the {@link BackendError} code so callers can tell
+ * permanent errors such as {@link BackendError#PERMISSION_DENIED} from transient ones.
+ */
+public class BackendException extends Exception {
+    private final int code;
+
+    public BackendException(int code, @NonNull String message) {
+        super(message);
+        this.code = code;
+    }
+
+    public int getCode() {
+        return code;
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.tinyreminder.backend;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Path helpers shared by the backend implementations
+final class BackendPaths {
+    private BackendPaths() {
+    }
+
+    // Removes leading and trailing slashes so "/users/abc/" becomes "users/abc"
+    static String trimSlashes(String path) {
+        int start = 0;
+        int end = path.length();
+        while (start < end && path.charAt(start) == '/') start++;
+        while (end > start && path.charAt(end - 1) == '/') end--;
+        return path.substring(start, end);
+    }
+
+    // Splits a path into its non-empty segments
+    static String[] split(String path) {
+        String trimmed = trimSlashes(path);
+        if (trimmed.isEmpty()) return new String[0];
+        List<String> segments = new ArrayList<>();
+        for (String segment : trimmed.split("/")) {
+            if (!segment.isEmpty()) segments.add(segment);
+        }
+        return segments.toArray(new String[0]);
+    }
+}
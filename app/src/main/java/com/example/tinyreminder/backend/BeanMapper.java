@@ -0,0 +1,266 @@
+package com.example.tinyreminder.backend;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Converts between the database value model and app classes with the bean rules of the
+ * Firebase SDK's class mapper, so InMemoryBackend stores and returns objects exactly as
+ * FirebaseBackend does and write metrics size objects as Firebase serializes them. A property is a public getter ({@code getX}, or {@code isX} for
+ * booleans), a public setter ({@code setX}) or a public field, named with its leading capitals
+ * lowercased. Private fields are never read or written, whatever they are called. Firebase's
+ * {@code @Exclude} and {@code @PropertyName} annotations are not supported; no model uses them.
+ */
+public final class BeanMapper {
+    private static final String[] GETTER_PREFIXES = {"get", "is"};
+
+    private BeanMapper() {
+    }
+
+    /**
+     * @return The properties of a bean, unconverted; the caller normalizes each value.
+     */
+    public static Map<String, Object> toMap(Object bean) {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        Class<?> type = bean.getClass();
+        for (Method method : type.getMethods()) {
+            String name = getterProperty(method);
+            if (name != null) {
+                properties.put(name, invoke(method, bean));
+            }
+        }
+        for (Field field : type.getFields()) {
+            if (isProperty(field)) {
+                properties.put(field.getName(), read(field, bean));
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * Converts a raw value (String, Boolean, Long, Double or Map) to the requested type.
+     *
+     * @throws IllegalArgumentException Where the Firebase SDK would refuse the conversion too.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T convert(Object value, Class<T> type) {
+        return (T) convert(value, (Type) type);
+    }
+
+    private static Object convert(Object value, Type type) {
+        if (value == null) return null;
+        if (type instanceof ParameterizedType) {
+            ParameterizedType parameterized = (ParameterizedType) type;
+            Class<?> raw = (Class<?>) parameterized.getRawType();
+            Type[] arguments = parameterized.getActualTypeArguments();
+            if (List.class.isAssignableFrom(raw)) return convertList(value, arguments[0]);
+            if (Map.class.isAssignableFrom(raw)) return convertMap(value, arguments[1]);
+            return convert(value, raw);
+        }
+        if (!(type instanceof Class)) {
+            // Type variables and wildcards carry no conversion target
+            return value;
+        }
+        Class<?> target = (Class<?>) type;
+        if (target == Object.class) return value;
+        if (target == String.class) {
+            if (value instanceof String) return value;
+            throw failed(value, target);
+        }
+        if (target == Boolean.class || target == boolean.class) {
+            if (value instanceof Boolean) return value;
+            throw failed(value, target);
+        }
+        if (isNumberType(target)) {
+            if (value instanceof Number) return toNumber((Number) value, target);
+            throw failed(value, target);
+        }
+        if (target.isEnum()) {
+            if (value instanceof String) return toEnum((String) value, target);
+            throw failed(value, target);
+        }
+        if (List.class.isAssignableFrom(target)) return convertList(value, Object.class);
+        if (Map.class.isAssignableFrom(target)) return convertMap(value, Object.class);
+        if (value instanceof Map) return toBean(asMap(value), target);
+        throw failed(value, target);
+    }
+
+    private static boolean isNumberType(Class<?> type) {
+        return type == Long.class || type == long.class || type == Integer.class || type == int.class
+                || type == Double.class || type == double.class || type == Float.class || type == float.class;
+    }
+
+    // Like Firebase, whole types accept doubles by truncating, but not values beyond their range
+    private static Object toNumber(Number number, Class<?> target) {
+        if (target == Double.class || target == double.class) return number.doubleValue();
+        if (target == Float.class || target == float.class) return number.floatValue();
+        if (target == Long.class || target == long.class) {
+            double asDouble = number.doubleValue();
+            if (number instanceof Double && (asDouble < Long.MIN_VALUE || asDouble > Long.MAX_VALUE)) {
+                throw new IllegalArgumentException("Numeric value out of 64-bit long range: " + number);
+            }
+            return number.longValue();
+        }
+        double asDouble = number.doubleValue();
+        if (asDouble < Integer.MIN_VALUE || asDouble > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Numeric value out of 32-bit integer range: " + number);
+        }
+        return number.intValue();
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object toEnum(String name, Class<?> target) {
+        try {
+            return Enum.valueOf((Class<? extends Enum>) target, name);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Could not find enum value of " + target.getName() + " for value \"" + name + "\"");
+        }
+    }
+
+    // The database stores lists as maps keyed by index
+    private static List<Object> convertList(Object value, Type elementType) {
+        if (!(value instanceof Map)) throw failed(value, List.class);
+        TreeMap<Integer, Object> byIndex = new TreeMap<>();
+        for (Map.Entry<String, Object> entry : asMap(value).entrySet()) {
+            try {
+                byIndex.put(Integer.parseInt(entry.getKey()), entry.getValue());
+            } catch (NumberFormatException e) {
+                throw failed(value, List.class);
+            }
+        }
+        List<Object> list = new ArrayList<>();
+        for (Map.Entry<Integer, Object> entry : byIndex.entrySet()) {
+            while (list.size() < entry.getKey()) {
+                list.add(null);
+            }
+            list.add(convert(entry.getValue(), elementType));
+        }
+        return list;
+    }
+
+    private static Map<String, Object> convertMap(Object value, Type valueType) {
+        if (!(value instanceof Map)) throw failed(value, Map.class);
+        Map<String, Object> map = new HashMap<>();
+        for (Map.Entry<String, Object> entry : asMap(value).entrySet()) {
+            map.put(entry.getKey(), convert(entry.getValue(), valueType));
+        }
+        return map;
+    }
+
+    // Sets every stored property the class has a public setter or field for; others are ignored
+    private static Object toBean(Map<String, Object> values, Class<?> target) {
+        Object bean = instantiate(target);
+        Map<String, Method> setters = new HashMap<>();
+        for (Method method : target.getMethods()) {
+            String name = setterProperty(method);
+            if (name != null) setters.put(name, method);
+        }
+        Map<String, Field> fields = new HashMap<>();
+        for (Field field : target.getFields()) {
+            if (isProperty(field)) fields.put(field.getName(), field);
+        }
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            Method setter = setters.get(entry.getKey());
+            Field field = fields.get(entry.getKey());
+            try {
+                if (setter != null) {
+                    setter.setAccessible(true);
+                    setter.invoke(bean, convert(entry.getValue(), setter.getGenericParameterTypes()[0]));
+                } else if (field != null) {
+                    field.setAccessible(true);
+                    field.set(bean, convert(entry.getValue(), field.getGenericType()));
+                }
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalArgumentException("Cannot set " + entry.getKey() + " on " + target.getName(), e);
+            }
+        }
+        return bean;
+    }
+
+    private static Object instantiate(Class<?> target) {
+        try {
+            Constructor<?> constructor = target.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor.newInstance();
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("Class " + target.getName() + " does not define a no-argument constructor");
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Cannot create " + target.getName(), e);
+        }
+    }
+
+    private static String getterProperty(Method method) {
+        if (Modifier.isStatic(method.getModifiers()) || method.getParameterTypes().length != 0
+                || method.getReturnType() == void.class || method.getDeclaringClass() == Object.class) {
+            return null;
+        }
+        for (String prefix : GETTER_PREFIXES) {
+            if (!method.getName().startsWith(prefix) || method.getName().length() == prefix.length()) continue;
+            if (prefix.equals("is") && method.getReturnType() != boolean.class && method.getReturnType() != Boolean.class) {
+                continue;
+            }
+            return propertyName(method.getName().substring(prefix.length()));
+        }
+        return null;
+    }
+
+    private static String setterProperty(Method method) {
+        if (Modifier.isStatic(method.getModifiers()) || method.getParameterTypes().length != 1
+                || !method.getName().startsWith("set") || method.getName().length() == 3) {
+            return null;
+        }
+        return propertyName(method.getName().substring(3));
+    }
+
+    private static boolean isProperty(Field field) {
+        int modifiers = field.getModifiers();
+        return !Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers);
+    }
+
+    // getURL -> url, getDisplayName -> displayName
+    private static String propertyName(String withoutPrefix) {
+        char[] chars = withoutPrefix.toCharArray();
+        for (int i = 0; i < chars.length && Character.isUpperCase(chars[i]); i++) {
+            chars[i] = Character.toLowerCase(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    private static Object invoke(Method method, Object bean) {
+        try {
+            method.setAccessible(true);
+            return method.invoke(bean);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Cannot read " + method.getName() + " of " + bean.getClass().getName(), e);
+        }
+    }
+
+    private static Object read(Field field, Object bean) {
+        try {
+            field.setAccessible(true);
+            return field.get(bean);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Cannot read " + field.getName() + " of " + bean.getClass().getName(), e);
+        }
+    }
+
+    private static IllegalArgumentException failed(Object value, Class<?> target) {
+        return new IllegalArgumentException("Failed to convert value of type " + value.getClass().getName()
+                + " to " + target.getName());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asMap(Object value) {
+        return (Map<String, Object>) value;
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.tinyreminder.backend;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Receives per-child changes (added, changed, removed, moved) below a database path.
+ */
+public interface ChildListener {
+    void onChildAdded(@NonNull Snapshot snapshot, @Nullable String previousChildName);
+
+    void onChildChanged(@NonNull Snapshot snapshot, @Nullable String previousChildName);
+
+    void onChildRemoved(@NonNull Snapshot snapshot);
+
+    void onChildMoved(@NonNull Snapshot snapshot, @Nullable String previousChildName);
+
+    void onCancelled(@NonNull BackendError error);
+}
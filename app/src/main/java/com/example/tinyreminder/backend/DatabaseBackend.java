@@ -0,0 +1,93 @@
+package com.example.tinyreminder.backend;
+
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.gms.tasks.Task;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Storage engine used by DatabaseManager. Paths are slash-separated and relative to the
+ * database root (a leading slash is allowed). Listener callbacks are always delivered
+ * asynchronously, never from inside the call that registered them or wrote the data.
+ * Failed writes fail their task with a {@link BackendException}.
+ */
+public interface DatabaseBackend {
+
+    /**
+     * Value the server replaces with its own clock, in milliseconds since the epoch, when it
+     * applies the write. Same shape as Firebase's ServerValue.TIMESTAMP.
+     */
+    Map<String, String> SERVER_TIMESTAMP = Collections.singletonMap(".sv", "timestamp");
+
+    /**
+     * Generates a new, chronologically ordered child key under the given path.
+     * Works without a network connection.
+     */
+    @NonNull
+    String generateKey(@NonNull String path);
+
+    @NonNull
+    Task<Void> setValue(@NonNull String path, @Nullable Object value);
+
+    /**
+     * Writes several child paths (relative to {@code path}) atomically. A null value removes the child.
+     */
+    @NonNull
+    Task<Void> updateChildren(@NonNull String path, @NonNull Map<String, Object> updates);
+
+    @NonNull
+    Task<Void> removeValue(@NonNull String path);
+
+    /**
+     * Asks the server to write {@code value} to the path once this client disconnects, even if
+     * the process dies. A null value removes the path. The request lasts until it fires or is
+     * cancelled, so it has to be made again after every reconnect.
+     */
+    @NonNull
+    Task<Void> setOnDisconnect(@NonNull String path, @Nullable Object value);
+
+    /**
+     * Cancels the writes requested with {@link #setOnDisconnect} at or below the path.
+     */
+    @NonNull
+    Task<Void> cancelOnDisconnect(@NonNull String path);
+
+    /**
+     * Reads the value at the path once.
+     */
+    void readOnce(@NonNull String path, @NonNull ValueListener listener);
+
+    /**
+     * Reads the children of the path whose {@code childKey} equals {@code value}, once.
+     */
+    void queryOnce(@NonNull String path, @NonNull String childKey, @NonNull String value, @NonNull ValueListener listener);
+
+    /**
+     * Delivers the value at the path now and every time it changes, until removed.
+     */
+    @NonNull
+    ListenerRegistration addValueListener(@NonNull String path, @NonNull ValueListener listener);
+
+    /**
+     * Delivers child added/changed/removed events below the path until removed.
+     * Existing children are reported as added right after registration.
+     */
+    @NonNull
+    ListenerRegistration addChildListener(@NonNull String path, @NonNull ChildListener listener);
+
+    /**
+     * Runs an atomic read-modify-write on the path.
+     */
+    void runTransaction(@NonNull String path, @NonNull TransactionHandler handler);
+
+    /**
+     * Uploads a local file to binary storage and resolves with its download URL.
+     */
+    @NonNull
+    Task<Uri> uploadFile(@NonNull String path, @NonNull Uri fileUri);
+}
@@ -0,0 +1,273 @@
+package com.example.tinyreminder.backend;
+
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.MutableData;
+import com.google.firebase.database.Transaction;
+import com.google.firebase.database.ValueEventListener;
+import com.google.firebase.storage.FirebaseStorage;
+import com.google.firebase.storage.StorageReference;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * DatabaseBackend backed by the Firebase Realtime Database and Cloud Storage.
+ */
+public class FirebaseBackend implements DatabaseBackend {
+    private final DatabaseReference root;
+    private final StorageReference storageRoot;
+
+    public FirebaseBackend() {
+        this(FirebaseDatabase.getInstance(), FirebaseStorage.getInstance());
+    }
+
+    public FirebaseBackend(FirebaseDatabase database, FirebaseStorage storage) {
+        this.root = database.getReference();
+        this.storageRoot = storage.getReference();
+    }
+
+    // Resolves a slash-separated path against the database root
+    private DatabaseReference ref(String path) {
+        String trimmed = BackendPaths.trimSlashes(path);
+        return trimmed.isEmpty() ? root : root.child(trimmed);
+    }
+
+    @NonNull
+    @Override
+    public String generateKey(@NonNull String path) {
+        return ref(path).push().getKey();
+    }
+
+    @NonNull
+    @Override
+    public Task<Void> setValue(@NonNull String path, @Nullable Object value) {
+        TaskCompletionSource<Void> result = new TaskCompletionSource<>();
+        ref(path).setValue(value, completion(result));
+        return result.getTask();
+    }
+
+    @NonNull
+    @Override
+    public Task<Void> updateChildren(@NonNull String path, @NonNull Map<String, Object> updates) {
+        TaskCompletionSource<Void> result = new TaskCompletionSource<>();
+        ref(path).updateChildren(updates, completion(result));
+        return result.getTask();
+    }
+
+    @NonNull
+    @Override
+    public Task<Void> removeValue(@NonNull String path) {
+        TaskCompletionSource<Void> result = new TaskCompletionSource<>();
+        ref(path).removeValue(completion(result));
+        return result.getTask();
+    }
+
+    @NonNull
+    @Override
+    public Task<Void> setOnDisconnect(@NonNull String path, @Nullable Object value) {
+        TaskCompletionSource<Void> result = new TaskCompletionSource<>();
+        ref(path).onDisconnect().setValue(value, completion(result));
+        return result.getTask();
+    }
+
+    @NonNull
+    @Override
+    public Task<Void> cancelOnDisconnect(@NonNull String path) {
+        TaskCompletionSource<Void> result = new TaskCompletionSource<>();
+        ref(path).onDisconnect().cancel(completion(result));
+        return result.getTask();
+    }
+
+    @Override
+    public void readOnce(@NonNull String path, @NonNull ValueListener listener) {
+        ref(path).addListenerForSingleValueEvent(wrap(listener));
+    }
+
+    @Override
+    public void queryOnce(@NonNull String path, @NonNull String childKey, @NonNull String value, @NonNull ValueListener listener) {
+        ref(path).orderByChild(childKey).equalTo(value).addListenerForSingleValueEvent(wrap(listener));
+    }
+
+    @NonNull
+    @Override
+    public ListenerRegistration addValueListener(@NonNull String path, @NonNull ValueListener listener) {
+        DatabaseReference reference = ref(path);
+        ValueEventListener firebaseListener = reference.addValueEventListener(wrap(listener));
+        return () -> reference.removeEventListener(firebaseListener);
+    }
+
+    @NonNull
+    @Override
+    public ListenerRegistration addChildListener(@NonNull String path, @NonNull ChildListener listener) {
+        DatabaseReference reference = ref(path);
+        ChildEventListener firebaseListener = reference.addChildEventListener(new ChildEventListener() {
+            @Override
+            public void onChildAdded(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+                listener.onChildAdded(new FirebaseSnapshot(snapshot), previousChildName);
+            }
+
+            @Override
+            public void onChildChanged(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+                listener.onChildChanged(new FirebaseSnapshot(snapshot), previousChildName);
+            }
+
+            @Override
+            public void onChildRemoved(@NonNull DataSnapshot snapshot) {
+                listener.onChildRemoved(new FirebaseSnapshot(snapshot));
+            }
+
+            @Override
+            public void onChildMoved(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+                listener.onChildMoved(new FirebaseSnapshot(snapshot), previousChildName);
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                listener.onCancelled(toBackendError(error));
+            }
+        });
+        return () -> reference.removeEventListener(firebaseListener);
+    }
+
+    @Override
+    public void runTransaction(@NonNull String path, @NonNull TransactionHandler handler) {
+        ref(path).runTransaction(new Transaction.Handler() {
+            @NonNull
+            @Override
+            public Transaction.Result doTransaction(@NonNull MutableData currentData) {
+                Object result = handler.doTransaction(currentData.getValue());
+                if (result == TransactionHandler.ABORT) {
+                    return Transaction.abort();
+                }
+                currentData.setValue(result);
+                return Transaction.success(currentData);
+            }
+
+            @Override
+            public void onComplete(@Nullable DatabaseError error, boolean committed, @Nullable DataSnapshot snapshot) {
+                handler.onComplete(error != null ? toBackendError(error) : null, committed,
+                        snapshot != null ? new FirebaseSnapshot(snapshot) : null);
+            }
+        });
+    }
+
+    @NonNull
+    @Override
+    public Task<Uri> uploadFile(@NonNull String path, @NonNull Uri fileUri) {
+        StorageReference fileRef = storageRoot.child(BackendPaths.trimSlashes(path));
+        return fileRef.putFile(fileUri).continueWithTask(task -> {
+            if (!task.isSuccessful()) {
+                throw task.getException();
+            }
+            return fileRef.getDownloadUrl();
+        });
+    }
+
+    private static ValueEventListener wrap(ValueListener listener) {
+        return new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                listener.onDataChange(new FirebaseSnapshot(snapshot));
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                listener.onCancelled(toBackendError(error));
+            }
+        };
+    }
+
+    // The Task-returning write methods fail with a bare DatabaseException that has lost the error code
+    private static DatabaseReference.CompletionListener completion(TaskCompletionSource<Void> result) {
+        return (error, reference) -> {
+            if (error != null) {
+                result.setException(toBackendError(error).toException());
+            } else {
+                result.setResult(null);
+            }
+        };
+    }
+
+    private static BackendError toBackendError(DatabaseError error) {
+        return new BackendError(error.getCode(), error.getMessage());
+    }
+
+    // Adapts a Firebase DataSnapshot to the backend-neutral Snapshot interface
+    private static class FirebaseSnapshot implements Snapshot {
+        private final DataSnapshot snapshot;
+
+        FirebaseSnapshot(DataSnapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        @Nullable
+        @Override
+        public String getKey() {
+            return snapshot.getKey();
+        }
+
+        @Override
+        public boolean exists() {
+            return snapshot.exists();
+        }
+
+        @Nullable
+        @Override
+        public Object getValue() {
+            return snapshot.getValue();
+        }
+
+        @Nullable
+        @Override
+        public <T> T getValue(@NonNull Class<T> valueType) {
+            return snapshot.getValue(valueType);
+        }
+
+        @NonNull
+        @Override
+        public Snapshot child(@NonNull String path) {
+            return new FirebaseSnapshot(snapshot.child(path));
+        }
+
+        @Override
+        public boolean hasChild(@NonNull String path) {
+            return snapshot.hasChild(path);
+        }
+
+        @NonNull
+        @Override
+        public Iterable<Snapshot> getChildren() {
+            Iterable<DataSnapshot> children = snapshot.getChildren();
+            return () -> {
+                Iterator<DataSnapshot> iterator = children.iterator();
+                return new Iterator<Snapshot>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public Snapshot next() {
+                        return new FirebaseSnapshot(iterator.next());
+                    }
+                };
+            };
+        }
+
+        @Override
+        public long getChildrenCount() {
+            return snapshot.getChildrenCount();
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.tinyreminder.backend;
+
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.tinyreminder.metrics.MetricsRegistry;
+import com.example.tinyreminder.metrics.PathTemplates;
+import com.google.android.gms.tasks.Task;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decorator that records every operation and listener fire of another backend in the
+ * MetricsRegistry: path template, operation, estimated payload size, completion latency
+ * and success. Reads are sized from the delivered snapshot. Converting a snapshot costs as
+ * much as the listener's own read, so listener fires are sized on a random sample: one fire
+ * in {@link #FIRE_SAMPLE_RATE} is sized and counted that many times, and the rest add no bytes.
+ */
+public class InstrumentedBackend implements DatabaseBackend {
+    static final int FIRE_SAMPLE_RATE = 16;
+
+    private final DatabaseBackend delegate;
+    private final MetricsRegistry metrics;
+
+    public InstrumentedBackend(DatabaseBackend delegate) {
+        this(delegate, MetricsRegistry.get());
+    }
+
+    public InstrumentedBackend(DatabaseBackend delegate, MetricsRegistry metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @NonNull
+    @Override
+    public String generateKey(@NonNull String path) {
+        return delegate.generateKey(path);
+    }
+
+    @NonNull
+    @Override
+    public Task<Void> setValue(@NonNull String path, @Nullable Object value) {
+        return track(delegate.setValue(path, value), PathTemplates.of(path), "set", PathTemplates.estimateBytes(value));
+    }
+
+    @NonNull
+    @Override
+    public Task<Void> updateChildren(@NonNull String path, @NonNull Map<String, Object> updates) {
+        return track(delegate.updateChildren(path, updates), PathTemplates.ofUpdate(path, updates), "update",
+                PathTemplates.estimateBytes(updates));
+    }
+
+    @NonNull
+    @Override
+    public Task<Void> removeValue(@NonNull String path) {
+        return track(delegate.removeValue(path), PathTemplates.of(path), "remove", 0);
+    }
+
+    @NonNull
+    @Override
+    public Task<Void> setOnDisconnect(@NonNull String path, @Nullable Object value) {
+        return track(delegate.setOnDisconnect(path, value), PathTemplates.of(path), "on_disconnect",
+                PathTemplates.estimateBytes(value));
+    }
+
+    @NonNull
+    @Override
+    public Task<Void> cancelOnDisconnect(@NonNull String path) {
+        return track(delegate.cancelOnDisconnect(path), PathTemplates.of(path), "on_disconnect_cancel", 0);
+    }
+
+    @Override
+    public void readOnce(@NonNull String path, @NonNull ValueListener listener) {
+        delegate.readOnce(path, timedOnce(PathTemplates.of(path), "read", listener));
+    }
+
+    @Override
+    public void queryOnce(@NonNull String path, @NonNull String childKey, @NonNull String value, @NonNull ValueListener listener) {
+        delegate.queryOnce(path, childKey, value, timedOnce(PathTemplates.of(path) + "?" + childKey, "query", listener));
+    }
+
+    @NonNull
+    @Override
+    public ListenerRegistration addValueListener(@NonNull String path, @NonNull ValueListener listener) {
+        String template = PathTemplates.of(path);
+        metrics.counter("listeners.value.attached").increment();
+        ListenerRegistration registration = delegate.addValueListener(path, new ValueListener() {
+            @Override
+            public void onDataChange(@NonNull Snapshot snapshot) {
+                metrics.recordOperation(template, "value_fire", sampledBytes(snapshot), -1, true);
+                listener.onDataChange(snapshot);
+            }
+
+            @Override
+            public void onCancelled(@NonNull BackendError error) {
+                metrics.recordOperation(template, "value_fire", 0, -1, false);
+                listener.onCancelled(error);
+            }
+        });
+        return () -> {
+            metrics.counter("listeners.value.detached").increment();
+            registration.remove();
+        };
+    }
+
+    @NonNull
+    @Override
+    public ListenerRegistration addChildListener(@NonNull String path, @NonNull ChildListener listener) {
+        String template = PathTemplates.of(path) + "/$id";
+        metrics.counter("listeners.child.attached").increment();
+        ListenerRegistration registration = delegate.addChildListener(path, new ChildListener() {
+            @Override
+            public void onChildAdded(@NonNull Snapshot snapshot, @Nullable String previousChildName) {
+                metrics.recordOperation(template, "child_added", sampledBytes(snapshot), -1, true);
+                listener.onChildAdded(snapshot, previousChildName);
+            }
+
+            @Override
+            public void onChildChanged(@NonNull Snapshot snapshot, @Nullable String previousChildName) {
+                metrics.recordOperation(template, "child_changed", sampledBytes(snapshot), -1, true);
+                listener.onChildChanged(snapshot, previousChildName);
+            }
+
+            @Override
+            public void onChildRemoved(@NonNull Snapshot snapshot) {
+                metrics.recordOperation(template, "child_removed", 0, -1, true);
+                listener.onChildRemoved(snapshot);
+            }
+
+            @Override
+            public void onChildMoved(@NonNull Snapshot snapshot, @Nullable String previousChildName) {
+                metrics.recordOperation(template, "child_moved", 0, -1, true);
+                listener.onChildMoved(snapshot, previousChildName);
+            }
+
+            @Override
+            public void onCancelled(@NonNull BackendError error) {
+                metrics.recordOperation(template, "child_cancelled", 0, -1, false);
+                listener.onCancelled(error);
+            }
+        });
+        return () -> {
+            metrics.counter("listeners.child.detached").increment();
+            registration.remove();
+        };
+    }
+
+    @Override
+    public void runTransaction(@NonNull String path, @NonNull TransactionHandler handler) {
+        String template = PathTemplates.of(path);
+        long start = System.nanoTime();
+        delegate.runTransaction(path, new TransactionHandler() {
+            @Nullable
+            @Override
+            public Object doTransaction(@Nullable Object currentValue) {
+                return handler.doTransaction(currentValue);
+            }
+
+            @Override
+            public void onComplete(@Nullable BackendError error, boolean committed, @Nullable Snapshot snapshot) {
+                metrics.recordOperation(template, "transaction",
+                        snapshot != null ? PathTemplates.estimateBytes(snapshot.getValue()) : 0,
+                        (System.nanoTime() - start) / 1000, error == null);
+                handler.onComplete(error, committed, snapshot);
+            }
+        });
+    }
+
+    @NonNull
+    @Override
+    public Task<Uri> uploadFile(@NonNull String path, @NonNull Uri fileUri) {
+        return track(delegate.uploadFile(path, fileUri), PathTemplates.of(path), "upload", 0);
+    }
+
+    private <T> Task<T> track(Task<T> task, String template, String operation, long bytes) {
+        long start = System.nanoTime();
+        // Runs inline on the completing thread so main-thread queueing does not skew latency
+        task.addOnCompleteListener(Runnable::run, result -> metrics.recordOperation(template, operation, bytes,
+                (System.nanoTime() - start) / 1000, result.isSuccessful()));
+        return task;
+    }
+
+    // Unbiased estimate of a fire's size that converts only one snapshot in FIRE_SAMPLE_RATE
+    private static long sampledBytes(Snapshot snapshot) {
+        if (ThreadLocalRandom.current().nextInt(FIRE_SAMPLE_RATE) != 0) return 0;
+        return PathTemplates.estimateBytes(snapshot.getValue()) * FIRE_SAMPLE_RATE;
+    }
+
+    private ValueListener timedOnce(String template, String operation, ValueListener listener) {
+        long start = System.nanoTime();
+        return new ValueListener() {
+            @Override
+            public void onDataChange(@NonNull Snapshot snapshot) {
+                metrics.recordOperation(template, operation, PathTemplates.estimateBytes(snapshot.getValue()),
+                        (System.nanoTime() - start) / 1000, true);
+                listener.onDataChange(snapshot);
+            }
+
+            @Override
+            public void onCancelled(@NonNull BackendError error) {
+                metrics.recordOperation(template, operation, 0, (System.nanoTime() - start) / 1000, false);
+                listener.onCancelled(error);
+            }
+        };
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.tinyreminder.backend;
+
+/**
+ * Handle returned when attaching a persistent listener; used to detach it again.
+ */
+public interface ListenerRegistration {
+    void remove();
+}
@@ -0,0 +1,62 @@
+package com.example.tinyreminder.backend;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Read-only view of the data stored at a database path, as delivered to listeners.
+ * Mirrors the subset of Firebase's DataSnapshot that the app relies on so that callers
+ * do not depend on a specific backend.
+ */
+public interface Snapshot {
+
+    /**
+     * @return The last segment of the path this snapshot was read from, or null for the root.
+     */
+    @Nullable
+    String getKey();
+
+    /**
+     * @return True if the snapshot contains a non-null value.
+     */
+    boolean exists();
+
+    /**
+     * @return The raw value: a String, Boolean, Long, Double, Map or null.
+     */
+    @Nullable
+    Object getValue();
+
+    /**
+     * Converts the value of this snapshot to the given type.
+     *
+     * @param valueType The class to convert to.
+     * @return The converted value, or null if the snapshot is empty.
+     */
+    @Nullable
+    <T> T getValue(@NonNull Class<T> valueType);
+
+    /**
+     * @param path A relative path, may contain slashes.
+     * @return A snapshot for the child location; never null, may be empty.
+     */
+    @NonNull
+    Snapshot child(@NonNull String path);
+
+    /**
+     * @param path A relative path, may contain slashes.
+     * @return True if the child location contains data.
+     */
+    boolean hasChild(@NonNull String path);
+
+    /**
+     * @return The immediate children of this snapshot, ordered by key.
+     */
+    @NonNull
+    Iterable<Snapshot> getChildren();
+
+    /**
+     * @return The number of immediate children.
+     */
+    long getChildrenCount();
+}
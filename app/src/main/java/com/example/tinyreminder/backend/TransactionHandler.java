@@ -0,0 +1,28 @@
+package com.example.tinyreminder.backend;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Atomic read-modify-write on a single database path.
+ * {@link #doTransaction(Object)} may be called more than once if the value changes concurrently.
+ */
+public interface TransactionHandler {
+    // Returned from doTransaction to abort without writing
+    Object ABORT = new Object();
+
+    /**
+     * @param currentValue The current raw value at the path (may be null).
+     * @return The new raw value to store, or {@link #ABORT}.
+     */
+    @Nullable
+    Object doTransaction(@Nullable Object currentValue);
+
+    /**
+     * Called once when the transaction has completed.
+     *
+     * @param error     The error if the transaction failed, null otherwise.
+     * @param committed True if the value was written.
+     * @param snapshot  The value at the path after the transaction.
+     */
+    void onComplete(@Nullable BackendError error, boolean committed, @Nullable Snapshot snapshot);
+}
@@ -0,0 +1,12 @@
+package com.example.tinyreminder.backend;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Receives the full value of a database path, once or every time it changes.
+ */
+public interface ValueListener {
+    void onDataChange(@NonNull Snapshot snapshot);
+
+    void onCancelled(@NonNull BackendError error);
+}
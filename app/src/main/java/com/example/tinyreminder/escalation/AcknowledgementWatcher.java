@@ -0,0 +1,139 @@
+package com.example.tinyreminder.escalation;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.example.tinyreminder.backend.BackendError;
+import com.example.tinyreminder.backend.ListenerRegistration;
+import com.example.tinyreminder.backend.Snapshot;
+import com.example.tinyreminder.backend.ValueListener;
+import com.example.tinyreminder.metrics.MetricsRegistry;
+import com.example.tinyreminder.utils.DatabaseManager;
+import com.example.tinyreminder.utils.NotificationHelper;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Follows parkingEvents/$eventId/status while this device escalates or shows an alert for the
+ * event. As soon as anyone answers it, on any device, the local escalation, reminder and family
+ * alert are cancelled instead of paging again.
+ *
+ * Every subscription ends on its own: when the event is answered, when the local escalation
+ * finishes, or at the latest when its window runs out.
+ */
+public final class AcknowledgementWatcher implements EscalationScheduler.Listener {
+    private static final String TAG = "AcknowledgementWatcher";
+    // Grace period after the window, so a late last step still sees the answer
+    private static final long WINDOW_GRACE_MS = 60 * 1000;
+
+    private static AcknowledgementWatcher instance;
+
+    private final Context context;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Map<String, Watch> watches = new HashMap<>();
+
+    private static class Watch {
+        ListenerRegistration registration;
+        Runnable expiry;
+    }
+
+    public static synchronized AcknowledgementWatcher get(Context context) {
+        if (instance == null) {
+            instance = new AcknowledgementWatcher(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private AcknowledgementWatcher(Context context) {
+        this.context = context;
+    }
+
+    @Override
+    public void onEscalationStarted(String eventId) {
+        watch(eventId, EscalationPolicy.DEFAULT.getWindowMillis() + WINDOW_GRACE_MS);
+    }
+
+    @Override
+    public void onEscalationFinished(String eventId) {
+        unwatch(eventId);
+    }
+
+    /**
+     * Subscribes to the event's status for the given window. Watching an event again only
+     * extends its window.
+     */
+    public void watch(String eventId, long windowMillis) {
+        Watch watch;
+        boolean subscribe;
+        synchronized (this) {
+            watch = watches.get(eventId);
+            subscribe = watch == null;
+            if (subscribe) {
+                watch = new Watch();
+                watches.put(eventId, watch);
+            } else {
+                handler.removeCallbacks(watch.expiry);
+            }
+            watch.expiry = () -> unwatch(eventId);
+            handler.postDelayed(watch.expiry, windowMillis);
+        }
+        if (!subscribe) return;
+
+        ListenerRegistration registration = new DatabaseManager(context).watchParkingEventStatus(eventId, new ValueListener() {
+            @Override
+            public void onDataChange(@NonNull Snapshot snapshot) {
+                onStatus(eventId, snapshot.getValue(String.class));
+            }
+
+            @Override
+            public void onCancelled(@NonNull BackendError databaseError) {
+                Log.e(TAG, "Status subscription for " + eventId + " cancelled: " + databaseError.getMessage());
+                unwatch(eventId);
+            }
+        });
+        boolean stillWanted;
+        synchronized (this) {
+            stillWanted = watches.get(eventId) == watch;
+            if (stillWanted) {
+                watch.registration = registration;
+            }
+        }
+        if (!stillWanted) {
+            registration.remove(); // Unwatched while subscribing
+        }
+    }
+
+    /**
+     * Ends the subscription for the event, if any.
+     */
+    public void unwatch(String eventId) {
+        Watch watch;
+        synchronized (this) {
+            watch = watches.remove(eventId);
+        }
+        if (watch == null) return;
+        handler.removeCallbacks(watch.expiry);
+        if (watch.registration != null) {
+            watch.registration.remove();
+        }
+        Log.d(TAG, "Stopped watching " + eventId);
+    }
+
+    private void onStatus(String eventId, String status) {
+        if ("PENDING".equals(status) || "ALERT".equals(status)) return;
+        if (status == null && new DatabaseManager(context).isParkingEventQueued(eventId)) {
+            return; // Created on this device and not on the server yet
+        }
+        Log.d(TAG, "Parking event " + eventId + " answered elsewhere (" + status + "), cancelling locally");
+        MetricsRegistry.get().counter("escalation.remote_ack").increment();
+        unwatch(eventId);
+        EscalationManager.get(context).cancel(eventId);
+        NotificationHelper.cancelParkingNotification(context, eventId);
+        NotificationHelper.cancelFamilyAlert(context, eventId);
+    }
+}
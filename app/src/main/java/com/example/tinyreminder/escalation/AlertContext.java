@@ -0,0 +1,31 @@
+package com.example.tinyreminder.escalation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Everything an escalation needs to alert the family, captured around parking detection and
+ * persisted with the escalation entry, so the alarm path does not have to look it up in an
+ * emergency. Plain fields so it persists as JSON.
+ *
+ * Member tokens are not needed here: the dispatchFamilyAlert function resolves them with
+ * a single read of families/$familyId/memberTokens.
+ */
+public class AlertContext {
+    public String familyId;
+    public String driverName;
+    /** Other members sharing a location, nearest to the parking spot first. */
+    public List<String> membersByDistance = new ArrayList<>();
+    public long capturedAt;
+
+    public AlertContext() {
+        // Default constructor required for Gson
+    }
+
+    /**
+     * @return The member nearest to the parking spot, or null if nobody shared a location.
+     */
+    public String nearestMemberId() {
+        return membersByDistance.isEmpty() ? null : membersByDistance.get(0);
+    }
+}
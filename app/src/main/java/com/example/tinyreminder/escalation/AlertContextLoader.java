@@ -0,0 +1,88 @@
+package com.example.tinyreminder.escalation;
+
+import android.location.Location;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.example.tinyreminder.backend.BackendError;
+import com.example.tinyreminder.backend.Snapshot;
+import com.example.tinyreminder.backend.ValueListener;
+import com.example.tinyreminder.models.User;
+import com.example.tinyreminder.utils.DatabaseManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Builds an {@link AlertContext} from the database. Meant to run while the car is stopping,
+ * well before the first alert step can fire.
+ */
+public final class AlertContextLoader {
+    private static final String TAG = "AlertContextLoader";
+
+    private AlertContextLoader() {
+    }
+
+    /**
+     * Reads the driver's family and the members' last known locations, ranking the members
+     * by distance to the parking spot. Delivers null if the driver is not in a family or a
+     * read fails. With a NaN parking spot no members are ranked.
+     */
+    public static void load(DatabaseManager dbManager, String userId, double latitude, double longitude,
+                            Consumer<AlertContext> callback) {
+        dbManager.getUserData(userId, new ValueListener() {
+            @Override
+            public void onDataChange(@NonNull Snapshot dataSnapshot) {
+                User user = dataSnapshot.getValue(User.class);
+                if (user == null || user.getFamilyId() == null) {
+                    callback.accept(null);
+                    return;
+                }
+                dbManager.getMemberLocations(user.getFamilyId(), new ValueListener() {
+                    @Override
+                    public void onDataChange(@NonNull Snapshot locations) {
+                        AlertContext context = new AlertContext();
+                        context.familyId = user.getFamilyId();
+                        context.driverName = user.getName();
+                        context.membersByDistance = rankByDistance(locations, userId, latitude, longitude);
+                        context.capturedAt = System.currentTimeMillis();
+                        callback.accept(context);
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull BackendError databaseError) {
+                        Log.e(TAG, "Error fetching member locations: " + databaseError.getMessage());
+                        callback.accept(null);
+                    }
+                });
+            }
+
+            @Override
+            public void onCancelled(@NonNull BackendError databaseError) {
+                Log.e(TAG, "Error fetching user data: " + databaseError.getMessage());
+                callback.accept(null);
+            }
+        });
+    }
+
+    private static List<String> rankByDistance(Snapshot locations, String driverId, double latitude, double longitude) {
+        Map<String, Float> distances = new HashMap<>();
+        if (Double.isNaN(latitude) || Double.isNaN(longitude)) return new ArrayList<>();
+        float[] distance = new float[1];
+        for (Snapshot member : locations.getChildren()) {
+            Double lat = member.child("latitude").getValue(Double.class);
+            Double lng = member.child("longitude").getValue(Double.class);
+            if (lat == null || lng == null || driverId.equals(member.getKey())) continue;
+            Location.distanceBetween(latitude, longitude, lat, lng, distance);
+            distances.put(member.getKey(), distance[0]);
+        }
+        List<String> ranked = new ArrayList<>(distances.keySet());
+        Collections.sort(ranked, (a, b) -> Float.compare(distances.get(a), distances.get(b)));
+        return ranked;
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.tinyreminder.escalation;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.tinyreminder.metrics.MetricsRegistry;
+import com.example.tinyreminder.utils.DatabaseManager;
+import com.example.tinyreminder.utils.NotificationHelper;
+import com.example.tinyreminder.utils.RetryPolicy;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Performs escalation steps against the database and the notification tray.
+ *
+ * Re-reminding the driver is purely local. Alert steps run one conditional read, a transaction
+ * moving the event from PENDING to ALERT that stops the escalation if the event was answered;
+ * family and recipients come from the {@link AlertContext} captured at parking detection.
+ *
+ * If the server does not answer within {@link #LOCAL_DECISION_MS} while offline, or
+ * {@link #ONLINE_DECISION_MS} while connected, or the event never reached it, the step is
+ * decided from local state alone: the event is still in the local escalation
+ * queue, so nobody answered it here and no answer from elsewhere reached this device. The
+ * family cannot be alerted either, so the driver gets an {@link OfflineAlarm} instead. If the
+ * server answers after that and the event is still unanswered, the alert is sent then.
+ */
+class EscalationActions implements EscalationScheduler.StageHandler {
+    private static final String TAG = "EscalationActions";
+    private static final String[] ACTIVE_STATUSES = {"PENDING", "ALERT"};
+    // Well inside the receiver deadline, so the alarm is raised before the broadcast is released
+    private static final long LOCAL_DECISION_MS = 5000;
+    // A slow cellular round trip must not set off the full-screen alarm, but it still comes before the next step
+    private static final long ONLINE_DECISION_MS = 30_000;
+    private final Context context;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    EscalationActions(Context context) {
+        this.context = context;
+    }
+
+    @Override
+    public void onStage(EscalationEntry entry, EscalationStage stage, Runnable done) {
+        Log.d(TAG, "Escalating " + entry.eventId + " to " + stage + " (repeat " + entry.repeat + ")");
+        DatabaseManager dbManager = new DatabaseManager(context);
+        if (stage == EscalationStage.REMIND_DRIVER) {
+            NotificationHelper.showParkingReminder(context, entry.userId, entry.eventId);
+            done.run();
+            return;
+        }
+        if (dbManager.isParkingEventQueued(entry.eventId)) {
+            // Until the event reaches the server nobody else can be alerted
+            OfflineAlarm.get(context).raise(entry.eventId, entry.userId);
+            done.run();
+            return;
+        }
+
+        long startMillis = System.currentTimeMillis();
+        long budget = dbManager.getConnectionMonitor().isOnline() ? ONLINE_DECISION_MS : LOCAL_DECISION_MS;
+        AtomicBoolean decided = new AtomicBoolean();
+        Runnable decideLocally = () -> {
+            if (!decided.compareAndSet(false, true)) return;
+            Log.w(TAG, "No answer from the server for " + entry.eventId + " within " + budget + " ms");
+            OfflineAlarm.get(context).raise(entry.eventId, entry.userId);
+            done.run();
+        };
+        handler.postDelayed(decideLocally, budget);
+
+        dbManager.markParkingEventAlerted(entry.eventId).addOnCompleteListener(task -> {
+            handler.removeCallbacks(decideLocally);
+            boolean late = !decided.compareAndSet(false, true);
+            if (!task.isSuccessful()) {
+                if (late) return;
+                // Could not tell whether the event was answered; alerting needlessly beats not alerting
+                Log.e(TAG, "Failed to check parking event " + entry.eventId, task.getException());
+                alert(dbManager, entry, stage, false).addOnCompleteListener(alertTask -> done.run());
+                return;
+            }
+            String previous = task.getResult();
+            if (!isActive(previous)) {
+                Log.d(TAG, "Parking event " + entry.eventId + " was answered, stopping escalation");
+                EscalationManager.get(context).cancel(entry.eventId);
+                NotificationHelper.cancelParkingNotification(context, entry.eventId);
+                if (!late) done.run();
+                return;
+            }
+            OfflineAlarm.get(context).markSynced(entry.eventId);
+            if (late) {
+                // The step already finished with the local alarm; the family still has to hear about it
+                Log.d(TAG, "Late answer from the server for " + entry.eventId + ", alerting now");
+                alert(dbManager, entry, stage, "PENDING".equals(previous));
+                return;
+            }
+            alert(dbManager, entry, stage, "PENDING".equals(previous)).addOnCompleteListener(alertTask -> {
+                MetricsRegistry.get().histogram("escalation.alert_step_ms").record(System.currentTimeMillis() - startMillis);
+                done.run();
+            });
+        });
+    }
+
+    private static boolean isActive(String status) {
+        for (String active : ACTIVE_STATUSES) {
+            if (active.equals(status)) return true;
+        }
+        return false;
+    }
+
+    // Moves the driver to ALERT on the first alert step, then pushes the alert to the nearest member or the whole family
+    Task<Void> alert(DatabaseManager dbManager, EscalationEntry entry, EscalationStage stage, boolean firstAlert) {
+        List<Task<?>> writes = new ArrayList<>();
+        if (firstAlert) {
+            writes.add(dbManager.setUserStatus(entry.userId, "ALERT").addOnCompleteListener(task -> {
+                if (!task.isSuccessful()) {
+                    Log.e(TAG, "Failed to update user status", task.getException());
+                }
+            }));
+        }
+
+        AlertContext alertContext = entry.alertContext;
+        if (alertContext != null) {
+            writes.add(sendAlert(dbManager, entry, stage, alertContext));
+            return Tasks.whenAll(writes);
+        }
+
+        // Context was never captured, e.g. the driver was offline the whole time; look it up now.
+        // The parking spot is not known here, so there is no nearest member and everyone is alerted
+        Log.w(TAG, "No alert context for " + entry.eventId + ", loading it");
+        MetricsRegistry.get().counter("escalation.context_missing").increment();
+        TaskCompletionSource<Void> alertWrite = new TaskCompletionSource<>();
+        writes.add(alertWrite.getTask());
+        AlertContextLoader.load(dbManager, entry.userId, Double.NaN, Double.NaN, loaded -> {
+            if (loaded == null) {
+                Log.e(TAG, "Cannot alert for " + entry.eventId + ": no family");
+                alertWrite.trySetResult(null);
+                return;
+            }
+            EscalationManager.get(context).attachContext(entry.eventId, loaded);
+            sendAlert(dbManager, entry, stage, loaded).addOnCompleteListener(task -> alertWrite.trySetResult(null));
+        });
+        return Tasks.whenAll(writes);
+    }
+
+    private Task<Void> sendAlert(DatabaseManager dbManager, EscalationEntry entry, EscalationStage stage, AlertContext alertContext) {
+        List<String> recipients = null;
+        String nearestId = alertContext.nearestMemberId();
+        if (stage == EscalationStage.ALERT_NEAREST && nearestId != null) {
+            Log.d(TAG, "Alerting nearest member " + nearestId + " for " + entry.eventId);
+            recipients = Collections.singletonList(nearestId);
+        }
+        // Without a nearest member, better to alert everyone than no one
+        return dbManager.createFamilyAlert(alertContext.familyId, entry.userId, alertContext.driverName, entry.eventId, recipients)
+                .addOnCompleteListener(task -> {
+                    if (task.getException() instanceof RetryPolicy.PendingWriteException) {
+                        Log.w(TAG, "Family alert for " + entry.eventId + " is waiting for the connection");
+                    } else if (!task.isSuccessful()) {
+                        Log.e(TAG, "Failed to queue family alert for " + entry.eventId, task.getException());
+                    }
+                });
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.tinyreminder.escalation;
+
+/**
+ * The next pending escalation step of one parking event. Plain fields so it persists as JSON.
+ */
+public class EscalationEntry {
+    public String eventId;
+    public String userId;
+    public int stepIndex;
+    public int repeat;
+    public long dueAt;
+    /** Family and recipients for the alert steps; null until captured. */
+    public AlertContext alertContext;
+
+    public EscalationEntry() {
+        // Default constructor required for Gson
+    }
+
+    public EscalationEntry(String eventId, String userId, int stepIndex, int repeat, long dueAt) {
+        this.eventId = eventId;
+        this.userId = userId;
+        this.stepIndex = stepIndex;
+        this.repeat = repeat;
+        this.dueAt = dueAt;
+    }
+}
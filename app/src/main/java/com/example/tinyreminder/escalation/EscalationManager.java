@@ -0,0 +1,110 @@
+package com.example.tinyreminder.escalation;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.example.tinyreminder.receivers.NotificationTimeoutReceiver;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Owns the process-wide EscalationScheduler: the queue is persisted in SharedPreferences and
+ * the single alarm is an exact AlarmManager alarm delivered to NotificationTimeoutReceiver.
+ * The first call to {@link #get(Context)} in a process rehydrates the queue.
+ */
+public final class EscalationManager {
+    private static final String TAG = "EscalationManager";
+    private static final String PREFS_NAME = "escalations";
+    private static final String KEY_QUEUE = "queue";
+    // Below NotificationRegistry.FIRST_ID, so it never collides with notification request codes
+    private static final int ALARM_REQUEST_CODE = 1;
+
+    private static EscalationScheduler scheduler;
+
+    private EscalationManager() {
+    }
+
+    public static synchronized EscalationScheduler get(Context context) {
+        if (scheduler == null) {
+            Context appContext = context.getApplicationContext();
+            scheduler = new EscalationScheduler(EscalationPolicy.DEFAULT, System::currentTimeMillis,
+                    new PrefsStore(appContext), new ExactAlarm(appContext), new EscalationActions(appContext));
+            scheduler.rehydrate();
+            // Reports every rehydrated event as started, so their status subscriptions resume
+            scheduler.setListener(AcknowledgementWatcher.get(appContext));
+        }
+        return scheduler;
+    }
+
+    private static class PrefsStore implements EscalationScheduler.Store {
+        private static final Gson GSON = new Gson();
+        private static final Type LIST_TYPE = new TypeToken<List<EscalationEntry>>() {}.getType();
+        private final SharedPreferences prefs;
+
+        PrefsStore(Context context) {
+            prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        }
+
+        @Override
+        public List<EscalationEntry> load() {
+            String json = prefs.getString(KEY_QUEUE, null);
+            if (json == null) return new ArrayList<>();
+            try {
+                List<EscalationEntry> entries = GSON.fromJson(json, LIST_TYPE);
+                return entries != null ? entries : new ArrayList<>();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Discarding unreadable escalation queue", e);
+                return new ArrayList<>();
+            }
+        }
+
+        @Override
+        public void save(List<EscalationEntry> entries) {
+            // commit() rather than apply(): the queue must be on disk before the process can die
+            prefs.edit().putString(KEY_QUEUE, GSON.toJson(entries)).commit();
+        }
+    }
+
+    private static class ExactAlarm implements EscalationScheduler.Alarm {
+        private final Context context;
+
+        ExactAlarm(Context context) {
+            this.context = context;
+        }
+
+        private PendingIntent pendingIntent() {
+            Intent intent = new Intent(context, NotificationTimeoutReceiver.class);
+            return PendingIntent.getBroadcast(context, ALARM_REQUEST_CODE, intent,
+                    PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+        }
+
+        @Override
+        public void arm(long triggerAtMillis) {
+            AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+            if (alarmManager == null) return;
+            try {
+                alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, triggerAtMillis, pendingIntent());
+            } catch (SecurityException e) {
+                // Exact alarm access revoked by the user; an inexact alarm is better than none
+                Log.w(TAG, "Exact alarms not permitted, falling back to inexact", e);
+                alarmManager.setAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, triggerAtMillis, pendingIntent());
+            }
+        }
+
+        @Override
+        public void cancel() {
+            AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+            if (alarmManager != null) {
+                alarmManager.cancel(pendingIntent());
+            }
+        }
+    }
+}
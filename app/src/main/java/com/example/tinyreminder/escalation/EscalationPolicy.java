@@ -0,0 +1,63 @@
+package com.example.tinyreminder.escalation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Ordered escalation steps, each with its delay after the previous step fired.
+ * The last step repeats up to {@code maxRepeats} more times.
+ */
+public class EscalationPolicy {
+    /**
+     * Nearest member after 1 minute, when the whole family used to be alerted, then the whole
+     * family a minute later and every minute after that for 10 more minutes.
+     */
+    public static final EscalationPolicy DEFAULT = new EscalationPolicy(10)
+            .then(EscalationStage.ALERT_NEAREST, 60 * 1000)
+            .then(EscalationStage.ALERT_FAMILY, 60 * 1000);
+
+    private final List<Step> steps = new ArrayList<>();
+    private final int maxRepeats;
+
+    public static class Step {
+        public final EscalationStage stage;
+        public final long delayMillis;
+
+        Step(EscalationStage stage, long delayMillis) {
+            this.stage = stage;
+            this.delayMillis = delayMillis;
+        }
+    }
+
+    public EscalationPolicy(int maxRepeats) {
+        this.maxRepeats = maxRepeats;
+    }
+
+    public EscalationPolicy then(EscalationStage stage, long delayMillis) {
+        steps.add(new Step(stage, delayMillis));
+        return this;
+    }
+
+    public List<Step> getSteps() {
+        return Collections.unmodifiableList(steps);
+    }
+
+    public int getMaxRepeats() {
+        return maxRepeats;
+    }
+
+    /**
+     * @return Time from the reminder to the last step, if every step fires on time.
+     */
+    public long getWindowMillis() {
+        long window = 0;
+        for (Step step : steps) {
+            window += step.delayMillis;
+        }
+        if (!steps.isEmpty()) {
+            window += maxRepeats * steps.get(steps.size() - 1).delayMillis;
+        }
+        return window;
+    }
+}
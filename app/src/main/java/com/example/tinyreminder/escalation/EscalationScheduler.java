@@ -0,0 +1,322 @@
+package com.example.tinyreminder.escalation;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Drives every pending parking event through its escalation steps.
+ *
+ * Pending steps live in one priority queue ordered by due time, persisted after every change.
+ * Only a single alarm is ever armed, for the earliest due step; when it fires, every due step
+ * runs and the alarm is re-armed for the next one. After a reboot or process restart,
+ * {@link #rehydrate()} reloads the queue and re-arms, and overdue steps run right away.
+ */
+public class EscalationScheduler {
+    private final EscalationPolicy policy;
+    private final LongSupplier clock;
+    private final Store store;
+    private final Alarm alarm;
+    private final StageHandler handler;
+    private final PriorityQueue<EscalationEntry> queue =
+            new PriorityQueue<>(11, Comparator.comparingLong(entry -> entry.dueAt));
+    private long armedAt = -1;
+    private Listener listener;
+
+    /**
+     * Persists the queue across process death.
+     */
+    public interface Store {
+        List<EscalationEntry> load();
+
+        void save(List<EscalationEntry> entries);
+    }
+
+    /**
+     * The single wake-up alarm. Must call {@link #onAlarm()} at or after the armed time.
+     */
+    public interface Alarm {
+        void arm(long triggerAtMillis);
+
+        void cancel();
+    }
+
+    /**
+     * Performs a step. Called without the scheduler lock held, so it may call back into the scheduler.
+     * Must run {@code done} exactly once, when the step's writes have completed or failed.
+     */
+    public interface StageHandler {
+        void onStage(EscalationEntry entry, EscalationStage stage, Runnable done);
+    }
+
+    /**
+     * Told when an event starts or stops escalating, e.g. to hold resources for the escalation
+     * window. An event stops when it is cancelled or once its final step reported done.
+     * Called with the scheduler lock held, so it must not call back into the scheduler.
+     */
+    public interface Listener {
+        void onEscalationStarted(String eventId);
+
+        void onEscalationFinished(String eventId);
+    }
+
+    public EscalationScheduler(EscalationPolicy policy, LongSupplier clock, Store store, Alarm alarm, StageHandler handler) {
+        this.policy = policy;
+        this.clock = clock;
+        this.store = store;
+        this.alarm = alarm;
+        this.handler = handler;
+    }
+
+    /**
+     * Sets the listener; events already escalating are reported as started.
+     */
+    public synchronized void setListener(Listener listener) {
+        this.listener = listener;
+        for (String eventId : eventIds()) {
+            listener.onEscalationStarted(eventId);
+        }
+    }
+
+    /**
+     * Reloads persisted steps and re-arms the alarm. Overdue steps fire on the next alarm,
+     * which is armed for immediately.
+     */
+    public synchronized void rehydrate() {
+        queue.clear();
+        queue.addAll(store.load());
+        armedAt = -1;
+        rearm();
+        if (listener != null) {
+            for (String eventId : eventIds()) {
+                listener.onEscalationStarted(eventId);
+            }
+        }
+    }
+
+    /**
+     * Starts escalating a parking event whose reminder was just shown. Restarting an event
+     * already being escalated resets it to the first step.
+     */
+    public synchronized void start(String eventId, String userId) {
+        start(eventId, userId, null);
+    }
+
+    /**
+     * Like {@link #start(String, String)}, with the alert context already captured.
+     */
+    public synchronized void start(String eventId, String userId, AlertContext alertContext) {
+        removeEvent(eventId);
+        long delay = policy.getSteps().get(0).delayMillis;
+        EscalationEntry entry = new EscalationEntry(eventId, userId, 0, 0, clock.getAsLong() + delay);
+        entry.alertContext = alertContext;
+        queue.add(entry);
+        commit();
+        if (listener != null) {
+            listener.onEscalationStarted(eventId);
+        }
+    }
+
+    /**
+     * Stores the alert context of an event that is already escalating; every later step carries it.
+     *
+     * @return Whether the event is escalating.
+     */
+    public synchronized boolean attachContext(String eventId, AlertContext alertContext) {
+        boolean found = false;
+        for (EscalationEntry entry : queue) {
+            if (entry.eventId.equals(eventId)) {
+                entry.alertContext = alertContext;
+                found = true;
+            }
+        }
+        if (found) {
+            store.save(new ArrayList<>(queue));
+        }
+        return found;
+    }
+
+    /**
+     * @return The alert context stored with the event, or null if it was never captured or the
+     *         event is not escalating.
+     */
+    public synchronized AlertContext alertContextOf(String eventId) {
+        for (EscalationEntry entry : queue) {
+            if (entry.eventId.equals(eventId) && entry.alertContext != null) return entry.alertContext;
+        }
+        return null;
+    }
+
+    /**
+     * Stops escalating an event, e.g. because the driver answered the reminder.
+     */
+    public synchronized void cancel(String eventId) {
+        if (removeEvent(eventId)) {
+            commit();
+            if (listener != null) {
+                listener.onEscalationFinished(eventId);
+            }
+        }
+    }
+
+    /**
+     * Makes the event's next step due now, e.g. to alert the family as soon as the device is
+     * back online instead of waiting out the step's delay.
+     *
+     * @return Whether the event is escalating.
+     */
+    public synchronized boolean expedite(String eventId) {
+        List<EscalationEntry> entries = new ArrayList<>();
+        Iterator<EscalationEntry> iterator = queue.iterator();
+        while (iterator.hasNext()) {
+            EscalationEntry entry = iterator.next();
+            if (entry.eventId.equals(eventId)) {
+                iterator.remove();
+                entries.add(entry);
+            }
+        }
+        if (entries.isEmpty()) return false;
+        long now = clock.getAsLong();
+        for (EscalationEntry entry : entries) {
+            entry.dueAt = Math.min(entry.dueAt, now);
+            queue.add(entry);
+        }
+        commit();
+        return true;
+    }
+
+    public synchronized boolean isEscalating(String eventId) {
+        for (EscalationEntry entry : queue) {
+            if (entry.eventId.equals(eventId)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return Time of the earliest pending step, or -1 if nothing is pending.
+     */
+    public synchronized long nextDueAt() {
+        EscalationEntry head = queue.peek();
+        return head != null ? head.dueAt : -1;
+    }
+
+    /**
+     * Runs every step that is due and schedules each event's following step.
+     */
+    public void onAlarm() {
+        onAlarm(() -> {
+        });
+    }
+
+    /**
+     * Like {@link #onAlarm()}, running {@code onComplete} once every due step reported done.
+     */
+    public void onAlarm(Runnable onComplete) {
+        List<EscalationEntry> due = new ArrayList<>();
+        Set<EscalationEntry> last = new HashSet<>();
+        synchronized (this) {
+            armedAt = -1;
+            long now = clock.getAsLong();
+            while (!queue.isEmpty() && queue.peek().dueAt <= now) {
+                EscalationEntry entry = queue.poll();
+                due.add(entry);
+                EscalationEntry next = nextStep(entry, now);
+                if (next != null) {
+                    queue.add(next);
+                } else {
+                    last.add(entry);
+                }
+            }
+            commit();
+        }
+        if (due.isEmpty()) {
+            onComplete.run();
+            return;
+        }
+        List<EscalationPolicy.Step> steps = policy.getSteps();
+        AtomicInteger remaining = new AtomicInteger(due.size());
+        for (EscalationEntry entry : due) {
+            AtomicBoolean reported = new AtomicBoolean();
+            handler.onStage(entry, steps.get(entry.stepIndex).stage, () -> {
+                if (!reported.compareAndSet(false, true)) return;
+                if (last.contains(entry)) {
+                    // Only now, so listeners keep the event's acknowledgement watch through its final step
+                    reportFinished(entry.eventId);
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    onComplete.run();
+                }
+            });
+        }
+    }
+
+    // Unless the event was restarted while its final step ran
+    private synchronized void reportFinished(String eventId) {
+        if (listener != null && !isEscalating(eventId)) {
+            listener.onEscalationFinished(eventId);
+        }
+    }
+
+    private EscalationEntry nextStep(EscalationEntry entry, long now) {
+        List<EscalationPolicy.Step> steps = policy.getSteps();
+        int lastIndex = steps.size() - 1;
+        int stepIndex = entry.stepIndex;
+        int repeat = entry.repeat;
+        if (stepIndex < lastIndex) {
+            stepIndex++;
+        } else if (repeat < policy.getMaxRepeats()) {
+            repeat++;
+        } else {
+            return null;
+        }
+        // Measured from now, not from the missed due time, so a late wake-up does not burst every step at once
+        EscalationEntry next = new EscalationEntry(entry.eventId, entry.userId, stepIndex, repeat, now + steps.get(stepIndex).delayMillis);
+        next.alertContext = entry.alertContext;
+        return next;
+    }
+
+    private Set<String> eventIds() {
+        Set<String> eventIds = new HashSet<>();
+        for (EscalationEntry entry : queue) {
+            eventIds.add(entry.eventId);
+        }
+        return eventIds;
+    }
+
+    private boolean removeEvent(String eventId) {
+        boolean removed = false;
+        Iterator<EscalationEntry> iterator = queue.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().eventId.equals(eventId)) {
+                iterator.remove();
+                removed = true;
+            }
+        }
+        return removed;
+    }
+
+    private void commit() {
+        store.save(new ArrayList<>(queue));
+        rearm();
+    }
+
+    private void rearm() {
+        EscalationEntry head = queue.peek();
+        if (head == null) {
+            if (armedAt != -1) {
+                alarm.cancel();
+                armedAt = -1;
+            }
+        } else if (head.dueAt != armedAt) {
+            alarm.arm(head.dueAt);
+            armedAt = head.dueAt;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.tinyreminder.escalation;
+
+/**
+ * What happens when an unanswered parking reminder reaches the next escalation step.
+ */
+public enum EscalationStage {
+    /** Show the parking reminder to the driver again. */
+    REMIND_DRIVER,
+    /** Mark the event as ALERT and push an alert to the family member closest to the car. */
+    ALERT_NEAREST,
+    /** Mark the event as ALERT and push an alert to every other family member. */
+    ALERT_FAMILY
+}
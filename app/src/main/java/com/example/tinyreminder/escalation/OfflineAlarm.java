@@ -0,0 +1,191 @@
+package com.example.tinyreminder.escalation;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.example.tinyreminder.metrics.MetricsRegistry;
+import com.example.tinyreminder.utils.DatabaseManager;
+import com.example.tinyreminder.utils.NotificationDispatcher;
+import com.example.tinyreminder.utils.NotificationHelper;
+import com.google.gson.Gson;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Local escalation for when the family cannot be reached: the parking reminder is replaced by
+ * a full-screen alarm whose sound repeats until the driver answers it.
+ *
+ * Raised alarms are persisted, so they survive process death and are shown again after a
+ * reboot. When the connection returns, each alarm that was raised offline is synced: if the
+ * event was answered elsewhere meanwhile the alarm is dropped; if the sync is what moved it
+ * to ALERT, the driver's status is set and the whole family is alerted right away; if it was
+ * already alerted, the event's next escalation step is made due at once.
+ */
+public final class OfflineAlarm {
+    private static final String TAG = "OfflineAlarm";
+    private static final String PREFS_NAME = "offline_alarms";
+    // Alarms older than this are not shown again after a reboot
+    private static final long MAX_AGE_MS = 12 * 60 * 60 * 1000L;
+    private static final Gson GSON = new Gson();
+
+    private static OfflineAlarm instance;
+
+    private final Context context;
+    private final SharedPreferences prefs;
+
+    /**
+     * One raised alarm. Plain fields so it persists as JSON.
+     */
+    static class State {
+        String userId;
+        long raisedAt;
+        /** Whether the server has seen the event since the alarm was raised. */
+        boolean synced;
+    }
+
+    /**
+     * @return The process-wide instance; the first call shows persisted alarms again and starts
+     * syncing them once online.
+     */
+    public static synchronized OfflineAlarm get(Context context) {
+        if (instance == null) {
+            instance = new OfflineAlarm(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private OfflineAlarm(Context context) {
+        this.context = context;
+        this.prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        restore();
+        new DatabaseManager(context).getConnectionMonitor().addListener(online -> {
+            if (online) syncAll();
+        });
+    }
+
+    /**
+     * Shows the alarm for an event and persists it until it is cleared. Raising an alarm that is
+     * already showing only marks it as not synced again.
+     */
+    public void raise(String eventId, String userId) {
+        State state = new State();
+        state.userId = userId;
+        state.raisedAt = System.currentTimeMillis();
+        synchronized (this) {
+            State existing = read(eventId);
+            if (existing != null) {
+                state.raisedAt = existing.raisedAt;
+            }
+            write(eventId, state);
+        }
+        Log.w(TAG, "Family unreachable for " + eventId + ", raising local alarm");
+        MetricsRegistry.get().counter("escalation.offline_alarm").increment();
+        NotificationDispatcher.get(context).showAlarm(userId, eventId);
+    }
+
+    /**
+     * @return Whether an alarm is raised for the event and not yet cleared.
+     */
+    public synchronized boolean isRaised(String eventId) {
+        return prefs.contains(eventId);
+    }
+
+    /**
+     * Forgets the alarm for an event, e.g. once it was answered. The notification itself is
+     * the parking reminder's, and is cancelled with it.
+     */
+    public synchronized void clear(String eventId) {
+        if (prefs.contains(eventId)) {
+            prefs.edit().remove(eventId).commit();
+            Log.d(TAG, "Alarm cleared for " + eventId);
+        }
+    }
+
+    /**
+     * Records that the server has seen the event, e.g. after an alert step succeeded online.
+     */
+    synchronized void markSynced(String eventId) {
+        State state = read(eventId);
+        if (state != null && !state.synced) {
+            state.synced = true;
+            write(eventId, state);
+        }
+    }
+
+    private void restore() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, State> alarm : readAll().entrySet()) {
+            if (now - alarm.getValue().raisedAt > MAX_AGE_MS) {
+                Log.w(TAG, "Dropping stale alarm for " + alarm.getKey());
+                clear(alarm.getKey());
+            } else {
+                NotificationDispatcher.get(context).showAlarm(alarm.getValue().userId, alarm.getKey());
+            }
+        }
+    }
+
+    private void syncAll() {
+        DatabaseManager dbManager = new DatabaseManager(context);
+        for (Map.Entry<String, State> alarm : readAll().entrySet()) {
+            String eventId = alarm.getKey();
+            if (alarm.getValue().synced) continue;
+            if (dbManager.isParkingEventQueued(eventId)) {
+                // The event itself is still on its way; the next alert step after it lands syncs it
+                continue;
+            }
+            dbManager.markParkingEventAlerted(eventId).addOnCompleteListener(task -> {
+                if (!task.isSuccessful()) {
+                    Log.e(TAG, "Failed to sync alarm for " + eventId, task.getException());
+                    return;
+                }
+                String status = task.getResult();
+                if (!"PENDING".equals(status) && !"ALERT".equals(status)) {
+                    Log.d(TAG, "Parking event " + eventId + " was answered while offline (" + status + ")");
+                    EscalationManager.get(context).cancel(eventId);
+                    NotificationHelper.cancelParkingNotification(context, eventId);
+                    return;
+                }
+                markSynced(eventId);
+                MetricsRegistry.get().counter("escalation.offline_alarm_synced").increment();
+                if ("PENDING".equals(status)) {
+                    // This sync raised the event to ALERT, so nobody has been told yet
+                    Log.d(TAG, "Back online, alerting the family for " + eventId + " now");
+                    EscalationEntry entry = new EscalationEntry(eventId, alarm.getValue().userId, 0, 0, 0);
+                    entry.alertContext = EscalationManager.get(context).alertContextOf(eventId);
+                    new EscalationActions(context).alert(dbManager, entry, EscalationStage.ALERT_FAMILY, true);
+                } else if (EscalationManager.get(context).expedite(eventId)) {
+                    Log.d(TAG, "Back online, alerting the family for " + eventId + " now");
+                }
+            });
+        }
+    }
+
+    private State read(String eventId) {
+        String json = prefs.getString(eventId, null);
+        if (json == null) return null;
+        try {
+            return GSON.fromJson(json, State.class);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Discarding unreadable alarm for " + eventId, e);
+            return null;
+        }
+    }
+
+    private synchronized Map<String, State> readAll() {
+        Map<String, State> alarms = new HashMap<>();
+        for (String eventId : prefs.getAll().keySet()) {
+            State state = read(eventId);
+            if (state != null) {
+                alarms.put(eventId, state);
+            }
+        }
+        return alarms;
+    }
+
+    private void write(String eventId, State state) {
+        // commit() rather than apply(): the alarm must be remembered even if the process dies right after
+        prefs.edit().putString(eventId, GSON.toJson(state)).commit();
+    }
+}
@@ -21,6 +21,9 @@ import androidx.fragment.app.Fragment;
 
 import com.bumptech.glide.Glide;
 import com.example.tinyreminder.R;
+import com.example.tinyreminder.backend.BackendError;
+import com.example.tinyreminder.backend.Snapshot;
+import com.example.tinyreminder.backend.ValueListener;
 import com.example.tinyreminder.models.User;
 import com.example.tinyreminder.utils.AvatarUtils;
 import com.example.tinyreminder.utils.DatabaseManager;
@@ -31,9 +34,6 @@ import com.google.firebase.auth.EmailAuthProvider;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.auth.UserProfileChangeRequest;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.ValueEventListener;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -105,9 +105,9 @@ public class EditProfileFragment extends Fragment {
             return;
         }
 
-        dbManager.getUserData(uid, new ValueEventListener() {
+        dbManager.getUserData(uid, new ValueListener() {
             @Override
-            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+            public void onDataChange(@NonNull Snapshot dataSnapshot) {
                 // Retrieve the user data from the snapshot
                 User user = dataSnapshot.getValue(User.class);
                 if (user != null) {
@@ -120,7 +120,7 @@ public class EditProfileFragment extends Fragment {
             }
 
             @Override
-            public void onCancelled(@NonNull DatabaseError databaseError) {
+            public void onCancelled(@NonNull BackendError databaseError) {
                 // Handle the error when data loading is cancelled
                 Log.e(TAG, "Failed to load user data: " + databaseError.getMessage());
                 Toast.makeText(getContext(), "Failed to load user data", Toast.LENGTH_SHORT).show();
@@ -206,11 +206,11 @@ public class EditProfileFragment extends Fragment {
         }
 
         // Query the database to check if the phone number is already in use
-        dbManager.getUsersByPhoneNumber(newPhone, new ValueEventListener() {
+        dbManager.getUsersByPhoneNumber(newPhone, new ValueListener() {
             @Override
-            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+            public void onDataChange(@NonNull Snapshot dataSnapshot) {
                 boolean isUnique = true;
-                for (DataSnapshot snapshot : dataSnapshot.getChildren()) {
+                for (Snapshot snapshot : dataSnapshot.getChildren()) {
                     User existingUser = snapshot.getValue(User.class);
                     if (existingUser != null && !existingUser.getId().equals(user.getUid())) {
                         isUnique = false;
@@ -227,7 +227,7 @@ public class EditProfileFragment extends Fragment {
             }
 
             @Override
-            public void onCancelled(@NonNull DatabaseError databaseError) {
+            public void onCancelled(@NonNull BackendError databaseError) {
                 Toast.makeText(getContext(), "Failed to check phone number: " + databaseError.getMessage(), Toast.LENGTH_SHORT).show();
             }
         });
@@ -4,8 +4,10 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.graphics.Bitmap;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.text.InputType;
 import android.util.Log;
 import android.view.LayoutInflater;
@@ -25,19 +27,25 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.example.tinyreminder.MainActivity;
 import com.example.tinyreminder.R;
 import com.example.tinyreminder.adapters.FamilyMemberAdapter;
+import com.example.tinyreminder.backend.BackendError;
+import com.example.tinyreminder.backend.ChildListener;
+import com.example.tinyreminder.backend.Snapshot;
+import com.example.tinyreminder.backend.ValueListener;
+import com.example.tinyreminder.map.MapWarmup;
+import com.example.tinyreminder.metrics.MetricsRegistry;
 import com.example.tinyreminder.models.FamilyMember;
 import com.example.tinyreminder.models.User;
 import com.example.tinyreminder.utils.DatabaseManager;
+import com.example.tinyreminder.utils.FamilySnapshotStore;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.database.ChildEventListener;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.ValueEventListener;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 public class FamilyFragment extends Fragment implements FamilyMemberAdapter.OnMemberClickListener {
     private static final String TAG = "FamilyFragment";
@@ -51,6 +59,12 @@ public class FamilyFragment extends Fragment implements FamilyMemberAdapter.OnMe
     private boolean isCurrentUserAdmin = false;
     private boolean isUserInFamily = false;
     private String currentFamilyId;
+    private FamilySnapshotStore snapshotStore;
+    // Family whose members the list currently shows, possibly from the snapshot
+    private String shownFamilyId;
+    // For the time from opening the tab to its first members
+    private long openedAt;
+    private boolean liveMembersRecorded;
 
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
@@ -75,6 +89,8 @@ public class FamilyFragment extends Fragment implements FamilyMemberAdapter.OnMe
             requireActivity().registerReceiver(statusChangeReceiver, filter);
         }
         loadFamilyMembers();
+        // A member's map is one tap away; have the Maps SDK ready for it
+        MapWarmup.warmUp(requireContext());
     }
 
     @Override
@@ -89,6 +105,8 @@ public class FamilyFragment extends Fragment implements FamilyMemberAdapter.OnMe
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container,
                              Bundle savedInstanceState) {
+        openedAt = SystemClock.elapsedRealtime();
+        liveMembersRecorded = false;
         // Inflate the layout for this fragment
         View view = inflater.inflate(R.layout.fragment_family, container, false);
         familyMembersList = view.findViewById(R.id.family_members_list);
@@ -103,8 +121,10 @@ public class FamilyFragment extends Fragment implements FamilyMemberAdapter.OnMe
         super.onViewCreated(view, savedInstanceState);
         // Initialize the DatabaseManager and set up the RecyclerView and buttons
         dbManager = new DatabaseManager(requireContext());
+        snapshotStore = FamilySnapshotStore.get(requireContext());
         setupRecyclerView();
         setupButtons();
+        renderSnapshot();
         loadFamilyMembers();
     }
 
@@ -122,34 +142,72 @@ public class FamilyFragment extends Fragment implements FamilyMemberAdapter.OnMe
         removeMemberButton.setOnClickListener(v -> showRemoveMemberDialog());
     }
 
+    // Show the family as last seen right away; live data then updates it member by member
+    private void renderSnapshot() {
+        FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
+        if (currentUser == null) return;
+        String familyId = snapshotStore.getFamilyId(currentUser.getUid());
+        if (familyId == null) return;
+
+        List<FamilyMember> members = new ArrayList<>();
+        Map<String, Bitmap> thumbnails = new HashMap<>();
+        for (FamilySnapshotStore.Member snapshot : snapshotStore.read(currentUser.getUid())) {
+            if (snapshot.name == null) continue;
+            FamilyMember member = new FamilyMember(snapshot.id, snapshot.name, "Member");
+            member.setProfilePictureUrl(snapshot.profilePictureUrl);
+            member.setResponseStatus(convertStatusToResponseStatus(snapshot.status));
+            members.add(member);
+            Bitmap thumbnail = snapshot.getThumbnail();
+            if (thumbnail != null) {
+                thumbnails.put(snapshot.id, thumbnail);
+            }
+        }
+        if (members.isEmpty()) return;
+
+        isUserInFamily = true;
+        shownFamilyId = familyId;
+        adapter.setThumbnails(thumbnails);
+        adapter.updateMembers(members);
+        familyMembersList.setVisibility(View.VISIBLE);
+        noMembersTextView.setVisibility(View.GONE);
+        MetricsRegistry.get().histogram("family.cold_open.snapshot_ms").record(SystemClock.elapsedRealtime() - openedAt);
+    }
+
     // Load the family members from the database
     private void loadFamilyMembers() {
         FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
         if (currentUser == null) return;
 
-        dbManager.getUserData(currentUser.getUid(), new ValueEventListener() {
+        dbManager.getUserData(currentUser.getUid(), new ValueListener() {
             @Override
-            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+            public void onDataChange(@NonNull Snapshot dataSnapshot) {
                 User user = dataSnapshot.getValue(User.class);
                 if (user != null && user.getFamilyId() != null && !user.getFamilyId().isEmpty()) {
                     isUserInFamily = true;
                     currentFamilyId = user.getFamilyId();
+                    snapshotStore.setFamily(currentUser.getUid(), currentFamilyId);
 
-                    // Clear existing members list before fetching new data
-                    adapter.updateMembers(new ArrayList<>());
+                    // Keep the members on screen, e.g. from the snapshot, unless the family changed
+                    List<FamilyMember> shown = currentFamilyId.equals(shownFamilyId)
+                            ? adapter.getMembers() : new ArrayList<>();
+                    shownFamilyId = currentFamilyId;
+                    adapter.updateMembers(shown);
 
                     // Fetch the family members and check admin status
-                    fetchFamilyMembers(currentFamilyId);
+                    fetchFamilyMembers(currentFamilyId, shown);
+                    dropDepartedMembers(currentFamilyId, shown);
                     checkAdminStatus(currentUser.getUid(), currentFamilyId);
                 } else {
                     isUserInFamily = false;
+                    shownFamilyId = null;
+                    snapshotStore.setFamily(currentUser.getUid(), null);
                     showNoMembersMessage();
                     updateUIForAdminStatus();
                 }
             }
 
             @Override
-            public void onCancelled(@NonNull DatabaseError databaseError) {
+            public void onCancelled(@NonNull BackendError databaseError) {
                 Log.w(TAG, "loadUser:onCancelled", databaseError.toException());
                 showNoMembersMessage();
                 updateUIForAdminStatus();
@@ -158,17 +216,17 @@ public class FamilyFragment extends Fragment implements FamilyMemberAdapter.OnMe
     }
 
     // Fetch the family members from the database and update the adapter
-    private void fetchFamilyMembers(String familyId) {
-        dbManager.getFamilyMembersWithChildEventListener(familyId, new ChildEventListener() {
-            List<FamilyMember> members = new ArrayList<>();
+    private void fetchFamilyMembers(String familyId, List<FamilyMember> shown) {
+        dbManager.getFamilyMembersWithChildEventListener(familyId, new ChildListener() {
+            List<FamilyMember> members = shown;
 
             @Override
-            public void onChildAdded(@NonNull DataSnapshot dataSnapshot, @Nullable String previousChildName) {
+            public void onChildAdded(@NonNull Snapshot dataSnapshot, @Nullable String previousChildName) {
                 String memberId = dataSnapshot.getKey();
                 if (memberId != null) {
-                    dbManager.getMemberData(memberId, new ValueEventListener() {
+                    dbManager.getMemberData(memberId, new ValueListener() {
                         @Override
-                        public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+                        public void onDataChange(@NonNull Snapshot dataSnapshot) {
                             User user = dataSnapshot.getValue(User.class);
                             if (user != null) {
                                 updateOrAddMember(memberId, user, members);
@@ -176,7 +234,7 @@ public class FamilyFragment extends Fragment implements FamilyMemberAdapter.OnMe
                         }
 
                         @Override
-                        public void onCancelled(@NonNull DatabaseError databaseError) {
+                        public void onCancelled(@NonNull BackendError databaseError) {
                             Log.w(TAG, "getMemberData:onCancelled", databaseError.toException());
                         }
                     });
@@ -184,12 +242,12 @@ public class FamilyFragment extends Fragment implements FamilyMemberAdapter.OnMe
             }
 
             @Override
-            public void onChildChanged(@NonNull DataSnapshot dataSnapshot, @Nullable String previousChildName) {
+            public void onChildChanged(@NonNull Snapshot dataSnapshot, @Nullable String previousChildName) {
                 String memberId = dataSnapshot.getKey();
                 if (memberId != null) {
-                    dbManager.getMemberData(memberId, new ValueEventListener() {
+                    dbManager.getMemberData(memberId, new ValueListener() {
                         @Override
-                        public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+                        public void onDataChange(@NonNull Snapshot dataSnapshot) {
                             User user = dataSnapshot.getValue(User.class);
                             if (user != null) {
                                 updateMemberStatus(memberId, user.getStatus());
@@ -197,7 +255,7 @@ public class FamilyFragment extends Fragment implements FamilyMemberAdapter.OnMe
                         }
 
                         @Override
-                        public void onCancelled(@NonNull DatabaseError databaseError) {
+                        public void onCancelled(@NonNull BackendError databaseError) {
                             Log.w(TAG, "getMemberData:onCancelled", databaseError.toException());
                         }
                     });
@@ -205,24 +263,68 @@ public class FamilyFragment extends Fragment implements FamilyMemberAdapter.OnMe
             }
 
             @Override
-            public void onChildRemoved(@NonNull DataSnapshot dataSnapshot) {
-                // Handle removal of a family member if needed
+            public void onChildRemoved(@NonNull Snapshot dataSnapshot) {
+                String memberId = dataSnapshot.getKey();
+                if (memberId == null) return;
+                // Drop the member, who may still be listed from the snapshot
+                snapshotStore.removeMember(memberId);
+                for (int i = 0; i < members.size(); i++) {
+                    if (members.get(i).getId().equals(memberId)) {
+                        members.remove(i);
+                        adapter.updateMembers(members);
+                        break;
+                    }
+                }
             }
 
             @Override
-            public void onChildMoved(@NonNull DataSnapshot dataSnapshot, @Nullable String previousChildName) {
+            public void onChildMoved(@NonNull Snapshot dataSnapshot, @Nullable String previousChildName) {
                 // Handle moving of a family member if needed
             }
 
             @Override
-            public void onCancelled(@NonNull DatabaseError databaseError) {
+            public void onCancelled(@NonNull BackendError databaseError) {
                 Log.w(TAG, "fetchFamilyMembers:onCancelled", databaseError.toException());
             }
         });
     }
 
+    // Members shown from the snapshot may have left while the app was closed, which the child
+    // listener never reports; one read of the member ids settles who is still in the family
+    private void dropDepartedMembers(String familyId, List<FamilyMember> members) {
+        dbManager.getFamilyMembersWithValueEventListener(familyId, new ValueListener() {
+            @Override
+            public void onDataChange(@NonNull Snapshot dataSnapshot) {
+                if (!familyId.equals(shownFamilyId)) return;
+                boolean changed = false;
+                for (Iterator<FamilyMember> iterator = members.iterator(); iterator.hasNext(); ) {
+                    String memberId = iterator.next().getId();
+                    if (!dataSnapshot.hasChild(memberId)) {
+                        Log.d(TAG, "Dropping member who left the family: " + memberId);
+                        snapshotStore.removeMember(memberId);
+                        iterator.remove();
+                        changed = true;
+                    }
+                }
+                if (changed) {
+                    adapter.updateMembers(members);
+                }
+            }
+
+            @Override
+            public void onCancelled(@NonNull BackendError databaseError) {
+                Log.w(TAG, "dropDepartedMembers:onCancelled", databaseError.toException());
+            }
+        });
+    }
+
     // Update or add a family member to the list and refresh the adapter
     private void updateOrAddMember(String memberId, User user, List<FamilyMember> members) {
+        snapshotStore.putProfile(memberId, user);
+        if (!liveMembersRecorded) {
+            liveMembersRecorded = true;
+            MetricsRegistry.get().histogram("family.cold_open.live_ms").record(SystemClock.elapsedRealtime() - openedAt);
+        }
         FamilyMember memberToUpdate = null;
 
         for (FamilyMember member : members) {
@@ -233,7 +335,8 @@ public class FamilyFragment extends Fragment implements FamilyMemberAdapter.OnMe
         }
 
         if (memberToUpdate != null) {
-            // Update existing member's status and profile picture
+            // Update existing member's name, status and profile picture
+            memberToUpdate.setName(user.getName());
             memberToUpdate.setResponseStatus(convertStatusToResponseStatus(user.getStatus()));
             memberToUpdate.setProfilePictureUrl(user.getProfilePictureUrl());
         } else {
@@ -262,9 +365,9 @@ public class FamilyFragment extends Fragment implements FamilyMemberAdapter.OnMe
 
     private void fetchMemberDetails(String memberId, final List<FamilyMember> members) {
         // Fetch member data from the database using the memberId
-        dbManager.getMemberData(memberId, new ValueEventListener() {
+        dbManager.getMemberData(memberId, new ValueListener() {
             @Override
-            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+            public void onDataChange(@NonNull Snapshot dataSnapshot) {
                 User user = dataSnapshot.getValue(User.class);
                 if (user != null) {
                     boolean alreadyExists = false;
@@ -277,9 +380,9 @@ public class FamilyFragment extends Fragment implements FamilyMemberAdapter.OnMe
                     }
                     if (!alreadyExists) {
                         // Check if the user is an admin in the family
-                        dbManager.checkIfUserIsAdmin(user.getId(), currentFamilyId, new ValueEventListener() {
+                        dbManager.checkIfUserIsAdmin(user.getId(), currentFamilyId, new ValueListener() {
                             @Override
-                            public void onDataChange(@NonNull DataSnapshot adminSnapshot) {
+                            public void onDataChange(@NonNull Snapshot adminSnapshot) {
                                 boolean isAdmin = adminSnapshot.exists() && adminSnapshot.getValue(Boolean.class);
                                 String role = isAdmin ? "Manager" : "Member";
                                 // Create a new FamilyMember object and add it to the list
@@ -292,7 +395,7 @@ public class FamilyFragment extends Fragment implements FamilyMemberAdapter.OnMe
                             }
 
                             @Override
-                            public void onCancelled(@NonNull DatabaseError databaseError) {
+                            public void onCancelled(@NonNull BackendError databaseError) {
                                 Log.w(TAG, "checkIfUserIsAdmin:onCancelled", databaseError.toException());
                             }
                         });
@@ -301,7 +404,7 @@ public class FamilyFragment extends Fragment implements FamilyMemberAdapter.OnMe
             }
 
             @Override
-            public void onCancelled(@NonNull DatabaseError databaseError) {
+            public void onCancelled(@NonNull BackendError databaseError) {
                 Log.w(TAG, "loadMemberDetails:onCancelled", databaseError.toException());
             }
         });
@@ -349,15 +452,15 @@ public class FamilyFragment extends Fragment implements FamilyMemberAdapter.OnMe
 
     private void checkAdminStatus(String userId, String familyId) {
         // Check if the current user is an admin in the family
-        dbManager.checkIfUserIsAdmin(userId, familyId, new ValueEventListener() {
+        dbManager.checkIfUserIsAdmin(userId, familyId, new ValueListener() {
             @Override
-            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+            public void onDataChange(@NonNull Snapshot dataSnapshot) {
                 isCurrentUserAdmin = dataSnapshot.exists() && dataSnapshot.getValue(Boolean.class);
                 updateUIForAdminStatus();
             }
 
             @Override
-            public void onCancelled(@NonNull DatabaseError databaseError) {
+            public void onCancelled(@NonNull BackendError databaseError) {
                 Log.w(TAG, "checkAdminStatus:onCancelled", databaseError.toException());
             }
         });
@@ -399,11 +502,11 @@ public class FamilyFragment extends Fragment implements FamilyMemberAdapter.OnMe
 
     private void addMemberByPhoneNumber(String phoneNumber) {
         // Add a new family member by their phone number
-        dbManager.getUserByPhoneNumber(phoneNumber, new ValueEventListener() {
+        dbManager.getUserByPhoneNumber(phoneNumber, new ValueListener() {
             @Override
-            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+            public void onDataChange(@NonNull Snapshot dataSnapshot) {
                 if (dataSnapshot.exists()) {
-                    for (DataSnapshot userSnapshot : dataSnapshot.getChildren()) {
+                    for (Snapshot userSnapshot : dataSnapshot.getChildren()) {
                         User user = userSnapshot.getValue(User.class);
                         if (user != null) {
                             addUserToFamily(user);
@@ -416,7 +519,7 @@ public class FamilyFragment extends Fragment implements FamilyMemberAdapter.OnMe
             }
 
             @Override
-            public void onCancelled(@NonNull DatabaseError databaseError) {
+            public void onCancelled(@NonNull BackendError databaseError) {
                 Toast.makeText(getContext(), "Error: " + databaseError.getMessage(), Toast.LENGTH_SHORT).show();
             }
         });
@@ -474,9 +577,9 @@ public class FamilyFragment extends Fragment implements FamilyMemberAdapter.OnMe
 
     private void checkAndDeleteEmptyFamily() {
         // Check if the family has no members left and delete the family if necessary
-        dbManager.getFamilyMembersWithChildEventListener(currentFamilyId, new ChildEventListener() {
+        dbManager.getFamilyMembersWithChildEventListener(currentFamilyId, new ChildListener() {
             @Override
-            public void onChildAdded(@NonNull DataSnapshot dataSnapshot, @Nullable String previousChildName) {
+            public void onChildAdded(@NonNull Snapshot dataSnapshot, @Nullable String previousChildName) {
                 // If there are family members, no need to delete the family
                 if (dataSnapshot.exists()) {
                     return;
@@ -484,16 +587,16 @@ public class FamilyFragment extends Fragment implements FamilyMemberAdapter.OnMe
             }
 
             @Override
-            public void onChildChanged(@NonNull DataSnapshot dataSnapshot, @Nullable String previousChildName) {
+            public void onChildChanged(@NonNull Snapshot dataSnapshot, @Nullable String previousChildName) {
                 // No logic change needed for this case
             }
 
             @Override
-            public void onChildRemoved(@NonNull DataSnapshot dataSnapshot) {
+            public void onChildRemoved(@NonNull Snapshot dataSnapshot) {
                 // If a family member is removed, check if the family is empty
-                dbManager.getFamilyMembersWithValueEventListener(currentFamilyId, new ValueEventListener() {
+                dbManager.getFamilyMembersWithValueEventListener(currentFamilyId, new ValueListener() {
                     @Override
-                    public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+                    public void onDataChange(@NonNull Snapshot dataSnapshot) {
                         if (!dataSnapshot.exists() || dataSnapshot.getChildrenCount() == 0) {
                             // No family members left, delete the family
                             dbManager.deleteFamily(currentFamilyId, task -> {
@@ -508,19 +611,19 @@ public class FamilyFragment extends Fragment implements FamilyMemberAdapter.OnMe
                     }
 
                     @Override
-                    public void onCancelled(@NonNull DatabaseError databaseError) {
+                    public void onCancelled(@NonNull BackendError databaseError) {
                         Log.w(TAG, "checkAndDeleteEmptyFamily:onCancelled", databaseError.toException());
                     }
                 });
             }
 
             @Override
-            public void onChildMoved(@NonNull DataSnapshot dataSnapshot, @Nullable String previousChildName) {
+            public void onChildMoved(@NonNull Snapshot dataSnapshot, @Nullable String previousChildName) {
                 // No logic change needed for this case
             }
 
             @Override
-            public void onCancelled(@NonNull DatabaseError databaseError) {
+            public void onCancelled(@NonNull BackendError databaseError) {
                 Log.w(TAG, "getFamilyMembers:onCancelled", databaseError.toException());
             }
         });
@@ -16,6 +16,9 @@ import androidx.fragment.app.Fragment;
 
 import com.example.tinyreminder.MainActivity;
 import com.example.tinyreminder.R;
+import com.example.tinyreminder.backend.BackendError;
+import com.example.tinyreminder.backend.Snapshot;
+import com.example.tinyreminder.backend.ValueListener;
 import com.example.tinyreminder.databinding.FragmentLoginBinding;
 import com.example.tinyreminder.models.User;
 import com.example.tinyreminder.utils.AvatarUtils;
@@ -27,9 +30,6 @@ import com.firebase.ui.auth.data.model.FirebaseAuthUIAuthenticationResult;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.auth.UserProfileChangeRequest;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.ValueEventListener;
 
 import java.util.Arrays;
 import java.util.List;
@@ -149,9 +149,9 @@ public class LoginFragment extends Fragment {
 
     // Check if the user already exists in the database
     private void checkExistingUser(String userId, FirebaseUser firebaseUser) {
-        dbManager.getUserData(userId, new ValueEventListener() {
+        dbManager.getUserData(userId, new ValueListener() {
             @Override
-            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+            public void onDataChange(@NonNull Snapshot dataSnapshot) {
                 if (dataSnapshot.exists()) {
                     User existingUser = dataSnapshot.getValue(User.class);
                     updateExistingUser(existingUser, firebaseUser);
@@ -161,7 +161,7 @@ public class LoginFragment extends Fragment {
             }
 
             @Override
-            public void onCancelled(@NonNull DatabaseError databaseError) {
+            public void onCancelled(@NonNull BackendError databaseError) {
                 Log.e(TAG, "Error checking existing user", databaseError.toException());
                 Toast.makeText(requireContext(), "Error during sign in", Toast.LENGTH_SHORT).show();
             }
@@ -3,12 +3,13 @@ package com.example.tinyreminder.fragments;
 import android.Manifest;
 import android.content.pm.PackageManager;
 import android.graphics.Bitmap;
-import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.Paint;
 import android.graphics.drawable.Drawable;
 import android.location.Location;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -25,9 +26,22 @@ import com.bumptech.glide.Glide;
 import com.bumptech.glide.request.target.CustomTarget;
 import com.bumptech.glide.request.transition.Transition;
 import com.example.tinyreminder.R;
+import com.example.tinyreminder.backend.BackendError;
+import com.example.tinyreminder.backend.ChildListener;
+import com.example.tinyreminder.backend.ListenerRegistration;
+import com.example.tinyreminder.backend.Snapshot;
+import com.example.tinyreminder.backend.ValueListener;
+import com.example.tinyreminder.map.GridClusterer;
+import com.example.tinyreminder.map.HotspotLayer;
+import com.example.tinyreminder.map.LocationFreshness;
+import com.example.tinyreminder.map.MarkerAnimator;
+import com.example.tinyreminder.map.MarkerIconCache;
+import com.example.tinyreminder.map.RouteLayer;
+import com.example.tinyreminder.metrics.MetricsRegistry;
 import com.example.tinyreminder.models.User;
 import com.example.tinyreminder.utils.AvatarUtils;
 import com.example.tinyreminder.utils.DatabaseManager;
+import com.example.tinyreminder.utils.FamilySnapshotStore;
 import com.google.android.gms.location.LocationCallback;
 import com.google.android.gms.location.LocationRequest;
 import com.google.android.gms.location.LocationResult;
@@ -36,20 +50,24 @@ import com.google.android.gms.maps.CameraUpdateFactory;
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.OnMapReadyCallback;
 import com.google.android.gms.maps.SupportMapFragment;
-import com.google.android.gms.maps.model.BitmapDescriptorFactory;
+import com.google.android.gms.maps.model.BitmapDescriptor;
 import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.maps.model.LatLngBounds;
+import com.google.android.gms.maps.model.VisibleRegion;
 import com.google.android.gms.maps.model.Marker;
 import com.google.android.gms.maps.model.MarkerOptions;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.ValueEventListener;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.LocationServices;
@@ -68,13 +86,68 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
 
     private long lastZoomAdjustment = 0;
     private static final long ZOOM_ADJUSTMENT_COOLDOWN = 10000; // 10 seconds
+    private static final int CLUSTER_ICON_SIZE = 96; // pixels
+    private static final long RECLUSTER_DELAY_MS = 1000; // Coalesces bursts of location updates
+    private static final float CLUSTER_ZOOM_STEP = 2f;
+    private static final long FRESHNESS_REFRESH_MS = 30000; // Ages shown on markers move on by themselves
+    private static final long RECENT_ROUTE_MS = 2 * 60 * 60 * 1000; // 2 hours
+
+    // Clustering runs off the main thread; one thread shared by every map
+    private static final ExecutorService clusterExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "MapClusterer");
+        thread.setDaemon(true);
+        return thread;
+    });
     private GoogleMap map;
     private String memberId;
-    private String currentUserFamilyId;
+    private String watchedFamilyId;
+    private ListenerRegistration locationsRegistration;
+    // Tells the focused member's device to upload more often while this map is on screen
+    private ListenerRegistration watchRegistration;
+    // Where the focused member has been recently
+    private RouteLayer routeLayer;
+    // Where the family parks most often, shown on demand
+    private HotspotLayer hotspotLayer;
 
     private DatabaseManager dbManager;
+    private FamilySnapshotStore snapshotStore;
+    // For the time from opening the map to its first markers
+    private long openedAt;
+    private boolean liveMarkerRecorded;
+    private boolean firstMarkerRecorded;
+    // Members known only from the snapshot so far, and their stored avatars
+    private final Set<String> snapshotMembers = new HashSet<>();
+    private final Map<String, Bitmap> snapshotThumbnails = new HashMap<>();
     private Map<String, Marker> markers = new HashMap<>();
+    // Latest location and profile of every member on the map, kept current by per-member deltas
     private Map<String, LatLng> lastKnownLocations = new HashMap<>();
+    private final Map<String, User> memberProfiles = new HashMap<>();
+    // Server time each member's location was written, to skip repeats and show its age
+    private final Map<String, Long> locationTimes = new HashMap<>();
+    private final Map<String, ListenerRegistration> profileRegistrations = new HashMap<>();
+    // Icon currently shown on each member's marker, and icons still loading
+    private final Map<String, String> markerIconKeys = new HashMap<>();
+    private final Map<String, String> pendingIconKeys = new HashMap<>();
+    private final MarkerIconCache iconCache = MarkerIconCache.get();
+    private final MarkerAnimator markerAnimator = new MarkerAnimator();
+    private boolean focusedOnMember;
+    // Members shown with their own marker after the last clustering; null until the first pass
+    private Set<String> shownMembers;
+    private final List<Marker> clusterMarkers = new ArrayList<>();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable reclusterTask = this::recluster;
+    private final Runnable freshnessTask = new Runnable() {
+        @Override
+        public void run() {
+            for (Map.Entry<String, Marker> entry : markers.entrySet()) {
+                applyFreshness(entry.getKey(), entry.getValue());
+            }
+            handler.postDelayed(this, FRESHNESS_REFRESH_MS);
+        }
+    };
+    private boolean reclusterScheduled;
+    // Bumped on every pass, so a result computed for an older camera position is dropped
+    private int clusterGeneration;
 
     private FusedLocationProviderClient fusedLocationClient;
     private LocationCallback locationCallback;
@@ -114,22 +187,7 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
         }
 
         dbManager = new DatabaseManager(requireContext());
-
-        // Fetch the current user's family ID
-        dbManager.getUserData(memberId, new ValueEventListener() {
-            @Override
-            public void onDataChange(@NonNull DataSnapshot snapshot) {
-                User currentUser = snapshot.getValue(User.class);
-                if (currentUser != null) {
-                    currentUserFamilyId = currentUser.getFamilyId();
-                }
-            }
-
-            @Override
-            public void onCancelled(@NonNull DatabaseError error) {
-                Log.e(TAG, "Error fetching current user data: ", error.toException());
-            }
-        });
+        snapshotStore = FamilySnapshotStore.get(requireContext());
 
         fusedLocationClient = LocationServices.getFusedLocationProviderClient(requireActivity());
 
@@ -140,11 +198,19 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
     public View onCreateView(LayoutInflater inflater, ViewGroup container,
                              Bundle savedInstanceState) {
         Log.d(TAG, "onCreateView: Creating view for MapFragment");
+        openedAt = SystemClock.elapsedRealtime();
+        liveMarkerRecorded = false;
+        firstMarkerRecorded = false;
+        // Fetch the family while the map initializes; members are drawn once it is ready
+        seedFromSnapshot();
+        setupLocationListener();
+
         View view = inflater.inflate(R.layout.fragment_map, container, false);
 
         // Initialize and set up the My Location button
         btnMyLocation = view.findViewById(R.id.btn_my_location);
         btnMyLocation.setOnClickListener(v -> zoomToCurrentUser());
+        view.findViewById(R.id.btn_parking_hotspots).setOnClickListener(v -> toggleParkingHotspots());
 
         // Set up the map fragment
         SupportMapFragment mapFragment = (SupportMapFragment) getChildFragmentManager()
@@ -164,12 +230,45 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
         map = googleMap;
         enableMyLocation();
         setupMapSettings();
-        setupLocationListener();
+        drawKnownMembers();
+        showRecentRoute();
         if (isNavigatedFromBottomNav) {
             zoomToCurrentUser();
         }
     }
 
+    private void toggleParkingHotspots() {
+        if (map == null) return;
+        if (watchedFamilyId == null) {
+            showNoFamilyMessage();
+            return;
+        }
+        if (hotspotLayer == null) {
+            hotspotLayer = new HotspotLayer(map);
+        }
+        if (hotspotLayer.isShown()) {
+            hotspotLayer.remove();
+            return;
+        }
+        hotspotLayer.show(dbManager, watchedFamilyId)
+                .addOnSuccessListener(cells -> {
+                    if (cells == 0 && isAdded()) {
+                        Toast.makeText(getContext(), "No parking recorded for your family yet", Toast.LENGTH_SHORT).show();
+                    }
+                })
+                .addOnFailureListener(e -> Log.e(TAG, "Failed to load parking hotspots", e));
+    }
+
+    // Draws the focused member's track over the last hours, once both the map and their family are known
+    private void showRecentRoute() {
+        if (map == null || watchedFamilyId == null || routeLayer != null || isNavigatedFromBottomNav || memberId == null) {
+            return;
+        }
+        routeLayer = new RouteLayer(map, ContextCompat.getColor(requireContext(), R.color.route_line));
+        long now = System.currentTimeMillis();
+        routeLayer.show(dbManager, watchedFamilyId, memberId, now - RECENT_ROUTE_MS, now);
+    }
+
     // Method to zoom the map to the current user's location
     private void zoomToCurrentUser() {
         if (ContextCompat.checkSelfPermission(requireContext(), Manifest.permission.ACCESS_FINE_LOCATION)
@@ -191,6 +290,15 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
             map.getUiSettings().setMyLocationButtonEnabled(false); // Disable default button
             map.getUiSettings().setCompassEnabled(true);
             map.getUiSettings().setMapToolbarEnabled(false);
+            map.setOnCameraIdleListener(() -> {
+                markerAnimator.setVisibleRegion(map.getProjection().getVisibleRegion().latLngBounds);
+                handler.removeCallbacks(reclusterTask);
+                recluster();
+                if (routeLayer != null) {
+                    routeLayer.onCameraIdle(map.getCameraPosition().zoom);
+                }
+            });
+            map.setOnMarkerClickListener(this::onClusterClick);
         } else {
             Log.e(TAG, "setupMapSettings: Map is null");
         }
@@ -203,9 +311,17 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
         if (currentUser == null) return;
 
         String userId = currentUser.getUid();
-        dbManager.getUserData(userId, new ValueEventListener() {
+        // This device's own fix is as fresh as it gets
+        lastKnownLocations.put(userId, location);
+        locationTimes.put(userId, dbManager.getConnectionMonitor().serverTimeMillis());
+        User profile = memberProfiles.get(userId);
+        if (profile != null) {
+            updateMemberMarker(profile, location);
+            return;
+        }
+        dbManager.getUserData(userId, new ValueListener() {
             @Override
-            public void onDataChange(@NonNull DataSnapshot snapshot) {
+            public void onDataChange(@NonNull Snapshot snapshot) {
                 User user = snapshot.getValue(User.class);
                 if (user != null) {
                     createOrUpdateMarker(user, location);
@@ -213,7 +329,7 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
             }
 
             @Override
-            public void onCancelled(@NonNull DatabaseError error) {
+            public void onCancelled(@NonNull BackendError error) {
                 Log.e(TAG, "Error fetching current user data: ", error.toException());
             }
         });
@@ -288,12 +404,16 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
         }
 
         Log.d(TAG, "setupLocationListener: Setting up listener for member ID: " + memberId);
-        dbManager.getUserData(memberId, new ValueEventListener() {
+        dbManager.getUserData(memberId, new ValueListener() {
             @Override
-            public void onDataChange(@NonNull DataSnapshot snapshot) {
+            public void onDataChange(@NonNull Snapshot snapshot) {
                 User user = snapshot.getValue(User.class);
                 if (user != null && user.getFamilyId() != null && !user.getFamilyId().isEmpty()) {
                     Log.d(TAG, "onDataChange: User data retrieved. Family ID: " + user.getFamilyId());
+                    FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
+                    if (currentUser != null) {
+                        snapshotStore.setFamily(currentUser.getUid(), user.getFamilyId());
+                    }
                     setupRealtimeFamilyLocationUpdates(user.getFamilyId());
                     // Focus on the specific member if one is selected
                     if (!isNavigatedFromBottomNav) {
@@ -306,7 +426,7 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
             }
 
             @Override
-            public void onCancelled(@NonNull DatabaseError error) {
+            public void onCancelled(@NonNull BackendError error) {
                 Log.e(TAG, "onCancelled: Error fetching user data: ", error.toException());
                 Toast.makeText(getContext(), "Failed to load user data", Toast.LENGTH_SHORT).show();
             }
@@ -317,78 +437,296 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
     private void focusOnMember(String memberId) {
         Marker marker = markers.get(memberId);
         if (marker != null) {
-            LatLng position = marker.getPosition();
+            LatLng position = positionOf(marker);
+            focusedOnMember = true;
             map.animateCamera(CameraUpdateFactory.newLatLngZoom(position, DEFAULT_ZOOM));
         } else {
             Log.w(TAG, "focusOnMember: Marker not found for member ID: " + memberId);
         }
     }
     private void setupRealtimeFamilyLocationUpdates(String familyId) {
-        // Listen for real-time location updates for all family members
-        dbManager.getRealtimeLocationsForFamily(familyId, new ValueEventListener() {
+        if (familyId.equals(watchedFamilyId)) return; // Already streaming
+        stopFamilyLocationUpdates();
+        watchedFamilyId = familyId;
+        // Per-member deltas: only the member that moved, joined or left is touched
+        locationsRegistration = dbManager.watchMemberLocations(familyId, new ChildListener() {
             @Override
-            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                for (DataSnapshot memberSnapshot : dataSnapshot.getChildren()) {
-                    String memberId = memberSnapshot.getKey();
-                    Double latitude = memberSnapshot.child("latitude").getValue(Double.class);
-                    Double longitude = memberSnapshot.child("longitude").getValue(Double.class);
-                    if (latitude != null && longitude != null) {
-                        LatLng newLocation = new LatLng(latitude, longitude);
-                        updateMemberMarker(memberId, newLocation);
-                    }
-                }
+            public void onChildAdded(@NonNull Snapshot snapshot, @Nullable String previousChildName) {
+                onMemberLocation(snapshot, false);
             }
 
             @Override
-            public void onCancelled(@NonNull DatabaseError databaseError) {
+            public void onChildChanged(@NonNull Snapshot snapshot, @Nullable String previousChildName) {
+                onMemberLocation(snapshot, true);
+            }
+
+            @Override
+            public void onChildRemoved(@NonNull Snapshot snapshot) {
+                removeMember(snapshot.getKey());
+            }
+
+            @Override
+            public void onChildMoved(@NonNull Snapshot snapshot, @Nullable String previousChildName) {
+                // Order is irrelevant on the map
+            }
+
+            @Override
+            public void onCancelled(@NonNull BackendError databaseError) {
                 Log.e(TAG, "Error fetching family locations: ", databaseError.toException());
             }
         });
+        showRecentRoute();
     }
 
-    private float distanceBetween(LatLng point1, LatLng point2) {
-        // Calculate the distance in meters between two LatLng points
-        float[] results = new float[1];
-        Location.distanceBetween(point1.latitude, point1.longitude, point2.latitude, point2.longitude, results);
-        return results[0];
+    // Takes the family as last seen and starts following it, without waiting for the user's
+    // record. Live data then replaces it member by member.
+    private void seedFromSnapshot() {
+        FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
+        if (currentUser == null) return;
+        String familyId = snapshotStore.getFamilyId(currentUser.getUid());
+        if (familyId == null) return;
+        setupRealtimeFamilyLocationUpdates(familyId);
+
+        for (FamilySnapshotStore.Member member : snapshotStore.read(currentUser.getUid())) {
+            if (!member.hasLocation || member.name == null || memberProfiles.containsKey(member.id)) continue;
+            User user = new User();
+            user.setId(member.id);
+            user.setName(member.name);
+            user.setStatus(member.status);
+            user.setProfilePictureUrl(member.profilePictureUrl);
+            memberProfiles.put(member.id, user);
+            lastKnownLocations.put(member.id, new LatLng(member.latitude, member.longitude));
+            if (member.locationTime > 0) {
+                locationTimes.put(member.id, member.locationTime);
+            }
+            snapshotMembers.add(member.id);
+            Bitmap thumbnail = member.getThumbnail();
+            if (thumbnail != null) {
+                snapshotThumbnails.put(member.id, thumbnail);
+            }
+            // Confirms the member is still in the family, and keeps their marker current
+            watchMemberProfile(member.id);
+        }
     }
 
-    private void showNoFamilyMessage() {
-        // Display a message if the user is not part of a family
-        Toast.makeText(getContext(), "You are not part of a family. Please join or create a family first.", Toast.LENGTH_LONG).show();
+    // Draws every member known by the time the map is ready, from the snapshot or already live
+    private void drawKnownMembers() {
+        boolean anyLive = false;
+        boolean anySnapshot = false;
+        for (Map.Entry<String, User> entry : new ArrayList<>(memberProfiles.entrySet())) {
+            String userId = entry.getKey();
+            User user = entry.getValue();
+            LatLng location = lastKnownLocations.get(userId);
+            if (location == null) continue;
+            boolean fromSnapshot = snapshotMembers.contains(userId);
+            anyLive |= !fromSnapshot;
+            anySnapshot |= fromSnapshot;
+
+            String iconKey = MarkerIconCache.keyFor(user, MARKER_SIZE);
+            Bitmap thumbnail = snapshotThumbnails.get(userId);
+            if (isShown(userId) && (iconKey == null || iconCache.getIcon(iconKey) == null) && thumbnail != null) {
+                // Until the full picture is loaded, scale up the stored thumbnail under its own key
+                String thumbnailKey = "snapshot|" + userId + "|" + MARKER_SIZE;
+                Bitmap picture = Bitmap.createScaledBitmap(thumbnail, MARKER_SIZE, MARKER_SIZE, true);
+                BitmapDescriptor icon = iconCache.putIcon(thumbnailKey, picture, MARKER_SIZE);
+                addOrUpdateMarkerOnMap(userId, location, icon, thumbnailKey, user.getName());
+            } else {
+                createOrUpdateMarker(user, location);
+            }
+        }
+        if (!markers.isEmpty()) {
+            long elapsed = SystemClock.elapsedRealtime() - openedAt;
+            if (anySnapshot) {
+                MetricsRegistry.get().histogram("map.cold_open.snapshot_ms").record(elapsed);
+            }
+            if (anyLive && !liveMarkerRecorded) {
+                liveMarkerRecorded = true;
+                MetricsRegistry.get().histogram("map.cold_open.live_ms").record(elapsed);
+            }
+        }
+        snapshotThumbnails.clear();
+        scheduleRecluster();
+    }
+
+    private void stopFamilyLocationUpdates() {
+        if (locationsRegistration != null) {
+            locationsRegistration.remove();
+            locationsRegistration = null;
+        }
+        for (ListenerRegistration registration : profileRegistrations.values()) {
+            registration.remove();
+        }
+        profileRegistrations.clear();
+        memberProfiles.clear();
+        lastKnownLocations.clear();
+        locationTimes.clear();
+        snapshotMembers.clear();
+        snapshotThumbnails.clear();
+        // Markers of the previous family, e.g. drawn from an outdated snapshot
+        for (String userId : new ArrayList<>(markers.keySet())) {
+            removeMarker(userId);
+        }
+        if (routeLayer != null) {
+            routeLayer.remove();
+            routeLayer = null;
+        }
+        if (hotspotLayer != null) {
+            hotspotLayer.remove();
+            hotspotLayer = null;
+        }
+        watchedFamilyId = null;
+    }
+
+    // changed: the member moved while the map was open, rather than being reported on subscribing
+    private void onMemberLocation(Snapshot memberSnapshot, boolean changed) {
+        String memberId = memberSnapshot.getKey();
+        Double latitude = memberSnapshot.child("latitude").getValue(Double.class);
+        Double longitude = memberSnapshot.child("longitude").getValue(Double.class);
+        if (memberId == null || latitude == null || longitude == null) return;
+        long time = locationTimeOf(memberSnapshot);
+        Long previousTime = locationTimes.get(memberId);
+        if (time > 0 && previousTime != null && time <= previousTime) {
+            // Already drawn, e.g. from the snapshot or this device's own fix
+            MetricsRegistry.get().counter("map.location_unchanged_skipped").increment();
+            return;
+        }
+        if (time > 0) {
+            locationTimes.put(memberId, time);
+        }
+        Long updatedAt = memberSnapshot.child("updatedAt").getValue(Long.class);
+        if (changed && updatedAt != null) {
+            long latency = dbManager.getConnectionMonitor().serverTimeMillis() - updatedAt;
+            MetricsRegistry.get().histogram("map.location_upload_to_render_ms").record(Math.max(0, latency));
+        }
+        LatLng location = new LatLng(latitude, longitude);
+        lastKnownLocations.put(memberId, location);
+        snapshotStore.putLocation(memberId, latitude, longitude, time);
+        scheduleRecluster();
+
+        User profile = memberProfiles.get(memberId);
+        if (profile != null) {
+            updateMemberMarker(profile, location);
+        }
+        if (!profileRegistrations.containsKey(memberId)) {
+            watchMemberProfile(memberId);
+        }
+    }
+
+    // Server time of the write, or the device's time for a write the server has not stamped; 0 if neither is known
+    private static long locationTimeOf(Snapshot memberSnapshot) {
+        Long updatedAt = memberSnapshot.child("updatedAt").getValue(Long.class);
+        if (updatedAt != null) return updatedAt;
+        Long deviceTime = memberSnapshot.child("deviceTime").getValue(Long.class);
+        return deviceTime != null ? deviceTime : 0;
     }
 
-    private void updateMemberMarker(String memberId, LatLng location) {
-        Log.d(TAG, "updateMemberMarker: Updating marker for member: " + memberId);
-        // Fetch user data and update the marker if the user belongs to the current family
-        dbManager.getUserData(memberId, new ValueEventListener() {
+    // One subscription per member, so a changed picture or status is picked up without re-reading anyone else
+    private void watchMemberProfile(String memberId) {
+        String familyId = watchedFamilyId;
+        profileRegistrations.put(memberId, dbManager.getMemberData(memberId, new ValueListener() {
             @Override
-            public void onDataChange(@NonNull DataSnapshot snapshot) {
+            public void onDataChange(@NonNull Snapshot snapshot) {
                 User user = snapshot.getValue(User.class);
-                if (user != null && user.getFamilyId() != null && user.getFamilyId().equals(currentUserFamilyId)) {
-                    Log.d(TAG, "onDataChange: User belongs to the same family. Updating marker for member: " + memberId);
-
-                    LatLng lastKnownLocation = markers.containsKey(memberId) ? markers.get(memberId).getPosition() : null;
-                    if (lastKnownLocation == null || distanceBetween(lastKnownLocation, location) > MIN_DISTANCE_FOR_UPDATE) {
-                        createOrUpdateMarker(user, location);
+                if (user == null || !familyId.equals(user.getFamilyId())) {
+                    Log.d(TAG, "onDataChange: User does not belong to the same family. Hiding member: " + memberId);
+                    memberProfiles.remove(memberId);
+                    snapshotStore.removeMember(memberId);
+                    removeMarker(memberId);
+                    return;
+                }
+                user.setId(memberId);
+                snapshotMembers.remove(memberId);
+                snapshotStore.putProfile(memberId, user);
+                User previous = memberProfiles.put(memberId, user);
+                if (previous == null || !equalsNullable(previous.getStatus(), user.getStatus())) {
+                    // A new member or status changes the counts or color of their cluster
+                    scheduleRecluster();
+                }
+                LatLng location = lastKnownLocations.get(memberId);
+                if (location != null) {
+                    createOrUpdateMarker(user, location);
+                    if (map != null && !liveMarkerRecorded) {
+                        liveMarkerRecorded = true;
+                        MetricsRegistry.get().histogram("map.cold_open.live_ms").record(SystemClock.elapsedRealtime() - openedAt);
                     }
-                } else {
-                    Log.d(TAG, "onDataChange: User does not belong to the same family. Skipping update for member: " + memberId);
                 }
             }
 
             @Override
-            public void onCancelled(@NonNull DatabaseError error) {
+            public void onCancelled(@NonNull BackendError error) {
                 Log.e(TAG, "onCancelled: Error fetching user data for marker: ", error.toException());
             }
-        });
+        }));
+    }
+
+    private void removeMember(String memberId) {
+        if (memberId == null) return;
+        Log.d(TAG, "removeMember: Member left the family: " + memberId);
+        lastKnownLocations.remove(memberId);
+        locationTimes.remove(memberId);
+        memberProfiles.remove(memberId);
+        snapshotStore.removeMember(memberId);
+        ListenerRegistration registration = profileRegistrations.remove(memberId);
+        if (registration != null) {
+            registration.remove();
+        }
+        removeMarker(memberId);
+        scheduleRecluster();
+    }
+
+    private void removeMarker(String memberId) {
+        Marker marker = markers.remove(memberId);
+        if (marker != null) {
+            markerAnimator.remove(marker);
+            marker.remove();
+        }
+        markerIconKeys.remove(memberId);
+        pendingIconKeys.remove(memberId);
+    }
+
+    private float distanceBetween(LatLng point1, LatLng point2) {
+        // Calculate the distance in meters between two LatLng points
+        float[] results = new float[1];
+        Location.distanceBetween(point1.latitude, point1.longitude, point2.latitude, point2.longitude, results);
+        return results[0];
+    }
+
+    private void showNoFamilyMessage() {
+        // Display a message if the user is not part of a family
+        Toast.makeText(getContext(), "You are not part of a family. Please join or create a family first.", Toast.LENGTH_LONG).show();
+    }
+
+    private void updateMemberMarker(User user, LatLng location) {
+        Marker marker = markers.get(user.getId());
+        if (marker == null || distanceBetween(positionOf(marker), location) > MIN_DISTANCE_FOR_UPDATE) {
+            createOrUpdateMarker(user, location);
+        }
     }
 
     private void createOrUpdateMarker(User user, LatLng location) {
-        Log.d(TAG, "createOrUpdateMarker: Creating/Updating marker for user: " + user.getId());
-        // Create or update the marker based on the user's profile picture or avatar
+        String userId = user.getId();
+        if (!isShown(userId)) {
+            // Clustered or off screen; the next clustering pass creates it once it is shown
+            return;
+        }
+        String iconKey = MarkerIconCache.keyFor(user, MARKER_SIZE);
+        Marker marker = markers.get(userId);
+        if (marker != null && iconKey != null
+                && (iconKey.equals(markerIconKeys.get(userId)) || iconKey.equals(pendingIconKeys.get(userId)))) {
+            // Same picture, or it is already being loaded: just move the marker
+            addOrUpdateMarkerOnMap(userId, location, null, null, user.getName());
+            return;
+        }
+        BitmapDescriptor cached = iconKey != null ? iconCache.getIcon(iconKey) : null;
+        if (cached != null) {
+            addOrUpdateMarkerOnMap(userId, location, cached, iconKey, user.getName());
+            return;
+        }
+
+        Log.d(TAG, "createOrUpdateMarker: Loading marker icon for user: " + userId);
+        // Create the marker icon from the user's profile picture or avatar
         if (user.getProfilePictureUrl() != null && !user.getProfilePictureUrl().isEmpty()) {
-            Log.d(TAG, "createOrUpdateMarker: Loading profile picture for user: " + user.getId());
+            pendingIconKeys.put(userId, iconKey);
             Glide.with(this)
                     .asBitmap()
                     .load(user.getProfilePictureUrl())
@@ -396,102 +734,223 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
                     .into(new CustomTarget<Bitmap>(MARKER_SIZE, MARKER_SIZE) {
                         @Override
                         public void onResourceReady(@NonNull Bitmap resource, @Nullable Transition<? super Bitmap> transition) {
-                            Log.d(TAG, "onResourceReady: Profile picture loaded for user: " + user.getId());
-                            Bitmap markerBitmap = createMarkerBitmapFromProfile(resource);
-                            addOrUpdateMarkerOnMap(user.getId(), location, markerBitmap, user.getName());
+                            Log.d(TAG, "onResourceReady: Profile picture loaded for user: " + userId);
+                            pendingIconKeys.remove(userId);
+                            BitmapDescriptor icon = iconCache.putIcon(iconKey, resource, MARKER_SIZE);
+                            snapshotStore.putThumbnail(userId, resource);
+                            addOrUpdateMarkerOnMap(userId, latestLocation(userId, location), icon, iconKey, user.getName());
                         }
 
                         @Override
                         public void onLoadCleared(@Nullable Drawable placeholder) {
-                            Log.d(TAG, "onLoadCleared: Profile picture load cleared for user: " + user.getId());
+                            Log.d(TAG, "onLoadCleared: Profile picture load cleared for user: " + userId);
+                            pendingIconKeys.remove(userId);
                         }
                     });
         } else {
-            Log.d(TAG, "createOrUpdateMarker: Creating avatar for user: " + user.getId());
-            AvatarUtils.loadAvatarData(user.getId(), user.getName(), (initials, color) -> {
+            AvatarUtils.loadAvatarData(userId, user.getName(), (initials, color) -> {
                 if (initials != null && color != 0) {
-                    Log.d(TAG, "Avatar created for user: " + user.getId());
-                    Bitmap avatarBitmap = AvatarUtils.createAvatarBitmap(initials, color, MARKER_SIZE);
-                    Bitmap markerBitmap = createMarkerBitmapFromProfile(avatarBitmap);
-                    addOrUpdateMarkerOnMap(user.getId(), location, markerBitmap, user.getName());
+                    String avatarKey = MarkerIconCache.avatarKey(userId, initials, color, MARKER_SIZE);
+                    BitmapDescriptor icon = iconCache.getIcon(avatarKey);
+                    if (icon == null) {
+                        Bitmap avatarBitmap = AvatarUtils.createAvatarBitmap(initials, color, MARKER_SIZE);
+                        icon = iconCache.putIcon(avatarKey, avatarBitmap, MARKER_SIZE);
+                        snapshotStore.putThumbnail(userId, avatarBitmap);
+                    }
+                    addOrUpdateMarkerOnMap(userId, latestLocation(userId, location), icon, avatarKey, user.getName());
                 } else {
-                    Log.w(TAG, "Failed to create avatar for user: " + user.getId());
+                    Log.w(TAG, "Failed to create avatar for user: " + userId);
                     // Use a default marker as fallback
-                    addOrUpdateMarkerOnMap(user.getId(), location, null, user.getName());
+                    addOrUpdateMarkerOnMap(userId, location, null, null, user.getName());
                 }
             });
         }
     }
 
-    private Bitmap createMarkerBitmapFromProfile(Bitmap profile) {
-        Log.d(TAG, "createMarkerBitmapFromProfile: Creating marker bitmap");
-        // Create a bitmap for the marker, including a background and profile image
-        Bitmap background = Bitmap.createBitmap(MARKER_SIZE, MARKER_SIZE, Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(background);
-
-        // Draw a white circle for the background
-        Paint paint = new Paint();
-        paint.setColor(Color.WHITE);
-        canvas.drawCircle(MARKER_SIZE / 2f, MARKER_SIZE / 2f, MARKER_SIZE / 2f - 2, paint);
-
-        // Draw the profile picture or avatar
-        canvas.drawBitmap(profile, 2, 2, null);
-
-        // Draw a small inverted triangle at the bottom to make it look like a pin
-        Paint trianglePaint = new Paint();
-        trianglePaint.setColor(Color.WHITE);
-        trianglePaint.setStyle(Paint.Style.FILL);
-
-        float triangleSize = MARKER_SIZE / 4f;
-        float centerX = MARKER_SIZE / 2f;
-        float bottomY = MARKER_SIZE;
-
-        canvas.drawPath(new android.graphics.Path() {{
-            moveTo(centerX, bottomY);
-            lineTo(centerX - triangleSize / 2, bottomY - triangleSize);
-            lineTo(centerX + triangleSize / 2, bottomY - triangleSize);
-            close();
-        }}, trianglePaint);
+    // The marker may have moved while its icon was loading
+    private LatLng latestLocation(String userId, LatLng location) {
+        Marker marker = markers.get(userId);
+        return marker != null ? positionOf(marker) : location;
+    }
 
-        Log.d(TAG, "createMarkerBitmapFromProfile: Marker bitmap created");
-        return background;
+    // Where the marker is going, rather than where it is drawn mid-animation
+    private LatLng positionOf(Marker marker) {
+        LatLng target = markerAnimator.targetOf(marker);
+        return target != null ? target : marker.getPosition();
     }
 
-    private void addOrUpdateMarkerOnMap(String userId, LatLng location, Bitmap markerIcon, String title) {
-        Log.d(TAG, "addOrUpdateMarkerOnMap: Adding/Updating marker for user: " + userId);
+    private void addOrUpdateMarkerOnMap(String userId, LatLng location, BitmapDescriptor markerIcon, String iconKey, String title) {
         if (map != null) {
-            if (markers.containsKey(userId)) {
-                // Update existing marker
-                Marker marker = markers.get(userId);
-                Log.d(TAG, "addOrUpdateMarkerOnMap: Updating existing marker for user: " + userId);
-                marker.setPosition(location);
-                if (markerIcon != null) {
-                    marker.setIcon(BitmapDescriptorFactory.fromBitmap(markerIcon));
+            Marker marker = markers.get(userId);
+            if (marker != null) {
+                // Update existing marker; the icon only when the picture changed
+                markerAnimator.animateTo(marker, location);
+                if (markerIcon != null && !iconKey.equals(markerIconKeys.get(userId))) {
+                    marker.setIcon(markerIcon);
+                    markerIconKeys.put(userId, iconKey);
                 }
             } else {
                 // Add new marker
                 Log.d(TAG, "addOrUpdateMarkerOnMap: Adding new marker for user: " + userId);
                 MarkerOptions markerOptions = new MarkerOptions()
                         .position(location)
-                        .title(title);
+                        .title(title)
+                        .visible(isShown(userId));
                 if (markerIcon != null) {
-                    markerOptions.icon(BitmapDescriptorFactory.fromBitmap(markerIcon));
+                    markerOptions.icon(markerIcon);
+                    markerIconKeys.put(userId, iconKey);
+                }
+                markers.put(userId, map.addMarker(markerOptions));
+                if (!firstMarkerRecorded) {
+                    firstMarkerRecorded = true;
+                    MetricsRegistry.get().histogram("map.time_to_first_marker_ms").record(SystemClock.elapsedRealtime() - openedAt);
                 }
-                Marker marker = map.addMarker(markerOptions);
-                markers.put(userId, marker);
             }
+            applyFreshness(userId, markers.get(userId));
 
-            // If this is the focused member, ensure they're visible
+            // Focus on the selected member once, then only follow them when they leave the screen
             if (userId.equals(memberId) && !isNavigatedFromBottomNav) {
-                focusOnMember(userId);
+                if (focusedOnMember) {
+                    ensureFocusedMemberVisible(location);
+                } else {
+                    focusOnMember(userId);
+                }
             }
         } else {
-            Log.e(TAG, "addOrUpdateMarkerOnMap: Map is null");
+            // Data arrived before the map; drawKnownMembers picks it up once the map is ready
+            Log.d(TAG, "addOrUpdateMarkerOnMap: Map not ready yet for user: " + userId);
+        }
+    }
+
+    // Fades the marker with the age of its location and shows the age in its info window
+    private void applyFreshness(String userId, Marker marker) {
+        Long time = locationTimes.get(userId);
+        if (marker == null || time == null) return;
+        long age = dbManager.getConnectionMonitor().serverTimeMillis() - time;
+        marker.setAlpha(LocationFreshness.tierOf(age).alpha);
+        marker.setSnippet("Updated " + LocationFreshness.describe(age));
+    }
+
+    private boolean isShown(String userId) {
+        return shownMembers == null || shownMembers.contains(userId) || isFocusedMember(userId);
+    }
+
+    // The member the map was opened for is never folded into a cluster
+    private boolean isFocusedMember(String userId) {
+        return !isNavigatedFromBottomNav && userId.equals(memberId);
+    }
+
+    private static boolean equalsNullable(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private void scheduleRecluster() {
+        if (map == null || reclusterScheduled) return;
+        reclusterScheduled = true;
+        handler.postDelayed(reclusterTask, RECLUSTER_DELAY_MS);
+    }
+
+    // Snapshots members and camera on the main thread, clusters them on the cluster thread and
+    // applies the result back on the main thread if the camera did not move in the meantime
+    private void recluster() {
+        reclusterScheduled = false;
+        if (map == null) return;
+        VisibleRegion region = map.getProjection().getVisibleRegion();
+        LatLngBounds visible = region.latLngBounds;
+        GridClusterer.Bounds bounds = new GridClusterer.Bounds(visible.southwest.latitude,
+                visible.southwest.longitude, visible.northeast.latitude, visible.northeast.longitude);
+        float zoom = map.getCameraPosition().zoom;
+
+        List<GridClusterer.Item> items = new ArrayList<>(lastKnownLocations.size());
+        for (Map.Entry<String, LatLng> entry : lastKnownLocations.entrySet()) {
+            User profile = memberProfiles.get(entry.getKey());
+            if (profile == null || isFocusedMember(entry.getKey())) continue;
+            LatLng location = entry.getValue();
+            items.add(new GridClusterer.Item(entry.getKey(), location.latitude, location.longitude,
+                    severityOf(profile.getStatus())));
+        }
+
+        int generation = ++clusterGeneration;
+        clusterExecutor.execute(() -> {
+            List<GridClusterer.Cluster> clusters = GridClusterer.cluster(items, bounds, zoom);
+            handler.post(() -> {
+                if (generation == clusterGeneration && map != null) {
+                    applyClusters(clusters);
+                }
+            });
+        });
+    }
+
+    private void applyClusters(List<GridClusterer.Cluster> clusters) {
+        Set<String> shown = new HashSet<>();
+        int used = 0;
+        for (GridClusterer.Cluster cluster : clusters) {
+            if (cluster.size() == 1) {
+                shown.add(cluster.itemIds.get(0));
+                continue;
+            }
+            // Reuse the cluster markers of the previous pass before adding new ones
+            LatLng position = new LatLng(cluster.latitude, cluster.longitude);
+            BitmapDescriptor icon = iconCache.getClusterIcon(cluster.size(),
+                    colorOf(cluster.worstSeverity), CLUSTER_ICON_SIZE);
+            Marker marker;
+            if (used < clusterMarkers.size()) {
+                marker = clusterMarkers.get(used);
+                marker.setPosition(position);
+                marker.setIcon(icon);
+            } else {
+                marker = map.addMarker(new MarkerOptions().position(position).icon(icon).anchor(0.5f, 0.5f));
+                clusterMarkers.add(marker);
+            }
+            // Alerted clusters are drawn above the others
+            marker.setZIndex(cluster.worstSeverity);
+            marker.setTag(cluster);
+            used++;
+        }
+        while (clusterMarkers.size() > used) {
+            clusterMarkers.remove(clusterMarkers.size() - 1).remove();
+        }
+
+        shownMembers = shown;
+        for (Map.Entry<String, Marker> entry : markers.entrySet()) {
+            entry.getValue().setVisible(isShown(entry.getKey()));
+        }
+        for (String userId : shown) {
+            User profile = memberProfiles.get(userId);
+            LatLng location = lastKnownLocations.get(userId);
+            if (profile != null && location != null) {
+                updateMemberMarker(profile, location);
+            }
+        }
+    }
+
+    private boolean onClusterClick(Marker marker) {
+        if (!(marker.getTag() instanceof GridClusterer.Cluster)) {
+            return false; // A member; show their info window as before
+        }
+        float zoom = Math.min(map.getCameraPosition().zoom + CLUSTER_ZOOM_STEP, GridClusterer.MAX_CLUSTER_ZOOM);
+        map.animateCamera(CameraUpdateFactory.newLatLngZoom(marker.getPosition(), zoom));
+        return true;
+    }
+
+    private static int severityOf(String status) {
+        if ("ALERT".equals(status)) return 2;
+        if ("PENDING".equals(status)) return 1;
+        return 0;
+    }
+
+    private static int colorOf(int severity) {
+        switch (severity) {
+            case 2:
+                return Color.rgb(0xD3, 0x2F, 0x2F); // ALERT: red
+            case 1:
+                return Color.rgb(0xF5, 0x7C, 0x00); // PENDING: orange
+            default:
+                return Color.rgb(0x38, 0x8E, 0x3C); // OK: green
         }
     }
 
     private void ensureFocusedMemberVisible(LatLng location) {
-        Log.d(TAG, "ensureFocusedMemberVisible: Ensuring focused member is visible");
         if (map != null && !map.getProjection().getVisibleRegion().latLngBounds.contains(location)) {
             Log.d(TAG, "ensureFocusedMemberVisible: Animating camera to focused member");
             map.animateCamera(CameraUpdateFactory.newLatLng(location));
@@ -507,6 +966,19 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
             marker.remove();
         }
         markers.clear();
+        for (Marker marker : clusterMarkers) {
+            marker.remove();
+        }
+        clusterMarkers.clear();
+        shownMembers = null;
+        clusterGeneration++;
+        handler.removeCallbacks(reclusterTask);
+        reclusterScheduled = false;
+        markerIconKeys.clear();
+        pendingIconKeys.clear();
+        markerAnimator.clear();
+        focusedOnMember = false;
+        stopFamilyLocationUpdates();
 
         // Remove location updates
         if (fusedLocationClient != null && locationCallback != null) {
@@ -519,16 +991,36 @@ public class MapFragment extends Fragment implements OnMapReadyCallback {
     public void onResume() {
         super.onResume();
         Log.d(TAG, "onResume: MapFragment resumed");
-        if (map != null) {
-            setupLocationListener();
-        }
+        markerAnimator.resume();
+        handler.post(freshnessTask);
+        startWatchingMember();
+        // The family location listener set up in onCreateView stays registered until onDestroyView
     }
 
     @Override
     public void onPause() {
         super.onPause();
         Log.d(TAG, "onPause: MapFragment paused");
-        // Stop location updates if necessary
+        // No marker animation frames while the map is not visible
+        markerAnimator.pause();
+        handler.removeCallbacks(freshnessTask);
+        stopWatchingMember();
+    }
+
+    private void startWatchingMember() {
+        FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
+        if (watchRegistration != null || isNavigatedFromBottomNav || currentUser == null
+                || memberId == null || memberId.equals(currentUser.getUid())) {
+            return;
+        }
+        watchRegistration = dbManager.watchMember(memberId, currentUser.getUid());
+    }
+
+    private void stopWatchingMember() {
+        if (watchRegistration != null) {
+            watchRegistration.remove();
+            watchRegistration = null;
+        }
     }
 
     @Override
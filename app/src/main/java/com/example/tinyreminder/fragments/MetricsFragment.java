@@ -0,0 +1,67 @@
+package com.example.tinyreminder.fragments;
+
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.fragment.app.Fragment;
+
+import com.example.tinyreminder.R;
+import com.example.tinyreminder.metrics.LatencyHistogram;
+import com.example.tinyreminder.metrics.MetricsRegistry;
+
+import java.util.Locale;
+
+/**
+ * Debug screen with the live metrics of this device, led by how long family members'
+ * locations take from their upload to being drawn here. Reachable from the profile in debug builds.
+ */
+public class MetricsFragment extends Fragment {
+    private static final long REFRESH_MS = 2000;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable refreshTask = new Runnable() {
+        @Override
+        public void run() {
+            render();
+            handler.postDelayed(this, REFRESH_MS);
+        }
+    };
+    private TextView metricsText;
+
+    @Override
+    public View onCreateView(LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
+        View view = inflater.inflate(R.layout.fragment_metrics, container, false);
+        metricsText = view.findViewById(R.id.metrics_text);
+        return view;
+    }
+
+    @Override
+    public void onResume() {
+        super.onResume();
+        handler.post(refreshTask);
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+        handler.removeCallbacks(refreshTask);
+    }
+
+    private void render() {
+        MetricsRegistry metrics = MetricsRegistry.get();
+        LatencyHistogram latency = metrics.histogram("map.location_upload_to_render_ms");
+        StringBuilder text = new StringBuilder();
+        text.append("# location upload to render\n");
+        text.append(String.format(Locale.US, "samples %d\np50 %d ms\np90 %d ms\np99 %d ms\nmax %d ms\n",
+                latency.getCount(), latency.getValueAtQuantile(0.5), latency.getValueAtQuantile(0.9),
+                latency.getValueAtQuantile(0.99), latency.getMax()));
+        text.append("repeats skipped ").append(metrics.counter("map.location_unchanged_skipped").sum()).append("\n\n");
+        text.append(metrics.dump());
+        metricsText.setText(text);
+    }
+}
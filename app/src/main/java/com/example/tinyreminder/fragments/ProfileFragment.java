@@ -1,5 +1,6 @@
 package com.example.tinyreminder.fragments;
 
+import android.content.pm.ApplicationInfo;
 import android.os.Bundle;
 import android.text.InputType;
 import android.util.Log;
@@ -19,15 +20,16 @@ import androidx.fragment.app.Fragment;
 import com.bumptech.glide.Glide;
 import com.example.tinyreminder.MainActivity;
 import com.example.tinyreminder.R;
+import com.example.tinyreminder.backend.BackendError;
+import com.example.tinyreminder.backend.Snapshot;
+import com.example.tinyreminder.backend.ValueListener;
 import com.example.tinyreminder.models.Family;
 import com.example.tinyreminder.models.User;
 import com.example.tinyreminder.utils.AvatarUtils;
 import com.example.tinyreminder.utils.DatabaseManager;
+import com.example.tinyreminder.utils.FamilySnapshotStore;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.ValueEventListener;
 
 import de.hdodenhof.circleimageview.CircleImageView;
 
@@ -36,7 +38,7 @@ public class ProfileFragment extends Fragment {
 
     private CircleImageView profileImage;
     private TextView profileName, profileEmail, profilePhone, familyName, familyCode;
-    private Button editProfileButton, familyButton, createJoinFamilyButton, logoutButton;
+    private Button editProfileButton, familyButton, createJoinFamilyButton, logoutButton, metricsButton;
     private DatabaseManager dbManager;
     private FirebaseAuth mAuth;
     private User currentUser;
@@ -84,6 +86,10 @@ public class ProfileFragment extends Fragment {
         familyButton = view.findViewById(R.id.family_button);
         createJoinFamilyButton = view.findViewById(R.id.create_join_family_button);
         logoutButton = view.findViewById(R.id.logout_button);
+        metricsButton = view.findViewById(R.id.metrics_button);
+        // The metrics screen is a developer tool, never shown in release builds
+        boolean debuggable = (requireContext().getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+        metricsButton.setVisibility(debuggable ? View.VISIBLE : View.GONE);
     }
 
     // Method to set up listeners for button clicks
@@ -92,6 +98,7 @@ public class ProfileFragment extends Fragment {
         familyButton.setOnClickListener(v -> navigateToFamilyScreen());
         createJoinFamilyButton.setOnClickListener(v -> showFamilySelectionDialog());
         logoutButton.setOnClickListener(v -> signOut());
+        metricsButton.setOnClickListener(v -> ((MainActivity) requireActivity()).loadFragment(new MetricsFragment()));
     }
 
     // Method to load user data from Firebase
@@ -100,9 +107,9 @@ public class ProfileFragment extends Fragment {
         if (firebaseUser != null) {
             String userId = firebaseUser.getUid();
             Log.d(TAG, "Loading user data for userId: " + userId);
-            dbManager.getUserData(userId, new ValueEventListener() {
+            dbManager.getUserData(userId, new ValueListener() {
                 @Override
-                public void onDataChange(@NonNull DataSnapshot snapshot) {
+                public void onDataChange(@NonNull Snapshot snapshot) {
                     User user = snapshot.getValue(User.class);
                     if (user != null) {
                         user.setId(userId);
@@ -121,7 +128,7 @@ public class ProfileFragment extends Fragment {
                 }
 
                 @Override
-                public void onCancelled(@NonNull DatabaseError error) {
+                public void onCancelled(@NonNull BackendError error) {
                     Log.e(TAG, "Failed to load user data: " + error.getMessage());
                     Toast.makeText(getContext(), "Failed to load user data", Toast.LENGTH_SHORT).show();
                 }
@@ -160,9 +167,9 @@ public class ProfileFragment extends Fragment {
             return;
         }
 
-        dbManager.getFamilyData(familyId, new ValueEventListener() {
+        dbManager.getFamilyData(familyId, new ValueListener() {
             @Override
-            public void onDataChange(@NonNull DataSnapshot snapshot) {
+            public void onDataChange(@NonNull Snapshot snapshot) {
                 Family family = snapshot.getValue(Family.class);
                 if (family != null) {
                     updateUIWithFamilyData(family); // Update UI with the loaded family data
@@ -173,7 +180,7 @@ public class ProfileFragment extends Fragment {
             }
 
             @Override
-            public void onCancelled(@NonNull DatabaseError error) {
+            public void onCancelled(@NonNull BackendError error) {
                 Log.e(TAG, "Failed to load family data: " + error.getMessage());
                 Toast.makeText(getContext(), "Failed to load family data", Toast.LENGTH_SHORT).show();
                 showCreateJoinFamilyButton(); // Show the button to create or join a family
@@ -338,9 +345,9 @@ public class ProfileFragment extends Fragment {
     private void joinFamily(String familyId) {
         FirebaseUser currentFirebaseUser = mAuth.getCurrentUser();
         if (currentFirebaseUser != null) {
-            dbManager.checkFamilyExists(familyId, new ValueEventListener() {
+            dbManager.checkFamilyExists(familyId, new ValueListener() {
                 @Override
-                public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+                public void onDataChange(@NonNull Snapshot dataSnapshot) {
                     if (dataSnapshot.exists()) {
                         // Family exists, proceed with joining
                         dbManager.addUserToFamily(currentFirebaseUser.getUid(), familyId, task -> {
@@ -358,7 +365,7 @@ public class ProfileFragment extends Fragment {
                 }
 
                 @Override
-                public void onCancelled(@NonNull DatabaseError databaseError) {
+                public void onCancelled(@NonNull BackendError databaseError) {
                     Toast.makeText(getContext(), "Error checking family: " + databaseError.getMessage(), Toast.LENGTH_SHORT).show();
                 }
             });
@@ -379,6 +386,8 @@ public class ProfileFragment extends Fragment {
     // Method to sign out the current user
     private void signOut() {
         mAuth.signOut();
+        // The snapshot holds every member's position and avatar; none of it outlives the session
+        FamilySnapshotStore.get(requireContext()).clear();
         ((MainActivity) requireActivity()).navigateToLogin(); // Navigate to the login screen after sign out
     }
 }
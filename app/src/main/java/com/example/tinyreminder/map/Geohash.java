@@ -0,0 +1,86 @@
+package com.example.tinyreminder.map;
+
+/**
+ * Geohash cells, used as compact keys for places on a grid. Plain Java, so it can be tested
+ * without a device.
+ *
+ * A geohash of {@link #HOTSPOT_PRECISION} characters is a cell of roughly 150 by 150 meters,
+ * about one parking lot or a stretch of street.
+ */
+public final class Geohash {
+    /** Characters of the cells parking hotspots are counted in. */
+    public static final int HOTSPOT_PRECISION = 7;
+    private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+
+    private Geohash() {
+    }
+
+    /**
+     * @return The cell containing the location, {@code precision} characters long.
+     */
+    public static String encode(double latitude, double longitude, int precision) {
+        double minLatitude = -90, maxLatitude = 90;
+        double minLongitude = -180, maxLongitude = 180;
+        StringBuilder hash = new StringBuilder(precision);
+        boolean evenBit = true;
+        int bit = 0;
+        int index = 0;
+        while (hash.length() < precision) {
+            // Bits alternate between longitude and latitude, starting with longitude
+            if (evenBit) {
+                double middle = (minLongitude + maxLongitude) / 2;
+                if (longitude >= middle) {
+                    index = index * 2 + 1;
+                    minLongitude = middle;
+                } else {
+                    index = index * 2;
+                    maxLongitude = middle;
+                }
+            } else {
+                double middle = (minLatitude + maxLatitude) / 2;
+                if (latitude >= middle) {
+                    index = index * 2 + 1;
+                    minLatitude = middle;
+                } else {
+                    index = index * 2;
+                    maxLatitude = middle;
+                }
+            }
+            evenBit = !evenBit;
+            if (++bit == 5) {
+                hash.append(BASE32.charAt(index));
+                bit = 0;
+                index = 0;
+            }
+        }
+        return hash.toString();
+    }
+
+    /**
+     * @return The center of the cell as {latitude, longitude}.
+     * @throws IllegalArgumentException If the hash has a character outside the geohash alphabet.
+     */
+    public static double[] decodeCenter(String hash) {
+        double minLatitude = -90, maxLatitude = 90;
+        double minLongitude = -180, maxLongitude = 180;
+        boolean evenBit = true;
+        for (int i = 0; i < hash.length(); i++) {
+            int index = BASE32.indexOf(hash.charAt(i));
+            if (index < 0) {
+                throw new IllegalArgumentException("Not a geohash: " + hash);
+            }
+            for (int mask = 16; mask > 0; mask >>= 1) {
+                boolean upper = (index & mask) != 0;
+                if (evenBit) {
+                    double middle = (minLongitude + maxLongitude) / 2;
+                    if (upper) minLongitude = middle; else maxLongitude = middle;
+                } else {
+                    double middle = (minLatitude + maxLatitude) / 2;
+                    if (upper) minLatitude = middle; else maxLatitude = middle;
+                }
+                evenBit = !evenBit;
+            }
+        }
+        return new double[]{(minLatitude + maxLatitude) / 2, (minLongitude + maxLongitude) / 2};
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.tinyreminder.map;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Groups map items into clusters on a square pixel grid at the current zoom level, skipping
+ * items outside the visible region. Plain Java, so it can run on any thread.
+ *
+ * Grid cells are measured in Web Mercator world coordinates, the projection the map draws in,
+ * so a cell covers the same number of screen pixels everywhere on the map.
+ */
+public final class GridClusterer {
+    /** Size of a grid cell in screen pixels at any zoom level. */
+    static final int CELL_PIXELS = 96;
+    /** From this zoom on members are far enough apart on screen to always be shown on their own. */
+    public static final float MAX_CLUSTER_ZOOM = 17f;
+    private static final int TILE_PIXELS = 256;
+
+    private GridClusterer() {
+    }
+
+    /**
+     * One member on the map. A higher severity stands out more, e.g. ALERT above OK.
+     */
+    public static class Item {
+        public final String id;
+        public final double latitude;
+        public final double longitude;
+        public final int severity;
+
+        public Item(String id, double latitude, double longitude, int severity) {
+            this.id = id;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.severity = severity;
+        }
+    }
+
+    /**
+     * Items sharing a grid cell, positioned at their centroid.
+     */
+    public static class Cluster {
+        public final List<String> itemIds = new ArrayList<>();
+        public double latitude;
+        public double longitude;
+        /** The highest severity of any item in the cluster. */
+        public int worstSeverity = Integer.MIN_VALUE;
+
+        public int size() {
+            return itemIds.size();
+        }
+
+        void add(Item item) {
+            int n = itemIds.size();
+            latitude = (latitude * n + item.latitude) / (n + 1);
+            longitude = (longitude * n + item.longitude) / (n + 1);
+            worstSeverity = Math.max(worstSeverity, item.severity);
+            itemIds.add(item.id);
+        }
+    }
+
+    /**
+     * Visible region in degrees. {@code west} is greater than {@code east} when the region
+     * crosses the antimeridian.
+     */
+    public static class Bounds {
+        final double south;
+        final double west;
+        final double north;
+        final double east;
+
+        public Bounds(double south, double west, double north, double east) {
+            this.south = south;
+            this.west = west;
+            this.north = north;
+            this.east = east;
+        }
+
+        boolean contains(double latitude, double longitude) {
+            if (latitude < south || latitude > north) return false;
+            return west <= east
+                    ? longitude >= west && longitude <= east
+                    : longitude >= west || longitude <= east;
+        }
+    }
+
+    /**
+     * @param items  Items to cluster.
+     * @param bounds Visible region; items outside it are left out.
+     * @param zoom   Current camera zoom; at {@link #MAX_CLUSTER_ZOOM} or closer nothing is grouped.
+     * @return Clusters in no particular order; a cluster of one is an item shown on its own.
+     */
+    public static List<Cluster> cluster(Collection<Item> items, Bounds bounds, float zoom) {
+        double cellSize = CELL_PIXELS / (TILE_PIXELS * Math.pow(2, zoom));
+        boolean grouping = zoom < MAX_CLUSTER_ZOOM;
+        Map<Long, Cluster> cells = new HashMap<>();
+        List<Cluster> clusters = new ArrayList<>();
+        for (Item item : items) {
+            if (!bounds.contains(item.latitude, item.longitude)) continue;
+            if (!grouping) {
+                Cluster single = new Cluster();
+                single.add(item);
+                clusters.add(single);
+                continue;
+            }
+            long column = (long) Math.floor(worldX(item.longitude) / cellSize);
+            long row = (long) Math.floor(worldY(item.latitude) / cellSize);
+            long cell = (row << 32) ^ (column & 0xffffffffL);
+            Cluster cluster = cells.get(cell);
+            if (cluster == null) {
+                cluster = new Cluster();
+                cells.put(cell, cluster);
+            }
+            cluster.add(item);
+        }
+        clusters.addAll(cells.values());
+        return clusters;
+    }
+
+    // Web Mercator world coordinates, both in [0, 1]
+    static double worldX(double longitude) {
+        return (longitude + 180) / 360;
+    }
+
+    static double worldY(double latitude) {
+        double sin = Math.sin(Math.toRadians(Math.max(-85, Math.min(85, latitude))));
+        return 0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI);
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.tinyreminder.map;
+
+import android.os.SystemClock;
+
+import com.example.tinyreminder.metrics.MetricsRegistry;
+import com.example.tinyreminder.utils.DatabaseManager;
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.TileOverlay;
+import com.google.android.gms.maps.model.TileOverlayOptions;
+import com.google.android.gms.tasks.Task;
+import com.google.maps.android.heatmaps.HeatmapTileProvider;
+import com.google.maps.android.heatmaps.WeightedLatLng;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Heatmap of where a family parks most often, drawn from its hotspot grid: one small read of
+ * per-cell counts rather than every parking event. Must be used on the main thread.
+ */
+public class HotspotLayer {
+    private static final int RADIUS_PIXELS = 40;
+    private static final double OPACITY = 0.7;
+
+    private final GoogleMap map;
+    private TileOverlay overlay;
+    // Bumped on every show and remove, so a read that completes late is dropped
+    private int generation;
+
+    public HotspotLayer(GoogleMap map) {
+        this.map = map;
+    }
+
+    /**
+     * Loads the family's hotspots and draws them over the map, replacing any shown before.
+     *
+     * @return A Task with the number of cells drawn; 0 when the family has no parking recorded yet.
+     */
+    public Task<Integer> show(DatabaseManager dbManager, String familyId) {
+        int requested = ++generation;
+        long start = SystemClock.elapsedRealtime();
+        return dbManager.getParkingHotspots(familyId).continueWith(task -> {
+            Map<String, Long> counts = task.getResult();
+            if (requested != generation) return 0;
+            MetricsRegistry.get().histogram("map.hotspots_load_ms").record(SystemClock.elapsedRealtime() - start);
+            removeOverlay();
+            List<WeightedLatLng> cells = new ArrayList<>(counts.size());
+            for (Map.Entry<String, Long> entry : counts.entrySet()) {
+                try {
+                    double[] center = Geohash.decodeCenter(entry.getKey());
+                    cells.add(new WeightedLatLng(new LatLng(center[0], center[1]), entry.getValue()));
+                } catch (IllegalArgumentException e) {
+                    // Not a cell this app wrote; leave it out
+                }
+            }
+            if (cells.isEmpty()) return 0;
+            HeatmapTileProvider provider = new HeatmapTileProvider.Builder()
+                    .weightedData(cells)
+                    .radius(RADIUS_PIXELS)
+                    .opacity(OPACITY)
+                    .build();
+            overlay = map.addTileOverlay(new TileOverlayOptions().tileProvider(provider));
+            return cells.size();
+        });
+    }
+
+    public boolean isShown() {
+        return overlay != null;
+    }
+
+    /**
+     * Removes the heatmap; a read still in flight is dropped.
+     */
+    public void remove() {
+        generation++;
+        removeOverlay();
+    }
+
+    private void removeOverlay() {
+        if (overlay != null) {
+            overlay.remove();
+            overlay = null;
+        }
+    }
+}
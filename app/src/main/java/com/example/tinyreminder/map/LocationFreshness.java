@@ -0,0 +1,64 @@
+package com.example.tinyreminder.map;
+
+/**
+ * How fresh a member's last known location is, from the age of its server timestamp.
+ * Plain Java, so it can be tested without a device.
+ */
+public final class LocationFreshness {
+    private static final long MINUTE_MS = 60 * 1000;
+    private static final long HOUR_MS = 60 * MINUTE_MS;
+    private static final long DAY_MS = 24 * HOUR_MS;
+
+    /**
+     * How often an unwatched device uploads its location. LocationUpdateService requests updates
+     * at this interval, so the tiers below count in missed uploads rather than fixed minutes.
+     */
+    public static final long IDLE_UPLOAD_INTERVAL_MS = MINUTE_MS;
+    // One upload plus the slack a balanced-accuracy fix may be delivered late by
+    private static final long LIVE_MS = IDLE_UPLOAD_INTERVAL_MS * 3 / 2;
+    private static final long RECENT_MS = 5 * IDLE_UPLOAD_INTERVAL_MS;
+
+    /**
+     * Staleness tiers, each drawn a bit fainter than the one before.
+     */
+    public enum Tier {
+        /** Under 90 s old: the member's last upload arrived on schedule. */
+        LIVE(1f),
+        /** Under 5 minutes old: a few uploads were missed. */
+        RECENT(0.85f),
+        /** Under a day old. */
+        STALE(0.6f),
+        /** A day or older. */
+        OLD(0.4f);
+
+        /** Marker opacity for this tier. */
+        public final float alpha;
+
+        Tier(float alpha) {
+            this.alpha = alpha;
+        }
+    }
+
+    private LocationFreshness() {
+    }
+
+    /**
+     * @param ageMillis Time since the location was written; negative values, from clock skew, count as fresh.
+     */
+    public static Tier tierOf(long ageMillis) {
+        if (ageMillis < LIVE_MS) return Tier.LIVE;
+        if (ageMillis < RECENT_MS) return Tier.RECENT;
+        if (ageMillis < DAY_MS) return Tier.STALE;
+        return Tier.OLD;
+    }
+
+    /**
+     * @return A short age for people, e.g. "just now", "5 min ago" or "3 h ago".
+     */
+    public static String describe(long ageMillis) {
+        if (ageMillis < MINUTE_MS) return "just now";
+        if (ageMillis < HOUR_MS) return (ageMillis / MINUTE_MS) + " min ago";
+        if (ageMillis < DAY_MS) return (ageMillis / HOUR_MS) + " h ago";
+        return (ageMillis / DAY_MS) + " d ago";
+    }
+}
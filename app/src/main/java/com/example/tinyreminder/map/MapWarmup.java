@@ -0,0 +1,61 @@
+package com.example.tinyreminder.map;
+
+import android.app.Activity;
+import android.content.Context;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import com.example.tinyreminder.metrics.MetricsRegistry;
+import com.google.android.gms.maps.MapsInitializer;
+
+/**
+ * Loads the Maps SDK and picks its renderer ahead of the first map, so opening the map does not
+ * pay for it on the main thread.
+ *
+ * Initialization has to run on the main thread, so it is deferred until the first frame of the
+ * activity is on screen and the main thread is idle, keeping app startup unaffected.
+ */
+public final class MapWarmup {
+    private static final String TAG = "MapWarmup";
+
+    private static boolean started;
+
+    private MapWarmup() {
+    }
+
+    /**
+     * Warms up the Maps SDK once the activity has drawn its first frame and the main thread is idle.
+     */
+    public static void afterFirstFrame(Activity activity) {
+        Context context = activity.getApplicationContext();
+        View decorView = activity.getWindow().getDecorView();
+        decorView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                decorView.getViewTreeObserver().removeOnPreDrawListener(this);
+                // Posted from the pre-draw pass, so it runs after this frame is drawn
+                decorView.post(() -> Looper.myQueue().addIdleHandler(() -> {
+                    warmUp(context);
+                    return false;
+                }));
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Initializes the Maps SDK now unless that already happened. Must be called on the main thread.
+     */
+    public static void warmUp(Context context) {
+        if (started) return;
+        started = true;
+        long start = SystemClock.elapsedRealtime();
+        MapsInitializer.initialize(context.getApplicationContext(), MapsInitializer.Renderer.LATEST, renderer -> {
+            Log.d(TAG, "Maps renderer ready: " + renderer);
+            MetricsRegistry.get().histogram("map.warmup_ms").record(SystemClock.elapsedRealtime() - start);
+        });
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.tinyreminder.map;
+
+import android.view.Choreographer;
+
+import androidx.annotation.Nullable;
+
+import com.example.tinyreminder.metrics.MetricsRegistry;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+import com.google.android.gms.maps.model.Marker;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Moves markers smoothly, driven by Choreographer frames on the main thread.
+ *
+ * New positions are only recorded when they arrive; all positions received within a frame are
+ * applied at the start of the next one, the latest per marker winning. Each marker then glides
+ * from where it is drawn to its new position over the time since its previous update, so it
+ * keeps moving continuously between location updates. A frame moves at most
+ * {@link #MAX_MARKERS_PER_FRAME} markers within {@link #FRAME_BUDGET_NS}; the rest continue on
+ * the next frame.
+ *
+ * Markers outside the visible region jump straight to their position. While paused, e.g. when
+ * the map is not resumed, no frames are requested and positions are applied on resume.
+ */
+public final class MarkerAnimator implements Choreographer.FrameCallback {
+    private static final long MIN_DURATION_MS = 250;
+    private static final long MAX_DURATION_MS = 2000;
+    private static final int MAX_MARKERS_PER_FRAME = 64;
+    // A quarter of a 60 fps frame, leaving the rest to the map itself
+    private static final long FRAME_BUDGET_NS = 4_000_000;
+
+    private final Choreographer choreographer = Choreographer.getInstance();
+    private final Map<Marker, LatLng> pending = new HashMap<>();
+    // In order of the next marker to move, so a capped frame resumes where the last one stopped
+    private final LinkedHashMap<Marker, Animation> animations = new LinkedHashMap<>();
+    private final Map<Marker, Long> lastUpdateAt = new HashMap<>();
+    private LatLngBounds visibleRegion;
+    private boolean paused = true;
+    private boolean frameRequested;
+
+    private static class Animation {
+        final LatLng from;
+        final LatLng to;
+        final long startMillis;
+        final long durationMillis;
+
+        Animation(LatLng from, LatLng to, long startMillis, long durationMillis) {
+            this.from = from;
+            this.to = to;
+            this.startMillis = startMillis;
+            this.durationMillis = durationMillis;
+        }
+
+        LatLng positionAt(long nowMillis) {
+            float fraction = Math.min(1f, (nowMillis - startMillis) / (float) durationMillis);
+            double lngDelta = to.longitude - from.longitude;
+            // Take the short way across the antimeridian
+            if (Math.abs(lngDelta) > 180) {
+                lngDelta -= Math.signum(lngDelta) * 360;
+            }
+            return new LatLng(from.latitude + (to.latitude - from.latitude) * fraction,
+                    from.longitude + lngDelta * fraction);
+        }
+
+        boolean isFinished(long nowMillis) {
+            return nowMillis - startMillis >= durationMillis;
+        }
+    }
+
+    /**
+     * Moves the marker to a new position, starting on the next frame.
+     */
+    public void animateTo(Marker marker, LatLng position) {
+        pending.put(marker, position);
+        requestFrame();
+    }
+
+    /**
+     * @return Where the marker is headed, or null if it is not moving.
+     */
+    @Nullable
+    public LatLng targetOf(Marker marker) {
+        LatLng target = pending.get(marker);
+        if (target != null) return target;
+        Animation animation = animations.get(marker);
+        return animation != null ? animation.to : null;
+    }
+
+    /**
+     * Forgets a marker that is being removed from the map.
+     */
+    public void remove(Marker marker) {
+        pending.remove(marker);
+        animations.remove(marker);
+        lastUpdateAt.remove(marker);
+    }
+
+    public void clear() {
+        pending.clear();
+        animations.clear();
+        lastUpdateAt.clear();
+    }
+
+    /**
+     * Sets the region currently on screen; markers entirely outside it are not animated.
+     */
+    public void setVisibleRegion(@Nullable LatLngBounds visibleRegion) {
+        this.visibleRegion = visibleRegion;
+    }
+
+    public void resume() {
+        paused = false;
+        // Nothing moved on screen while paused; catch up without animating
+        for (Map.Entry<Marker, Animation> entry : animations.entrySet()) {
+            pending.putIfAbsent(entry.getKey(), entry.getValue().to);
+        }
+        animations.clear();
+        for (Map.Entry<Marker, LatLng> entry : pending.entrySet()) {
+            entry.getKey().setPosition(entry.getValue());
+        }
+        pending.clear();
+    }
+
+    public void pause() {
+        paused = true;
+        if (frameRequested) {
+            choreographer.removeFrameCallback(this);
+            frameRequested = false;
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        frameRequested = false;
+        if (paused) return;
+        long workStart = System.nanoTime();
+        long nowMillis = frameTimeNanos / 1_000_000;
+
+        startPending(nowMillis);
+
+        int moved = 0;
+        Map<Marker, Animation> unfinished = new LinkedHashMap<>();
+        Iterator<Map.Entry<Marker, Animation>> iterator = animations.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (moved >= MAX_MARKERS_PER_FRAME || System.nanoTime() - workStart > FRAME_BUDGET_NS) {
+                MetricsRegistry.get().counter("map.marker_frame_capped").increment();
+                break;
+            }
+            Map.Entry<Marker, Animation> entry = iterator.next();
+            iterator.remove();
+            Animation animation = entry.getValue();
+            entry.getKey().setPosition(animation.positionAt(nowMillis));
+            moved++;
+            if (!animation.isFinished(nowMillis)) {
+                unfinished.put(entry.getKey(), animation);
+            }
+        }
+        // Markers moved this frame go to the back of the line
+        animations.putAll(unfinished);
+        MetricsRegistry.get().histogram("map.marker_frame_us").record((System.nanoTime() - workStart) / 1000);
+
+        if (!animations.isEmpty() || !pending.isEmpty()) {
+            requestFrame();
+        }
+    }
+
+    private void startPending(long nowMillis) {
+        for (Map.Entry<Marker, LatLng> entry : pending.entrySet()) {
+            Marker marker = entry.getKey();
+            LatLng target = entry.getValue();
+            Animation running = animations.remove(marker);
+            LatLng from = running != null ? running.positionAt(nowMillis) : marker.getPosition();
+
+            Long previousUpdate = lastUpdateAt.put(marker, nowMillis);
+            long duration = previousUpdate != null ? nowMillis - previousUpdate : MIN_DURATION_MS;
+            duration = Math.max(MIN_DURATION_MS, Math.min(MAX_DURATION_MS, duration));
+
+            if (!isVisible(from) && !isVisible(target)) {
+                marker.setPosition(target);
+            } else {
+                animations.put(marker, new Animation(from, target, nowMillis, duration));
+            }
+        }
+        pending.clear();
+    }
+
+    private boolean isVisible(LatLng position) {
+        return visibleRegion == null || visibleRegion.contains(position);
+    }
+
+    private void requestFrame() {
+        if (paused || frameRequested) return;
+        frameRequested = true;
+        choreographer.postFrameCallback(this);
+    }
+}
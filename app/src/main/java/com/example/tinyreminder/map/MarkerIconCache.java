@@ -0,0 +1,163 @@
+package com.example.tinyreminder.map;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.util.LruCache;
+
+import androidx.annotation.Nullable;
+
+import com.example.tinyreminder.metrics.MetricsRegistry;
+import com.example.tinyreminder.models.User;
+import com.google.android.gms.maps.model.BitmapDescriptor;
+import com.google.android.gms.maps.model.BitmapDescriptorFactory;
+
+import java.util.Map;
+
+/**
+ * Process-wide cache of composed member marker icons, bounded by bitmap memory.
+ *
+ * Icons are keyed by member, picture source and size, where the source is the profile picture
+ * URL or the avatar's initials and color. A member whose picture did not change therefore keeps
+ * the same key, and moving their marker never loads or composes the icon again. Cluster icons
+ * are cached the same way, by count and color.
+ */
+public final class MarkerIconCache {
+    private static final int MAX_BYTES = 8 * 1024 * 1024;
+
+    private static MarkerIconCache instance;
+
+    private final LruCache<String, Icon> cache;
+    // Reused for every composition; only touched while holding the lock
+    private final Paint fillPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Path pin = new Path();
+    private int pinSize = -1;
+
+    private static class Icon {
+        final Bitmap bitmap;
+        final BitmapDescriptor descriptor;
+
+        Icon(Bitmap bitmap) {
+            this.bitmap = bitmap;
+            this.descriptor = BitmapDescriptorFactory.fromBitmap(bitmap);
+        }
+    }
+
+    public static synchronized MarkerIconCache get() {
+        if (instance == null) {
+            // Never more than a sixteenth of the heap
+            int maxBytes = (int) Math.min(MAX_BYTES, Runtime.getRuntime().maxMemory() / 16);
+            instance = new MarkerIconCache(maxBytes);
+        }
+        return instance;
+    }
+
+    private MarkerIconCache(int maxBytes) {
+        cache = new LruCache<String, Icon>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Icon icon) {
+                return icon.bitmap.getAllocationByteCount();
+            }
+        };
+        fillPaint.setColor(Color.WHITE);
+        fillPaint.setStyle(Paint.Style.FILL);
+        textPaint.setColor(Color.WHITE);
+        textPaint.setTextAlign(Paint.Align.CENTER);
+        textPaint.setFakeBoldText(true);
+    }
+
+    /**
+     * @return The key of the member's current icon, or null if it depends on avatar data that
+     * is not part of the user record yet.
+     */
+    @Nullable
+    public static String keyFor(User user, int size) {
+        String pictureUrl = user.getProfilePictureUrl();
+        if (pictureUrl != null && !pictureUrl.isEmpty()) {
+            return user.getId() + "|" + pictureUrl + "|" + size;
+        }
+        Map<String, Object> avatar = user.getAvatar();
+        if (avatar != null && avatar.get("initials") instanceof String && avatar.get("color") instanceof Number) {
+            return avatarKey(user.getId(), (String) avatar.get("initials"), ((Number) avatar.get("color")).intValue(), size);
+        }
+        return null;
+    }
+
+    public static String avatarKey(String userId, String initials, int color, int size) {
+        return userId + "|avatar:" + initials + "#" + Integer.toHexString(color) + "|" + size;
+    }
+
+    /**
+     * @return The cached icon, or null if it has to be loaded and composed.
+     */
+    @Nullable
+    public synchronized BitmapDescriptor getIcon(String key) {
+        Icon icon = cache.get(key);
+        MetricsRegistry.get().counter(icon != null ? "map.marker_icon.hit" : "map.marker_icon.miss").increment();
+        return icon != null ? icon.descriptor : null;
+    }
+
+    /**
+     * Composes the marker icon around a circular picture of {@code size} pixels and caches it.
+     */
+    public synchronized BitmapDescriptor putIcon(String key, Bitmap picture, int size) {
+        Bitmap background = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(background);
+
+        // Draw a white circle for the background
+        canvas.drawCircle(size / 2f, size / 2f, size / 2f - 2, fillPaint);
+
+        // Draw the profile picture or avatar
+        canvas.drawBitmap(picture, 2, 2, null);
+
+        // Draw a small inverted triangle at the bottom to make it look like a pin
+        canvas.drawPath(pinPath(size), fillPaint);
+
+        Icon icon = new Icon(background);
+        cache.put(key, icon);
+        return icon.descriptor;
+    }
+
+    /**
+     * @return The icon of a cluster: its member count on a disc of the given color, cached.
+     */
+    public synchronized BitmapDescriptor getClusterIcon(int count, int color, int size) {
+        // Beyond 99 only "99+" is shown, so larger counts share one icon
+        String label = count > 99 ? "99+" : String.valueOf(count);
+        String key = "cluster|" + label + "|" + Integer.toHexString(color) + "|" + size;
+        Icon icon = cache.get(key);
+        if (icon != null) return icon.descriptor;
+
+        Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        canvas.drawCircle(size / 2f, size / 2f, size / 2f, fillPaint);
+        int fillColor = fillPaint.getColor();
+        fillPaint.setColor(color);
+        canvas.drawCircle(size / 2f, size / 2f, size / 2f - 4, fillPaint);
+        fillPaint.setColor(fillColor);
+        textPaint.setTextSize(size / (label.length() > 2 ? 3.2f : 2.5f));
+        float y = size / 2f - (textPaint.descent() + textPaint.ascent()) / 2;
+        canvas.drawText(label, size / 2f, y, textPaint);
+
+        icon = new Icon(bitmap);
+        cache.put(key, icon);
+        return icon.descriptor;
+    }
+
+    private Path pinPath(int size) {
+        if (size != pinSize) {
+            float triangleSize = size / 4f;
+            float centerX = size / 2f;
+            pin.rewind();
+            pin.moveTo(centerX, size);
+            pin.lineTo(centerX - triangleSize / 2, size - triangleSize);
+            pin.lineTo(centerX + triangleSize / 2, size - triangleSize);
+            pin.close();
+            pinSize = size;
+        }
+        return pin;
+    }
+}
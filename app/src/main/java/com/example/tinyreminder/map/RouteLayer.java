@@ -0,0 +1,147 @@
+package com.example.tinyreminder.map;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.tinyreminder.metrics.MetricsRegistry;
+import com.example.tinyreminder.utils.DatabaseManager;
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.JointType;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.Polyline;
+import com.google.android.gms.maps.model.PolylineOptions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Draws a member's recorded route as a single polyline, simplified for the current zoom.
+ *
+ * The history is fetched once per route. Sorting and simplification run on a background
+ * thread, and each zoom band is simplified only once, so zooming back and forth just swaps
+ * in a cached line. Must be used on the main thread.
+ */
+public class RouteLayer {
+    private static final String TAG = "RouteLayer";
+    private static final float WIDTH_PIXELS = 10f;
+
+    // One thread shared by every route layer
+    private static final ExecutorService simplifier = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "RouteSimplifier");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final GoogleMap map;
+    private final int color;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    // Route sorted by time; null until loaded
+    private List<RouteSimplifier.Point> route;
+    private final Map<Integer, List<LatLng>> simplifiedByBand = new HashMap<>();
+    private int pendingBand = -1;
+    private int shownBand = -1;
+    private Polyline polyline;
+    // Bumped whenever the route is replaced or removed, so late results are dropped
+    private int generation;
+
+    public RouteLayer(GoogleMap map, int color) {
+        this.map = map;
+        this.color = color;
+    }
+
+    /**
+     * Replaces the route with the member's locations in a time range.
+     */
+    public void show(DatabaseManager dbManager, String familyId, String userId, long from, long to) {
+        int requested = ++generation;
+        dbManager.getLocationHistory(familyId, userId, from, to)
+                .addOnSuccessListener(points -> simplifier.execute(() -> {
+                    List<RouteSimplifier.Point> sorted = new ArrayList<>(points);
+                    Collections.sort(sorted, (a, b) -> Long.compare(a.time, b.time));
+                    handler.post(() -> {
+                        if (requested != generation) return;
+                        Log.d(TAG, "Loaded route of " + sorted.size() + " points for " + userId);
+                        route = sorted;
+                        simplifiedByBand.clear();
+                        pendingBand = -1;
+                        shownBand = -1;
+                        onCameraIdle(map.getCameraPosition().zoom);
+                    });
+                }))
+                .addOnFailureListener(e -> Log.e(TAG, "Failed to load route for " + userId, e));
+    }
+
+    /**
+     * Switches to the simplification for the new zoom, computing it first if this band was not seen yet.
+     */
+    public void onCameraIdle(float zoom) {
+        if (route == null) return;
+        int band = RouteSimplifier.zoomBand(zoom);
+        if (band == shownBand) return;
+        List<LatLng> cached = simplifiedByBand.get(band);
+        if (cached != null) {
+            draw(band, cached);
+            return;
+        }
+        if (band == pendingBand) return;
+        pendingBand = band;
+        int requested = generation;
+        List<RouteSimplifier.Point> points = route;
+        simplifier.execute(() -> {
+            long start = SystemClock.elapsedRealtime();
+            List<RouteSimplifier.Point> simplified = RouteSimplifier.simplify(points, band);
+            List<LatLng> line = new ArrayList<>(simplified.size());
+            for (RouteSimplifier.Point point : simplified) {
+                line.add(new LatLng(point.latitude, point.longitude));
+            }
+            MetricsRegistry.get().histogram("map.route_simplify_ms").record(SystemClock.elapsedRealtime() - start);
+            handler.post(() -> {
+                if (requested != generation) return;
+                simplifiedByBand.put(band, line);
+                if (pendingBand == band) pendingBand = -1;
+                // The camera may have moved on while this band was computed
+                if (band == RouteSimplifier.zoomBand(map.getCameraPosition().zoom)) {
+                    draw(band, line);
+                }
+            });
+        });
+    }
+
+    /**
+     * Removes the route from the map; results still being computed are dropped.
+     */
+    public void remove() {
+        generation++;
+        route = null;
+        simplifiedByBand.clear();
+        pendingBand = -1;
+        shownBand = -1;
+        if (polyline != null) {
+            polyline.remove();
+            polyline = null;
+        }
+    }
+
+    private void draw(int band, List<LatLng> line) {
+        shownBand = band;
+        MetricsRegistry.get().histogram("map.route_points").record(line.size());
+        if (polyline == null) {
+            // Beneath the markers
+            polyline = map.addPolyline(new PolylineOptions()
+                    .addAll(line)
+                    .color(color)
+                    .width(WIDTH_PIXELS)
+                    .jointType(JointType.ROUND)
+                    .zIndex(-1));
+        } else {
+            polyline.setPoints(line);
+        }
+    }
+}
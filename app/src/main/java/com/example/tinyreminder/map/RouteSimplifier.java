@@ -0,0 +1,145 @@
+package com.example.tinyreminder.map;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Reduces a recorded route to the points that are visible at a zoom level, using
+ * Douglas-Peucker simplification. Plain Java, so it can run on any thread.
+ *
+ * Distances are measured in Web Mercator world coordinates, the projection the map draws in,
+ * so the tolerance is a fixed number of screen pixels at every zoom level and a route keeps
+ * about as many points as it spans pixels on screen, however many were recorded.
+ */
+public final class RouteSimplifier {
+    /** Points closer than this to the simplified line are dropped. */
+    static final double TOLERANCE_PIXELS = 1.5;
+    /** Upper bound on the points of a simplified route; beyond it the least visible points are dropped. */
+    static final int MAX_POINTS = 1000;
+    private static final int MAX_ZOOM_BAND = 21;
+    private static final int TILE_PIXELS = 256;
+
+    private RouteSimplifier() {
+    }
+
+    /**
+     * One recorded location.
+     */
+    public static class Point {
+        public final double latitude;
+        public final double longitude;
+        public final long time;
+
+        public Point(double latitude, double longitude, long time) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.time = time;
+        }
+    }
+
+    /**
+     * @return The whole zoom level a camera zoom falls in; routes simplified for a band look
+     *         the same at every zoom inside it.
+     */
+    public static int zoomBand(float zoom) {
+        return Math.max(0, Math.min(MAX_ZOOM_BAND, (int) Math.floor(zoom)));
+    }
+
+    /**
+     * @param points Route in time order.
+     * @param band   Zoom band from {@link #zoomBand(float)}.
+     * @return The points to draw at that band, always including the first and last.
+     */
+    public static List<Point> simplify(List<Point> points, int band) {
+        double tolerance = TOLERANCE_PIXELS / (TILE_PIXELS * Math.pow(2, band));
+        return simplify(points, tolerance, MAX_POINTS);
+    }
+
+    /**
+     * Douglas-Peucker that splits the segment with the farthest outlier first and stops once
+     * {@code maxPoints} are kept, so the most visible points survive the cap. Each split scans
+     * only its own segment, bounding the work at maxPoints passes over the route even for
+     * noisy input where plain Douglas-Peucker degrades to quadratic time.
+     */
+    static List<Point> simplify(List<Point> points, double tolerance, int maxPoints) {
+        int n = points.size();
+        if (n < 3) return new ArrayList<>(points);
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = GridClusterer.worldX(points.get(i).longitude);
+            y[i] = GridClusterer.worldY(points.get(i).latitude);
+        }
+
+        boolean[] keep = new boolean[n];
+        keep[0] = true;
+        keep[n - 1] = true;
+        int kept = 2;
+        double toleranceSquared = tolerance * tolerance;
+        PriorityQueue<Segment> segments = new PriorityQueue<>();
+        Segment whole = Segment.of(0, n - 1, x, y, toleranceSquared);
+        if (whole != null) segments.add(whole);
+        while (!segments.isEmpty() && kept < maxPoints) {
+            Segment segment = segments.poll();
+            keep[segment.farthest] = true;
+            kept++;
+            Segment before = Segment.of(segment.first, segment.farthest, x, y, toleranceSquared);
+            Segment after = Segment.of(segment.farthest, segment.last, x, y, toleranceSquared);
+            if (before != null) segments.add(before);
+            if (after != null) segments.add(after);
+        }
+
+        List<Point> simplified = new ArrayList<>(kept);
+        for (int i = 0; i < n; i++) {
+            if (keep[i]) simplified.add(points.get(i));
+        }
+        return simplified;
+    }
+
+    // A stretch of the route whose farthest point from its chord is beyond the tolerance
+    private static class Segment implements Comparable<Segment> {
+        final int first;
+        final int last;
+        final int farthest;
+        final double distanceSquared;
+
+        private Segment(int first, int last, int farthest, double distanceSquared) {
+            this.first = first;
+            this.last = last;
+            this.farthest = farthest;
+            this.distanceSquared = distanceSquared;
+        }
+
+        // Null when every point between first and last is within the tolerance
+        static Segment of(int first, int last, double[] x, double[] y, double toleranceSquared) {
+            int farthest = -1;
+            double farthestDistance = toleranceSquared;
+            for (int i = first + 1; i < last; i++) {
+                double distance = segmentDistanceSquared(x[i], y[i], x[first], y[first], x[last], y[last]);
+                if (distance > farthestDistance) {
+                    farthest = i;
+                    farthestDistance = distance;
+                }
+            }
+            return farthest < 0 ? null : new Segment(first, last, farthest, farthestDistance);
+        }
+
+        @Override
+        public int compareTo(Segment other) {
+            // Farthest outlier first
+            return Double.compare(other.distanceSquared, distanceSquared);
+        }
+    }
+
+    private static double segmentDistanceSquared(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : ((px - ax) * dx + (py - ay) * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        double ex = px - (ax + t * dx);
+        double ey = py - (ay + t * dy);
+        return ex * ex + ey * ey;
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.tinyreminder.metrics;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free log-linear histogram in the style of HdrHistogram: values below 32 get exact
+ * buckets, larger values get 32 sub-buckets per power of two (about 3% relative error).
+ * Units are up to the caller; the app records microseconds unless the name says otherwise.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKETS = 32;
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int MAX_SHIFT = 40;
+    private static final int BUCKET_COUNT = SUB_BUCKETS + (MAX_SHIFT + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalSum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value) {
+        if (value < 0) value = 0;
+        counts.incrementAndGet(indexOf(value));
+        totalCount.increment();
+        totalSum.add(value);
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    public long getCount() {
+        return totalCount.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long count = totalCount.sum();
+        return count == 0 ? 0 : (double) totalSum.sum() / count;
+    }
+
+    /**
+     * @param quantile Between 0 and 1, e.g. 0.99.
+     * @return The lower bound of the bucket holding the quantile, or 0 when empty.
+     */
+    public long getValueAtQuantile(double quantile) {
+        long count = totalCount.sum();
+        if (count == 0) return 0;
+        long target = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(lowerBoundOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public String summary() {
+        return String.format(Locale.US, "n=%d mean=%.0f p50=%d p90=%d p99=%d max=%d",
+                getCount(), getMean(), getValueAtQuantile(0.5), getValueAtQuantile(0.9),
+                getValueAtQuantile(0.99), getMax());
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        if (shift > MAX_SHIFT) return BUCKET_COUNT - 1;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+    }
+
+    static long lowerBoundOf(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+        int subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + subBucket) << shift;
+    }
+}
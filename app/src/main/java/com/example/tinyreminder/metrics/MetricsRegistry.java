@@ -0,0 +1,109 @@
+package com.example.tinyreminder.metrics;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide registry of data-layer operation stats, named counters and histograms.
+ * Recording is lock-free; {@link #dump()} renders everything as text and
+ * {@link #startPeriodicExport(Context, long)} writes that text to a local file.
+ */
+public class MetricsRegistry {
+    private static final String TAG = "MetricsRegistry";
+    private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+    public static final long DEFAULT_EXPORT_PERIOD_MS = 5 * 60 * 1000; // 5 minutes
+
+    private final ConcurrentHashMap<String, OperationStats> operations = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private ScheduledExecutorService exporter;
+
+    public static MetricsRegistry get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Records one data-layer operation.
+     *
+     * @param pathTemplate  Path with ids replaced, see {@link PathTemplates}.
+     * @param operation     Operation name, e.g. "set" or "read".
+     * @param payloadBytes  Estimated payload size.
+     * @param latencyMicros Completion latency, or -1 if not applicable (listener fires).
+     * @param success       Whether the operation succeeded.
+     */
+    public void recordOperation(String pathTemplate, String operation, long payloadBytes, long latencyMicros, boolean success) {
+        getOperation(pathTemplate, operation).record(payloadBytes, latencyMicros, success);
+    }
+
+    public OperationStats getOperation(String pathTemplate, String operation) {
+        return operations.computeIfAbsent(operation + " " + pathTemplate, key -> new OperationStats());
+    }
+
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    /**
+     * @return All operations, counters and histograms, one per line, sorted by name.
+     */
+    public String dump() {
+        StringBuilder out = new StringBuilder();
+        out.append("# data layer operations\n");
+        for (Map.Entry<String, OperationStats> entry : new TreeMap<>(operations).entrySet()) {
+            out.append(entry.getKey()).append(": ").append(entry.getValue().summary()).append('\n');
+        }
+        out.append("# counters\n");
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(counters).entrySet()) {
+            out.append(entry.getKey()).append(": ").append(entry.getValue().sum()).append('\n');
+        }
+        out.append("# histograms\n");
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(histograms).entrySet()) {
+            out.append(entry.getKey()).append(": ").append(entry.getValue().summary()).append('\n');
+        }
+        return out.toString();
+    }
+
+    /**
+     * Starts writing {@link #dump()} to files/metrics/data_layer.txt every period.
+     * Safe to call repeatedly; only the first call starts the exporter.
+     */
+    public synchronized void startPeriodicExport(Context context, long periodMillis) {
+        if (exporter != null) return;
+        File file = new File(new File(context.getApplicationContext().getFilesDir(), "metrics"), "data_layer.txt");
+        exporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "MetricsExporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        exporter.scheduleWithFixedDelay(() -> exportTo(file), periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void exportTo(File file) {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            Log.e(TAG, "Could not create metrics directory: " + parent);
+            return;
+        }
+        try (FileWriter writer = new FileWriter(file, false)) {
+            writer.write("# exported at " + System.currentTimeMillis() + "\n");
+            writer.write(dump());
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to export metrics", e);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.tinyreminder.metrics;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for one (path template, operation) pair.
+ */
+public class OperationStats {
+    private final LongAdder count = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LatencyHistogram latencyMicros = new LatencyHistogram();
+
+    void record(long payloadBytes, long latencyMicros, boolean success) {
+        count.increment();
+        bytes.add(payloadBytes);
+        if (!success) failures.increment();
+        if (latencyMicros >= 0) this.latencyMicros.record(latencyMicros);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    public LatencyHistogram getLatencyMicros() {
+        return latencyMicros;
+    }
+
+    String summary() {
+        String line = String.format(Locale.US, "count=%d fail=%d bytes=%d", getCount(), getFailures(), getBytes());
+        if (latencyMicros.getCount() > 0) {
+            line += " latency_us[" + latencyMicros.summary() + "]";
+        }
+        return line;
+    }
+}
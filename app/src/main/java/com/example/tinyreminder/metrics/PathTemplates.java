@@ -0,0 +1,121 @@
+package com.example.tinyreminder.metrics;
+
+import com.example.tinyreminder.backend.BeanMapper;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Turns concrete database paths into templates, e.g. "users/abc/status" into "users/$id/status",
+ * so stats aggregate per access pattern instead of per record.
+ */
+public final class PathTemplates {
+    // Nodes whose children are keyed by an id, and how many levels of ids follow them
+    private static final Map<String, Integer> COLLECTIONS = new HashMap<>();
+
+    static {
+        COLLECTIONS.put("users", 1);
+        COLLECTIONS.put("families", 1);
+        COLLECTIONS.put("parkingEvents", 1);
+        COLLECTIONS.put("memberIds", 1);
+        COLLECTIONS.put("adminIds", 1);
+        COLLECTIONS.put("memberLocations", 1);
+        COLLECTIONS.put("notifications", 1);
+        COLLECTIONS.put("memberTokens", 1);
+        COLLECTIONS.put("alerts", 1);
+        COLLECTIONS.put("deliveries", 1);
+        // watchers/$member/$viewer
+        COLLECTIONS.put("watchers", 2);
+        // locationHistory/$family/$member/$hourBucket/$point
+        COLLECTIONS.put("locationHistory", 4);
+        // parkingHotspots/$family/$geohash
+        COLLECTIONS.put("parkingHotspots", 2);
+    }
+
+    private PathTemplates() {
+    }
+
+    /**
+     * Registers another collection node name so its children are templated too.
+     */
+    public static void addCollection(String name) {
+        addCollection(name, 1);
+    }
+
+    /**
+     * Registers a collection node whose children are nested {@code idLevels} deep,
+     * e.g. 2 for "watchers/$member/$viewer".
+     */
+    public static synchronized void addCollection(String name, int idLevels) {
+        COLLECTIONS.put(name, idLevels);
+    }
+
+    public static String of(String path) {
+        StringBuilder template = new StringBuilder();
+        int idsToTemplate = 0;
+        for (String segment : path.split("/")) {
+            if (segment.isEmpty()) continue;
+            if (template.length() > 0) template.append('/');
+            if (idsToTemplate > 0) {
+                template.append("$id");
+                idsToTemplate--;
+            } else {
+                template.append(segment);
+                idsToTemplate = idLevelsOf(segment);
+            }
+        }
+        return template.length() == 0 ? "/" : template.toString();
+    }
+
+    /**
+     * Template for a multi-path update: the distinct child templates joined by commas.
+     */
+    public static String ofUpdate(String basePath, Map<String, Object> updates) {
+        Set<String> templates = new TreeSet<>();
+        for (String key : updates.keySet()) {
+            templates.add(of(basePath + "/" + key));
+        }
+        return String.join(",", templates);
+    }
+
+    private static synchronized int idLevelsOf(String segment) {
+        Integer levels = COLLECTIONS.get(segment);
+        return levels != null ? levels : 0;
+    }
+
+    /**
+     * Rough serialized size of a database value: strings, numbers, booleans, nested maps and
+     * objects, which are sized by the properties Firebase would write for them.
+     */
+    public static long estimateBytes(Object value) {
+        if (value == null) return 4;
+        if (value instanceof String) return ((String) value).length() + 2;
+        if (value instanceof Enum) return ((Enum<?>) value).name().length() + 2;
+        if (value instanceof Boolean) return 5;
+        if (value instanceof Number) return 8;
+        if (value instanceof Map) {
+            long total = 2;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                total += String.valueOf(entry.getKey()).length() + 3 + estimateBytes(entry.getValue());
+            }
+            return total;
+        }
+        if (value instanceof Collection) {
+            long total = 2;
+            for (Object item : (Collection<?>) value) {
+                total += estimateBytes(item) + 1;
+            }
+            return total;
+        }
+        // POJOs such as User and Family are written as a map of their bean properties
+        try {
+            return estimateBytes(BeanMapper.toMap(value));
+        } catch (IllegalArgumentException e) {
+            // Firebase would refuse the write too; it still has to be counted
+            return 0;
+        }
+    }
+}
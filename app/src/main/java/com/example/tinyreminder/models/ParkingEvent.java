@@ -45,6 +45,18 @@ public class ParkingEvent {
         return status; // Get the event status
     }
 
+    public long getTimestamp() {
+        return timestamp; // Get the creation timestamp
+    }
+
+    public double getLatitude() {
+        return latitude; // Get the parking latitude
+    }
+
+    public double getLongitude() {
+        return longitude; // Get the parking longitude
+    }
+
     // Method to convert the object to a map for Firebase database
     public Map<String, Object> toMap() {
         HashMap<String, Object> result = new HashMap<>();
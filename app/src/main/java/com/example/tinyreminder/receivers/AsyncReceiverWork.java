@@ -0,0 +1,84 @@
+package com.example.tinyreminder.receivers;
+
+import android.content.BroadcastReceiver;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.tinyreminder.metrics.MetricsRegistry;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Keeps a receiver's process alive through goAsync() until its database writes complete,
+ * bounded by a deadline below the system's broadcast timeout.
+ *
+ * The body runs on a shared background executor; it must call {@link #finish(boolean)} when
+ * its last write completes. Time from onReceive to finish is recorded as
+ * receiver.{name}.latency_ms, with succeeded/failed/timed_out counters.
+ */
+public final class AsyncReceiverWork {
+    private static final String TAG = "AsyncReceiverWork";
+    // Broadcasts are considered hung after 10 s; leave room for finish() itself
+    public static final long DEADLINE_MS = 9_000;
+
+    private static final ScheduledExecutorService executor = Executors.newScheduledThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "ReceiverWork");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final BroadcastReceiver.PendingResult pendingResult;
+    private final String name;
+    private final long startMillis = SystemClock.elapsedRealtime();
+    private final AtomicBoolean finished = new AtomicBoolean();
+    private final ScheduledFuture<?> deadline;
+
+    private AsyncReceiverWork(BroadcastReceiver.PendingResult pendingResult, String name) {
+        this.pendingResult = pendingResult;
+        this.name = name;
+        this.deadline = executor.schedule(this::onDeadline, DEADLINE_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Must be called from onReceive.
+     *
+     * @param receiver The receiver whose broadcast is being handled.
+     * @param name     Metric name for this kind of work.
+     * @param body     Starts the work; runs on the shared executor.
+     */
+    public static void start(BroadcastReceiver receiver, String name, Consumer<AsyncReceiverWork> body) {
+        AsyncReceiverWork work = new AsyncReceiverWork(receiver.goAsync(), name);
+        executor.execute(() -> {
+            try {
+                body.accept(work);
+            } catch (RuntimeException e) {
+                Log.e(TAG, name + " failed", e);
+                work.finish(false);
+            }
+        });
+    }
+
+    /**
+     * Releases the broadcast. Only the first call, or the deadline, takes effect.
+     */
+    public void finish(boolean success) {
+        if (!finished.compareAndSet(false, true)) return;
+        deadline.cancel(false);
+        MetricsRegistry metrics = MetricsRegistry.get();
+        metrics.histogram("receiver." + name + ".latency_ms").record(SystemClock.elapsedRealtime() - startMillis);
+        metrics.counter("receiver." + name + (success ? ".succeeded" : ".failed")).increment();
+        pendingResult.finish();
+    }
+
+    private void onDeadline() {
+        if (!finished.compareAndSet(false, true)) return;
+        Log.w(TAG, name + " did not finish within " + DEADLINE_MS + " ms");
+        MetricsRegistry.get().counter("receiver." + name + ".timed_out").increment();
+        pendingResult.finish();
+    }
+}
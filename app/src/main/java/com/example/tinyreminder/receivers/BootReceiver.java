@@ -4,14 +4,24 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Build;
+import com.example.tinyreminder.escalation.EscalationManager;
+import com.example.tinyreminder.escalation.OfflineAlarm;
 import com.example.tinyreminder.services.LocationUpdateService;
 import com.example.tinyreminder.services.ParkingDetectionService;
+import com.example.tinyreminder.utils.DurableWriteQueue;
 
 public class BootReceiver extends BroadcastReceiver {
     @Override
     public void onReceive(Context context, Intent intent) {
         // Check if the received broadcast is for device boot completion
         if (Intent.ACTION_BOOT_COMPLETED.equals(intent.getAction())) {
+            // Alarms do not survive a reboot; reload pending escalations and re-arm
+            EscalationManager.get(context);
+            // Replay writes queued before the reboot
+            DurableWriteQueue.get(context);
+            // Notifications do not survive a reboot either; show unanswered alarms again
+            OfflineAlarm.get(context);
+
             // Create intents for the services that need to be started after boot
             Intent locationServiceIntent = new Intent(context, LocationUpdateService.class);
             Intent parkingDetectionServiceIntent = new Intent(context, ParkingDetectionService.class);
@@ -11,7 +11,10 @@ import com.google.android.gms.tasks.Task;
 
 import android.widget.Toast;
 
+import com.example.tinyreminder.escalation.EscalationManager;
 import com.example.tinyreminder.utils.DatabaseManager;
+import com.example.tinyreminder.utils.NotificationHelper;
+import com.example.tinyreminder.utils.NotificationRegistry;
 
 public class NotificationActionReceiver extends BroadcastReceiver {
     private static final String TAG = "NotificationActionReceiver";
@@ -34,56 +37,34 @@ public class NotificationActionReceiver extends BroadcastReceiver {
             return;
         }
 
-        // Initialize the DatabaseManager for interacting with the database
-        DatabaseManager dbManager = new DatabaseManager(context);
-
-        // Handle the actions for confirming or canceling the event
-        if ("ACTION_CONFIRM".equals(action) || "ACTION_CANCEL".equals(action)) {
-            String newStatus = action.equals("ACTION_CONFIRM") ? "CHILD_PRESENT" : "CHILD_NOT_PRESENT";
-            dbManager.updateParkingEventStatus(eventId, newStatus, task -> {
-                if (task.isSuccessful()) {
-                    Log.d(TAG, "Parking event status updated to: " + newStatus);
-                    // Update the user's status and proceed to delete the parking event
-                    updateUserStatus(context, dbManager, userId, eventId, notificationId, newStatus);
-                } else {
-                    Log.e(TAG, "Failed to update parking event status", task.getException());
-                    showToast(context, "Failed to update event status. Please try again.");
-                }
-            });
-        } else {
+        if (!"ACTION_CONFIRM".equals(action) && !"ACTION_CANCEL".equals(action)) {
             Log.w(TAG, "Received unknown action: " + action);
+            return;
         }
-    }
 
-    // Method to update the user's status to "OK" after the event action is handled
-    private void updateUserStatus(Context context, DatabaseManager dbManager, String userId, String eventId, int notificationId, String eventStatus) {
-        dbManager.setUserStatus(userId, "OK").addOnCompleteListener(statusTask -> {
-            if (statusTask.isSuccessful()) {
-                Log.d(TAG, "User status updated to OK");
-                // After updating the status, delete the parking event
-                deleteParkingEvent(context, dbManager, eventId, notificationId, eventStatus);
-            } else {
-                Log.e(TAG, "Failed to update user status", statusTask.getException());
-                showToast(context, "Failed to update user status. Please check the app.");
-            }
-        });
-    }
+        // Handle the actions for confirming or canceling the event. The answer is queued durably
+        // first, then applied locally right away; the backend catches up in the background
+        String newStatus = action.equals("ACTION_CONFIRM") ? "CHILD_PRESENT" : "CHILD_NOT_PRESENT";
+        DatabaseManager dbManager = new DatabaseManager(context);
+        Task<Void> answer = dbManager.queueParkingEventAnswer(eventId, userId, newStatus);
+
+        // The driver answered, so no further escalation steps should run
+        EscalationManager.get(context).cancel(eventId);
+        cancelNotification(context, eventId, notificationId);
+        showToast(context, newStatus.equals("CHILD_PRESENT") ? "Child is present" : "Child is not present");
+        notifyFamilyFragment(context);
 
-    // Method to delete the parking event from the database after handling the action
-    private void deleteParkingEvent(Context context, DatabaseManager dbManager, String eventId, int notificationId, String eventStatus) {
-        dbManager.deleteParkingEvent(eventId).addOnCompleteListener(deleteTask -> {
-            if (deleteTask.isSuccessful()) {
-                Log.d(TAG, "Parking event deleted successfully");
-                // Cancel the notification related to the event
-                cancelNotification(context, notificationId);
-                showToast(context, eventStatus.equals("CHILD_PRESENT") ? "Child is present" : "Child is not present");
-                // Notify the FamilyFragment if necessary
-                notifyFamilyFragment(context);
-            } else {
-                Log.e(TAG, "Failed to delete parking event", deleteTask.getException());
-                showToast(context, "Failed to delete parking event. Please check the app.");
-            }
-        });
+        // Keep the process alive while the queued answer is sent, up to the receiver deadline
+        AsyncReceiverWork.start(this, "notification_action", work ->
+                answer.addOnCompleteListener(task -> {
+                    if (task.isSuccessful()) {
+                        Log.d(TAG, "Parking event answer saved: " + newStatus);
+                    } else {
+                        // The write queue's reconciler shows the reminder again
+                        Log.e(TAG, "Failed to save parking event answer", task.getException());
+                    }
+                    work.finish(task.isSuccessful());
+                }));
     }
 
     // Method to notify the FamilyFragment (implementation needed based on app's structure)
@@ -92,7 +73,12 @@ public class NotificationActionReceiver extends BroadcastReceiver {
     }
 
     // Method to cancel the notification after the event has been handled
-    private void cancelNotification(Context context, int notificationId) {
+    private void cancelNotification(Context context, String eventId, int notificationId) {
+        if (NotificationRegistry.get(context).find(eventId) != null) {
+            NotificationHelper.cancelParkingNotification(context, eventId);
+            return;
+        }
+        // Notification posted before the registry existed; fall back to the id from the intent
         NotificationManager notificationManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
         notificationManager.cancel(notificationId);
         Log.d(TAG, "Notification cancelled: " + notificationId);
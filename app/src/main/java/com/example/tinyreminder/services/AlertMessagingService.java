@@ -0,0 +1,72 @@
+package com.example.tinyreminder.services;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.example.tinyreminder.escalation.AcknowledgementWatcher;
+import com.example.tinyreminder.metrics.MetricsRegistry;
+import com.example.tinyreminder.utils.DatabaseManager;
+import com.example.tinyreminder.utils.NotificationHelper;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.messaging.FirebaseMessagingService;
+import com.google.firebase.messaging.RemoteMessage;
+
+import java.util.Map;
+
+/**
+ * Receives family alerts pushed by the dispatchFamilyAlert function and keeps the
+ * device's FCM token up to date in the database.
+ */
+public class AlertMessagingService extends FirebaseMessagingService {
+    private static final String TAG = "AlertMessagingService";
+    // Matches the alert's FCM time to live; after that the escalation is over
+    private static final long ALERT_WATCH_MS = 10 * 60 * 1000;
+
+    @Override
+    public void onNewToken(@NonNull String token) {
+        FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
+        if (currentUser != null) {
+            new DatabaseManager(this).saveFcmToken(currentUser.getUid(), token);
+        }
+    }
+
+    @Override
+    public void onMessageReceived(@NonNull RemoteMessage message) {
+        Map<String, String> data = message.getData();
+        if (!"family_alert".equals(data.get("type"))) {
+            Log.w(TAG, "Ignoring message of type: " + data.get("type"));
+            return;
+        }
+
+        FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
+        if (currentUser == null) {
+            Log.w(TAG, "Family alert received while signed out");
+            return;
+        }
+        String userId = currentUser.getUid();
+        String eventId = data.get("eventId");
+        NotificationHelper.showFamilyAlert(this, userId, eventId, data.get("senderId"), data.get("senderName"));
+        if (eventId != null && !eventId.isEmpty()) {
+            // Clear the alert as soon as anyone answers; best effort, for as long as the process lives
+            AcknowledgementWatcher.get(this).watch(eventId, ALERT_WATCH_MS);
+        }
+
+        // Measure alert creation on the sender to display here, both on the server clock
+        DatabaseManager dbManager = new DatabaseManager(this);
+        long now = dbManager.getConnectionMonitor().serverTimeMillis();
+        String createdAt = data.get("createdAt");
+        if (createdAt != null && !createdAt.isEmpty()) {
+            try {
+                MetricsRegistry.get().histogram("push.alert_delivery_ms").record(Math.max(0, now - Long.parseLong(createdAt)));
+            } catch (NumberFormatException e) {
+                Log.w(TAG, "Invalid createdAt in family alert: " + createdAt);
+            }
+        }
+        String alertId = data.get("alertId");
+        if (alertId != null) {
+            dbManager.recordAlertDelivery(alertId, userId, now);
+        }
+    }
+}
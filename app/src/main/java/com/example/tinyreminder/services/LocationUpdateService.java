@@ -3,9 +3,6 @@ package com.example.tinyreminder.services;
 import static android.content.ContentValues.TAG;
 
 import android.app.Notification;
-import android.app.NotificationChannel;
-import android.app.NotificationManager;
-import android.app.PendingIntent;
 import android.app.Service;
 import android.content.Intent;
 import android.content.pm.PackageManager;
@@ -17,13 +14,11 @@ import android.os.Looper;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
-import androidx.core.app.NotificationCompat;
 import androidx.core.content.ContextCompat;
 import android.Manifest;
 import android.util.Log;
 
-import com.example.tinyreminder.MainActivity;
-import com.example.tinyreminder.R;
+import com.example.tinyreminder.map.LocationFreshness;
 import com.example.tinyreminder.models.User;
 import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.LocationCallback;
@@ -31,27 +26,36 @@ import com.google.android.gms.location.LocationRequest;
 import com.google.android.gms.location.LocationResult;
 import com.google.android.gms.location.LocationServices;
 import com.example.tinyreminder.utils.DatabaseManager;
+import com.example.tinyreminder.utils.NotificationDispatcher;
+import com.example.tinyreminder.backend.BackendError;
+import com.example.tinyreminder.backend.ListenerRegistration;
+import com.example.tinyreminder.backend.Snapshot;
+import com.example.tinyreminder.backend.ValueListener;
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.ValueEventListener;
 
 public class LocationUpdateService extends Service {
 
     private static final int NOTIFICATION_ID = 1;
-    private static final String CHANNEL_ID = "LocationServiceChannel";
+    // Near real time while someone follows this device on their map
+    private static final long WATCHED_INTERVAL_MS = 2000;
+    private static final long WATCHED_FASTEST_INTERVAL_MS = 1000;
+    // Low power cadence while nobody is looking; the map's freshness tiers are counted in it
+    private static final long IDLE_INTERVAL_MS = LocationFreshness.IDLE_UPLOAD_INTERVAL_MS;
+    private static final long IDLE_FASTEST_INTERVAL_MS = IDLE_INTERVAL_MS / 2;
     private FusedLocationProviderClient fusedLocationClient;
     private LocationCallback locationCallback;
     private DatabaseManager dbManager;
     private String familyId;
+    private ListenerRegistration watchersRegistration;
+    private boolean watched;
+    private boolean updatesRequested;
+    private long lastUploadedFixTime;
 
     @Override
     public void onCreate() {
         super.onCreate();
-        // Create a notification channel for foreground service
-        createNotificationChannel();
-        // Build and start the notification
-        Notification notification = buildNotification();
+        // The tracking notification is shared with ParkingDetectionService; its channel already exists
+        Notification notification = NotificationDispatcher.get(this).getTrackingNotification();
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
             startForeground(NOTIFICATION_ID, notification, ServiceInfo.FOREGROUND_SERVICE_TYPE_LOCATION);
         }
@@ -61,6 +65,8 @@ public class LocationUpdateService extends Service {
         dbManager = new DatabaseManager(this);
         // Fetch the user's family ID from the database
         getUserFamilyId();
+        // Follow who is watching this device to pick the upload rate
+        watchWatchers();
 
         // Define the callback to handle location updates
         locationCallback = new LocationCallback() {
@@ -81,9 +87,9 @@ public class LocationUpdateService extends Service {
     private void getUserFamilyId() {
         String userId = getUserId();
         if (userId != null) {
-            dbManager.getUserData(userId, new ValueEventListener() {
+            dbManager.getUserData(userId, new ValueListener() {
                 @Override
-                public void onDataChange(@NonNull DataSnapshot snapshot) {
+                public void onDataChange(@NonNull Snapshot snapshot) {
                     User user = snapshot.getValue(User.class);
                     if (user != null) {
                         familyId = user.getFamilyId(); // Store the family ID
@@ -91,13 +97,35 @@ public class LocationUpdateService extends Service {
                 }
 
                 @Override
-                public void onCancelled(@NonNull DatabaseError error) {
+                public void onCancelled(@NonNull BackendError error) {
                     Log.e(TAG, "Error fetching user data: ", error.toException());
                 }
             });
         }
     }
 
+    private void watchWatchers() {
+        String userId = getUserId();
+        if (userId == null) return;
+        watchersRegistration = dbManager.getWatchers(userId, new ValueListener() {
+            @Override
+            public void onDataChange(@NonNull Snapshot snapshot) {
+                boolean nowWatched = snapshot.getChildrenCount() > 0;
+                if (nowWatched == watched) return;
+                watched = nowWatched;
+                Log.d(TAG, "Watchers changed, watched: " + watched);
+                if (updatesRequested) {
+                    requestLocationUpdates();
+                }
+            }
+
+            @Override
+            public void onCancelled(@NonNull BackendError error) {
+                Log.e(TAG, "Error watching watchers: ", error.toException());
+            }
+        });
+    }
+
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
         // Check for location permissions and start requesting location updates
@@ -109,16 +137,24 @@ public class LocationUpdateService extends Service {
     }
 
     // Method to request location updates from the fused location provider
+    // Calling it again replaces the previous request, e.g. when the device starts or stops being watched
     private void requestLocationUpdates() {
         LocationRequest locationRequest = LocationRequest.create();
-        locationRequest.setInterval(10000); // 10 seconds
-        locationRequest.setFastestInterval(5000); // Fastest interval of 5 seconds
-        locationRequest.setPriority(LocationRequest.PRIORITY_HIGH_ACCURACY); // High accuracy priority
+        if (watched) {
+            locationRequest.setInterval(WATCHED_INTERVAL_MS);
+            locationRequest.setFastestInterval(WATCHED_FASTEST_INTERVAL_MS);
+            locationRequest.setPriority(LocationRequest.PRIORITY_HIGH_ACCURACY);
+        } else {
+            locationRequest.setInterval(IDLE_INTERVAL_MS);
+            locationRequest.setFastestInterval(IDLE_FASTEST_INTERVAL_MS);
+            locationRequest.setPriority(LocationRequest.PRIORITY_BALANCED_POWER_ACCURACY);
+        }
 
         try {
             fusedLocationClient.requestLocationUpdates(locationRequest,
                     locationCallback,
                     Looper.getMainLooper());
+            updatesRequested = true;
         } catch (SecurityException e) {
             e.printStackTrace();
         }
@@ -128,7 +164,10 @@ public class LocationUpdateService extends Service {
     private void updateLocationInFirebase(Location location) {
         String userId = getUserId();
         if (userId != null && familyId != null) {
-            dbManager.updateMemberLocation(userId, familyId, location.getLatitude(), location.getLongitude())
+            // Batched deliveries can repeat a fix that was already sent
+            if (location.getTime() <= lastUploadedFixTime) return;
+            lastUploadedFixTime = location.getTime();
+            dbManager.updateMemberLocation(userId, familyId, location.getLatitude(), location.getLongitude(), location.getTime())
                     .addOnSuccessListener(aVoid -> {
                         // Broadcast an intent to notify other components of the location update
                         Intent intent = new Intent("com.example.tinyreminder.FAMILY_STATUS_CHANGED");
@@ -138,37 +177,14 @@ public class LocationUpdateService extends Service {
         }
     }
 
-    // Method to create the notification channel for the service
-    private void createNotificationChannel() {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            NotificationChannel serviceChannel = new NotificationChannel(
-                    CHANNEL_ID,
-                    "Location Service Channel",
-                    NotificationManager.IMPORTANCE_DEFAULT
-            );
-            NotificationManager manager = getSystemService(NotificationManager.class);
-            manager.createNotificationChannel(serviceChannel);
-        }
-    }
-
-    // Method to build the notification for the foreground service
-    private Notification buildNotification() {
-        Intent notificationIntent = new Intent(this, MainActivity.class);
-        PendingIntent pendingIntent = PendingIntent.getActivity(this, 0, notificationIntent, PendingIntent.FLAG_IMMUTABLE);
-
-        return new NotificationCompat.Builder(this, CHANNEL_ID)
-                .setContentTitle("Location Tracking")
-                .setContentText("Tracking your location")
-                .setSmallIcon(R.drawable.ic_notification)
-                .setContentIntent(pendingIntent)
-                .build();
-    }
-
     @Override
     public void onDestroy() {
         super.onDestroy();
         // Stop location updates when the service is destroyed
         fusedLocationClient.removeLocationUpdates(locationCallback);
+        if (watchersRegistration != null) {
+            watchersRegistration.remove();
+        }
     }
 
     @Nullable
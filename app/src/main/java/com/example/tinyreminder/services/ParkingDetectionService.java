@@ -1,9 +1,6 @@
 package com.example.tinyreminder.services;
 
 import android.app.Notification;
-import android.app.NotificationChannel;
-import android.app.NotificationManager;
-import android.app.PendingIntent;
 import android.app.Service;
 import android.content.Intent;
 import android.content.pm.ServiceInfo;
@@ -11,16 +8,21 @@ import android.location.Location;
 import android.os.Build;
 import android.os.IBinder;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
-import androidx.core.app.NotificationCompat;
 
-import com.example.tinyreminder.MainActivity;
-import com.example.tinyreminder.R;
+import com.example.tinyreminder.escalation.AlertContext;
+import com.example.tinyreminder.escalation.AlertContextLoader;
+import com.example.tinyreminder.escalation.EscalationManager;
+import com.example.tinyreminder.escalation.OfflineAlarm;
+import com.example.tinyreminder.metrics.MetricsRegistry;
 import com.example.tinyreminder.models.ParkingEvent;
 import com.example.tinyreminder.utils.DatabaseManager;
+import com.example.tinyreminder.utils.DurableWriteQueue;
+import com.example.tinyreminder.utils.NotificationDispatcher;
 import com.example.tinyreminder.utils.NotificationHelper;
 import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.LocationCallback;
@@ -28,6 +30,7 @@ import com.google.android.gms.location.LocationRequest;
 import com.google.android.gms.location.LocationResult;
 import com.google.android.gms.location.LocationServices;
 import com.google.android.gms.location.Priority;
+import com.google.android.gms.tasks.Task;
 import com.google.firebase.auth.FirebaseAuth;
 
 public class ParkingDetectionService extends Service {
@@ -39,7 +42,7 @@ public class ParkingDetectionService extends Service {
     private static final int LOCATION_INTERVAL = 5000; // 5 seconds
     private static final float MS_TO_KMH = 3.6f; // Conversion from m/s to km/h
     private static final int NOTIFICATION_ID = 1;
-    private static final String CHANNEL_ID = "LocationServiceChannel";
+    private static final long ALERT_CONTEXT_MAX_AGE = 10 * 60 * 1000; // 10 minutes in milliseconds
 
     // Enum to represent the state of the vehicle
     private enum VehicleState {
@@ -54,6 +57,7 @@ public class ParkingDetectionService extends Service {
     private Location lastLocation;
     private long stationaryStartTime;
     private float lastSpeed = 0f;
+    private volatile AlertContext alertContext; // Captured while the car is stopping
 
     private DatabaseManager dbManager;
 
@@ -62,12 +66,13 @@ public class ParkingDetectionService extends Service {
         super.onCreate();
         Log.d(TAG, "ParkingDetectionService onCreate called");
 
-        // Create a notification channel for foreground service
-        createNotificationChannel();
         dbManager = new DatabaseManager(this);
+        EscalationManager.get(this); // Reload pending escalations after a sticky restart
+        DurableWriteQueue.get(this); // Replay parking events that never reached the server
+        OfflineAlarm.get(this); // Sync alarms raised while offline once the connection returns
 
-        // Build the notification and start the service in the foreground
-        Notification notification = buildNotification();
+        // Start the service in the foreground with the shared tracking notification
+        Notification notification = NotificationDispatcher.get(this).getTrackingNotification();
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
             startForeground(NOTIFICATION_ID, notification, ServiceInfo.FOREGROUND_SERVICE_TYPE_LOCATION);
         }
@@ -78,30 +83,6 @@ public class ParkingDetectionService extends Service {
         startLocationUpdates();
     }
 
-    // Method to create a notification channel
-    private void createNotificationChannel() {
-        NotificationChannel serviceChannel = new NotificationChannel(
-                CHANNEL_ID,
-                "Location Service Channel",
-                NotificationManager.IMPORTANCE_DEFAULT
-        );
-        NotificationManager manager = getSystemService(NotificationManager.class);
-        manager.createNotificationChannel(serviceChannel);
-    }
-
-    // Method to build the notification for the foreground service
-    private Notification buildNotification() {
-        Intent notificationIntent = new Intent(this, MainActivity.class);
-        PendingIntent pendingIntent = PendingIntent.getActivity(this, 0, notificationIntent, PendingIntent.FLAG_IMMUTABLE);
-
-        return new NotificationCompat.Builder(this, CHANNEL_ID)
-                .setContentTitle("Location Tracking")
-                .setContentText("Tracking your location")
-                .setSmallIcon(R.drawable.ic_notification)
-                .setContentIntent(pendingIntent)
-                .build();
-    }
-
     // Method to create a location callback to handle location updates
     private void createLocationCallback() {
         locationCallback = new LocationCallback() {
@@ -148,6 +129,7 @@ public class ParkingDetectionService extends Service {
                 if (speed < PARKING_SPEED_THRESHOLD) {
                     currentState = VehicleState.POTENTIAL_PARKING;
                     stationaryStartTime = System.currentTimeMillis();
+                    prefetchAlertContext(location);
                     Log.d(TAG, "State changed to POTENTIAL_PARKING");
                 }
                 break;
@@ -186,25 +168,29 @@ public class ParkingDetectionService extends Service {
         return isSpeedLow && isStationaryLongEnough && hasNotMovedMuch;
     }
 
-    // Method to send a parking notification and create a parking event in the database
+    // Method to send a parking notification and create a parking event in the database.
+    // The reminder goes out first; the event is persisted in the background, so a weak signal
+    // at the parking spot never delays it
     private void sendParkingNotification() {
         String userId = getCurrentUserId();
         if (userId != null) {
+            long detectedAt = SystemClock.elapsedRealtime();
             Log.d(TAG, "Creating parking event for user: " + userId);
             ParkingEvent parkingEvent = new ParkingEvent(userId, System.currentTimeMillis(), lastLocation.getLatitude(), lastLocation.getLongitude());
-            dbManager.createParkingEvent(parkingEvent, task -> {
+            // Assigns the event id offline and queues the event with the PENDING user status
+            Task<Void> persisted = dbManager.queueParkingEvent(parkingEvent);
+            NotificationHelper.sendParkingNotification(this, userId, parkingEvent.getId());
+            attachAlertContext(userId, parkingEvent);
+            MetricsRegistry.get().histogram("parking.detect_to_reminder_ms").record(SystemClock.elapsedRealtime() - detectedAt);
+
+            persisted.addOnCompleteListener(task -> {
                 if (task.isSuccessful()) {
-                    Log.d(TAG, "Parking event created successfully");
-                    // Update user status to PENDING
-                    dbManager.setUserStatus(userId, "PENDING").addOnCompleteListener(statusTask -> {
-                        if (statusTask.isSuccessful()) {
-                            Log.d(TAG, "User status updated to PENDING");
-                            NotificationHelper.sendParkingNotification(this, userId, parkingEvent.getId());
-                        } else {
-                            Log.e(TAG, "Failed to update user status", statusTask.getException());
-                        }
-                    });
+                    Log.d(TAG, "Parking event " + parkingEvent.getId() + " persisted");
+                    dbManager.recordParkingHotspot(userId, parkingEvent.getLatitude(), parkingEvent.getLongitude())
+                            .addOnFailureListener(e -> Log.w(TAG, "Failed to count parking hotspot", e));
+                    MetricsRegistry.get().histogram("parking.detect_to_persist_ms").record(SystemClock.elapsedRealtime() - detectedAt);
                 } else {
+                    // The queue's reconciler has already told the driver their family cannot be alerted
                     Log.e(TAG, "Failed to create parking event", task.getException());
                 }
             });
@@ -213,6 +199,34 @@ public class ParkingDetectionService extends Service {
         }
     }
 
+    // Starts capturing the alert context while the car is stopping, so it is ready before any
+    // alert step can fire even if the signal drops at the parking spot
+    private void prefetchAlertContext(Location location) {
+        String userId = getCurrentUserId();
+        if (userId == null) return;
+        alertContext = null;
+        AlertContextLoader.load(dbManager, userId, location.getLatitude(), location.getLongitude(), loaded -> {
+            if (loaded != null) {
+                alertContext = loaded;
+            }
+        });
+    }
+
+    // Stores the prefetched alert context with the escalation, or loads it now if it is not ready
+    private void attachAlertContext(String userId, ParkingEvent parkingEvent) {
+        AlertContext prefetched = alertContext;
+        alertContext = null;
+        if (prefetched != null && System.currentTimeMillis() - prefetched.capturedAt < ALERT_CONTEXT_MAX_AGE) {
+            EscalationManager.get(this).attachContext(parkingEvent.getId(), prefetched);
+            return;
+        }
+        AlertContextLoader.load(dbManager, userId, parkingEvent.getLatitude(), parkingEvent.getLongitude(), loaded -> {
+            if (loaded != null) {
+                EscalationManager.get(this).attachContext(parkingEvent.getId(), loaded);
+            }
+        });
+    }
+
     // Helper method to get the current user's ID
     private String getCurrentUserId() {
         FirebaseAuth auth = FirebaseAuth.getInstance();
@@ -8,11 +8,10 @@ import android.util.Log;
 
 import androidx.annotation.NonNull;
 
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
+import com.example.tinyreminder.backend.BackendError;
+import com.example.tinyreminder.backend.DatabaseBackend;
+import com.example.tinyreminder.backend.Snapshot;
+import com.example.tinyreminder.backend.ValueListener;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -87,6 +86,7 @@ public class AvatarUtils {
 
     /**
      * Saves the avatar data (initials and color) to Firebase under the user's profile.
+     * The write is deferred while offline.
      *
      * @param userId   The ID of the user.
      * @param initials The initials to save.
@@ -98,11 +98,13 @@ public class AvatarUtils {
             return; // If the userId is invalid, log an error and return
         }
 
-        DatabaseReference userRef = FirebaseDatabase.getInstance().getReference("users").child(userId);
+        DatabaseBackend backend = DatabaseManager.getDefaultBackend();
         Map<String, Object> avatarData = new HashMap<>();
         avatarData.put("initials", initials);
         avatarData.put("color", color);
-        userRef.child("avatar").setValue(avatarData); // Save the avatar data under the user's profile
+        // Save the avatar data under the user's profile once the backend is reachable
+        ConnectionMonitor.forBackend(backend)
+                .writeWhenOnline("avatar/" + userId, () -> backend.setValue("users/" + userId + "/avatar", avatarData));
     }
 
     /**
@@ -127,10 +129,10 @@ public class AvatarUtils {
             return;
         }
 
-        DatabaseReference userRef = FirebaseDatabase.getInstance().getReference("users").child(userId);
-        userRef.child("avatar").addListenerForSingleValueEvent(new ValueEventListener() {
+        DatabaseBackend backend = DatabaseManager.getDefaultBackend();
+        backend.readOnce("users/" + userId + "/avatar", new ValueListener() {
             @Override
-            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+            public void onDataChange(@NonNull Snapshot dataSnapshot) {
                 if (dataSnapshot.exists()) {
                     String initials = dataSnapshot.child("initials").getValue(String.class);
                     Integer color = dataSnapshot.child("color").getValue(Integer.class);
@@ -145,7 +147,7 @@ public class AvatarUtils {
             }
 
             @Override
-            public void onCancelled(@NonNull DatabaseError databaseError) {
+            public void onCancelled(@NonNull BackendError databaseError) {
                 Log.e(TAG, "Error loading avatar data: " + databaseError.getMessage());
                 listener.onAvatarDataLoaded(null, 0); // Notify listener of the error
             }
@@ -0,0 +1,198 @@
+package com.example.tinyreminder.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.example.tinyreminder.backend.BackendError;
+import com.example.tinyreminder.backend.DatabaseBackend;
+import com.example.tinyreminder.backend.Snapshot;
+import com.example.tinyreminder.backend.ValueListener;
+import com.example.tinyreminder.metrics.MetricsRegistry;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.WeakHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+/**
+ * Tracks the backend connection through .info/connected and the clock skew through
+ * .info/serverTimeOffset, and holds back low-priority writes while offline.
+ *
+ * Deferred writes are keyed: a newer write with the same key replaces the queued one, so an
+ * offline device sends only its latest location or token once it reconnects. The queue is
+ * drained after a short random delay so a family's devices do not all flush at once.
+ */
+public class ConnectionMonitor {
+    private static final String TAG = "ConnectionMonitor";
+    private static final long MAX_DRAIN_JITTER_MS = 2000;
+    private static final Map<DatabaseBackend, ConnectionMonitor> monitors = new WeakHashMap<>();
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Random random = new Random();
+    private final List<ConnectionListener> listeners = new CopyOnWriteArrayList<>();
+    private final LinkedHashMap<String, DeferredWrite> deferred = new LinkedHashMap<>();
+
+    private volatile boolean online;
+    private volatile long serverTimeOffset;
+    private boolean everConnected;
+    private long offlineSince;
+
+    /**
+     * Listener notified on every online/offline transition, on the backend's callback thread.
+     */
+    public interface ConnectionListener {
+        void onConnectionChanged(boolean online);
+    }
+
+    private static class DeferredWrite {
+        Supplier<Task<Void>> write;
+        final TaskCompletionSource<Void> result = new TaskCompletionSource<>();
+    }
+
+    /**
+     * @return The monitor for the given backend, created and attached on first use.
+     */
+    public static synchronized ConnectionMonitor forBackend(DatabaseBackend backend) {
+        ConnectionMonitor monitor = monitors.get(backend);
+        if (monitor == null) {
+            monitor = new ConnectionMonitor(backend);
+            monitors.put(backend, monitor);
+        }
+        return monitor;
+    }
+
+    private ConnectionMonitor(DatabaseBackend backend) {
+        backend.addValueListener(".info/connected", new ValueListener() {
+            @Override
+            public void onDataChange(@NonNull Snapshot snapshot) {
+                Boolean connected = snapshot.getValue(Boolean.class);
+                setOnline(connected != null && connected);
+            }
+
+            @Override
+            public void onCancelled(@NonNull BackendError error) {
+                Log.e(TAG, "Connection state listener cancelled: " + error.getMessage());
+            }
+        });
+        backend.addValueListener(".info/serverTimeOffset", new ValueListener() {
+            @Override
+            public void onDataChange(@NonNull Snapshot snapshot) {
+                Long offset = snapshot.getValue(Long.class);
+                serverTimeOffset = offset != null ? offset : 0;
+            }
+
+            @Override
+            public void onCancelled(@NonNull BackendError error) {
+                Log.e(TAG, "Server time offset listener cancelled: " + error.getMessage());
+            }
+        });
+    }
+
+    public boolean isOnline() {
+        return online;
+    }
+
+    /**
+     * @return Estimated difference between the server clock and the local clock, in milliseconds.
+     */
+    public long getServerTimeOffset() {
+        return serverTimeOffset;
+    }
+
+    /**
+     * @return The local clock corrected by the server time offset.
+     */
+    public long serverTimeMillis() {
+        return System.currentTimeMillis() + serverTimeOffset;
+    }
+
+    /**
+     * Adds a listener and immediately reports the current state to it.
+     */
+    public void addListener(ConnectionListener listener) {
+        listeners.add(listener);
+        listener.onConnectionChanged(online);
+    }
+
+    public void removeListener(ConnectionListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Runs a low-priority write now if online, otherwise queues it until the connection returns.
+     * A queued write with the same key is replaced, and its callers get the result of the newer write.
+     *
+     * @param key   Identifies what is written, e.g. "location/" + userId.
+     * @param write Starts the write.
+     * @return A task completing with the result of the write that was finally sent.
+     */
+    public Task<Void> writeWhenOnline(String key, Supplier<Task<Void>> write) {
+        synchronized (this) {
+            if (!online) {
+                DeferredWrite pending = deferred.get(key);
+                if (pending == null) {
+                    pending = new DeferredWrite();
+                    deferred.put(key, pending);
+                } else {
+                    MetricsRegistry.get().counter("connection.deferred_collapsed").increment();
+                }
+                pending.write = write;
+                MetricsRegistry.get().counter("connection.deferred").increment();
+                return pending.result.getTask();
+            }
+        }
+        return write.get();
+    }
+
+    private void setOnline(boolean connected) {
+        synchronized (this) {
+            if (connected == online) return;
+            online = connected;
+            if (connected) {
+                if (everConnected) {
+                    MetricsRegistry.get().histogram("connection.offline_ms").record(SystemClock.elapsedRealtime() - offlineSince);
+                    MetricsRegistry.get().counter("connection.reconnects").increment();
+                }
+                everConnected = true;
+            } else {
+                offlineSince = SystemClock.elapsedRealtime();
+            }
+        }
+        Log.d(TAG, connected ? "Backend connected" : "Backend disconnected");
+        if (connected) {
+            handler.postDelayed(this::drainDeferred, (long) (random.nextDouble() * MAX_DRAIN_JITTER_MS));
+        }
+        for (ConnectionListener listener : listeners) {
+            listener.onConnectionChanged(connected);
+        }
+    }
+
+    private void drainDeferred() {
+        List<DeferredWrite> writes;
+        synchronized (this) {
+            if (!online) return; // Dropped again before the drain ran; keep everything queued
+            writes = new ArrayList<>(deferred.values());
+            deferred.clear();
+        }
+        for (DeferredWrite pending : writes) {
+            pending.write.get().addOnCompleteListener(task -> {
+                if (task.isSuccessful()) {
+                    pending.result.setResult(null);
+                } else {
+                    Exception error = task.getException();
+                    pending.result.setException(error != null ? error : new Exception("Deferred write failed"));
+                }
+            });
+        }
+    }
+}
@@ -2,47 +2,113 @@
 
     import android.content.Context;
     import android.content.Intent;
+    import android.content.SharedPreferences;
     import android.net.Uri;
     import android.util.Log;
 
     import androidx.annotation.NonNull;
 
+    import com.example.tinyreminder.backend.BackendError;
+    import com.example.tinyreminder.backend.ChildListener;
+    import com.example.tinyreminder.backend.DatabaseBackend;
+    import com.example.tinyreminder.backend.FirebaseBackend;
+    import com.example.tinyreminder.backend.InstrumentedBackend;
+    import com.example.tinyreminder.backend.ListenerRegistration;
+    import com.example.tinyreminder.backend.Snapshot;
+    import com.example.tinyreminder.backend.TransactionHandler;
+    import com.example.tinyreminder.backend.ValueListener;
+    import com.example.tinyreminder.map.Geohash;
+    import com.example.tinyreminder.map.RouteSimplifier;
+    import com.example.tinyreminder.metrics.MetricsRegistry;
     import com.example.tinyreminder.models.Family;
     import com.example.tinyreminder.models.ParkingEvent;
     import com.example.tinyreminder.models.User;
     import com.google.android.gms.maps.model.LatLng;
     import com.google.android.gms.tasks.OnCompleteListener;
     import com.google.android.gms.tasks.Task;
+    import com.google.android.gms.tasks.TaskCompletionSource;
     import com.google.android.gms.tasks.Tasks;
-    import com.google.firebase.database.ChildEventListener;
-    import com.google.firebase.database.DataSnapshot;
-    import com.google.firebase.database.DatabaseError;
-    import com.google.firebase.database.DatabaseReference;
-    import com.google.firebase.database.FirebaseDatabase;
-    import com.google.firebase.database.ValueEventListener;
-    import com.google.firebase.storage.FirebaseStorage;
-    import com.google.firebase.storage.StorageReference;
-    import com.google.firebase.storage.UploadTask;
 
+    import java.util.ArrayList;
     import java.util.HashMap;
+    import java.util.List;
     import java.util.Map;
     import java.util.concurrent.atomic.AtomicLong;
+    import java.util.concurrent.atomic.AtomicReference;
 
     public class DatabaseManager {
         private static final String TAG = "DatabaseManager";
-        private DatabaseReference mDatabase;
-        private StorageReference mStorage;
+        static final String KEY_CREATE_PARKING_EVENT = "createParkingEvent/";
+        static final String KEY_ANSWER_PARKING_EVENT = "answerParkingEvent/";
+        static final String EXTRA_EVENT_ID = "eventId";
+        static final String EXTRA_USER_ID = "userId";
+        static final String EXTRA_ANSWER = "answer";
+        // Location history is stored in hourly buckets, so a time range is read bucket by bucket
+        private static final long HISTORY_BUCKET_MS = 60 * 60 * 1000;
+        // Buckets are kept for a week, and at most a month of missed ones is removed in one write
+        private static final long HISTORY_RETENTION_BUCKETS = 7 * 24;
+        private static final long MAX_PRUNED_BUCKETS = 31 * 24;
+        private static final String HISTORY_PREFS_NAME = "location_history";
+        private static DatabaseBackend defaultBackend;
+        private final DatabaseBackend mBackend;
+        private final ConnectionMonitor mConnection;
         private Context context;
 
         /**
-         * Constructor for DatabaseManager, initializes the Firebase database and storage references.
+         * Constructor for DatabaseManager, uses the process-wide default backend.
          *
          * @param context The application context.
          */
         public DatabaseManager(Context context) {
+            this(context, getDefaultBackend());
+        }
+
+        /**
+         * Constructor for DatabaseManager with an explicit backend, e.g. an InMemoryBackend in tests.
+         *
+         * @param context The application context.
+         * @param backend The backend to read from and write to.
+         */
+        public DatabaseManager(Context context, DatabaseBackend backend) {
             this.context = context.getApplicationContext();
-            mDatabase = FirebaseDatabase.getInstance().getReference();
-            mStorage = FirebaseStorage.getInstance().getReference();
+            mBackend = backend;
+            mConnection = ConnectionMonitor.forBackend(backend);
+            MetricsRegistry.get().startPeriodicExport(this.context, MetricsRegistry.DEFAULT_EXPORT_PERIOD_MS);
+        }
+
+        /**
+         * Returns the backend used by every DatabaseManager created without an explicit one.
+         * Defaults to Firebase, instrumented so every operation shows up in the MetricsRegistry.
+         */
+        public static synchronized DatabaseBackend getDefaultBackend() {
+            if (defaultBackend == null) {
+                defaultBackend = new InstrumentedBackend(new FirebaseBackend());
+            }
+            return defaultBackend;
+        }
+
+        /**
+         * Replaces the default backend, so services, receivers and fragments can be driven
+         * by an in-memory engine in tests and benchmarks. Must be called before they start.
+         *
+         * @param backend The backend to use.
+         */
+        public static synchronized void setDefaultBackend(DatabaseBackend backend) {
+            defaultBackend = backend;
+        }
+
+        /**
+         * @return The backend this manager is bound to.
+         */
+        public DatabaseBackend getBackend() {
+            return mBackend;
+        }
+
+        /**
+         * @return The connection state of this manager's backend.
+         */
+        public ConnectionMonitor getConnectionMonitor() {
+            return mConnection;
         }
 
         /**
@@ -52,7 +118,7 @@
          * @param listener Listener for the completion of the operation.
          */
         public void createUser(User user, final OnCompleteListener<Void> listener) {
-            mDatabase.child("users").child(user.getId()).setValue(user)
+            mBackend.setValue("users/" + user.getId(), user)
                     .addOnCompleteListener(listener);
         }
 
@@ -64,7 +130,7 @@
          * @param listener Listener for the completion of the operation.
          */
         public void updateUserProfile(String userId, Map<String, Object> updates, final OnCompleteListener<Void> listener) {
-            mDatabase.child("users").child(userId).updateChildren(updates)
+            mBackend.updateChildren("users/" + userId, updates)
                     .addOnCompleteListener(listener);
         }
 
@@ -76,15 +142,8 @@
          * @param listener Listener for the completion of the operation, returns the download URL.
          */
         public void uploadProfilePicture(String userId, Uri imageUri, OnCompleteListener<Uri> listener) {
-            StorageReference profilePicRef = mStorage.child("profile_pictures/" + userId + ".jpg");
-
-            UploadTask uploadTask = profilePicRef.putFile(imageUri);
-            uploadTask.continueWithTask(task -> {
-                if (!task.isSuccessful()) {
-                    throw task.getException();
-                }
-                return profilePicRef.getDownloadUrl();
-            }).addOnCompleteListener(listener);
+            mBackend.uploadFile("profile_pictures/" + userId + ".jpg", imageUri)
+                    .addOnCompleteListener(listener);
         }
 
         /**
@@ -95,10 +154,10 @@
          * @param listener   Listener for the completion of the operation, returns the family ID.
          */
         public void createNewFamily(String familyName, String creatorId, OnCompleteListener<String> listener) {
-            String familyId = mDatabase.child("families").push().getKey();
+            String familyId = mBackend.generateKey("families");
             Family family = new Family(familyId, familyName, creatorId);
 
-            mDatabase.child("families").child(familyId).setValue(family)
+            mBackend.setValue("families/" + familyId, family)
                     .addOnCompleteListener(task -> {
                         if (task.isSuccessful()) {
                             addUserToFamily(creatorId, familyId, innerTask -> {
@@ -120,8 +179,8 @@
          * @param familyId The ID of the family to check.
          * @param listener Listener for the result of the check.
          */
-        public void checkFamilyExists(String familyId, final ValueEventListener listener) {
-            mDatabase.child("families").child(familyId).addListenerForSingleValueEvent(listener);
+        public void checkFamilyExists(String familyId, final ValueListener listener) {
+            mBackend.readOnce("families/" + familyId, listener);
         }
 
         /**
@@ -132,22 +191,22 @@
          * @param listener Listener for the completion of the operation.
          */
         public void addUserToFamily(String userId, String familyId, final OnCompleteListener<Void> listener) {
-            mDatabase.child("families").child(familyId).addListenerForSingleValueEvent(new ValueEventListener() {
+            mBackend.readOnce("families/" + familyId, new ValueListener() {
                 @Override
-                public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+                public void onDataChange(@NonNull Snapshot dataSnapshot) {
                     if (dataSnapshot.exists()) {
                         Map<String, Object> updates = new HashMap<>();
                         updates.put("/users/" + userId + "/familyId", familyId);
                         updates.put("/families/" + familyId + "/memberIds/" + userId, true);
 
-                        mDatabase.updateChildren(updates).addOnCompleteListener(listener);
+                        mBackend.updateChildren("", updates).addOnCompleteListener(listener);
                     } else {
                         listener.onComplete(Tasks.forException(new Exception("Family does not exist")));
                     }
                 }
 
                 @Override
-                public void onCancelled(@NonNull DatabaseError databaseError) {
+                public void onCancelled(@NonNull BackendError databaseError) {
                     listener.onComplete(Tasks.forException(databaseError.toException()));
                 }
             });
@@ -159,8 +218,8 @@
          * @param phoneNumber The phone number to search for.
          * @param listener    Listener for the result of the search.
          */
-        public void getUserByPhoneNumber(String phoneNumber, final ValueEventListener listener) {
-            mDatabase.child("users").orderByChild("phoneNumber").equalTo(phoneNumber).addListenerForSingleValueEvent(listener);
+        public void getUserByPhoneNumber(String phoneNumber, final ValueListener listener) {
+            mBackend.queryOnce("users", "phoneNumber", phoneNumber, listener);
         }
 
         /**
@@ -174,7 +233,7 @@
             Map<String, Object> updates = new HashMap<>();
             updates.put("/families/" + familyId + "/adminIds/" + userId, true);
 
-            mDatabase.updateChildren(updates).addOnCompleteListener(listener);
+            mBackend.updateChildren("", updates).addOnCompleteListener(listener);
         }
 
         /**
@@ -185,43 +244,234 @@
          * @param listener Listener for the completion of the operation.
          */
         public void removeAdminFromFamily(String userId, String familyId, final OnCompleteListener<Void> listener) {
-            mDatabase.child("families").child(familyId).child("adminIds").child(userId).removeValue()
+            mBackend.removeValue("families/" + familyId + "/adminIds/" + userId)
                     .addOnCompleteListener(listener);
         }
 
         /**
-         * Creates a new parking event in the Firebase database.
+         * Creates a new parking event and moves its driver to PENDING in one atomic write, sent
+         * through the DurableWriteQueue. The push key is generated locally before this returns,
+         * so callers can notify the driver without waiting for the network; the write itself
+         * survives process death and is retried until the server confirms it. The queue is
+         * process-wide and always writes to the default backend.
          *
-         * @param event    The ParkingEvent object to create.
-         * @param listener Listener for the completion of the operation.
+         * @param event The ParkingEvent object to create; its ID is assigned if missing.
+         * @return A Task completing when the server confirms the event, or failing permanently.
          */
-        public void createParkingEvent(ParkingEvent event, OnCompleteListener<Void> listener) {
-            String key = mDatabase.child("parkingEvents").push().getKey();
-            event.setId(key);
-            mDatabase.child("parkingEvents").child(key).setValue(event.toMap())
-                    .addOnCompleteListener(listener);
+        public Task<Void> queueParkingEvent(ParkingEvent event) {
+            Map<String, Object> updates = parkingEventUpdates(event);
+            Map<String, String> extras = new HashMap<>();
+            extras.put(EXTRA_EVENT_ID, event.getId());
+            extras.put(EXTRA_USER_ID, event.getUserId());
+            return DurableWriteQueue.get(context).enqueue(KEY_CREATE_PARKING_EVENT + event.getId(), updates, extras)
+                    .addOnSuccessListener(aVoid -> {
+                        Intent intent = new Intent("com.example.tinyreminder.FAMILY_STATUS_CHANGED");
+                        context.sendBroadcast(intent);
+                    });
         }
 
         /**
-         * Updates the status of a parking event in the Firebase database.
+         * Builds the root-relative update {@link #queueParkingEvent} sends: the event plus its
+         * driver's PENDING status.
+         *
+         * @param event The ParkingEvent object to create; its ID is assigned if missing.
+         * @return Paths to values, to be written atomically at the database root.
+         */
+        public Map<String, Object> parkingEventUpdates(ParkingEvent event) {
+            if (event.getId() == null) {
+                event.setId(mBackend.generateKey("parkingEvents"));
+            }
+            Map<String, Object> updates = new HashMap<>();
+            updates.put("/parkingEvents/" + event.getId(), event.toMap());
+            updates.put("/users/" + event.getUserId() + "/status", "PENDING");
+            return updates;
+        }
+
+        /**
+         * @return Whether the parking event was created locally but not yet confirmed by the server.
+         */
+        public boolean isParkingEventQueued(String eventId) {
+            return DurableWriteQueue.get(context).isPending(KEY_CREATE_PARKING_EVENT + eventId);
+        }
+
+        /**
+         * Records the driver's answer to a parking reminder through the DurableWriteQueue: the
+         * event is removed and the driver is set back to OK in one atomic write. The write is
+         * queued behind the event's own creation if that has not reached the server yet.
+         *
+         * @param eventId The ID of the answered parking event.
+         * @param userId  The ID of the driver.
+         * @param answer  "CHILD_PRESENT" or "CHILD_NOT_PRESENT".
+         * @return A Task completing when the server confirms the answer, or failing permanently.
+         */
+        public Task<Void> queueParkingEventAnswer(String eventId, String userId, String answer) {
+            Map<String, Object> updates = parkingEventAnswerUpdates(eventId, userId);
+            Map<String, String> extras = new HashMap<>();
+            extras.put(EXTRA_EVENT_ID, eventId);
+            extras.put(EXTRA_USER_ID, userId);
+            extras.put(EXTRA_ANSWER, answer);
+            return DurableWriteQueue.get(context).enqueue(KEY_ANSWER_PARKING_EVENT + eventId, updates, extras)
+                    .addOnSuccessListener(aVoid -> {
+                        Intent intent = new Intent("com.example.tinyreminder.FAMILY_STATUS_CHANGED");
+                        context.sendBroadcast(intent);
+                    });
+        }
+
+        /**
+         * Builds the root-relative update {@link #queueParkingEventAnswer} sends: the event is
+         * removed and its driver set back to OK.
+         *
+         * @param eventId The ID of the answered parking event.
+         * @param userId  The ID of the driver.
+         * @return Paths to values, to be written atomically at the database root.
+         */
+        public Map<String, Object> parkingEventAnswerUpdates(String eventId, String userId) {
+            Map<String, Object> updates = new HashMap<>();
+            updates.put("/parkingEvents/" + eventId, null);
+            updates.put("/users/" + userId + "/status", "OK");
+            return updates;
+        }
+
+        /**
+         * Updates the status of a parking event in the Firebase database, retrying transient failures.
          *
          * @param eventId  The ID of the event to update.
          * @param status   The new status of the event.
          * @param listener Listener for the completion of the operation.
          */
         public void updateParkingEventStatus(String eventId, String status, OnCompleteListener<Void> listener) {
-            mDatabase.child("parkingEvents").child(eventId).child("status").setValue(status)
+            RetryPolicy.CRITICAL.execute("updateParkingEventStatus",
+                            () -> mBackend.setValue("parkingEvents/" + eventId + "/status", status))
                     .addOnCompleteListener(listener);
         }
 
+        /**
+         * Moves a parking event from PENDING to ALERT in a transaction, leaving it untouched if it
+         * was already alerted, answered or deleted. This is the only read an escalation step needs.
+         *
+         * @param eventId The ID of the parking event.
+         * @return A Task resolving with the status the event had before, or null if it no longer exists.
+         */
+        public Task<String> markParkingEventAlerted(String eventId) {
+            TaskCompletionSource<String> result = new TaskCompletionSource<>();
+            AtomicReference<Object> previous = new AtomicReference<>();
+            mBackend.runTransaction("parkingEvents/" + eventId + "/status", new TransactionHandler() {
+                @Override
+                public Object doTransaction(Object currentValue) {
+                    previous.set(currentValue);
+                    if ("PENDING".equals(currentValue)) return "ALERT";
+                    // A null may only be the local cache; writing it back lets the server answer with the real value
+                    if (currentValue == null || "ALERT".equals(currentValue)) return currentValue;
+                    return ABORT;
+                }
+
+                @Override
+                public void onComplete(BackendError error, boolean committed, Snapshot snapshot) {
+                    if (error != null) {
+                        result.setException(error.toException());
+                    } else {
+                        Object status = previous.get();
+                        result.setResult(status instanceof String ? (String) status : null);
+                    }
+                }
+            });
+            return result.getTask();
+        }
+
+        /**
+         * Counts a parking event in its family's hotspot grid, a geohash cell to count map that
+         * is the only record of where the family parked once events are answered and deleted.
+         * The count is incremented in a transaction, so concurrent events never lose a count.
+         *
+         * @param userId    The ID of the driver.
+         * @param latitude  The latitude of the parking location.
+         * @param longitude The longitude of the parking location.
+         * @return A Task completing once the count is stored, or failing if the driver has no family.
+         */
+        public Task<Void> recordParkingHotspot(String userId, double latitude, double longitude) {
+            TaskCompletionSource<Void> result = new TaskCompletionSource<>();
+            String cell = Geohash.encode(latitude, longitude, Geohash.HOTSPOT_PRECISION);
+            mBackend.readOnce("users/" + userId + "/familyId", new ValueListener() {
+                @Override
+                public void onDataChange(@NonNull Snapshot snapshot) {
+                    String familyId = snapshot.getValue(String.class);
+                    if (familyId == null) {
+                        result.setException(new Exception("User is not in a family"));
+                        return;
+                    }
+                    mBackend.runTransaction("parkingHotspots/" + familyId + "/" + cell, new TransactionHandler() {
+                        @Override
+                        public Object doTransaction(Object currentValue) {
+                            return currentValue instanceof Number ? ((Number) currentValue).longValue() + 1 : 1L;
+                        }
+
+                        @Override
+                        public void onComplete(BackendError error, boolean committed, Snapshot snapshot) {
+                            if (error != null) {
+                                result.setException(error.toException());
+                            } else {
+                                result.setResult(null);
+                            }
+                        }
+                    });
+                }
+
+                @Override
+                public void onCancelled(@NonNull BackendError error) {
+                    result.setException(error.toException());
+                }
+            });
+            return result.getTask();
+        }
+
+        /**
+         * Reads a family's parking hotspot grid in one read, however many events it counts.
+         *
+         * @param familyId The ID of the family.
+         * @return A Task with the number of parking events per geohash cell.
+         */
+        public Task<Map<String, Long>> getParkingHotspots(String familyId) {
+            TaskCompletionSource<Map<String, Long>> result = new TaskCompletionSource<>();
+            mBackend.readOnce("parkingHotspots/" + familyId, new ValueListener() {
+                @Override
+                public void onDataChange(@NonNull Snapshot snapshot) {
+                    Map<String, Long> counts = new HashMap<>();
+                    for (Snapshot cellSnapshot : snapshot.getChildren()) {
+                        Long count = cellSnapshot.getValue(Long.class);
+                        if (cellSnapshot.getKey() != null && count != null && count > 0) {
+                            counts.put(cellSnapshot.getKey(), count);
+                        }
+                    }
+                    result.setResult(counts);
+                }
+
+                @Override
+                public void onCancelled(@NonNull BackendError error) {
+                    result.setException(error.toException());
+                }
+            });
+            return result.getTask();
+        }
+
+        /**
+         * Follows the status of a parking event; a null status means the event was deleted.
+         *
+         * @param eventId  The ID of the parking event.
+         * @param listener Listener for every status change.
+         * @return A registration used to detach the listener.
+         */
+        public ListenerRegistration watchParkingEventStatus(String eventId, ValueListener listener) {
+            return mBackend.addValueListener("parkingEvents/" + eventId + "/status", listener);
+        }
+
         /**
          * Retrieves a parking event by its ID from the Firebase database.
          *
          * @param eventId  The ID of the parking event to retrieve.
          * @param listener Listener for the result of the retrieval.
          */
-        public void getParkingEvent(String eventId, ValueEventListener listener) {
-            mDatabase.child("parkingEvents").child(eventId).addListenerForSingleValueEvent(listener);
+        public void getParkingEvent(String eventId, ValueListener listener) {
+            mBackend.readOnce("parkingEvents/" + eventId, listener);
         }
 
         /**
@@ -231,7 +481,7 @@
          * @param listener Listener for the completion of the operation.
          */
         public void deleteFamily(String familyId, OnCompleteListener<Void> listener) {
-            mDatabase.child("families").child(familyId).removeValue().addOnCompleteListener(listener);
+            mBackend.removeValue("families/" + familyId).addOnCompleteListener(listener);
         }
 
         /**
@@ -240,8 +490,8 @@
          * @param userId   The ID of the user to retrieve.
          * @param listener Listener for the result of the retrieval.
          */
-        public void getUserData(String userId, final ValueEventListener listener) {
-            mDatabase.child("users").child(userId).addListenerForSingleValueEvent(listener);
+        public void getUserData(String userId, final ValueListener listener) {
+            mBackend.readOnce("users/" + userId, listener);
         }
 
         /**
@@ -250,8 +500,8 @@
          * @param familyId The ID of the family to retrieve.
          * @param listener Listener for the result of the retrieval.
          */
-        public void getFamilyData(String familyId, final ValueEventListener listener) {
-            mDatabase.child("families").child(familyId).addListenerForSingleValueEvent(listener);
+        public void getFamilyData(String familyId, final ValueListener listener) {
+            mBackend.readOnce("families/" + familyId, listener);
         }
 
         /**
@@ -259,9 +509,10 @@
          *
          * @param familyId The ID of the family whose members to retrieve.
          * @param listener Listener for child events on the family members.
+         * @return A registration used to detach the listener.
          */
-        public void getFamilyMembers(String familyId, ChildEventListener listener) {
-            mDatabase.child("families").child(familyId).child("memberIds").addChildEventListener(listener);
+        public ListenerRegistration getFamilyMembers(String familyId, ChildListener listener) {
+            return mBackend.addChildListener("families/" + familyId + "/memberIds", listener);
         }
 
         /**
@@ -270,8 +521,8 @@
          * @param familyId The ID of the family whose members to retrieve.
          * @param listener Listener for the result of the retrieval.
          */
-        public void getFamilyMembersWithValueEventListener(String familyId, ValueEventListener listener) {
-            mDatabase.child("families").child(familyId).child("memberIds").addListenerForSingleValueEvent(listener);
+        public void getFamilyMembersWithValueEventListener(String familyId, ValueListener listener) {
+            mBackend.readOnce("families/" + familyId + "/memberIds", listener);
         }
 
         /**
@@ -279,9 +530,10 @@
          *
          * @param familyId The ID of the family whose members to retrieve.
          * @param listener Listener for child events on the family members.
+         * @return A registration used to detach the listener.
          */
-        public void getFamilyMembersWithChildEventListener(String familyId, ChildEventListener listener) {
-            mDatabase.child("families").child(familyId).child("memberIds").addChildEventListener(listener);
+        public ListenerRegistration getFamilyMembersWithChildEventListener(String familyId, ChildListener listener) {
+            return mBackend.addChildListener("families/" + familyId + "/memberIds", listener);
         }
 
         /**
@@ -289,9 +541,10 @@
          *
          * @param userId   The ID of the member to retrieve.
          * @param listener Listener for child events on the member data.
+         * @return A registration used to detach the listener.
          */
-        public void getMemberDataWithChildListener(String userId, ChildEventListener listener) {
-            mDatabase.child("users").child(userId).addChildEventListener(listener);
+        public ListenerRegistration getMemberDataWithChildListener(String userId, ChildListener listener) {
+            return mBackend.addChildListener("users/" + userId, listener);
         }
 
         /**
@@ -299,27 +552,38 @@
          *
          * @param userId   The ID of the member to retrieve.
          * @param listener Listener for the result of the retrieval.
+         * @return A registration used to detach the listener.
          */
-        public void getMemberData(String userId, final ValueEventListener listener) {
-            mDatabase.child("users").child(userId).addValueEventListener(listener);
+        public ListenerRegistration getMemberData(String userId, final ValueListener listener) {
+            return mBackend.addValueListener("users/" + userId, listener);
         }
 
         /**
          * Updates the location of a family member in the Firebase database.
-         *
-         * @param userId    The ID of the user whose location to update.
-         * @param familyId  The ID of the family.
-         * @param latitude  The latitude of the new location.
-         * @param longitude The longitude of the new location.
+         * While offline only the latest location is kept and sent on reconnect.
+         * The location is stamped with the device's fix time and, as {@code updatedAt}, with the
+         * server's time of the write, so viewers can tell how fresh it is. It is also appended to
+         * the member's location history; unlike the latest location, every history point is kept
+         * while offline, so the route before a parking event survives a dead zone.
+         *
+         * @param userId     The ID of the user whose location to update.
+         * @param familyId   The ID of the family.
+         * @param latitude   The latitude of the new location.
+         * @param longitude  The longitude of the new location.
+         * @param deviceTime When the device took the fix, on its own clock.
          * @return A Task representing the completion of the operation.
          */
-        public Task<Void> updateMemberLocation(String userId, String familyId, double latitude, double longitude) {
+        public Task<Void> updateMemberLocation(String userId, String familyId, double latitude, double longitude, long deviceTime) {
             Map<String, Object> locationUpdates = new HashMap<>();
             locationUpdates.put("latitude", latitude);
             locationUpdates.put("longitude", longitude);
+            locationUpdates.put("deviceTime", deviceTime);
+            locationUpdates.put("updatedAt", DatabaseBackend.SERVER_TIMESTAMP);
 
             if (familyId != null) {
-                return mDatabase.child("families").child(familyId).child("memberLocations").child(userId).setValue(locationUpdates)
+                String path = "families/" + familyId + "/memberLocations/" + userId;
+                appendLocationHistory(familyId, userId, latitude, longitude, deviceTime);
+                return mConnection.writeWhenOnline("location/" + userId, () -> mBackend.setValue(path, locationUpdates))
                         .addOnSuccessListener(aVoid -> {
                             Intent intent = new Intent("com.example.tinyreminder.FAMILY_STATUS_CHANGED");
                             context.sendBroadcast(intent);
@@ -329,10 +593,84 @@
             }
         }
 
+        /**
+         * Reads a member's recorded locations within a time range, one small read per hour of history.
+         *
+         * @param familyId The ID of the family.
+         * @param userId   The ID of the member.
+         * @param from     Start of the range, inclusive, in device time.
+         * @param to       End of the range, inclusive, in device time.
+         * @return A Task with the locations in the range, in no particular order.
+         */
+        public Task<List<RouteSimplifier.Point>> getLocationHistory(String familyId, String userId, long from, long to) {
+            TaskCompletionSource<List<RouteSimplifier.Point>> result = new TaskCompletionSource<>();
+            List<RouteSimplifier.Point> points = new ArrayList<>();
+            long firstBucket = from / HISTORY_BUCKET_MS;
+            long lastBucket = to / HISTORY_BUCKET_MS;
+            AtomicLong remaining = new AtomicLong(lastBucket - firstBucket + 1);
+            for (long bucket = firstBucket; bucket <= lastBucket; bucket++) {
+                mBackend.readOnce(historyBucketPath(familyId, userId, bucket), new ValueListener() {
+                    @Override
+                    public void onDataChange(@NonNull Snapshot snapshot) {
+                        for (Snapshot pointSnapshot : snapshot.getChildren()) {
+                            Double latitude = pointSnapshot.child("latitude").getValue(Double.class);
+                            Double longitude = pointSnapshot.child("longitude").getValue(Double.class);
+                            Long time = pointSnapshot.child("time").getValue(Long.class);
+                            if (latitude != null && longitude != null && time != null && time >= from && time <= to) {
+                                points.add(new RouteSimplifier.Point(latitude, longitude, time));
+                            }
+                        }
+                        if (remaining.decrementAndGet() == 0) {
+                            result.trySetResult(points);
+                        }
+                    }
 
+                    @Override
+                    public void onCancelled(@NonNull BackendError error) {
+                        result.trySetException(error.toException());
+                    }
+                });
+            }
+            return result.getTask();
+        }
+
+        // Written straight to the backend, which queues every point while offline instead of collapsing them
+        private void appendLocationHistory(String familyId, String userId, double latitude, double longitude, long deviceTime) {
+            long bucket = deviceTime / HISTORY_BUCKET_MS;
+            String bucketPath = historyBucketPath(familyId, userId, bucket);
+            Map<String, Object> historyPoint = new HashMap<>();
+            historyPoint.put("latitude", latitude);
+            historyPoint.put("longitude", longitude);
+            historyPoint.put("time", deviceTime);
+            mBackend.setValue(bucketPath + "/" + mBackend.generateKey(bucketPath), historyPoint)
+                    .addOnFailureListener(e -> Log.w(TAG, "Failed to record location history", e));
+            pruneLocationHistory(familyId, userId, bucket);
+        }
+
+        // Removes the member's buckets older than the retention period, each range once. Only
+        // this member's device writes their history, so it remembers how far it has pruned.
+        private void pruneLocationHistory(String familyId, String userId, long currentBucket) {
+            SharedPreferences prefs = context.getSharedPreferences(HISTORY_PREFS_NAME, Context.MODE_PRIVATE);
+            String key = "prunedThrough/" + familyId + "/" + userId;
+            long cutoff = currentBucket - HISTORY_RETENTION_BUCKETS - 1;
+            long prunedThrough = prefs.getLong(key, Long.MIN_VALUE);
+            if (prunedThrough >= cutoff) return;
+            // The first time, sweep one retention period back
+            long from = prunedThrough == Long.MIN_VALUE ? cutoff - HISTORY_RETENTION_BUCKETS + 1 : prunedThrough + 1;
+            from = Math.max(from, cutoff - MAX_PRUNED_BUCKETS + 1);
+            Map<String, Object> removals = new HashMap<>();
+            for (long bucket = from; bucket <= cutoff; bucket++) {
+                removals.put(String.valueOf(bucket), null);
+            }
+            // Recorded up front: while offline the backend queues the removal, and it must not be queued again per fix
+            prefs.edit().putLong(key, cutoff).apply();
+            mBackend.updateChildren("locationHistory/" + familyId + "/" + userId, removals)
+                    .addOnFailureListener(e -> Log.w(TAG, "Failed to prune location history", e));
+        }
 
-
-
+        private static String historyBucketPath(String familyId, String userId, long bucket) {
+            return "locationHistory/" + familyId + "/" + userId + "/" + bucket;
+        }
 
         /**
          * Creates or updates a user in the Firebase database.
@@ -341,7 +679,7 @@
          * @param listener Listener for the completion of the operation.
          */
         public void createOrUpdateUser(User user, final OnCompleteListener<Void> listener) {
-            mDatabase.child("users").child(user.getId()).setValue(user)
+            mBackend.setValue("users/" + user.getId(), user)
                     .addOnCompleteListener(listener);
         }
 
@@ -353,7 +691,7 @@
          * @return A Task representing the completion of the operation.
          */
         public Task<Void> updateUserAlertStatus(String userId, boolean isAlerted) {
-            return mDatabase.child("users").child(userId).child("isAlerted").setValue(isAlerted)
+            return mBackend.setValue("users/" + userId + "/isAlerted", isAlerted)
                     .addOnSuccessListener(aVoid -> {
                         Intent intent = new Intent("com.example.tinyreminder.FAMILY_STATUS_CHANGED");
                         context.sendBroadcast(intent);
@@ -367,9 +705,8 @@
          * @param familyId The ID of the family.
          * @param listener Listener for the result of the check.
          */
-        public void checkIfUserIsAdmin(String userId, String familyId, final ValueEventListener listener) {
-            mDatabase.child("families").child(familyId).child("adminIds").child(userId)
-                    .addListenerForSingleValueEvent(listener);
+        public void checkIfUserIsAdmin(String userId, String familyId, final ValueListener listener) {
+            mBackend.readOnce("families/" + familyId + "/adminIds/" + userId, listener);
         }
 
         /**
@@ -378,8 +715,8 @@
          * @param userId   The ID of the user.
          * @param listener Listener for the result of the check.
          */
-        public void checkUserHasPhoneNumber(String userId, final ValueEventListener listener) {
-            mDatabase.child("users").child(userId).child("phoneNumber").addListenerForSingleValueEvent(listener);
+        public void checkUserHasPhoneNumber(String userId, final ValueListener listener) {
+            mBackend.readOnce("users/" + userId + "/phoneNumber", listener);
         }
 
         /**
@@ -394,8 +731,10 @@
             updates.put("/users/" + userId + "/familyId", null);
             updates.put("/families/" + familyId + "/memberIds/" + userId, null);
             updates.put("/families/" + familyId + "/adminIds/" + userId, null);
+            // Otherwise the member's last location stays on everyone's map
+            updates.put("/families/" + familyId + "/memberLocations/" + userId, null);
 
-            mDatabase.updateChildren(updates).addOnCompleteListener(listener);
+            mBackend.updateChildren("", updates).addOnCompleteListener(listener);
         }
 
         /**
@@ -405,59 +744,60 @@
          * @param listener Listener for the result of the retrieval, returns a map of user IDs to LatLng objects.
          */
         public void getLocationsForFamily(String familyId, OnCompleteListener<Map<String, LatLng>> listener) {
-            mDatabase.child("families").child(familyId).child("memberIds")
-                    .addListenerForSingleValueEvent(new ValueEventListener() {
-                        @Override
-                        public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                            Map<String, LatLng> familyLocations = new HashMap<>();
-                            final long memberCount = dataSnapshot.getChildrenCount();
-                            final AtomicLong completedCount = new AtomicLong(0);
-
-                            for (DataSnapshot memberSnapshot : dataSnapshot.getChildren()) {
-                                String memberId = memberSnapshot.getKey();
-                                if (memberId != null) {
-                                    mDatabase.child("users").child(memberId).addValueEventListener(new ValueEventListener() {
-                                        @Override
-                                        public void onDataChange(@NonNull DataSnapshot userSnapshot) {
-                                            Double lat = userSnapshot.child("latitude").getValue(Double.class);
-                                            Double lng = userSnapshot.child("longitude").getValue(Double.class);
-                                            if (lat != null && lng != null) {
-                                                familyLocations.put(memberId, new LatLng(lat, lng));
-                                            }
-                                            if (completedCount.incrementAndGet() == memberCount) {
-                                                listener.onComplete(Tasks.forResult(familyLocations));
-                                            }
-                                        }
-
-                                        @Override
-                                        public void onCancelled(@NonNull DatabaseError databaseError) {
-                                            listener.onComplete(Tasks.forException(databaseError.toException()));
-                                        }
-                                    });
+            mBackend.readOnce("families/" + familyId + "/memberIds", new ValueListener() {
+                @Override
+                public void onDataChange(@NonNull Snapshot dataSnapshot) {
+                    Map<String, LatLng> familyLocations = new HashMap<>();
+                    final long memberCount = dataSnapshot.getChildrenCount();
+                    final AtomicLong completedCount = new AtomicLong(0);
+
+                    for (Snapshot memberSnapshot : dataSnapshot.getChildren()) {
+                        String memberId = memberSnapshot.getKey();
+                        if (memberId != null) {
+                            mBackend.readOnce("users/" + memberId, new ValueListener() {
+                                @Override
+                                public void onDataChange(@NonNull Snapshot userSnapshot) {
+                                    Double lat = userSnapshot.child("latitude").getValue(Double.class);
+                                    Double lng = userSnapshot.child("longitude").getValue(Double.class);
+                                    if (lat != null && lng != null) {
+                                        familyLocations.put(memberId, new LatLng(lat, lng));
+                                    }
+                                    if (completedCount.incrementAndGet() == memberCount) {
+                                        listener.onComplete(Tasks.forResult(familyLocations));
+                                    }
                                 }
-                            }
-                        }
 
-                        @Override
-                        public void onCancelled(@NonNull DatabaseError databaseError) {
-                            listener.onComplete(Tasks.forException(databaseError.toException()));
+                                @Override
+                                public void onCancelled(@NonNull BackendError databaseError) {
+                                    listener.onComplete(Tasks.forException(databaseError.toException()));
+                                }
+                            });
                         }
-                    });
+                    }
+                }
+
+                @Override
+                public void onCancelled(@NonNull BackendError databaseError) {
+                    listener.onComplete(Tasks.forException(databaseError.toException()));
+                }
+            });
         }
 
         /**
-         * Sets the status of a user in the Firebase database.
+         * Sets the status of a user in the Firebase database, retrying transient failures.
          *
          * @param userId The ID of the user.
          * @param status The new status of the user.
          * @return A Task representing the completion of the operation.
          */
         public Task<Void> setUserStatus(String userId, String status) {
-            return mDatabase.child("users").child(userId).child("status").setValue(status)
-                    .addOnSuccessListener(aVoid -> {
-                        Intent intent = new Intent("com.example.tinyreminder.FAMILY_STATUS_CHANGED");
-                        context.sendBroadcast(intent);
-                    });
+            Task<Void> result = RetryPolicy.CRITICAL.execute("setUserStatus", () -> mBackend.setValue("users/" + userId + "/status", status));
+            // Also announced when the write lands after the deadline
+            RetryPolicy.landed(result).addOnSuccessListener(aVoid -> {
+                Intent intent = new Intent("com.example.tinyreminder.FAMILY_STATUS_CHANGED");
+                context.sendBroadcast(intent);
+            });
+            return result;
         }
 
         /**
@@ -465,19 +805,21 @@
          *
          * @param userId   The ID of the user.
          * @param listener Listener for the result of the retrieval.
+         * @return A registration used to detach the listener.
          */
-        public void getUserStatus(String userId, final ValueEventListener listener) {
-            mDatabase.child("users").child(userId).child("status").addValueEventListener(listener);
+        public ListenerRegistration getUserStatus(String userId, final ValueListener listener) {
+            return mBackend.addValueListener("users/" + userId + "/status", listener);
         }
 
         /**
-         * Sets the last check-in time of a user in the Firebase database.
+         * Sets the last check-in time of a user in the Firebase database. Deferred while offline.
          *
          * @param userId    The ID of the user.
          * @param timestamp The timestamp of the last check-in.
          */
         public void setLastCheckInTime(String userId, long timestamp) {
-            mDatabase.child("users").child(userId).child("lastCheckIn").setValue(timestamp);
+            mConnection.writeWhenOnline("lastCheckIn/" + userId,
+                    () -> mBackend.setValue("users/" + userId + "/lastCheckIn", timestamp));
         }
 
         /**
@@ -486,18 +828,67 @@
          * @param userId   The ID of the user.
          * @param listener Listener for the result of the retrieval.
          */
-        public void getLastCheckInTime(String userId, final ValueEventListener listener) {
-            mDatabase.child("users").child(userId).child("lastCheckIn").addListenerForSingleValueEvent(listener);
+        public void getLastCheckInTime(String userId, final ValueListener listener) {
+            mBackend.readOnce("users/" + userId + "/lastCheckIn", listener);
         }
 
         /**
-         * Retrieves the real-time locations of all family members from the Firebase database.
+         * Reads the current locations of all family members once.
          *
          * @param familyId The ID of the family.
-         * @param listener Listener for the real-time updates of family members' locations.
+         * @param listener Listener for the result of the retrieval, keyed by user ID.
          */
-        public void getRealtimeLocationsForFamily(String familyId, ValueEventListener listener) {
-            mDatabase.child("families").child(familyId).child("memberLocations").addValueEventListener(listener);
+        public void getMemberLocations(String familyId, ValueListener listener) {
+            mBackend.readOnce("families/" + familyId + "/memberLocations", listener);
+        }
+
+        /**
+         * Follows family members' locations one member at a time: a member moving delivers only
+         * that member's location, and a member leaving the family removes their child.
+         *
+         * @param familyId The ID of the family.
+         * @param listener Listener for locations added, changed and removed, keyed by user ID.
+         * @return A registration used to detach the listener.
+         */
+        public ListenerRegistration watchMemberLocations(String familyId, ChildListener listener) {
+            return mBackend.addChildListener("families/" + familyId + "/memberLocations", listener);
+        }
+
+        /**
+         * Marks the viewer as watching the member until the registration is removed, so the
+         * member's device uploads its location more often meanwhile. The server removes the mark
+         * when the viewer disconnects, and it is written again on every reconnect.
+         *
+         * @param watchedId The ID of the member being watched.
+         * @param viewerId  The ID of the user watching.
+         * @return A registration used to stop watching.
+         */
+        public ListenerRegistration watchMember(String watchedId, String viewerId) {
+            String path = "watchers/" + watchedId + "/" + viewerId;
+            ConnectionMonitor.ConnectionListener listener = online -> {
+                if (online) {
+                    // Arm the cleanup first, so the mark can never outlive the connection
+                    mBackend.setOnDisconnect(path, null);
+                    mBackend.setValue(path, mConnection.serverTimeMillis());
+                }
+            };
+            mConnection.addListener(listener);
+            return () -> {
+                mConnection.removeListener(listener);
+                mBackend.cancelOnDisconnect(path);
+                mBackend.removeValue(path);
+            };
+        }
+
+        /**
+         * Follows who is watching the member: viewer IDs mapped to when they started watching.
+         *
+         * @param userId   The ID of the watched member.
+         * @param listener Listener for the current watchers, called again whenever they change.
+         * @return A registration used to detach the listener.
+         */
+        public ListenerRegistration getWatchers(String userId, ValueListener listener) {
+            return mBackend.addValueListener("watchers/" + userId, listener);
         }
 
         /**
@@ -506,19 +897,18 @@
          * @param phoneNumber The phone number to search for.
          * @param listener    Listener for the result of the search.
          */
-        public void getUsersByPhoneNumber(String phoneNumber, ValueEventListener listener) {
-            DatabaseReference usersRef = FirebaseDatabase.getInstance().getReference("users");
-            usersRef.orderByChild("phoneNumber").equalTo(phoneNumber).addListenerForSingleValueEvent(listener);
+        public void getUsersByPhoneNumber(String phoneNumber, ValueListener listener) {
+            mBackend.queryOnce("users", "phoneNumber", phoneNumber, listener);
         }
 
         /**
-         * Saves the FCM token of a user in the Firebase database.
+         * Saves the FCM token of a user in the Firebase database. Deferred while offline.
          *
          * @param userId The ID of the user.
          * @param token  The FCM token to save.
          */
         public void saveFcmToken(String userId, String token) {
-            mDatabase.child("users").child(userId).child("fcmToken").setValue(token)
+            mConnection.writeWhenOnline("fcmToken/" + userId, () -> mBackend.setValue("users/" + userId + "/fcmToken", token))
                     .addOnCompleteListener(task -> {
                         if (task.isSuccessful()) {
                             Log.d(TAG, "FCM token saved successfully");
@@ -528,14 +918,69 @@
                     });
         }
 
+        /**
+         * Requests a push alert to every family member except the sender. The dispatchFamilyAlert
+         * function picks up alerts/$alertId and fans it out as one batched FCM message.
+         * The alert key is generated once, so retries never send a second alert.
+         *
+         * @param familyId The ID of the family to alert.
+         * @param senderId The ID of the user the alert is about; they are not notified.
+         * @param eventId  The ID of the parking event that escalated.
+         * @return A Task representing the completion of the operation.
+         */
+        public Task<Void> createFamilyAlert(String familyId, String senderId, String eventId) {
+            return createFamilyAlert(familyId, senderId, null, eventId, null);
+        }
+
+        /**
+         * Requests a push alert to selected family members.
+         *
+         * @param familyId     The ID of the family to alert.
+         * @param senderId     The ID of the user the alert is about; they are not notified.
+         * @param senderName   The display name shown in the alert, or null.
+         * @param eventId      The ID of the parking event that escalated.
+         * @param recipientIds The members to notify, or null for every member.
+         * @return A Task representing the completion of the operation.
+         */
+        public Task<Void> createFamilyAlert(String familyId, String senderId, String senderName, String eventId, List<String> recipientIds) {
+            String alertId = mBackend.generateKey("alerts");
+            Map<String, Object> alert = new HashMap<>();
+            alert.put("familyId", familyId);
+            alert.put("senderId", senderId);
+            if (senderName != null) {
+                alert.put("senderName", senderName);
+            }
+            alert.put("eventId", eventId);
+            alert.put("createdAt", mConnection.serverTimeMillis());
+            if (recipientIds != null) {
+                Map<String, Object> recipients = new HashMap<>();
+                for (String recipientId : recipientIds) {
+                    recipients.put(recipientId, true);
+                }
+                alert.put("recipients", recipients);
+            }
+            return RetryPolicy.CRITICAL.execute("createFamilyAlert", () -> mBackend.setValue("alerts/" + alertId, alert));
+        }
+
+        /**
+         * Records when a pushed alert reached this device, for end-to-end delivery latency.
+         *
+         * @param alertId     The ID of the delivered alert.
+         * @param userId      The ID of the receiving user.
+         * @param deliveredAt Delivery time on the server clock.
+         */
+        public void recordAlertDelivery(String alertId, String userId, long deliveredAt) {
+            mBackend.setValue("alerts/" + alertId + "/deliveries/" + userId, deliveredAt);
+        }
+
         /**
          * Retrieves the FCM token of a user from the Firebase database.
          *
          * @param userId   The ID of the user.
          * @param listener Listener for the result of the retrieval.
          */
-        public void getFcmToken(String userId, ValueEventListener listener) {
-            mDatabase.child("users").child(userId).child("fcmToken").addListenerForSingleValueEvent(listener);
+        public void getFcmToken(String userId, ValueListener listener) {
+            mBackend.readOnce("users/" + userId + "/fcmToken", listener);
         }
 
         /**
@@ -546,7 +991,7 @@
          * @param hasResponded   The response flag to set.
          */
         public void setNotificationResponseFlag(String userId, int notificationId, boolean hasResponded) {
-            mDatabase.child("users").child(userId).child("notifications").child(String.valueOf(notificationId)).child("hasResponded").setValue(hasResponded);
+            mBackend.setValue("users/" + userId + "/notifications/" + notificationId + "/hasResponded", hasResponded);
         }
 
         /**
@@ -556,8 +1001,8 @@
          * @param notificationId The ID of the notification.
          * @param listener       Listener for the result of the retrieval.
          */
-        public void getNotificationResponseFlag(String userId, int notificationId, ValueEventListener listener) {
-            mDatabase.child("users").child(userId).child("notifications").child(String.valueOf(notificationId)).child("hasResponded").addListenerForSingleValueEvent(listener);
+        public void getNotificationResponseFlag(String userId, int notificationId, ValueListener listener) {
+            mBackend.readOnce("users/" + userId + "/notifications/" + notificationId + "/hasResponded", listener);
         }
 
         /**
@@ -567,6 +1012,6 @@
          * @return A Task representing the completion of the operation.
          */
         public Task<Void> deleteParkingEvent(String eventId) {
-            return mDatabase.child("parkingEvents").child(eventId).removeValue();
+            return mBackend.removeValue("parkingEvents/" + eventId);
         }
     }
\ No newline at end of file
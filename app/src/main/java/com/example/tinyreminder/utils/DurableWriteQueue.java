@@ -0,0 +1,254 @@
+package com.example.tinyreminder.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.tinyreminder.backend.DatabaseBackend;
+import com.example.tinyreminder.metrics.MetricsRegistry;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.ToNumberPolicy;
+import com.google.gson.reflect.TypeToken;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persisted, ordered outbox for writes the app has already acted on locally, such as a parking
+ * event whose reminder is showing before the event reached the server.
+ *
+ * Each entry is one atomic multi-path update at the database root. Entries are written to disk
+ * before they are sent and removed only once the backend confirms them, so they survive process
+ * death and are replayed by the first {@link #get(Context)} after a restart. Entries are sent one
+ * at a time in enqueue order, so a later write (e.g. answering a reminder) can never land before
+ * the write it depends on (creating the event).
+ *
+ * Transient failures are retried with {@link RetryPolicy#CRITICAL}. Once that gives up, the entry
+ * is resent after a growing backoff, and at once on every reconnect, until {@link #MAX_AGE_MS}. Permission errors and expired entries are handed to the
+ * {@link FailureHandler}, which reconciles the local state the entry was meant to back.
+ */
+public final class DurableWriteQueue {
+    private static final String TAG = "DurableWriteQueue";
+    private static final String PREFS_NAME = "durable_writes";
+    private static final String KEY_QUEUE = "queue";
+    static final long MAX_AGE_MS = 24 * 60 * 60 * 1000L;
+    // Spacing of resends after RetryPolicy gave up, e.g. a link that is connected but too slow to confirm writes
+    private static final RetryPolicy RESEND_BACKOFF = new RetryPolicy(5_000, 5 * 60 * 1000, 2.0, MAX_AGE_MS, Integer.MAX_VALUE);
+    private static final Gson GSON = new GsonBuilder()
+            // Keep timestamps integral; the default policy would read them back as doubles
+            .setObjectToNumberStrategy(ToNumberPolicy.LONG_OR_DOUBLE)
+            .serializeNulls()
+            .create();
+    private static final Type LIST_TYPE = new TypeToken<List<Entry>>() {}.getType();
+
+    private static DurableWriteQueue instance;
+
+    private final SharedPreferences prefs;
+    private final DatabaseBackend backend;
+    private final FailureHandler failureHandler;
+    private final List<Entry> entries;
+    private final Map<String, TaskCompletionSource<Void>> results = new HashMap<>();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable resend = this::sendNext;
+    private boolean sending;
+    private int resends;
+
+    /**
+     * One queued write.
+     */
+    public static class Entry {
+        /** Identifies what is written, e.g. "createParkingEvent/" + eventId. */
+        public String key;
+        /** Root-relative paths to values; a null value removes the path. */
+        public Map<String, Object> updates;
+        /** Context the FailureHandler needs to reconcile, e.g. the event and user ids. */
+        public Map<String, String> extras;
+        public long enqueuedAt;
+    }
+
+    /**
+     * Reconciles local state when a queued write can never succeed.
+     */
+    public interface FailureHandler {
+        void onPermanentFailure(Entry entry, Exception error);
+    }
+
+    /**
+     * @return The process-wide queue; the first call loads persisted entries and starts sending them.
+     */
+    public static synchronized DurableWriteQueue get(Context context) {
+        if (instance == null) {
+            Context appContext = context.getApplicationContext();
+            instance = new DurableWriteQueue(appContext, DatabaseManager.getDefaultBackend(), new ParkingEventReconciler(appContext));
+        }
+        return instance;
+    }
+
+    private DurableWriteQueue(Context context, DatabaseBackend backend, FailureHandler failureHandler) {
+        this.prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.backend = backend;
+        this.failureHandler = failureHandler;
+        this.entries = load();
+        if (!entries.isEmpty()) {
+            Log.d(TAG, "Replaying " + entries.size() + " queued write(s)");
+        }
+        ConnectionMonitor.forBackend(backend).addListener(online -> {
+            if (online) sendNext();
+        });
+        sendNext();
+    }
+
+    /**
+     * Persists the write and sends it once every earlier entry has been confirmed. A queued entry
+     * with the same key that is not yet being sent is replaced, keeping its place in the queue.
+     *
+     * @param key     Identifies what is written.
+     * @param updates Root-relative paths to values, written atomically.
+     * @param extras  Context for the FailureHandler, or null.
+     * @return A task completing when the backend confirms the write, or failing permanently.
+     */
+    public Task<Void> enqueue(String key, Map<String, Object> updates, Map<String, String> extras) {
+        Entry entry = new Entry();
+        entry.key = key;
+        entry.updates = updates;
+        entry.extras = extras != null ? extras : new HashMap<>();
+        entry.enqueuedAt = System.currentTimeMillis();
+
+        Task<Void> result;
+        synchronized (this) {
+            int index = indexOf(key);
+            if (index > 0 || (index == 0 && !sending)) {
+                entries.set(index, entry);
+            } else {
+                entries.add(entry);
+            }
+            save();
+            result = resultFor(key).getTask();
+        }
+        MetricsRegistry.get().counter("durable_writes.enqueued").increment();
+        sendNext();
+        return result;
+    }
+
+    /**
+     * @return Whether a write with this key is queued and not yet confirmed by the backend.
+     */
+    public synchronized boolean isPending(String key) {
+        return indexOf(key) >= 0;
+    }
+
+    private void sendNext() {
+        Entry head;
+        boolean expired;
+        synchronized (this) {
+            if (sending || entries.isEmpty()) return;
+            head = entries.get(0);
+            expired = System.currentTimeMillis() - head.enqueuedAt > MAX_AGE_MS;
+            if (expired) {
+                entries.remove(0);
+                save();
+            } else {
+                sending = true;
+            }
+        }
+        if (expired) {
+            fail(head, new Exception("Queued write " + head.key + " expired"));
+            sendNext();
+            return;
+        }
+        RetryPolicy.CRITICAL.execute("durableWrite", () -> backend.updateChildren("", head.updates))
+                .addOnCompleteListener(task -> onSent(head, task));
+    }
+
+    private void onSent(Entry head, Task<Void> task) {
+        if (task.getException() instanceof RetryPolicy.PendingWriteException) {
+            // Still queued in the client; sending it again would only duplicate it, so wait for it to land
+            Log.w(TAG, "Write " + head.key + " still pending, waiting for it to land");
+            RetryPolicy.landed(task).addOnCompleteListener(landed -> onSent(head, landed));
+            return;
+        }
+        boolean permanent = !task.isSuccessful() && !RetryPolicy.isRetryable(task.getException());
+        synchronized (this) {
+            sending = false;
+            if (task.isSuccessful() || permanent) {
+                entries.remove(head);
+                save();
+                resends = 0;
+            }
+        }
+        if (task.isSuccessful()) {
+            MetricsRegistry.get().histogram("durable_writes.confirm_ms").record(System.currentTimeMillis() - head.enqueuedAt);
+            TaskCompletionSource<Void> result = takeResult(head);
+            if (result != null) result.trySetResult(null);
+            sendNext();
+        } else if (permanent) {
+            fail(head, task.getException());
+            sendNext();
+        } else {
+            // Out of retries for now; the entry stays at the head until the backoff or a reconnect
+            long delay;
+            synchronized (this) {
+                delay = RESEND_BACKOFF.backoffMillis(++resends);
+            }
+            Log.w(TAG, "Write " + head.key + " still failing, resending in " + delay + " ms", task.getException());
+            MetricsRegistry.get().counter("durable_writes.resends").increment();
+            handler.removeCallbacks(resend);
+            handler.postDelayed(resend, delay);
+        }
+    }
+
+    private void fail(Entry entry, Exception error) {
+        Exception cause = error != null ? error : new Exception("Queued write " + entry.key + " failed");
+        Log.e(TAG, "Dropping write " + entry.key, cause);
+        MetricsRegistry.get().counter("durable_writes.failed").increment();
+        TaskCompletionSource<Void> result = takeResult(entry);
+        if (result != null) result.trySetException(cause);
+        failureHandler.onPermanentFailure(entry, cause);
+    }
+
+    // The entry may have been replaced while in flight; only complete callers if it was not
+    private synchronized TaskCompletionSource<Void> takeResult(Entry entry) {
+        return indexOf(entry.key) >= 0 ? null : results.remove(entry.key);
+    }
+
+    private TaskCompletionSource<Void> resultFor(String key) {
+        TaskCompletionSource<Void> result = results.get(key);
+        if (result == null) {
+            result = new TaskCompletionSource<>();
+            results.put(key, result);
+        }
+        return result;
+    }
+
+    private int indexOf(String key) {
+        for (int i = 0; i < entries.size(); i++) {
+            if (entries.get(i).key.equals(key)) return i;
+        }
+        return -1;
+    }
+
+    private List<Entry> load() {
+        String json = prefs.getString(KEY_QUEUE, null);
+        if (json == null) return new ArrayList<>();
+        try {
+            List<Entry> loaded = GSON.fromJson(json, LIST_TYPE);
+            return loaded != null ? loaded : new ArrayList<>();
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Discarding unreadable write queue", e);
+            return new ArrayList<>();
+        }
+    }
+
+    private void save() {
+        // commit() rather than apply(): the entry must be on disk before the write is acted on
+        prefs.edit().putString(KEY_QUEUE, GSON.toJson(entries, LIST_TYPE)).commit();
+    }
+}
@@ -0,0 +1,360 @@
+package com.example.tinyreminder.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.SystemClock;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.example.tinyreminder.metrics.MetricsRegistry;
+import com.example.tinyreminder.models.User;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Last-known state of the signed-in user's family, persisted so the Map and Family tabs can
+ * draw it synchronously on open and reconcile with live data afterwards.
+ *
+ * The state is a compact binary file of members with their status, position and a small
+ * avatar thumbnail, a few kilobytes for a typical family. Every update is applied in memory
+ * and written out on a background thread at most once per {@link #WRITE_DELAY_MS}, replacing
+ * the file atomically, so a crash never leaves a torn snapshot behind.
+ */
+public final class FamilySnapshotStore {
+    private static final String TAG = "FamilySnapshotStore";
+    private static final String FILE_NAME = "family_snapshot.bin";
+    private static final int MAGIC = 0x54524653; // "TRFS"
+    private static final int VERSION = 2;
+    /** Edge of the stored avatar thumbnails in pixels. */
+    public static final int THUMBNAIL_SIZE = 64;
+    private static final long WRITE_DELAY_MS = 2000;
+
+    private static FamilySnapshotStore instance;
+
+    private final AtomicFile file;
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "FamilySnapshotWriter");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private boolean loaded;
+    private String ownerId;
+    private String familyId;
+    private final LinkedHashMap<String, Member> members = new LinkedHashMap<>();
+    private ScheduledFuture<?> pendingWrite;
+
+    /**
+     * One member as last seen. Thumbnails are decoded on first use.
+     */
+    public static class Member {
+        public final String id;
+        public String name;
+        public String status;
+        public String profilePictureUrl;
+        public boolean hasLocation;
+        public double latitude;
+        public double longitude;
+        /** Server time the location was written, or 0 if unknown. */
+        public long locationTime;
+        private Bitmap thumbnail;
+        private byte[] encodedThumbnail;
+
+        Member(String id) {
+            this.id = id;
+        }
+
+        Member(Member other) {
+            this(other.id);
+            name = other.name;
+            status = other.status;
+            profilePictureUrl = other.profilePictureUrl;
+            hasLocation = other.hasLocation;
+            latitude = other.latitude;
+            longitude = other.longitude;
+            locationTime = other.locationTime;
+            synchronized (other) {
+                thumbnail = other.thumbnail;
+                encodedThumbnail = other.encodedThumbnail;
+            }
+        }
+
+        /**
+         * @return The avatar thumbnail, {@link #THUMBNAIL_SIZE} pixels square, or null if none was stored.
+         */
+        @Nullable
+        public synchronized Bitmap getThumbnail() {
+            if (thumbnail == null && encodedThumbnail != null) {
+                thumbnail = BitmapFactory.decodeByteArray(encodedThumbnail, 0, encodedThumbnail.length);
+            }
+            return thumbnail;
+        }
+    }
+
+    public static synchronized FamilySnapshotStore get(Context context) {
+        if (instance == null) {
+            instance = new FamilySnapshotStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private FamilySnapshotStore(Context context) {
+        file = new AtomicFile(new File(context.getFilesDir(), FILE_NAME));
+    }
+
+    /**
+     * Reads the snapshot, from disk on the first call. Cheap enough for the main thread.
+     *
+     * @param ownerId The signed-in user; a snapshot saved by anyone else is ignored.
+     * @return A copy of the members in the order they were first seen, or an empty list.
+     */
+    public synchronized List<Member> read(String ownerId) {
+        ensureLoaded();
+        List<Member> copy = new ArrayList<>(members.size());
+        if (!ownerId.equals(this.ownerId)) return copy;
+        for (Member member : members.values()) {
+            copy.add(new Member(member));
+        }
+        return copy;
+    }
+
+    /**
+     * @return The family the snapshot belongs to, or null if it does not belong to the user.
+     */
+    @Nullable
+    public synchronized String getFamilyId(String ownerId) {
+        ensureLoaded();
+        return ownerId.equals(this.ownerId) ? familyId : null;
+    }
+
+    /**
+     * Starts a fresh snapshot when the user or their family changed; otherwise keeps it.
+     */
+    public synchronized void setFamily(String ownerId, @Nullable String familyId) {
+        ensureLoaded();
+        if (ownerId.equals(this.ownerId) && equal(familyId, this.familyId)) return;
+        this.ownerId = ownerId;
+        this.familyId = familyId;
+        members.clear();
+        scheduleWrite();
+    }
+
+    public synchronized void putProfile(String memberId, User user) {
+        Member member = member(memberId);
+        if (equal(member.name, user.getName()) && equal(member.status, user.getStatus())
+                && equal(member.profilePictureUrl, user.getProfilePictureUrl())) {
+            return;
+        }
+        member.name = user.getName();
+        member.status = user.getStatus();
+        member.profilePictureUrl = user.getProfilePictureUrl();
+        scheduleWrite();
+    }
+
+    public synchronized void putLocation(String memberId, double latitude, double longitude, long time) {
+        Member member = member(memberId);
+        if (member.hasLocation && member.latitude == latitude && member.longitude == longitude
+                && member.locationTime == time) {
+            return;
+        }
+        member.hasLocation = true;
+        member.latitude = latitude;
+        member.longitude = longitude;
+        member.locationTime = time;
+        scheduleWrite();
+    }
+
+    /**
+     * Stores the member's current avatar, scaled down to {@link #THUMBNAIL_SIZE}.
+     */
+    public void putThumbnail(String memberId, Bitmap picture) {
+        Bitmap thumbnail = Bitmap.createScaledBitmap(picture, THUMBNAIL_SIZE, THUMBNAIL_SIZE, true);
+        synchronized (this) {
+            Member member = member(memberId);
+            synchronized (member) {
+                member.thumbnail = thumbnail;
+                member.encodedThumbnail = null;
+            }
+            scheduleWrite();
+        }
+    }
+
+    public synchronized void removeMember(String memberId) {
+        if (members.remove(memberId) != null) {
+            scheduleWrite();
+        }
+    }
+
+    /**
+     * Forgets the snapshot and deletes its file, e.g. on sign-out, so no family data stays on the device.
+     */
+    public synchronized void clear() {
+        loaded = true;
+        ownerId = null;
+        familyId = null;
+        members.clear();
+        if (pendingWrite != null) {
+            pendingWrite.cancel(false);
+            pendingWrite = null;
+        }
+        // Queued behind any write in progress, so the file cannot be written again after this
+        writer.execute(file::delete);
+    }
+
+    private Member member(String memberId) {
+        ensureLoaded();
+        Member member = members.get(memberId);
+        if (member == null) {
+            member = new Member(memberId);
+            members.put(memberId, member);
+        }
+        return member;
+    }
+
+    private static boolean equal(@Nullable String a, @Nullable String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private void scheduleWrite() {
+        if (pendingWrite != null) return;
+        pendingWrite = writer.schedule(this::writeNow, WRITE_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void ensureLoaded() {
+        if (loaded) return;
+        loaded = true;
+        long start = SystemClock.elapsedRealtime();
+        try {
+            decode(file.readFully());
+            MetricsRegistry.get().histogram("family_snapshot.read_ms").record(SystemClock.elapsedRealtime() - start);
+        } catch (FileNotFoundException e) {
+            // Nothing saved yet
+        } catch (IOException e) {
+            Log.w(TAG, "Discarding unreadable family snapshot", e);
+            members.clear();
+            ownerId = null;
+            familyId = null;
+        }
+    }
+
+    private void decode(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Unknown snapshot format");
+        }
+        ownerId = in.readUTF();
+        familyId = readNullable(in);
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            Member member = new Member(in.readUTF());
+            member.name = readNullable(in);
+            member.status = readNullable(in);
+            member.profilePictureUrl = readNullable(in);
+            member.hasLocation = in.readBoolean();
+            member.latitude = in.readDouble();
+            member.longitude = in.readDouble();
+            member.locationTime = in.readLong();
+            int thumbnailLength = in.readInt();
+            if (thumbnailLength > 0) {
+                member.encodedThumbnail = new byte[thumbnailLength];
+                in.readFully(member.encodedThumbnail);
+            }
+            members.put(member.id, member);
+        }
+    }
+
+    // Runs on the writer thread: copies the state under the lock, then encodes and writes without it
+    private void writeNow() {
+        String owner;
+        String family;
+        List<Member> snapshot = new ArrayList<>();
+        synchronized (this) {
+            // Updates from here on schedule another write
+            pendingWrite = null;
+            owner = ownerId;
+            family = familyId;
+            for (Member member : members.values()) {
+                snapshot.add(new Member(member));
+            }
+        }
+        if (owner == null) return;
+
+        long start = SystemClock.elapsedRealtime();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        FileOutputStream stream = null;
+        try {
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(owner);
+            writeNullable(out, family);
+            out.writeInt(snapshot.size());
+            for (Member member : snapshot) {
+                out.writeUTF(member.id);
+                writeNullable(out, member.name);
+                writeNullable(out, member.status);
+                writeNullable(out, member.profilePictureUrl);
+                out.writeBoolean(member.hasLocation);
+                out.writeDouble(member.latitude);
+                out.writeDouble(member.longitude);
+                out.writeLong(member.locationTime);
+                byte[] thumbnail = encodedThumbnail(member);
+                out.writeInt(thumbnail != null ? thumbnail.length : 0);
+                if (thumbnail != null) out.write(thumbnail);
+            }
+            out.flush();
+
+            stream = file.startWrite();
+            stream.write(bytes.toByteArray());
+            file.finishWrite(stream);
+            MetricsRegistry.get().histogram("family_snapshot.write_ms").record(SystemClock.elapsedRealtime() - start);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to write family snapshot", e);
+            if (stream != null) file.failWrite(stream);
+        }
+    }
+
+    // Thumbnails are encoded once and the bytes kept until the member's avatar changes
+    @Nullable
+    private byte[] encodedThumbnail(Member copy) {
+        if (copy.encodedThumbnail != null || copy.thumbnail == null) return copy.encodedThumbnail;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        copy.thumbnail.compress(Bitmap.CompressFormat.WEBP, 80, bytes);
+        byte[] encoded = bytes.toByteArray();
+        synchronized (this) {
+            Member member = members.get(copy.id);
+            if (member != null) {
+                synchronized (member) {
+                    if (member.thumbnail == copy.thumbnail) member.encodedThumbnail = encoded;
+                }
+            }
+        }
+        return encoded;
+    }
+
+    @Nullable
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeNullable(DataOutputStream out, @Nullable String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) out.writeUTF(value);
+    }
+}
@@ -0,0 +1,335 @@
+package com.example.tinyreminder.utils;
+
+import android.Manifest;
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.media.AudioAttributes;
+import android.media.RingtoneManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.core.app.ActivityCompat;
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.NotificationManagerCompat;
+
+import com.example.tinyreminder.MainActivity;
+import com.example.tinyreminder.R;
+import com.example.tinyreminder.metrics.MetricsRegistry;
+import com.example.tinyreminder.receivers.NotificationActionReceiver;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Posts every notification the app shows. Channels are created once per process, when the
+ * dispatcher is first used, and each kind of notification starts from one shared template.
+ *
+ * Family alerts are grouped: repeated alerts for the same event update one notification with
+ * a running count, and alerts for several events are collapsed under a summary. Updates for
+ * the same event and sender are rate limited; alerts arriving inside the interval are counted
+ * and folded into a single deferred update.
+ *
+ * When the family cannot be reached, the parking reminder becomes an alarm on its own channel,
+ * with alarm sound and a full-screen intent.
+ */
+public final class NotificationDispatcher {
+    private static final String TAG = "NotificationDispatcher";
+    public static final String CHANNEL_REMINDERS = "ParkingReminders";
+    public static final String CHANNEL_TRACKING = "LocationServiceChannel";
+    public static final String CHANNEL_ALARMS = "ParkingAlarms";
+    private static final String GROUP_FAMILY_ALERTS = "com.example.tinyreminder.FAMILY_ALERTS";
+    private static final String KEY_ALERT_SUMMARY = "alert-summary";
+    static final long MIN_ALERT_INTERVAL_MS = 30 * 1000;
+
+    private static NotificationDispatcher instance;
+
+    private final Context context;
+    private final NotificationManagerCompat notificationManager;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    // Active family alerts by event id, in arrival order for the summary
+    private final Map<String, FamilyAlert> familyAlerts = new LinkedHashMap<>();
+    private final Map<String, Long> lastAlertPostedAt = new HashMap<>();
+    private Notification trackingNotification;
+
+    private static class FamilyAlert {
+        String userId;
+        String senderName;
+        int count;
+        boolean updateScheduled;
+    }
+
+    public static synchronized NotificationDispatcher get(Context context) {
+        if (instance == null) {
+            instance = new NotificationDispatcher(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private NotificationDispatcher(Context context) {
+        this.context = context;
+        this.notificationManager = NotificationManagerCompat.from(context);
+        createChannels();
+    }
+
+    private void createChannels() {
+        NotificationManager manager = context.getSystemService(NotificationManager.class);
+        if (manager == null) {
+            Log.e(TAG, "NotificationManager is null, can't create notification channels");
+            return;
+        }
+        NotificationChannel reminders = new NotificationChannel(CHANNEL_REMINDERS, "Parking Reminders", NotificationManager.IMPORTANCE_HIGH);
+        reminders.setDescription("Notifications for parking reminders");
+        reminders.enableVibration(true);
+        reminders.setLockscreenVisibility(Notification.VISIBILITY_PUBLIC);
+        manager.createNotificationChannel(reminders);
+
+        // Sounds like an alarm clock, through Do Not Disturb's alarm exception
+        NotificationChannel alarms = new NotificationChannel(CHANNEL_ALARMS, "Parking Alarms", NotificationManager.IMPORTANCE_HIGH);
+        alarms.setDescription("Alarms when your family cannot be reached");
+        alarms.enableVibration(true);
+        alarms.setLockscreenVisibility(Notification.VISIBILITY_PUBLIC);
+        alarms.setSound(RingtoneManager.getDefaultUri(RingtoneManager.TYPE_ALARM), new AudioAttributes.Builder()
+                .setUsage(AudioAttributes.USAGE_ALARM)
+                .setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION)
+                .build());
+        manager.createNotificationChannel(alarms);
+
+        NotificationChannel tracking = new NotificationChannel(CHANNEL_TRACKING, "Location Service Channel", NotificationManager.IMPORTANCE_DEFAULT);
+        manager.createNotificationChannel(tracking);
+    }
+
+    // Fields shared by everything posted on the channel
+    private NotificationCompat.Builder template(String channelId) {
+        return new NotificationCompat.Builder(context, channelId)
+                .setSmallIcon(R.drawable.ic_notification)
+                .setPriority(NotificationCompat.PRIORITY_HIGH)
+                .setAutoCancel(true); // Auto-cancel the notification when tapped
+    }
+
+    /**
+     * @return The ongoing notification shared by the foreground location services, built once.
+     */
+    public synchronized Notification getTrackingNotification() {
+        if (trackingNotification == null) {
+            Intent notificationIntent = new Intent(context, MainActivity.class);
+            PendingIntent pendingIntent = PendingIntent.getActivity(context, 0, notificationIntent, PendingIntent.FLAG_IMMUTABLE);
+            trackingNotification = new NotificationCompat.Builder(context, CHANNEL_TRACKING)
+                    .setContentTitle("Location Tracking")
+                    .setContentText("Tracking your location")
+                    .setSmallIcon(R.drawable.ic_notification)
+                    .setContentIntent(pendingIntent)
+                    .build();
+        }
+        return trackingNotification;
+    }
+
+    /**
+     * Shows or updates the parking reminder for an event, with confirm and cancel actions.
+     */
+    public void showParkingReminder(String userId, String eventId, String message) {
+        NotificationRegistry.Entry ids = NotificationRegistry.get(context).getOrAllocate(eventId);
+        PendingIntent confirm = actionIntent("ACTION_CONFIRM", userId, eventId, ids.notificationId, ids.primaryRequestCode);
+        PendingIntent cancel = actionIntent("ACTION_CANCEL", userId, eventId, ids.notificationId, ids.secondaryRequestCode);
+
+        NotificationCompat.Builder builder = template(CHANNEL_REMINDERS)
+                .setContentTitle("Parking Reminder")
+                .setContentText(message)
+                .setCategory(NotificationCompat.CATEGORY_ALARM) // Alarm category for critical alerts
+                .addAction(R.drawable.ic_check, "Child is present", confirm)
+                .addAction(R.drawable.ic_close, "Child is not present", cancel);
+        post(ids.notificationId, builder, "parking reminder for " + eventId);
+    }
+
+    /**
+     * Replaces the parking reminder for an event with a full-screen alarm whose sound repeats
+     * until it is answered or cancelled. It keeps the reminder's id and actions, so answering
+     * or cancelling the reminder also ends the alarm.
+     */
+    public void showAlarm(String userId, String eventId) {
+        NotificationRegistry.Entry ids = NotificationRegistry.get(context).getOrAllocate(eventId);
+        PendingIntent confirm = actionIntent("ACTION_CONFIRM", userId, eventId, ids.notificationId, ids.primaryRequestCode);
+        PendingIntent cancel = actionIntent("ACTION_CANCEL", userId, eventId, ids.notificationId, ids.secondaryRequestCode);
+
+        Intent intent = new Intent(context, MainActivity.class);
+        intent.putExtra("userId", userId);
+        intent.putExtra("eventId", eventId);
+        intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP);
+        PendingIntent fullScreen = PendingIntent.getActivity(context, ids.primaryRequestCode, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+
+        NotificationCompat.Builder builder = template(CHANNEL_ALARMS)
+                .setContentTitle("Is the child still in the car?")
+                .setContentText("Your family cannot be reached. Please check the car now.")
+                .setPriority(NotificationCompat.PRIORITY_MAX)
+                .setCategory(NotificationCompat.CATEGORY_ALARM)
+                .setVisibility(NotificationCompat.VISIBILITY_PUBLIC)
+                .setFullScreenIntent(fullScreen, true)
+                .setContentIntent(fullScreen)
+                .setOngoing(true)
+                .setAutoCancel(false)
+                .addAction(R.drawable.ic_check, "Child is present", confirm)
+                .addAction(R.drawable.ic_close, "Child is not present", cancel);
+        Notification notification = builder.build();
+        notification.flags |= Notification.FLAG_INSISTENT; // Repeat the sound until the alarm is dealt with
+        post(ids.notificationId, notification, "alarm for " + eventId);
+    }
+
+    /**
+     * Shows a family alert, grouped per event and rate limited per event and sender.
+     */
+    public void showFamilyAlert(String userId, String eventId, String senderId, String senderName) {
+        String rateKey = eventId + "/" + senderId;
+        long delay;
+        synchronized (this) {
+            FamilyAlert alert = familyAlerts.get(eventId);
+            if (alert == null) {
+                alert = new FamilyAlert();
+                familyAlerts.put(eventId, alert);
+            }
+            alert.userId = userId;
+            if (senderName != null && !senderName.isEmpty()) {
+                alert.senderName = senderName;
+            }
+            alert.count++;
+
+            Long lastPosted = lastAlertPostedAt.get(rateKey);
+            long now = SystemClock.elapsedRealtime();
+            delay = lastPosted == null ? 0 : lastPosted + MIN_ALERT_INTERVAL_MS - now;
+            if (delay > 0) {
+                MetricsRegistry.get().counter("notifications.alerts_rate_limited").increment();
+                if (alert.updateScheduled) return;
+                alert.updateScheduled = true;
+                lastAlertPostedAt.put(rateKey, now + delay);
+            } else {
+                lastAlertPostedAt.put(rateKey, now);
+            }
+        }
+        if (delay > 0) {
+            handler.postDelayed(() -> postFamilyAlert(eventId), delay);
+        } else {
+            postFamilyAlert(eventId);
+        }
+    }
+
+    /**
+     * Removes the family alert for an event and updates the summary.
+     */
+    public void cancelFamilyAlert(String eventId) {
+        synchronized (this) {
+            familyAlerts.remove(eventId);
+            lastAlertPostedAt.keySet().removeIf(rateKey -> rateKey.startsWith(eventId + "/"));
+        }
+        NotificationRegistry.Entry ids = NotificationRegistry.get(context).remove("alert:" + eventId);
+        if (ids != null) {
+            notificationManager.cancel(ids.notificationId);
+            Log.d(TAG, "Family alert cancelled for event: " + eventId);
+        }
+        postAlertSummary();
+    }
+
+    /**
+     * Removes the notification registered under the key, if one is showing.
+     */
+    public void cancel(String key) {
+        NotificationRegistry.Entry ids = NotificationRegistry.get(context).remove(key);
+        if (ids != null) {
+            notificationManager.cancel(ids.notificationId);
+            Log.d(TAG, "Notification cancelled: " + key);
+        }
+    }
+
+    private void postFamilyAlert(String eventId) {
+        FamilyAlert alert;
+        int count;
+        synchronized (this) {
+            alert = familyAlerts.get(eventId);
+            if (alert == null) return; // Answered while the update was deferred
+            alert.updateScheduled = false;
+            count = alert.count;
+        }
+        NotificationRegistry.Entry ids = NotificationRegistry.get(context).getOrAllocate("alert:" + eventId);
+        NotificationCompat.Builder builder = template(CHANNEL_REMINDERS)
+                .setContentTitle("Family Alert")
+                .setContentText(alertText(alert))
+                .setCategory(NotificationCompat.CATEGORY_ALARM)
+                .setContentIntent(openAppIntent(alert.userId, ids.primaryRequestCode))
+                .setGroup(GROUP_FAMILY_ALERTS);
+        if (count > 1) {
+            builder.setSubText(count + " alerts");
+        }
+        post(ids.notificationId, builder, "family alert for " + eventId);
+        postAlertSummary();
+    }
+
+    // A summary is only needed once alerts for two or more events are showing
+    private void postAlertSummary() {
+        NotificationCompat.InboxStyle style = new NotificationCompat.InboxStyle();
+        int events;
+        String userId = null;
+        synchronized (this) {
+            events = familyAlerts.size();
+            for (FamilyAlert alert : familyAlerts.values()) {
+                style.addLine(alertText(alert));
+                userId = alert.userId;
+            }
+        }
+        if (events < 2) {
+            cancel(KEY_ALERT_SUMMARY);
+            return;
+        }
+        NotificationRegistry.Entry ids = NotificationRegistry.get(context).getOrAllocate(KEY_ALERT_SUMMARY);
+        NotificationCompat.Builder builder = template(CHANNEL_REMINDERS)
+                .setContentTitle(events + " family alerts")
+                .setStyle(style.setSummaryText(events + " unanswered"))
+                .setContentIntent(openAppIntent(userId, ids.primaryRequestCode))
+                .setGroup(GROUP_FAMILY_ALERTS)
+                .setGroupSummary(true)
+                .setGroupAlertBehavior(NotificationCompat.GROUP_ALERT_CHILDREN);
+        post(ids.notificationId, builder, "family alert summary");
+    }
+
+    private static String alertText(FamilyAlert alert) {
+        String who = alert.senderName != null ? alert.senderName : "A family member";
+        return who + " may have left a child in the car!";
+    }
+
+    private PendingIntent actionIntent(String action, String userId, String eventId, int notificationId, int requestCode) {
+        Intent intent = new Intent(context, NotificationActionReceiver.class);
+        intent.setAction(action);
+        intent.putExtra("userId", userId);
+        intent.putExtra("eventId", eventId);
+        intent.putExtra("notificationId", notificationId);
+        return PendingIntent.getBroadcast(context, requestCode, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+    }
+
+    // Opens the main activity when the notification is tapped
+    private PendingIntent openAppIntent(String userId, int requestCode) {
+        Intent intent = new Intent(context, MainActivity.class);
+        intent.putExtra("userId", userId);
+        intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
+        return PendingIntent.getActivity(context, requestCode, intent, PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+    }
+
+    private void post(int notificationId, NotificationCompat.Builder builder, String description) {
+        post(notificationId, builder.build(), description);
+    }
+
+    private void post(int notificationId, Notification notification, String description) {
+        if (ActivityCompat.checkSelfPermission(context, Manifest.permission.POST_NOTIFICATIONS) != PackageManager.PERMISSION_GRANTED) {
+            Log.e(TAG, "Notification permission not granted, dropping " + description);
+            return;
+        }
+        notificationManager.notify(notificationId, notification);
+        MetricsRegistry.get().counter("notifications.posted").increment();
+        Log.d(TAG, "Posted " + description);
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.tinyreminder.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Persisted map from a notification key (usually a parking event id) to its notification id
+ * and PendingIntent request codes.
+ *
+ * Ids come from a monotonic counter stored with the map, so they never collide with each
+ * other or with fixed request codes below {@link #FIRST_ID}, even across process restarts.
+ * Re-notifying the same key reuses its ids, so the notification updates in place.
+ */
+public final class NotificationRegistry {
+    private static final String TAG = "NotificationRegistry";
+    private static final String PREFS_NAME = "notification_registry";
+    private static final String KEY_NEXT_ID = "next_id";
+    private static final String ENTRY_PREFIX = "entry:";
+    /** Codes below this are reserved for fixed PendingIntents such as the escalation alarm. */
+    public static final int FIRST_ID = 1000;
+    private static final int IDS_PER_ENTRY = 3;
+    private static final int MAX_ENTRIES = 256;
+
+    private static NotificationRegistry instance;
+
+    private final SharedPreferences prefs;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private int nextId;
+
+    /**
+     * Ids owned by one notification.
+     */
+    public static class Entry {
+        public final int notificationId;
+        public final int primaryRequestCode;
+        public final int secondaryRequestCode;
+
+        Entry(int notificationId, int primaryRequestCode, int secondaryRequestCode) {
+            this.notificationId = notificationId;
+            this.primaryRequestCode = primaryRequestCode;
+            this.secondaryRequestCode = secondaryRequestCode;
+        }
+    }
+
+    public static synchronized NotificationRegistry get(Context context) {
+        if (instance == null) {
+            instance = new NotificationRegistry(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private NotificationRegistry(Context context) {
+        prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        nextId = prefs.getInt(KEY_NEXT_ID, FIRST_ID);
+        for (Map.Entry<String, ?> stored : prefs.getAll().entrySet()) {
+            if (stored.getKey().startsWith(ENTRY_PREFIX) && stored.getValue() instanceof String) {
+                Entry entry = parse((String) stored.getValue());
+                if (entry != null) {
+                    entries.put(stored.getKey().substring(ENTRY_PREFIX.length()), entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The ids for the key, allocating and persisting new ones on first use.
+     */
+    public synchronized Entry getOrAllocate(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null) return entry;
+
+        if (entries.size() >= MAX_ENTRIES) {
+            evictOldest();
+        }
+        int base = allocate(IDS_PER_ENTRY);
+        entry = new Entry(base, base + 1, base + 2);
+        entries.put(key, entry);
+        prefs.edit()
+                .putInt(KEY_NEXT_ID, nextId)
+                .putString(ENTRY_PREFIX + key, entry.notificationId + "," + entry.primaryRequestCode + "," + entry.secondaryRequestCode)
+                .commit();
+        return entry;
+    }
+
+    /**
+     * @return The ids for the key, or null if nothing was ever shown for it.
+     */
+    public synchronized Entry find(String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Forgets the key; the caller is expected to cancel its notification.
+     *
+     * @return The removed ids, or null if the key was unknown.
+     */
+    public synchronized Entry remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            prefs.edit().remove(ENTRY_PREFIX + key).commit();
+        }
+        return entry;
+    }
+
+    private int allocate(int count) {
+        if (nextId > Integer.MAX_VALUE - count) {
+            // Never reached in practice, but wrapping keeps ids positive and clear of reserved codes
+            nextId = FIRST_ID;
+        }
+        int base = nextId;
+        nextId += count;
+        return base;
+    }
+
+    // Oldest entry has the lowest id, since ids are allocated monotonically
+    private void evictOldest() {
+        String oldestKey = null;
+        int oldestId = Integer.MAX_VALUE;
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            if (entry.getValue().notificationId < oldestId) {
+                oldestId = entry.getValue().notificationId;
+                oldestKey = entry.getKey();
+            }
+        }
+        if (oldestKey != null) {
+            entries.remove(oldestKey);
+            prefs.edit().remove(ENTRY_PREFIX + oldestKey).apply();
+        }
+    }
+
+    private static Entry parse(String value) {
+        String[] parts = value.split(",");
+        if (parts.length != IDS_PER_ENTRY) return null;
+        try {
+            return new Entry(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+        } catch (NumberFormatException e) {
+            Log.w(TAG, "Skipping corrupt registry entry: " + value);
+            return null;
+        }
+    }
+}
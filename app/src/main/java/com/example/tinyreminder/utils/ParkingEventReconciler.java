@@ -0,0 +1,44 @@
+package com.example.tinyreminder.utils;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.tinyreminder.escalation.EscalationManager;
+import com.example.tinyreminder.metrics.MetricsRegistry;
+
+/**
+ * Undoes the local effects of parking event writes that the backend rejected for good.
+ * Both the reminder and the driver's answer are applied locally before the server has them,
+ * so a rejected write has to be rolled back where the driver can see it.
+ */
+class ParkingEventReconciler implements DurableWriteQueue.FailureHandler {
+    private static final String TAG = "ParkingEventReconciler";
+    private final Context context;
+
+    ParkingEventReconciler(Context context) {
+        this.context = context;
+    }
+
+    @Override
+    public void onPermanentFailure(DurableWriteQueue.Entry entry, Exception error) {
+        String eventId = entry.extras.get(DatabaseManager.EXTRA_EVENT_ID);
+        String userId = entry.extras.get(DatabaseManager.EXTRA_USER_ID);
+        if (eventId == null || userId == null) return;
+
+        if (entry.key.startsWith(DatabaseManager.KEY_CREATE_PARKING_EVENT)) {
+            Log.w(TAG, "Parking event " + eventId + " never reached the server", error);
+            MetricsRegistry.get().counter("parking.persist_failed").increment();
+            // Family alerts are fanned out from the server event, so escalating further cannot reach anyone
+            EscalationManager.get(context).cancel(eventId);
+            NotificationHelper.showParkingReminder(context, userId, eventId,
+                    "Your family could not be notified. Is the child still in the car?");
+        } else if (entry.key.startsWith(DatabaseManager.KEY_ANSWER_PARKING_EVENT)) {
+            Log.w(TAG, "Answer " + entry.extras.get(DatabaseManager.EXTRA_ANSWER) + " for " + eventId + " was rejected", error);
+            MetricsRegistry.get().counter("parking.answer_failed").increment();
+            // The server still has the event as unanswered: ask again and resume escalating
+            EscalationManager.get(context).start(eventId, userId);
+            NotificationHelper.showParkingReminder(context, userId, eventId,
+                    "Your answer could not be saved. Is the child still in the car?");
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.tinyreminder.utils;
+
+import android.util.Log;
+
+import com.example.tinyreminder.backend.BackendError;
+import com.example.tinyreminder.backend.BackendException;
+import com.example.tinyreminder.metrics.MetricsRegistry;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Retries a backend write with jittered exponential backoff until it succeeds, the attempt
+ * limit is hit, or the next attempt would start after the deadline.
+ *
+ * Only attempts the backend reports as failed are retried. A write made while offline or over a
+ * slow link does not fail; it waits in the client's local queue and is sent once the server can
+ * be reached, so sending it again would only queue duplicates. If an attempt is still pending
+ * at the deadline, the result fails with a {@link PendingWriteException} carrying that attempt,
+ * and {@link #landed(Task)} follows it to its real outcome.
+ *
+ * Operations must be idempotent: every attempt has to write the same value to the same path
+ * (callers generate push keys once, before the first attempt). Permission errors and
+ * exceptions thrown synchronously by the operation are never retried.
+ */
+public class RetryPolicy {
+    private static final String TAG = "RetryPolicy";
+
+    /** Policy for writes that gate a parking reminder or family alert. */
+    public static final RetryPolicy CRITICAL = new RetryPolicy(250, 8_000, 2.0, 45_000, 10);
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "RetryScheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final long initialDelayMillis;
+    private final long maxDelayMillis;
+    private final double multiplier;
+    private final long deadlineMillis;
+    private final int maxAttempts;
+
+    /**
+     * The result of a write whose last attempt had neither succeeded nor failed by the deadline.
+     * The attempt stays in the client's queue and may still land.
+     */
+    public static class PendingWriteException extends Exception {
+        private final Task<?> write;
+
+        PendingWriteException(String name, Task<?> write) {
+            super(name + " is still pending at the deadline");
+            this.write = write;
+        }
+
+        /**
+         * @return The pending attempt, completing when the server accepts or rejects it.
+         */
+        public Task<?> getWrite() {
+            return write;
+        }
+    }
+
+    /**
+     * @param initialDelayMillis Backoff ceiling before the first retry.
+     * @param maxDelayMillis     Upper bound for any single backoff.
+     * @param multiplier         Growth of the backoff ceiling per retry.
+     * @param deadlineMillis     Total time budget, measured from the first attempt.
+     * @param maxAttempts        Attempts including the first one.
+     */
+    public RetryPolicy(long initialDelayMillis, long maxDelayMillis, double multiplier, long deadlineMillis, int maxAttempts) {
+        this.initialDelayMillis = initialDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.multiplier = multiplier;
+        this.deadlineMillis = deadlineMillis;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Runs the operation, retrying failures according to this policy.
+     *
+     * @param name      Name used for log lines and the "retry.{name}.*" metrics.
+     * @param operation Starts one attempt of the write.
+     * @return A task completing with the first successful attempt's result or the last failure,
+     *         at the latest at the deadline.
+     */
+    public <T> Task<T> execute(String name, Supplier<Task<T>> operation) {
+        TaskCompletionSource<T> result = new TaskCompletionSource<>();
+        attempt(name, operation, result, 1, System.nanoTime());
+        return result.getTask();
+    }
+
+    /**
+     * @return A task completing like {@code result}, except that a write still pending at the
+     *         deadline completes once that write lands or fails, for callers that must not treat
+     *         it as lost.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Task<T> landed(Task<T> result) {
+        return result.continueWithTask(Runnable::run, task -> {
+            Exception error = task.getException();
+            if (error instanceof PendingWriteException) {
+                return (Task<T>) ((PendingWriteException) error).getWrite();
+            }
+            return task;
+        });
+    }
+
+    /**
+     * Backoff before the given retry: half of the exponential ceiling plus a random share of
+     * the other half, so devices that failed together do not retry together.
+     *
+     * @param retry The retry number, starting at 1.
+     */
+    public long backoffMillis(int retry) {
+        double ceiling = Math.min(maxDelayMillis, initialDelayMillis * Math.pow(multiplier, retry - 1));
+        double half = ceiling / 2;
+        return (long) (half + ThreadLocalRandom.current().nextDouble() * half);
+    }
+
+    /**
+     * @return Whether a failed attempt may be retried; permission errors never succeed on retry.
+     */
+    public static boolean isRetryable(Exception e) {
+        return !(e instanceof BackendException) || ((BackendException) e).getCode() != BackendError.PERMISSION_DENIED;
+    }
+
+    private <T> void attempt(String name, Supplier<Task<T>> operation, TaskCompletionSource<T> result,
+                             int attempt, long startNanos) {
+        MetricsRegistry metrics = MetricsRegistry.get();
+        metrics.counter("retry." + name + ".attempts").increment();
+
+        Task<T> task;
+        try {
+            task = operation.get();
+        } catch (RuntimeException e) {
+            // Invalid data or paths fail synchronously and would fail the same way again
+            metrics.counter("retry." + name + ".gave_up").increment();
+            result.trySetException(e);
+            return;
+        }
+
+        // Whichever comes first, completion or the deadline, settles this attempt
+        AtomicBoolean decided = new AtomicBoolean();
+        long remainingMillis = deadlineMillis - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        ScheduledFuture<?> deadline = scheduler.schedule(() -> {
+            if (!decided.compareAndSet(false, true)) return;
+            Log.w(TAG, name + " attempt " + attempt + " still pending at the deadline");
+            metrics.counter("retry." + name + ".pending_at_deadline").increment();
+            result.trySetException(new PendingWriteException(name, task));
+        }, Math.max(0, remainingMillis), TimeUnit.MILLISECONDS);
+
+        task.addOnCompleteListener(Runnable::run, completed -> {
+            deadline.cancel(false);
+            if (!decided.compareAndSet(false, true)) {
+                // Already reported as pending; landed() hands this outcome to the callers that wait for it
+                if (completed.isSuccessful()) {
+                    metrics.counter("retry." + name + ".landed_late").increment();
+                }
+                return;
+            }
+            if (completed.isSuccessful()) {
+                result.trySetResult(completed.getResult());
+                if (attempt > 1) {
+                    long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+                    metrics.counter("retry." + name + ".recovered").increment();
+                    metrics.histogram("retry." + name + ".recovery_ms").record(elapsedMillis);
+                }
+                return;
+            }
+            onFailure(name, operation, result, attempt, startNanos, completed.getException());
+        });
+    }
+
+    private <T> void onFailure(String name, Supplier<Task<T>> operation, TaskCompletionSource<T> result,
+                               int attempt, long startNanos, Exception error) {
+        MetricsRegistry metrics = MetricsRegistry.get();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        long delay = backoffMillis(attempt);
+        if (attempt >= maxAttempts || elapsedMillis + delay > deadlineMillis || !isRetryable(error)) {
+            Log.e(TAG, name + " failed after " + attempt + " attempt(s) in " + elapsedMillis + " ms", error);
+            metrics.counter("retry." + name + ".gave_up").increment();
+            result.trySetException(error != null ? error : new Exception(name + " failed"));
+            return;
+        }
+
+        Log.w(TAG, name + " attempt " + attempt + " failed, retrying in " + delay + " ms", error);
+        metrics.counter("retry." + name + ".retries").increment();
+        scheduler.schedule(() -> attempt(name, operation, result, attempt + 1, startNanos), delay, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.tinyreminder.backend;
+
+import com.google.android.gms.tasks.Task;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the backend contract on the JVM, plus what only the in-memory engine promises.
+ */
+public class InMemoryBackendTest extends DatabaseBackendContract {
+
+    @Override
+    protected DatabaseBackend createBackend() {
+        return new InMemoryBackend();
+    }
+
+    @Test
+    public void runsTaskListenersWithoutALooper() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(2);
+        Task<Void> write = backend.setValue(path("flag"), true);
+
+        write.addOnSuccessListener(aVoid -> latch.countDown());
+        write.continueWith(task -> task.isSuccessful()).addOnSuccessListener(successful -> {
+            if (successful) latch.countDown();
+        });
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void appliesOnDisconnectWritesWhenTheConnectionDrops() throws InterruptedException {
+        await(backend.setOnDisconnect(path("online"), false));
+        await(backend.setValue(path("online"), true));
+
+        await(((InMemoryBackend) backend).setConnected(false));
+
+        assertEquals(false, read(path("online")).getValue());
+    }
+}
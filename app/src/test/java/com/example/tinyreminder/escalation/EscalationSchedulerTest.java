@@ -0,0 +1,369 @@
+package com.example.tinyreminder.escalation;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives EscalationScheduler with a virtual clock: advancing the clock fires the armed alarm
+ * exactly like AlarmManager would, so whole escalations run in microseconds.
+ */
+public class EscalationSchedulerTest {
+    private static final long MINUTE = 60 * 1000;
+
+    private final EscalationPolicy policy = new EscalationPolicy(2)
+            .then(EscalationStage.REMIND_DRIVER, MINUTE)
+            .then(EscalationStage.ALERT_NEAREST, MINUTE)
+            .then(EscalationStage.ALERT_FAMILY, 2 * MINUTE);
+
+    private VirtualClock clock;
+    private MemoryStore store;
+    private RecordingHandler handler;
+    private EscalationScheduler scheduler;
+
+    /** Clock plus the single alarm; advancing past the armed time fires it. */
+    private class VirtualClock implements EscalationScheduler.Alarm {
+        long now = 1_000_000;
+        long armedAt = -1;
+        int armCount;
+
+        @Override
+        public void arm(long triggerAtMillis) {
+            armedAt = triggerAtMillis;
+            armCount++;
+        }
+
+        @Override
+        public void cancel() {
+            armedAt = -1;
+        }
+
+        void advance(long millis) {
+            long target = now + millis;
+            while (armedAt != -1 && armedAt <= target) {
+                now = Math.max(now, armedAt);
+                armedAt = -1;
+                scheduler.onAlarm();
+            }
+            now = target;
+        }
+    }
+
+    private static class MemoryStore implements EscalationScheduler.Store {
+        List<EscalationEntry> saved = new ArrayList<>();
+
+        @Override
+        public List<EscalationEntry> load() {
+            return new ArrayList<>(saved);
+        }
+
+        @Override
+        public void save(List<EscalationEntry> entries) {
+            saved = new ArrayList<>(entries);
+        }
+    }
+
+    private class RecordingHandler implements EscalationScheduler.StageHandler {
+        final List<String> fired = new ArrayList<>();
+
+        @Override
+        public void onStage(EscalationEntry entry, EscalationStage stage, Runnable done) {
+            fired.add((clock.now - 1_000_000) / 1000 + "s " + entry.eventId + " " + stage);
+            done.run();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        clock = new VirtualClock();
+        store = new MemoryStore();
+        handler = new RecordingHandler();
+        scheduler = newScheduler();
+    }
+
+    private EscalationScheduler newScheduler() {
+        return new EscalationScheduler(policy, () -> clock.now, store, clock, handler);
+    }
+
+    @Test
+    public void runsEveryStepInOrderThenRepeatsTheLastOne() {
+        scheduler.start("e1", "driver");
+
+        clock.advance(20 * MINUTE);
+
+        List<String> expected = new ArrayList<>();
+        expected.add("60s e1 REMIND_DRIVER");
+        expected.add("120s e1 ALERT_NEAREST");
+        expected.add("240s e1 ALERT_FAMILY");
+        expected.add("360s e1 ALERT_FAMILY");
+        expected.add("480s e1 ALERT_FAMILY");
+        assertEquals(expected, handler.fired);
+        assertFalse(scheduler.isEscalating("e1"));
+        assertEquals(-1, clock.armedAt);
+    }
+
+    @Test
+    public void keepsOneAlarmArmedForTheEarliestDeadline() {
+        scheduler.start("e1", "driver");
+        clock.advance(30 * 1000);
+        scheduler.start("e2", "other");
+
+        assertEquals(1_000_000 + MINUTE, clock.armedAt);
+
+        clock.advance(31 * 1000);
+
+        assertEquals(1, handler.fired.size());
+        // e2's first step is now the earliest
+        assertEquals(1_000_000 + 30 * 1000 + MINUTE, clock.armedAt);
+    }
+
+    @Test
+    public void doesNotRearmWhenTheEarliestDeadlineIsUnchanged() {
+        scheduler.start("e1", "driver");
+        int armed = clock.armCount;
+
+        clock.advance(1000);
+        scheduler.start("e2", "other");
+
+        assertEquals(armed, clock.armCount);
+    }
+
+    @Test
+    public void cancelStopsTheEventAndRearmsForTheNextOne() {
+        scheduler.start("e1", "driver");
+        clock.advance(10 * 1000);
+        scheduler.start("e2", "other");
+
+        scheduler.cancel("e1");
+        clock.advance(20 * MINUTE);
+
+        assertFalse(handler.fired.isEmpty());
+        for (String fired : handler.fired) {
+            assertTrue(fired, fired.contains("e2"));
+        }
+    }
+
+    @Test
+    public void cancellingTheLastEventCancelsTheAlarm() {
+        scheduler.start("e1", "driver");
+
+        scheduler.cancel("e1");
+
+        assertEquals(-1, clock.armedAt);
+        assertTrue(store.saved.isEmpty());
+    }
+
+    @Test
+    public void restartingAnEventResetsItToTheFirstStep() {
+        scheduler.start("e1", "driver");
+        clock.advance(2 * MINUTE);
+
+        scheduler.start("e1", "driver");
+        clock.advance(MINUTE);
+
+        assertEquals("180s e1 REMIND_DRIVER", handler.fired.get(handler.fired.size() - 1));
+    }
+
+    @Test
+    public void rehydratesAfterProcessDeath() {
+        scheduler.start("e1", "driver");
+        clock.advance(90 * 1000);
+
+        // The process dies: the alarm survives, the scheduler does not
+        scheduler = newScheduler();
+        scheduler.rehydrate();
+        clock.advance(60 * 1000);
+
+        assertEquals("120s e1 ALERT_NEAREST", handler.fired.get(handler.fired.size() - 1));
+    }
+
+    @Test
+    public void overdueStepsRunOnceAfterRebootAndTheRestIsSpacedFromThen() {
+        scheduler.start("e1", "driver");
+        clock.advance(30 * 1000);
+
+        // Reboot: both the process and the alarm are gone for ten minutes
+        clock.armedAt = -1;
+        clock.now += 10 * MINUTE;
+        scheduler = newScheduler();
+        scheduler.rehydrate();
+
+        assertTrue(clock.armedAt != -1 && clock.armedAt <= clock.now);
+        clock.advance(0);
+        assertEquals(1, handler.fired.size());
+        assertTrue(handler.fired.get(0).endsWith("REMIND_DRIVER"));
+
+        clock.advance(MINUTE);
+        assertEquals(2, handler.fired.size());
+        assertTrue(handler.fired.get(1).endsWith("ALERT_NEAREST"));
+    }
+
+    @Test
+    public void handlerMayCancelFromInsideAStep() {
+        scheduler = new EscalationScheduler(policy, () -> clock.now, store, clock,
+                (entry, stage, done) -> {
+                    handler.onStage(entry, stage, done);
+                    scheduler.cancel(entry.eventId);
+                });
+        scheduler.start("e1", "driver");
+
+        clock.advance(20 * MINUTE);
+
+        assertEquals(1, handler.fired.size());
+        assertEquals(-1, clock.armedAt);
+    }
+
+    @Test
+    public void reportsCompletionOnceEveryDueStepIsDone() {
+        List<Runnable> pending = new ArrayList<>();
+        scheduler = new EscalationScheduler(policy, () -> clock.now, store, clock,
+                (entry, stage, done) -> pending.add(done));
+        scheduler.start("e1", "driver");
+        scheduler.start("e2", "other");
+        clock.now += MINUTE;
+        int[] completions = new int[1];
+
+        scheduler.onAlarm(() -> completions[0]++);
+        pending.get(0).run();
+        pending.get(0).run();
+        assertEquals(0, completions[0]);
+        pending.get(1).run();
+
+        assertEquals(1, completions[0]);
+    }
+
+    @Test
+    public void completesImmediatelyWhenNothingIsDue() {
+        int[] completions = new int[1];
+
+        scheduler.onAlarm(() -> completions[0]++);
+
+        assertEquals(1, completions[0]);
+    }
+
+    @Test
+    public void carriesTheAlertContextThroughEveryStep() {
+        List<AlertContext> seen = new ArrayList<>();
+        scheduler = new EscalationScheduler(policy, () -> clock.now, store, clock,
+                (entry, stage, done) -> {
+                    seen.add(entry.alertContext);
+                    done.run();
+                });
+        scheduler.start("e1", "driver");
+        AlertContext alertContext = new AlertContext();
+        alertContext.familyId = "f1";
+
+        assertTrue(scheduler.attachContext("e1", alertContext));
+        assertEquals("f1", store.saved.get(0).alertContext.familyId);
+        assertSame(alertContext, scheduler.alertContextOf("e1"));
+        clock.advance(5 * MINUTE);
+
+        assertEquals(3, seen.size());
+        for (AlertContext carried : seen) {
+            assertEquals("f1", carried.familyId);
+        }
+        assertFalse(scheduler.attachContext("unknown", alertContext));
+        assertNull(scheduler.alertContextOf("unknown"));
+    }
+
+    @Test
+    public void reportsWhenEventsStartAndStopEscalating() {
+        List<String> events = new ArrayList<>();
+        scheduler.setListener(new EscalationScheduler.Listener() {
+            @Override
+            public void onEscalationStarted(String eventId) {
+                events.add("started " + eventId);
+            }
+
+            @Override
+            public void onEscalationFinished(String eventId) {
+                events.add("finished " + eventId);
+            }
+        });
+        scheduler.start("e1", "driver");
+        scheduler.start("e2", "other");
+        scheduler.cancel("e2");
+        scheduler.cancel("e2");
+
+        clock.advance(policy.getWindowMillis());
+
+        List<String> expected = new ArrayList<>();
+        expected.add("started e1");
+        expected.add("started e2");
+        expected.add("finished e2");
+        expected.add("finished e1");
+        assertEquals(expected, events);
+    }
+
+    @Test
+    public void reportsTheFinishOnlyOnceTheFinalStepIsDone() {
+        List<Runnable> pending = new ArrayList<>();
+        List<String> events = new ArrayList<>();
+        scheduler = new EscalationScheduler(policy, () -> clock.now, store, clock,
+                (entry, stage, done) -> pending.add(done));
+        scheduler.setListener(new EscalationScheduler.Listener() {
+            @Override
+            public void onEscalationStarted(String eventId) {
+            }
+
+            @Override
+            public void onEscalationFinished(String eventId) {
+                events.add("finished " + eventId);
+            }
+        });
+        scheduler.start("e1", "driver");
+
+        clock.advance(policy.getWindowMillis());
+        assertFalse(scheduler.isEscalating("e1"));
+        assertTrue(events.isEmpty());
+
+        for (Runnable done : pending) {
+            done.run();
+        }
+        pending.get(pending.size() - 1).run();
+        List<String> expected = new ArrayList<>();
+        expected.add("finished e1");
+        assertEquals(expected, events);
+    }
+
+    @Test
+    public void expediteRunsTheNextStepNowAndSpacesTheRestFromThere() {
+        scheduler.start("e1", "driver");
+        scheduler.start("e2", "other");
+        clock.advance(90 * 1000);
+
+        assertTrue(scheduler.expedite("e1"));
+        assertFalse(scheduler.expedite("unknown"));
+        assertEquals(clock.now, clock.armedAt);
+        clock.advance(3 * MINUTE);
+
+        List<String> expected = new ArrayList<>();
+        expected.add("60s e1 REMIND_DRIVER");
+        expected.add("60s e2 REMIND_DRIVER");
+        expected.add("90s e1 ALERT_NEAREST");
+        expected.add("120s e2 ALERT_NEAREST");
+        expected.add("210s e1 ALERT_FAMILY");
+        expected.add("240s e2 ALERT_FAMILY");
+        assertEquals(expected, handler.fired);
+    }
+
+    @Test
+    public void persistsEveryChange() {
+        scheduler.start("e1", "driver");
+        clock.advance(30 * 1000);
+        scheduler.start("e2", "other");
+        assertEquals(2, store.saved.size());
+
+        clock.advance(30 * 1000);
+        assertEquals(2, store.saved.size());
+        assertEquals(1, store.saved.get(0).stepIndex + store.saved.get(1).stepIndex);
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.tinyreminder.map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * Parking spots around a daycare, bucketed into hotspot cells.
+ */
+public class GeohashTest {
+
+    @Test
+    public void encodesKnownLocations() {
+        // Reference values from the original geohash.org implementation
+        assertEquals("ezs42", Geohash.encode(42.6, -5.6, 5));
+        assertEquals("u4pruydqqvj", Geohash.encode(57.64911, 10.40744, 11));
+    }
+
+    @Test
+    public void putsSpotsInTheSameLotInOneCell() {
+        String first = Geohash.encode(32.08010, 34.78050, Geohash.HOTSPOT_PRECISION);
+        String second = Geohash.encode(32.08025, 34.78070, Geohash.HOTSPOT_PRECISION);
+        String acrossTown = Geohash.encode(32.11000, 34.80000, Geohash.HOTSPOT_PRECISION);
+
+        assertEquals(first, second);
+        assertNotEquals(first, acrossTown);
+    }
+
+    @Test
+    public void decodesToTheCenterOfTheCell() {
+        String cell = Geohash.encode(32.08010, 34.78050, Geohash.HOTSPOT_PRECISION);
+
+        double[] center = Geohash.decodeCenter(cell);
+
+        assertEquals(32.08010, center[0], 0.001);
+        assertEquals(34.78050, center[1], 0.001);
+        assertEquals(cell, Geohash.encode(center[0], center[1], Geohash.HOTSPOT_PRECISION));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsCharactersOutsideTheAlphabet() {
+        Geohash.decodeCenter("sv8a");
+    }
+}
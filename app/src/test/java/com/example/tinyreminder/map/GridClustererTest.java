@@ -0,0 +1,98 @@
+package com.example.tinyreminder.map;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Clusters members around a school at street and city zoom levels.
+ */
+public class GridClustererTest {
+    private static final GridClusterer.Bounds CITY = new GridClusterer.Bounds(32.0, 34.7, 32.2, 34.9);
+
+    private static List<GridClusterer.Item> classroom(int size, double latitude, double longitude) {
+        List<GridClusterer.Item> items = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            // Within a few meters of each other
+            items.add(new GridClusterer.Item("kid" + i, latitude + i * 1e-6, longitude + i * 1e-6, 0));
+        }
+        return items;
+    }
+
+    @Test
+    public void groupsNearbyMembersIntoOneClusterWithACount() {
+        List<GridClusterer.Item> items = classroom(120, 32.08, 34.78);
+
+        List<GridClusterer.Cluster> clusters = GridClusterer.cluster(items, CITY, 12f);
+
+        assertEquals(1, clusters.size());
+        assertEquals(120, clusters.get(0).size());
+        assertEquals(32.08, clusters.get(0).latitude, 1e-3);
+    }
+
+    @Test
+    public void keepsDistantMembersApart() {
+        List<GridClusterer.Item> items = new ArrayList<>();
+        items.add(new GridClusterer.Item("home", 32.05, 34.75, 0));
+        items.add(new GridClusterer.Item("school", 32.15, 34.85, 0));
+
+        List<GridClusterer.Cluster> clusters = GridClusterer.cluster(items, CITY, 14f);
+
+        assertEquals(2, clusters.size());
+        for (GridClusterer.Cluster cluster : clusters) {
+            assertEquals(1, cluster.size());
+        }
+    }
+
+    @Test
+    public void skipsMembersOutsideTheVisibleRegion() {
+        List<GridClusterer.Item> items = classroom(3, 32.08, 34.78);
+        items.add(new GridClusterer.Item("abroad", 48.85, 2.35, 0));
+
+        List<GridClusterer.Cluster> clusters = GridClusterer.cluster(items, CITY, 12f);
+
+        assertEquals(1, clusters.size());
+        assertFalse(clusters.get(0).itemIds.contains("abroad"));
+    }
+
+    @Test
+    public void reportsTheWorstSeverityInTheCluster() {
+        List<GridClusterer.Item> items = classroom(10, 32.08, 34.78);
+        items.add(new GridClusterer.Item("alerted", 32.08, 34.78, 2));
+
+        List<GridClusterer.Cluster> clusters = GridClusterer.cluster(items, CITY, 12f);
+
+        assertEquals(1, clusters.size());
+        assertEquals(2, clusters.get(0).worstSeverity);
+    }
+
+    @Test
+    public void showsEveryMemberOnTheirOwnAtStreetLevel() {
+        List<GridClusterer.Item> items = classroom(5, 32.08, 34.78);
+
+        List<GridClusterer.Cluster> clusters = GridClusterer.cluster(items, CITY, GridClusterer.MAX_CLUSTER_ZOOM);
+
+        assertEquals(5, clusters.size());
+    }
+
+    @Test
+    public void handlesRegionsAcrossTheAntimeridian() {
+        GridClusterer.Bounds pacific = new GridClusterer.Bounds(-20, 170, 0, -170);
+        List<GridClusterer.Item> items = new ArrayList<>();
+        items.add(new GridClusterer.Item("fiji", -17.7, 178.0, 0));
+        items.add(new GridClusterer.Item("samoa", -13.8, -172.1, 0));
+        items.add(new GridClusterer.Item("hawaii", 21.3, -157.8, 0));
+
+        List<GridClusterer.Cluster> clusters = GridClusterer.cluster(items, pacific, 4f);
+
+        int shown = 0;
+        for (GridClusterer.Cluster cluster : clusters) {
+            shown += cluster.size();
+        }
+        assertEquals(2, shown);
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.tinyreminder.map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tiers and labels for locations of different ages.
+ */
+public class LocationFreshnessTest {
+    private static final long MINUTE = 60 * 1000;
+
+    @Test
+    public void placesAgesInTheirTiers() {
+        assertEquals(LocationFreshness.Tier.LIVE, LocationFreshness.tierOf(5000));
+        // One idle upload arriving late is still live
+        assertEquals(LocationFreshness.Tier.LIVE, LocationFreshness.tierOf(80 * 1000));
+        assertEquals(LocationFreshness.Tier.RECENT, LocationFreshness.tierOf(90 * 1000));
+        assertEquals(LocationFreshness.Tier.STALE, LocationFreshness.tierOf(5 * MINUTE));
+        assertEquals(LocationFreshness.Tier.OLD, LocationFreshness.tierOf(24 * 60 * MINUTE));
+    }
+
+    @Test
+    public void treatsLocationsFromAheadOfTheClockAsLive() {
+        assertEquals(LocationFreshness.Tier.LIVE, LocationFreshness.tierOf(-3000));
+        assertEquals("just now", LocationFreshness.describe(-3000));
+    }
+
+    @Test
+    public void describesAgesInTheLargestWholeUnit() {
+        assertEquals("just now", LocationFreshness.describe(59 * 1000));
+        assertEquals("5 min ago", LocationFreshness.describe(5 * MINUTE + 30 * 1000));
+        assertEquals("3 h ago", LocationFreshness.describe(3 * 60 * MINUTE + 10 * MINUTE));
+        assertEquals("2 d ago", LocationFreshness.describe(2 * 24 * 60 * MINUTE));
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.tinyreminder.map;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Simplifies drives recorded every second across town.
+ */
+public class RouteSimplifierTest {
+
+    // A straight road north, then a right turn onto a road east
+    private static List<RouteSimplifier.Point> cornerDrive(int pointsPerLeg) {
+        List<RouteSimplifier.Point> points = new ArrayList<>();
+        long time = 0;
+        for (int i = 0; i < pointsPerLeg; i++) {
+            points.add(new RouteSimplifier.Point(32.0 + i * 1e-4, 34.8, time++));
+        }
+        for (int i = 0; i <= pointsPerLeg; i++) {
+            points.add(new RouteSimplifier.Point(32.0 + pointsPerLeg * 1e-4, 34.8 + i * 1e-4, time++));
+        }
+        return points;
+    }
+
+    @Test
+    public void keepsOnlyTheEndsAndTheCornerOfStraightRoads() {
+        List<RouteSimplifier.Point> drive = cornerDrive(500);
+
+        List<RouteSimplifier.Point> simplified = RouteSimplifier.simplify(drive, RouteSimplifier.zoomBand(15.4f));
+
+        assertEquals(3, simplified.size());
+        assertSame(drive.get(0), simplified.get(0));
+        assertSame(drive.get(500), simplified.get(1));
+        assertSame(drive.get(drive.size() - 1), simplified.get(2));
+    }
+
+    @Test
+    public void keepsMoreDetailWhenZoomedIn() {
+        List<RouteSimplifier.Point> drive = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            // Winding road, a few meters either side of its center line
+            drive.add(new RouteSimplifier.Point(32.0 + i * 1e-5, 34.8 + Math.sin(i / 10.0) * 5e-5, i));
+        }
+
+        int city = RouteSimplifier.simplify(drive, 12).size();
+        int street = RouteSimplifier.simplify(drive, 18).size();
+
+        assertTrue("city " + city + " street " + street, city < street);
+        assertTrue(street <= RouteSimplifier.MAX_POINTS);
+    }
+
+    @Test
+    public void capsPointsForLongNoisyTrips() {
+        List<RouteSimplifier.Point> drive = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            drive.add(new RouteSimplifier.Point(32.0 + i * 1e-5, 34.8 + (i % 2) * 1e-3, i));
+        }
+
+        List<RouteSimplifier.Point> simplified = RouteSimplifier.simplify(drive, 21);
+
+        assertEquals(RouteSimplifier.MAX_POINTS, simplified.size());
+        assertSame(drive.get(0), simplified.get(0));
+        assertSame(drive.get(drive.size() - 1), simplified.get(simplified.size() - 1));
+    }
+
+    @Test
+    public void leavesShortRoutesAlone() {
+        List<RouteSimplifier.Point> drive = cornerDrive(1).subList(0, 2);
+
+        assertEquals(2, RouteSimplifier.simplify(drive, 10).size());
+    }
+
+    @Test
+    public void clampsZoomToBands() {
+        assertEquals(0, RouteSimplifier.zoomBand(-1f));
+        assertEquals(14, RouteSimplifier.zoomBand(14.99f));
+        assertEquals(21, RouteSimplifier.zoomBand(23f));
+    }
+}
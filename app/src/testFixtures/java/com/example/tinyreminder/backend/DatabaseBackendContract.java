@@ -0,0 +1,331 @@
+package com.example.tinyreminder.backend;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.gms.tasks.Task;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Behavior every DatabaseBackend must share with the Realtime Database. InMemoryBackendTest
+ * runs it on the JVM and FirebaseBackendContractTest against the database emulator, so the
+ * in-memory engine cannot drift from Firebase unnoticed. Each test works under its own
+ * generated key and removes it afterwards.
+ */
+public abstract class DatabaseBackendContract {
+    private static final long TIMEOUT_SECONDS = 10;
+    // Stands in for null in the event queues, which cannot hold nulls
+    private static final Object NO_VALUE = new Object();
+
+    protected DatabaseBackend backend;
+    private String root;
+
+    protected abstract DatabaseBackend createBackend();
+
+    @Before
+    public void setUpBackend() {
+        backend = createBackend();
+        root = "contract/" + backend.generateKey("contract");
+    }
+
+    @After
+    public void removeTestData() throws InterruptedException {
+        // Null when the subclass skipped the test before creating its backend
+        if (backend != null) {
+            await(backend.removeValue(root));
+        }
+    }
+
+    /**
+     * Bean stored by value; its properties follow Firebase's naming, not its field names.
+     */
+    public static class Kid {
+        public int age;
+        private String mName;
+        private boolean mAdmin;
+
+        public Kid() {
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        public void setName(String name) {
+            mName = name;
+        }
+
+        public boolean isAdmin() {
+            return mAdmin;
+        }
+
+        public void setAdmin(boolean admin) {
+            mAdmin = admin;
+        }
+    }
+
+    @Test
+    public void valueListenerGetsTheCurrentValueThenEachDistinctChange() throws InterruptedException {
+        ValueRecorder recorder = new ValueRecorder();
+        ListenerRegistration registration = backend.addValueListener(path("kid"), recorder);
+        try {
+            assertEquals(null, recorder.next());
+
+            await(backend.setValue(path("kid/name"), "Noa"));
+            assertEquals(map("name", "Noa"), recorder.next());
+
+            // Rewriting the same value raises no event, so the next one is the age
+            await(backend.setValue(path("kid/name"), "Noa"));
+            await(backend.setValue(path("kid/age"), 4));
+            assertEquals(map("age", 4L, "name", "Noa"), recorder.next());
+        } finally {
+            registration.remove();
+        }
+    }
+
+    @Test
+    public void storesWholeNumbersAsLongs() throws InterruptedException {
+        await(backend.setValue(path("whole"), 2.0));
+        await(backend.setValue(path("fraction"), 2.5));
+        await(backend.setValue(path("int"), 7));
+
+        assertEquals(2L, read(path("whole")).getValue());
+        assertEquals(2.5, read(path("fraction")).getValue());
+        assertEquals(7L, read(path("int")).getValue());
+        assertEquals(Integer.valueOf(2), read(path("fraction")).getValue(Integer.class));
+        assertEquals(Double.valueOf(7), read(path("int")).getValue(Double.class));
+    }
+
+    @Test
+    public void removingTheLastChildRemovesItsParents() throws InterruptedException {
+        await(backend.setValue(path("a/b/c"), true));
+        await(backend.removeValue(path("a/b/c")));
+
+        Snapshot snapshot = read(path("a"));
+        assertFalse(snapshot.exists());
+        assertEquals(0, snapshot.getChildrenCount());
+    }
+
+    @Test
+    public void updateChildrenAppliesEveryPathInOneEvent() throws InterruptedException {
+        await(backend.setValue(path("kid"), map("name", "Noa", "age", 4)));
+        ValueRecorder recorder = new ValueRecorder();
+        ListenerRegistration registration = backend.addValueListener(path("kid"), recorder);
+        try {
+            assertEquals(map("age", 4L, "name", "Noa"), recorder.next());
+
+            Map<String, Object> updates = new HashMap<>();
+            updates.put("age", null);
+            updates.put("school/name", "Oak");
+            await(backend.updateChildren(path("kid"), updates));
+
+            assertEquals(map("name", "Noa", "school", map("name", "Oak")), recorder.next());
+            await(backend.setValue(path("kid/name"), "Tal"));
+            assertEquals(map("name", "Tal", "school", map("name", "Oak")), recorder.next());
+        } finally {
+            registration.remove();
+        }
+    }
+
+    @Test
+    public void childListenerReportsChildrenInKeyOrderThenChanges() throws InterruptedException {
+        await(backend.setValue(path("kids"), map("b", "Bar", "a", "Avi")));
+        ChildRecorder recorder = new ChildRecorder();
+        ListenerRegistration registration = backend.addChildListener(path("kids"), recorder);
+        try {
+            assertEquals("added a after null", recorder.next());
+            assertEquals("added b after a", recorder.next());
+
+            await(backend.setValue(path("kids/c"), "Cal"));
+            assertEquals("added c after b", recorder.next());
+            await(backend.setValue(path("kids/a"), "Ada"));
+            assertEquals("changed a after null", recorder.next());
+            await(backend.removeValue(path("kids/b")));
+            assertEquals("removed b", recorder.next());
+        } finally {
+            registration.remove();
+        }
+    }
+
+    @Test
+    public void transactionCommitsOnTheStoredValueAndAbortKeepsIt() throws InterruptedException {
+        await(backend.setValue(path("count"), 1));
+
+        TransactionResult increment = transact(path("count"),
+                current -> current instanceof Long ? (Long) current + 1 : 1L);
+        assertTrue(increment.committed);
+        assertEquals(2L, increment.snapshot.getValue());
+
+        TransactionResult aborted = transact(path("count"),
+                current -> current == null ? 0L : TransactionHandler.ABORT);
+        assertFalse(aborted.committed);
+        assertEquals(2L, aborted.snapshot.getValue());
+        assertEquals(2L, read(path("count")).getValue());
+    }
+
+    @Test
+    public void mapsBeansByTheirPublicProperties() throws InterruptedException {
+        Kid kid = new Kid();
+        kid.age = 7;
+        kid.setName("Noa");
+        kid.setAdmin(true);
+
+        await(backend.setValue(path("kid"), kid));
+
+        Snapshot snapshot = read(path("kid"));
+        assertEquals(map("admin", true, "age", 7L, "name", "Noa"), snapshot.getValue());
+        Kid copy = snapshot.getValue(Kid.class);
+        assertNotNull(copy);
+        assertEquals(7, copy.age);
+        assertEquals("Noa", copy.getName());
+        assertTrue(copy.isAdmin());
+    }
+
+    protected String path(String relative) {
+        return root + "/" + relative;
+    }
+
+    protected Snapshot read(String path) throws InterruptedException {
+        ValueRecorder recorder = new ValueRecorder();
+        backend.readOnce(path, recorder);
+        recorder.next();
+        return recorder.last;
+    }
+
+    // Waits without a Looper: the listener runs on the thread completing the task
+    protected static void await(Task<?> task) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        task.addOnCompleteListener(Runnable::run, completed -> latch.countDown());
+        if (!latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            fail("Write did not complete in " + TIMEOUT_SECONDS + " s");
+        }
+        if (!task.isSuccessful()) {
+            throw new AssertionError("Write failed", task.getException());
+        }
+    }
+
+    private TransactionResult transact(String path, Update update) throws InterruptedException {
+        BlockingQueue<TransactionResult> results = new LinkedBlockingQueue<>();
+        backend.runTransaction(path, new TransactionHandler() {
+            @Nullable
+            @Override
+            public Object doTransaction(@Nullable Object currentValue) {
+                return update.apply(currentValue);
+            }
+
+            @Override
+            public void onComplete(@Nullable BackendError error, boolean committed, @Nullable Snapshot snapshot) {
+                results.add(new TransactionResult(error, committed, snapshot));
+            }
+        });
+        TransactionResult result = results.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertNotNull("Transaction did not complete", result);
+        if (result.error != null) {
+            throw new AssertionError("Transaction failed: " + result.error.getMessage());
+        }
+        return result;
+    }
+
+    private interface Update {
+        Object apply(Object currentValue);
+    }
+
+    private static class TransactionResult {
+        final BackendError error;
+        final boolean committed;
+        final Snapshot snapshot;
+
+        TransactionResult(BackendError error, boolean committed, Snapshot snapshot) {
+            this.error = error;
+            this.committed = committed;
+            this.snapshot = snapshot;
+        }
+    }
+
+    // Alternating keys and values
+    private static Map<String, Object> map(Object... keysAndValues) {
+        Map<String, Object> map = new HashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            map.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return map;
+    }
+
+    private static class ValueRecorder implements ValueListener {
+        private final BlockingQueue<Object> values = new LinkedBlockingQueue<>();
+        private final BlockingQueue<Snapshot> snapshots = new LinkedBlockingQueue<>();
+        Snapshot last;
+
+        @Override
+        public void onDataChange(@NonNull Snapshot snapshot) {
+            Object value = snapshot.getValue();
+            snapshots.add(snapshot);
+            values.add(value != null ? value : NO_VALUE);
+        }
+
+        @Override
+        public void onCancelled(@NonNull BackendError error) {
+            values.add(new AssertionError("Listener cancelled: " + error.getMessage()));
+        }
+
+        // The value of the next event
+        Object next() throws InterruptedException {
+            Object value = values.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (value == null) fail("No value event in " + TIMEOUT_SECONDS + " s");
+            if (value instanceof AssertionError) throw (AssertionError) value;
+            last = snapshots.poll();
+            return value == NO_VALUE ? null : value;
+        }
+    }
+
+    private static class ChildRecorder implements ChildListener {
+        private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+
+        @Override
+        public void onChildAdded(@NonNull Snapshot snapshot, @Nullable String previousChildName) {
+            events.add("added " + snapshot.getKey() + " after " + previousChildName);
+        }
+
+        @Override
+        public void onChildChanged(@NonNull Snapshot snapshot, @Nullable String previousChildName) {
+            events.add("changed " + snapshot.getKey() + " after " + previousChildName);
+        }
+
+        @Override
+        public void onChildRemoved(@NonNull Snapshot snapshot) {
+            events.add("removed " + snapshot.getKey());
+        }
+
+        @Override
+        public void onChildMoved(@NonNull Snapshot snapshot, @Nullable String previousChildName) {
+            events.add("moved " + snapshot.getKey() + " after " + previousChildName);
+        }
+
+        @Override
+        public void onCancelled(@NonNull BackendError error) {
+            events.add("cancelled " + error.getMessage());
+        }
+
+        String next() throws InterruptedException {
+            String event = events.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (event == null) fail("No child event in " + TIMEOUT_SECONDS + " s");
+            return event;
+        }
+    }
+}
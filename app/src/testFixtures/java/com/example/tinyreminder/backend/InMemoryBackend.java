@@ -0,0 +1,618 @@
+package com.example.tinyreminder.backend;
+
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.gms.tasks.Task;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Process-local DatabaseBackend for JVM tests and load benchmarks. Needs no Android runtime:
+ * tasks are {@link MemoryTask}s, which never touch the main thread, and app classes are
+ * mapped with Firebase's bean rules by {@link BeanMapper}. DatabaseBackendContract pins its
+ * behavior to FirebaseBackend's.
+ * <p>
+ * Data is kept as a tree of sorted maps holding only Strings, Booleans, Longs and Doubles,
+ * the same value model as the Realtime Database. Listener semantics follow Firebase:
+ * value listeners receive the current value on attach and after every change that affects
+ * their path, child listeners receive added/changed/removed diffs, empty nodes disappear,
+ * and every callback and task completion is delivered on the callback executor in write order.
+ * <p>
+ * Like Firebase, .info/connected and .info/serverTimeOffset are readable; the backend reports
+ * itself connected with no clock offset until {@link #setConnected(boolean)} says otherwise.
+ * Writes requested with {@link #setOnDisconnect} are applied when it reports a disconnect.
+ */
+public class InMemoryBackend implements DatabaseBackend {
+    private static final String PUSH_CHARS = "-0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ_abcdefghijklmnopqrstuvwxyz";
+
+    private final Object lock = new Object();
+    private final TreeMap<String, Object> root = new TreeMap<>();
+    private final List<ValueRegistration> valueRegistrations = new ArrayList<>();
+    private final List<ChildRegistration> childRegistrations = new ArrayList<>();
+    private final Map<String, Object> onDisconnectWrites = new LinkedHashMap<>();
+    private final Executor callbackExecutor;
+    private final Random random = new Random();
+
+    private long lastPushTime;
+    private final int[] lastRandomChars = new int[12];
+
+    /**
+     * Creates a backend that delivers callbacks on a dedicated background thread.
+     */
+    public InMemoryBackend() {
+        this(Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "InMemoryBackend-callbacks");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    /**
+     * @param callbackExecutor Executor used for all listener callbacks and task completions.
+     *                         Must run tasks in submission order.
+     */
+    public InMemoryBackend(Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+        TreeMap<String, Object> info = new TreeMap<>();
+        info.put("connected", true);
+        info.put("serverTimeOffset", 0L);
+        root.put(".info", info);
+    }
+
+    /**
+     * Simulates losing or regaining the connection; listeners on .info/connected are notified.
+     * Writes keep applying locally either way. Losing the connection applies and forgets the
+     * onDisconnect writes, together with the connection change.
+     */
+    public Task<Void> setConnected(boolean connected) {
+        Map<String, Object> updates = new LinkedHashMap<>();
+        if (!connected) {
+            synchronized (lock) {
+                updates.putAll(onDisconnectWrites);
+                onDisconnectWrites.clear();
+            }
+        }
+        updates.put(".info/connected", connected);
+        return updateChildren("", updates);
+    }
+
+    @NonNull
+    @Override
+    public String generateKey(@NonNull String path) {
+        // Same layout as Firebase push IDs: 8 timestamp chars followed by 12 random chars,
+        // incremented instead of re-randomized within the same millisecond to keep ordering
+        synchronized (lock) {
+            long now = System.currentTimeMillis();
+            boolean duplicateTime = now == lastPushTime;
+            lastPushTime = now;
+
+            char[] timestampChars = new char[8];
+            for (int i = 7; i >= 0; i--) {
+                timestampChars[i] = PUSH_CHARS.charAt((int) (now % 64));
+                now /= 64;
+            }
+            StringBuilder id = new StringBuilder(20).append(timestampChars);
+
+            if (!duplicateTime) {
+                for (int i = 0; i < 12; i++) {
+                    lastRandomChars[i] = random.nextInt(64);
+                }
+            } else {
+                int i = 11;
+                while (i >= 0 && lastRandomChars[i] == 63) {
+                    lastRandomChars[i] = 0;
+                    i--;
+                }
+                if (i >= 0) {
+                    lastRandomChars[i]++;
+                }
+            }
+            for (int i = 0; i < 12; i++) {
+                id.append(PUSH_CHARS.charAt(lastRandomChars[i]));
+            }
+            return id.toString();
+        }
+    }
+
+    @NonNull
+    @Override
+    public Task<Void> setValue(@NonNull String path, @Nullable Object value) {
+        Object normalized = normalize(value);
+        String[] segments = split(path);
+        return write(Collections.singletonList(segments), () -> putAt(segments, normalized));
+    }
+
+    @NonNull
+    @Override
+    public Task<Void> updateChildren(@NonNull String path, @NonNull Map<String, Object> updates) {
+        String[] base = split(path);
+        List<String[]> targets = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        for (Map.Entry<String, Object> entry : updates.entrySet()) {
+            targets.add(concat(base, split(entry.getKey())));
+            values.add(normalize(entry.getValue()));
+        }
+        return write(targets, () -> {
+            for (int i = 0; i < targets.size(); i++) {
+                putAt(targets.get(i), values.get(i));
+            }
+        });
+    }
+
+    @NonNull
+    @Override
+    public Task<Void> removeValue(@NonNull String path) {
+        return setValue(path, null);
+    }
+
+    @NonNull
+    @Override
+    public Task<Void> setOnDisconnect(@NonNull String path, @Nullable Object value) {
+        Object normalized = normalize(value);
+        synchronized (lock) {
+            onDisconnectWrites.put(BackendPaths.trimSlashes(path), normalized);
+        }
+        return completed();
+    }
+
+    @NonNull
+    @Override
+    public Task<Void> cancelOnDisconnect(@NonNull String path) {
+        String prefix = BackendPaths.trimSlashes(path);
+        synchronized (lock) {
+            onDisconnectWrites.keySet().removeIf(key -> prefix.isEmpty() || key.equals(prefix)
+                    || key.startsWith(prefix + "/"));
+        }
+        return completed();
+    }
+
+    @Override
+    public void readOnce(@NonNull String path, @NonNull ValueListener listener) {
+        String[] segments = split(path);
+        Object value;
+        synchronized (lock) {
+            value = deepCopy(getAt(segments));
+        }
+        Snapshot snapshot = new MemorySnapshot(lastSegment(segments), value);
+        callbackExecutor.execute(() -> listener.onDataChange(snapshot));
+    }
+
+    @Override
+    public void queryOnce(@NonNull String path, @NonNull String childKey, @NonNull String value, @NonNull ValueListener listener) {
+        String[] segments = split(path);
+        String[] childPath = split(childKey);
+        TreeMap<String, Object> matches = new TreeMap<>();
+        synchronized (lock) {
+            Object node = getAt(segments);
+            if (node instanceof Map) {
+                for (Map.Entry<String, Object> entry : asMap(node).entrySet()) {
+                    Object field = getIn(entry.getValue(), childPath);
+                    if (field != null && value.equals(String.valueOf(field))) {
+                        matches.put(entry.getKey(), deepCopy(entry.getValue()));
+                    }
+                }
+            }
+        }
+        Snapshot snapshot = new MemorySnapshot(lastSegment(segments), matches.isEmpty() ? null : matches);
+        callbackExecutor.execute(() -> listener.onDataChange(snapshot));
+    }
+
+    @NonNull
+    @Override
+    public ListenerRegistration addValueListener(@NonNull String path, @NonNull ValueListener listener) {
+        ValueRegistration registration = new ValueRegistration(split(path), listener);
+        Object value;
+        synchronized (lock) {
+            value = deepCopy(getAt(registration.path));
+            registration.lastValue = value;
+            valueRegistrations.add(registration);
+        }
+        Snapshot snapshot = new MemorySnapshot(lastSegment(registration.path), value);
+        callbackExecutor.execute(() -> registration.deliver(snapshot));
+        return () -> {
+            synchronized (lock) {
+                registration.active = false;
+                valueRegistrations.remove(registration);
+            }
+        };
+    }
+
+    @NonNull
+    @Override
+    public ListenerRegistration addChildListener(@NonNull String path, @NonNull ChildListener listener) {
+        ChildRegistration registration = new ChildRegistration(split(path), listener);
+        List<Runnable> events = new ArrayList<>();
+        synchronized (lock) {
+            registration.lastChildren = childrenOf(getAt(registration.path));
+            childRegistrations.add(registration);
+            String previous = null;
+            for (Map.Entry<String, Object> entry : registration.lastChildren.entrySet()) {
+                Snapshot child = new MemorySnapshot(entry.getKey(), entry.getValue());
+                String previousKey = previous;
+                events.add(() -> registration.added(child, previousKey));
+                previous = entry.getKey();
+            }
+        }
+        for (Runnable event : events) {
+            callbackExecutor.execute(event);
+        }
+        return () -> {
+            synchronized (lock) {
+                registration.active = false;
+                childRegistrations.remove(registration);
+            }
+        };
+    }
+
+    @Override
+    public void runTransaction(@NonNull String path, @NonNull TransactionHandler handler) {
+        String[] segments = split(path);
+        List<Runnable> events;
+        boolean committed;
+        Object finalValue;
+        synchronized (lock) {
+            Object result = handler.doTransaction(deepCopy(getAt(segments)));
+            committed = result != TransactionHandler.ABORT;
+            if (committed) {
+                putAt(segments, normalize(result));
+                events = collectEvents(Collections.singletonList(segments));
+            } else {
+                events = Collections.emptyList();
+            }
+            finalValue = deepCopy(getAt(segments));
+        }
+        for (Runnable event : events) {
+            callbackExecutor.execute(event);
+        }
+        Snapshot snapshot = new MemorySnapshot(lastSegment(segments), finalValue);
+        callbackExecutor.execute(() -> handler.onComplete(null, committed, snapshot));
+    }
+
+    /**
+     * Storage is not simulated: the file is not read, and its own URI stands in for the download URL.
+     */
+    @NonNull
+    @Override
+    public Task<Uri> uploadFile(@NonNull String path, @NonNull Uri fileUri) {
+        MemoryTask<Uri> task = new MemoryTask<>(callbackExecutor);
+        callbackExecutor.execute(() -> task.setResult(fileUri));
+        return task;
+    }
+
+    /**
+     * Returns a copy of the raw value currently stored at the path, for assertions in tests.
+     */
+    @Nullable
+    public Object peek(@NonNull String path) {
+        synchronized (lock) {
+            return deepCopy(getAt(split(path)));
+        }
+    }
+
+    // A task completed on the callback executor, after any events queued before it
+    private Task<Void> completed() {
+        MemoryTask<Void> task = new MemoryTask<>(callbackExecutor);
+        callbackExecutor.execute(() -> task.setResult(null));
+        return task;
+    }
+
+    // Applies a mutation under the lock, then queues listener events followed by the task completion
+    private Task<Void> write(List<String[]> touchedPaths, Runnable mutation) {
+        MemoryTask<Void> task = new MemoryTask<>(callbackExecutor);
+        List<Runnable> events;
+        synchronized (lock) {
+            mutation.run();
+            events = collectEvents(touchedPaths);
+        }
+        for (Runnable event : events) {
+            callbackExecutor.execute(event);
+        }
+        callbackExecutor.execute(() -> task.setResult(null));
+        return task;
+    }
+
+    // Must be called with the lock held
+    private List<Runnable> collectEvents(List<String[]> touchedPaths) {
+        List<Runnable> events = new ArrayList<>();
+        for (ValueRegistration registration : valueRegistrations) {
+            if (!isAffected(registration.path, touchedPaths)) continue;
+            Object current = deepCopy(getAt(registration.path));
+            if (!Objects.equals(current, registration.lastValue)) {
+                registration.lastValue = current;
+                Snapshot snapshot = new MemorySnapshot(lastSegment(registration.path), current);
+                events.add(() -> registration.deliver(snapshot));
+            }
+        }
+        for (ChildRegistration registration : childRegistrations) {
+            if (!isAffected(registration.path, touchedPaths)) continue;
+            TreeMap<String, Object> current = childrenOf(getAt(registration.path));
+            TreeMap<String, Object> previous = registration.lastChildren;
+            for (Map.Entry<String, Object> entry : previous.entrySet()) {
+                if (!current.containsKey(entry.getKey())) {
+                    Snapshot removed = new MemorySnapshot(entry.getKey(), entry.getValue());
+                    events.add(() -> registration.removed(removed));
+                }
+            }
+            for (Map.Entry<String, Object> entry : current.entrySet()) {
+                String previousKey = current.lowerKey(entry.getKey());
+                Snapshot child = new MemorySnapshot(entry.getKey(), entry.getValue());
+                if (!previous.containsKey(entry.getKey())) {
+                    events.add(() -> registration.added(child, previousKey));
+                } else if (!Objects.equals(previous.get(entry.getKey()), entry.getValue())) {
+                    events.add(() -> registration.changed(child, previousKey));
+                }
+            }
+            registration.lastChildren = current;
+        }
+        return events;
+    }
+
+    private static boolean isAffected(String[] listenerPath, List<String[]> touchedPaths) {
+        for (String[] touched : touchedPaths) {
+            if (isPrefix(listenerPath, touched) || isPrefix(touched, listenerPath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isPrefix(String[] prefix, String[] path) {
+        if (prefix.length > path.length) return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (!prefix[i].equals(path[i])) return false;
+        }
+        return true;
+    }
+
+    // Must be called with the lock held
+    private Object getAt(String[] segments) {
+        return getIn(root, segments);
+    }
+
+    private static Object getIn(Object node, String[] segments) {
+        for (String segment : segments) {
+            if (!(node instanceof Map)) return null;
+            node = asMap(node).get(segment);
+        }
+        return node;
+    }
+
+    // Must be called with the lock held; removes empty parents like the real database does
+    private void putAt(String[] segments, Object value) {
+        if (segments.length == 0) {
+            root.clear();
+            if (value instanceof Map) {
+                root.putAll(asMap(value));
+            }
+            return;
+        }
+        List<TreeMap<String, Object>> parents = new ArrayList<>();
+        TreeMap<String, Object> node = root;
+        for (int i = 0; i < segments.length - 1; i++) {
+            parents.add(node);
+            Object next = node.get(segments[i]);
+            if (!(next instanceof TreeMap)) {
+                if (value == null) return;
+                next = new TreeMap<String, Object>();
+                node.put(segments[i], next);
+            }
+            node = asMap(next);
+        }
+        String leaf = segments[segments.length - 1];
+        if (value == null) {
+            node.remove(leaf);
+        } else {
+            node.put(leaf, value);
+        }
+        for (int i = parents.size() - 1; i >= 0 && node.isEmpty(); i--) {
+            parents.get(i).remove(segments[i]);
+            node = parents.get(i);
+        }
+    }
+
+    private static TreeMap<String, Object> childrenOf(Object node) {
+        if (node instanceof Map) {
+            return asMap(deepCopy(node));
+        }
+        return new TreeMap<>();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static TreeMap<String, Object> asMap(Object node) {
+        return (TreeMap<String, Object>) node;
+    }
+
+    private static Object deepCopy(Object node) {
+        if (!(node instanceof Map)) return node;
+        TreeMap<String, Object> copy = new TreeMap<>();
+        for (Map.Entry<String, Object> entry : asMap(node).entrySet()) {
+            copy.put(entry.getKey(), deepCopy(entry.getValue()));
+        }
+        return copy;
+    }
+
+    // Converts any value the app writes into the database value model
+    @Nullable
+    static Object normalize(@Nullable Object value) {
+        if (value == null || value instanceof String || value instanceof Boolean) {
+            return value;
+        }
+        if (value instanceof Number) {
+            return normalizeNumber((Number) value);
+        }
+        if (value instanceof Enum) {
+            return ((Enum<?>) value).name();
+        }
+        if (SERVER_TIMESTAMP.equals(value)) {
+            // This process stands in for the server, so its clock is the server clock
+            return System.currentTimeMillis();
+        }
+        if (value instanceof Map) {
+            TreeMap<String, Object> result = new TreeMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                Object child = normalize(entry.getValue());
+                if (child != null) {
+                    result.put(String.valueOf(entry.getKey()), child);
+                }
+            }
+            return result.isEmpty() ? null : result;
+        }
+        if (value instanceof List) {
+            TreeMap<String, Object> result = new TreeMap<>();
+            List<?> list = (List<?>) value;
+            for (int i = 0; i < list.size(); i++) {
+                Object child = normalize(list.get(i));
+                if (child != null) {
+                    result.put(String.valueOf(i), child);
+                }
+            }
+            return result.isEmpty() ? null : result;
+        }
+        return normalize(BeanMapper.toMap(value));
+    }
+
+    private static Object normalizeNumber(Number number) {
+        if (number instanceof Double || number instanceof Float) {
+            double d = number.doubleValue();
+            if (d == Math.rint(d) && !Double.isInfinite(d) && Math.abs(d) < Long.MAX_VALUE) {
+                return (long) d;
+            }
+            return d;
+        }
+        return number.longValue();
+    }
+
+    private static String[] split(String path) {
+        return BackendPaths.split(path);
+    }
+
+    private static String[] concat(String[] first, String[] second) {
+        String[] result = new String[first.length + second.length];
+        System.arraycopy(first, 0, result, 0, first.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    private static String lastSegment(String[] segments) {
+        return segments.length == 0 ? null : segments[segments.length - 1];
+    }
+
+    private static class ValueRegistration {
+        final String[] path;
+        final ValueListener listener;
+        Object lastValue;
+        volatile boolean active = true;
+
+        ValueRegistration(String[] path, ValueListener listener) {
+            this.path = path;
+            this.listener = listener;
+        }
+
+        void deliver(Snapshot snapshot) {
+            if (active) listener.onDataChange(snapshot);
+        }
+    }
+
+    private static class ChildRegistration {
+        final String[] path;
+        final ChildListener listener;
+        TreeMap<String, Object> lastChildren;
+        volatile boolean active = true;
+
+        ChildRegistration(String[] path, ChildListener listener) {
+            this.path = path;
+            this.listener = listener;
+        }
+
+        void added(Snapshot snapshot, String previousKey) {
+            if (active) listener.onChildAdded(snapshot, previousKey);
+        }
+
+        void changed(Snapshot snapshot, String previousKey) {
+            if (active) listener.onChildChanged(snapshot, previousKey);
+        }
+
+        void removed(Snapshot snapshot) {
+            if (active) listener.onChildRemoved(snapshot);
+        }
+    }
+
+    // Immutable snapshot over a deep-copied value
+    private static class MemorySnapshot implements Snapshot {
+        private final String key;
+        private final Object value;
+
+        MemorySnapshot(String key, Object value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Nullable
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public boolean exists() {
+            return value != null;
+        }
+
+        @Nullable
+        @Override
+        public Object getValue() {
+            return value;
+        }
+
+        @Nullable
+        @Override
+        public <T> T getValue(@NonNull Class<T> valueType) {
+            return BeanMapper.convert(value, valueType);
+        }
+
+        @NonNull
+        @Override
+        public Snapshot child(@NonNull String path) {
+            String[] segments = split(path);
+            return new MemorySnapshot(segments.length == 0 ? key : lastSegment(segments), getIn(value, segments));
+        }
+
+        @Override
+        public boolean hasChild(@NonNull String path) {
+            return getIn(value, split(path)) != null;
+        }
+
+        @NonNull
+        @Override
+        public Iterable<Snapshot> getChildren() {
+            if (!(value instanceof Map)) {
+                return Collections.emptyList();
+            }
+            Iterator<Map.Entry<String, Object>> entries = asMap(value).entrySet().iterator();
+            List<Snapshot> children = new ArrayList<>();
+            while (entries.hasNext()) {
+                Map.Entry<String, Object> entry = entries.next();
+                children.add(new MemorySnapshot(entry.getKey(), entry.getValue()));
+            }
+            return children;
+        }
+
+        @Override
+        public long getChildrenCount() {
+            return value instanceof Map ? asMap(value).size() : 0;
+        }
+    }
+}
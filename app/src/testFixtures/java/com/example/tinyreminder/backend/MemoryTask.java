@@ -0,0 +1,286 @@
+package com.example.tinyreminder.backend;
+
+import android.app.Activity;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.gms.tasks.Continuation;
+import com.google.android.gms.tasks.OnCanceledListener;
+import com.google.android.gms.tasks.OnCompleteListener;
+import com.google.android.gms.tasks.OnFailureListener;
+import com.google.android.gms.tasks.OnSuccessListener;
+import com.google.android.gms.tasks.RuntimeExecutionException;
+import com.google.android.gms.tasks.SuccessContinuation;
+import com.google.android.gms.tasks.Task;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+
+/**
+ * Task completed by InMemoryBackend. Unlike a TaskCompletionSource task, listeners added
+ * without an executor run on the backend's callback executor rather than the main thread, so
+ * the backend works on a plain JVM with no Looper. Activity-scoped listeners are never
+ * removed, since there is no Activity lifecycle here. Never canceled.
+ */
+final class MemoryTask<T> extends Task<T> {
+    private final Executor defaultExecutor;
+    private final List<Runnable> pending = new ArrayList<>();
+    private boolean complete;
+    private T result;
+    private Exception exception;
+
+    MemoryTask(Executor defaultExecutor) {
+        this.defaultExecutor = defaultExecutor;
+    }
+
+    void setResult(@Nullable T value) {
+        finish(value, null);
+    }
+
+    void setException(@NonNull Exception error) {
+        finish(null, error);
+    }
+
+    private void finish(T value, Exception error) {
+        List<Runnable> listeners;
+        synchronized (this) {
+            if (complete) {
+                throw new IllegalStateException("Task is already complete");
+            }
+            complete = true;
+            result = value;
+            exception = error;
+            listeners = new ArrayList<>(pending);
+            pending.clear();
+        }
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+    }
+
+    // Runs the callback on the executor once the task is complete, at once if it already is
+    private void whenComplete(Executor executor, Runnable callback) {
+        Runnable dispatch = () -> executor.execute(callback);
+        synchronized (this) {
+            if (!complete) {
+                pending.add(dispatch);
+                return;
+            }
+        }
+        dispatch.run();
+    }
+
+    @Override
+    public synchronized boolean isComplete() {
+        return complete;
+    }
+
+    @Override
+    public synchronized boolean isSuccessful() {
+        return complete && exception == null;
+    }
+
+    @Override
+    public boolean isCanceled() {
+        return false;
+    }
+
+    @Nullable
+    @Override
+    public synchronized Exception getException() {
+        return exception;
+    }
+
+    @Override
+    public synchronized T getResult() {
+        if (!complete) {
+            throw new IllegalStateException("Task is not yet complete");
+        }
+        if (exception != null) {
+            throw new RuntimeExecutionException(exception);
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized <X extends Throwable> T getResult(@NonNull Class<X> exceptionType) throws X {
+        if (exceptionType.isInstance(exception)) {
+            throw exceptionType.cast(exception);
+        }
+        return getResult();
+    }
+
+    @NonNull
+    @Override
+    public Task<T> addOnSuccessListener(@NonNull OnSuccessListener<? super T> listener) {
+        return addOnSuccessListener(defaultExecutor, listener);
+    }
+
+    @NonNull
+    @Override
+    public Task<T> addOnSuccessListener(@NonNull Activity activity, @NonNull OnSuccessListener<? super T> listener) {
+        return addOnSuccessListener(defaultExecutor, listener);
+    }
+
+    @NonNull
+    @Override
+    public Task<T> addOnSuccessListener(@NonNull Executor executor, @NonNull OnSuccessListener<? super T> listener) {
+        whenComplete(executor, () -> {
+            if (isSuccessful()) listener.onSuccess(getResult());
+        });
+        return this;
+    }
+
+    @NonNull
+    @Override
+    public Task<T> addOnFailureListener(@NonNull OnFailureListener listener) {
+        return addOnFailureListener(defaultExecutor, listener);
+    }
+
+    @NonNull
+    @Override
+    public Task<T> addOnFailureListener(@NonNull Activity activity, @NonNull OnFailureListener listener) {
+        return addOnFailureListener(defaultExecutor, listener);
+    }
+
+    @NonNull
+    @Override
+    public Task<T> addOnFailureListener(@NonNull Executor executor, @NonNull OnFailureListener listener) {
+        whenComplete(executor, () -> {
+            Exception error = getException();
+            if (error != null) listener.onFailure(error);
+        });
+        return this;
+    }
+
+    @NonNull
+    @Override
+    public Task<T> addOnCompleteListener(@NonNull OnCompleteListener<T> listener) {
+        return addOnCompleteListener(defaultExecutor, listener);
+    }
+
+    @NonNull
+    @Override
+    public Task<T> addOnCompleteListener(@NonNull Activity activity, @NonNull OnCompleteListener<T> listener) {
+        return addOnCompleteListener(defaultExecutor, listener);
+    }
+
+    @NonNull
+    @Override
+    public Task<T> addOnCompleteListener(@NonNull Executor executor, @NonNull OnCompleteListener<T> listener) {
+        whenComplete(executor, () -> listener.onComplete(this));
+        return this;
+    }
+
+    @NonNull
+    @Override
+    public Task<T> addOnCanceledListener(@NonNull OnCanceledListener listener) {
+        return this;
+    }
+
+    @NonNull
+    @Override
+    public Task<T> addOnCanceledListener(@NonNull Activity activity, @NonNull OnCanceledListener listener) {
+        return this;
+    }
+
+    @NonNull
+    @Override
+    public Task<T> addOnCanceledListener(@NonNull Executor executor, @NonNull OnCanceledListener listener) {
+        return this;
+    }
+
+    @NonNull
+    @Override
+    public <R> Task<R> continueWith(@NonNull Continuation<T, R> continuation) {
+        return continueWith(defaultExecutor, continuation);
+    }
+
+    @NonNull
+    @Override
+    public <R> Task<R> continueWith(@NonNull Executor executor, @NonNull Continuation<T, R> continuation) {
+        MemoryTask<R> next = new MemoryTask<>(defaultExecutor);
+        whenComplete(executor, () -> {
+            try {
+                next.setResult(continuation.then(this));
+            } catch (Exception e) {
+                next.setException(unwrap(e));
+            }
+        });
+        return next;
+    }
+
+    @NonNull
+    @Override
+    public <R> Task<R> continueWithTask(@NonNull Continuation<T, Task<R>> continuation) {
+        return continueWithTask(defaultExecutor, continuation);
+    }
+
+    @NonNull
+    @Override
+    public <R> Task<R> continueWithTask(@NonNull Executor executor, @NonNull Continuation<T, Task<R>> continuation) {
+        MemoryTask<R> next = new MemoryTask<>(defaultExecutor);
+        whenComplete(executor, () -> {
+            try {
+                completeFrom(continuation.then(this), next);
+            } catch (Exception e) {
+                next.setException(unwrap(e));
+            }
+        });
+        return next;
+    }
+
+    @NonNull
+    @Override
+    public <R> Task<R> onSuccessTask(@NonNull SuccessContinuation<T, R> continuation) {
+        return onSuccessTask(defaultExecutor, continuation);
+    }
+
+    @NonNull
+    @Override
+    public <R> Task<R> onSuccessTask(@NonNull Executor executor, @NonNull SuccessContinuation<T, R> continuation) {
+        MemoryTask<R> next = new MemoryTask<>(defaultExecutor);
+        whenComplete(executor, () -> {
+            Exception error = getException();
+            if (error != null) {
+                next.setException(error);
+                return;
+            }
+            try {
+                completeFrom(continuation.then(getResult()), next);
+            } catch (Exception e) {
+                next.setException(unwrap(e));
+            }
+        });
+        return next;
+    }
+
+    // Completes next with the outcome of a task returned by a continuation
+    private static <R> void completeFrom(Task<R> task, MemoryTask<R> next) {
+        if (task == null) {
+            next.setException(new NullPointerException("Continuation returned null"));
+            return;
+        }
+        // Direct executor: the task may come from elsewhere and would default to the main thread
+        task.addOnCompleteListener(Runnable::run, completed -> {
+            if (completed.isSuccessful()) {
+                next.setResult(completed.getResult());
+            } else if (completed.isCanceled()) {
+                next.setException(new CancellationException("Continuation task was canceled"));
+            } else {
+                next.setException(completed.getException());
+            }
+        });
+    }
+
+    // A continuation calling getResult() on a failed task fails the next task with the original error
+    private static Exception unwrap(Exception e) {
+        if (e instanceof RuntimeExecutionException && e.getCause() instanceof Exception) {
+            return (Exception) e.getCause();
+        }
+        return e;
+    }
+}
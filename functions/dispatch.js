@@ -0,0 +1,191 @@
+/**
+ * Family alert fan-out, kept free of trigger wiring so tests can pass in the database
+ * emulator and a fake messaging client.
+ *
+ * Tokens are denormalized into families/$familyId/memberTokens/$uid, so resolving every
+ * recipient is a single read no matter how large the family is.
+ */
+
+// FCM accepts at most 500 tokens per multicast request
+const MULTICAST_LIMIT = 500;
+
+// An alert is useless once the escalation window has passed
+const ALERT_TTL_MS = 10 * 60 * 1000;
+
+// Per-token errors meaning the token will never work again
+const STALE_TOKEN_CODES = new Set([
+  "messaging/registration-token-not-registered",
+  "messaging/invalid-registration-token",
+]);
+
+/**
+ * Sends the alert to every member token except the sender's (or only to alert.recipients), prunes dead tokens and
+ * records a dispatch summary under alerts/$alertId/dispatch. Alerts whose sender is not a member of the
+ * family are dropped.
+ *
+ * @param {import("firebase-admin/database").Database} db
+ * @param {{sendEachForMulticast: Function}} messaging
+ * @param {string} alertId
+ * @param {{familyId: string, senderId: string, senderName?: string, eventId?: string, createdAt?: number,
+ *     recipients?: Object<string, boolean>}} alert
+ * @return {Promise<?{recipients: number, successCount: number, failureCount: number, prunedCount: number}>}
+ */
+async function dispatchFamilyAlert(db, messaging, alertId, alert) {
+  if (!alert || !alert.familyId) {
+    console.warn(`Alert ${alertId} has no familyId, ignoring`);
+    return null;
+  }
+  const startedAt = Date.now();
+
+  const [senderSnapshot, tokensSnapshot] = await Promise.all([
+    db.ref(`families/${alert.familyId}/memberIds/${alert.senderId || "-"}`).get(),
+    db.ref(`families/${alert.familyId}/memberTokens`).get(),
+  ]);
+  // The rules only admit members, but never page a family on behalf of an outsider
+  if (!alert.senderId || !senderSnapshot.exists()) {
+    console.warn(`Alert ${alertId} sender ${alert.senderId} is not in family ${alert.familyId}, ignoring`);
+    return null;
+  }
+  // An alert may target specific members, e.g. the one nearest to the car
+  const targets = alert.recipients ? new Set(Object.keys(alert.recipients)) : null;
+  const recipients = [];
+  tokensSnapshot.forEach((child) => {
+    const token = child.val();
+    if (targets && !targets.has(child.key)) return;
+    if (child.key !== alert.senderId && typeof token === "string" && token.length > 0) {
+      recipients.push({uid: child.key, token});
+    }
+  });
+
+  // FCM data payload values must be strings
+  const data = {
+    type: "family_alert",
+    alertId,
+    familyId: alert.familyId,
+    senderId: alert.senderId || "",
+    senderName: alert.senderName || "",
+    eventId: alert.eventId || "",
+    createdAt: String(alert.createdAt || ""),
+  };
+
+  let successCount = 0;
+  let failureCount = 0;
+  const stale = [];
+  for (let i = 0; i < recipients.length; i += MULTICAST_LIMIT) {
+    const batch = recipients.slice(i, i + MULTICAST_LIMIT);
+    const response = await messaging.sendEachForMulticast({
+      tokens: batch.map((recipient) => recipient.token),
+      data,
+      android: {priority: "high", ttl: ALERT_TTL_MS},
+    });
+    response.responses.forEach((result, index) => {
+      if (result.success) {
+        successCount++;
+        return;
+      }
+      failureCount++;
+      const code = result.error && result.error.code;
+      if (STALE_TOKEN_CODES.has(code)) {
+        stale.push(batch[index]);
+      } else {
+        console.warn(`Alert ${alertId} to ${batch[index].uid} failed: ${code}`);
+      }
+    });
+  }
+
+  const summary = {
+    recipients: recipients.length,
+    successCount,
+    failureCount,
+    prunedCount: stale.length,
+  };
+  const updates = {};
+  for (const recipient of stale) {
+    updates[`families/${alert.familyId}/memberTokens/${recipient.uid}`] = null;
+  }
+  updates[`alerts/${alertId}/dispatch`] = {
+    ...summary,
+    dispatchedAt: Date.now(),
+    dispatchMillis: Date.now() - startedAt,
+  };
+  await db.ref().update(updates);
+
+  // Only clear the profile token if the device has not registered a new one meanwhile
+  await Promise.all(stale.map((recipient) =>
+    db.ref(`users/${recipient.uid}/fcmToken`).transaction((current) =>
+      current === recipient.token ? null : undefined)));
+
+  console.log(`Alert ${alertId}: ${JSON.stringify(summary)}`);
+  return summary;
+}
+
+/**
+ * Copies users/$uid/fcmToken into families/$familyId/memberTokens/$uid, removing the entry
+ * from the previous family when the user moved.
+ *
+ * @param {import("firebase-admin/database").Database} db
+ * @param {string} uid
+ * @param {string=} previousFamilyId
+ */
+async function syncMemberToken(db, uid, previousFamilyId) {
+  const [familySnapshot, tokenSnapshot] = await Promise.all([
+    db.ref(`users/${uid}/familyId`).get(),
+    db.ref(`users/${uid}/fcmToken`).get(),
+  ]);
+  const familyId = familySnapshot.val();
+  const updates = {};
+  if (previousFamilyId && previousFamilyId !== familyId) {
+    updates[`families/${previousFamilyId}/memberTokens/${uid}`] = null;
+  }
+  if (familyId) {
+    // Do not resurrect a deleted family just to hold a token
+    const member = await db.ref(`families/${familyId}/memberIds/${uid}`).get();
+    if (member.exists()) {
+      updates[`families/${familyId}/memberTokens/${uid}`] = tokenSnapshot.val();
+    }
+  }
+  if (Object.keys(updates).length > 0) {
+    await db.ref().update(updates);
+  }
+}
+
+/**
+ * Fills families/$familyId/memberTokens from every user's profile. The sync triggers only see
+ * tokens written after they were deployed, so run this once after the first deploy.
+ *
+ * @param {import("firebase-admin/database").Database} db
+ * @return {Promise<number>} The number of member tokens written.
+ */
+async function backfillMemberTokens(db) {
+  const usersSnapshot = await db.ref("users").get();
+  const byFamily = new Map();
+  usersSnapshot.forEach((user) => {
+    const familyId = user.child("familyId").val();
+    const token = user.child("fcmToken").val();
+    if (typeof familyId !== "string" || typeof token !== "string" || token.length === 0) return;
+    if (!byFamily.has(familyId)) byFamily.set(familyId, []);
+    byFamily.get(familyId).push({uid: user.key, token});
+  });
+
+  const updates = {};
+  for (const [familyId, members] of byFamily) {
+    // Do not resurrect a deleted family just to hold a token
+    const memberIds = await db.ref(`families/${familyId}/memberIds`).get();
+    for (const member of members) {
+      if (memberIds.hasChild(member.uid)) {
+        updates[`families/${familyId}/memberTokens/${member.uid}`] = member.token;
+      }
+    }
+  }
+  if (Object.keys(updates).length > 0) {
+    await db.ref().update(updates);
+  }
+  return Object.keys(updates).length;
+}
+
+module.exports = {
+  dispatchFamilyAlert,
+  syncMemberToken,
+  backfillMemberTokens,
+  MULTICAST_LIMIT,
+};
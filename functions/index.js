@@ -0,0 +1,27 @@
+const {onValueCreated, onValueWritten} = require("firebase-functions/v2/database");
+const {initializeApp} = require("firebase-admin/app");
+const {getDatabase} = require("firebase-admin/database");
+const {getMessaging} = require("firebase-admin/messaging");
+
+const dispatch = require("./dispatch");
+
+initializeApp();
+
+/**
+ * Sends one batched high-priority data message to every family member except the sender
+ * when a device writes alerts/$alertId.
+ */
+exports.dispatchFamilyAlert = onValueCreated("/alerts/{alertId}", (event) =>
+  dispatch.dispatchFamilyAlert(getDatabase(), getMessaging(), event.params.alertId, event.data.val()));
+
+/**
+ * Keeps families/$familyId/memberTokens in sync when a user's token changes.
+ */
+exports.syncMemberToken = onValueWritten("/users/{uid}/fcmToken", (event) =>
+  dispatch.syncMemberToken(getDatabase(), event.params.uid));
+
+/**
+ * Moves a user's token to the new family's memberTokens when they join or leave a family.
+ */
+exports.syncMemberFamily = onValueWritten("/users/{uid}/familyId", (event) =>
+  dispatch.syncMemberToken(getDatabase(), event.params.uid, event.data.before.val()));
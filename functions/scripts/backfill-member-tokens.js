@@ -0,0 +1,25 @@
+/**
+ * One-off fill of families/$familyId/memberTokens for users whose token predates the sync
+ * triggers. Run with admin credentials for the target project:
+ *   GOOGLE_APPLICATION_CREDENTIALS=key.json FIREBASE_DATABASE_URL=https://<db>.firebaseio.com npm run backfill
+ */
+const {initializeApp} = require("firebase-admin/app");
+const {getDatabase} = require("firebase-admin/database");
+
+const {backfillMemberTokens} = require("../dispatch");
+
+if (!process.env.FIREBASE_DATABASE_URL) {
+  throw new Error("FIREBASE_DATABASE_URL is not set");
+}
+
+const app = initializeApp({databaseURL: process.env.FIREBASE_DATABASE_URL});
+
+backfillMemberTokens(getDatabase(app))
+    .then((written) => {
+      console.log(`Wrote ${written} member tokens`);
+      process.exit(0);
+    })
+    .catch((error) => {
+      console.error(error);
+      process.exit(1);
+    });
@@ -0,0 +1,215 @@
+/**
+ * Runs against the Realtime Database emulator:
+ *   firebase --config firebase.emulator.json emulators:exec --project demo-tinyreminder --only database "npm --prefix functions test"
+ * FCM is replaced by a fake that records requests and fails chosen tokens.
+ */
+const assert = require("assert");
+const {initializeApp, deleteApp} = require("firebase-admin/app");
+const {getDatabase} = require("firebase-admin/database");
+
+const {dispatchFamilyAlert, syncMemberToken, backfillMemberTokens, MULTICAST_LIMIT} = require("../dispatch");
+
+if (!process.env.FIREBASE_DATABASE_EMULATOR_HOST) {
+  throw new Error("FIREBASE_DATABASE_EMULATOR_HOST is not set; run through firebase emulators:exec");
+}
+
+function fakeMessaging(failures = {}) {
+  const requests = [];
+  return {
+    requests,
+    async sendEachForMulticast(message) {
+      requests.push(message);
+      return {
+        responses: message.tokens.map((token) => failures[token] ?
+          {success: false, error: {code: failures[token]}} :
+          {success: true, messageId: `m-${token}`}),
+      };
+    },
+  };
+}
+
+describe("family alert fan-out", function() {
+  let app;
+  let db;
+
+  before(function() {
+    app = initializeApp({
+      projectId: "demo-tinyreminder",
+      databaseURL: `http://${process.env.FIREBASE_DATABASE_EMULATOR_HOST}?ns=demo-tinyreminder`,
+    }, "dispatch-test");
+    db = getDatabase(app);
+  });
+
+  after(async function() {
+    await deleteApp(app);
+  });
+
+  beforeEach(async function() {
+    await db.ref().set(null);
+  });
+
+  async function seedFamily(familyId, tokens) {
+    const updates = {};
+    for (const [uid, token] of Object.entries(tokens)) {
+      updates[`users/${uid}/familyId`] = familyId;
+      updates[`users/${uid}/fcmToken`] = token;
+      updates[`families/${familyId}/memberIds/${uid}`] = true;
+      updates[`families/${familyId}/memberTokens/${uid}`] = token;
+    }
+    await db.ref().update(updates);
+  }
+
+  it("sends one high-priority multicast to everyone but the sender", async function() {
+    await seedFamily("f1", {driver: "t-driver", mom: "t-mom", grandpa: "t-grandpa"});
+    const messaging = fakeMessaging();
+
+    const summary = await dispatchFamilyAlert(db, messaging, "a1",
+        {familyId: "f1", senderId: "driver", senderName: "Dad", eventId: "e1", createdAt: 1000});
+
+    assert.strictEqual(messaging.requests.length, 1);
+    const request = messaging.requests[0];
+    assert.deepStrictEqual(request.tokens.sort(), ["t-grandpa", "t-mom"]);
+    assert.strictEqual(request.android.priority, "high");
+    assert.strictEqual(request.data.type, "family_alert");
+    assert.strictEqual(request.data.alertId, "a1");
+    assert.strictEqual(request.data.createdAt, "1000");
+    assert.strictEqual(request.data.senderName, "Dad");
+    assert.deepStrictEqual(summary, {recipients: 2, successCount: 2, failureCount: 0, prunedCount: 0});
+
+    const dispatch = (await db.ref("alerts/a1/dispatch").get()).val();
+    assert.strictEqual(dispatch.successCount, 2);
+    assert.ok(dispatch.dispatchedAt > 0);
+    // Nothing would ever clear a flag on the recipients, so none is set
+    assert.strictEqual((await db.ref("users/mom/isAlerted").get()).val(), null);
+  });
+
+  it("sends only to the listed recipients when the alert targets members", async function() {
+    await seedFamily("f1", {driver: "t-driver", mom: "t-mom", grandpa: "t-grandpa"});
+    const messaging = fakeMessaging();
+
+    await dispatchFamilyAlert(db, messaging, "a1", {familyId: "f1", senderId: "driver", recipients: {mom: true}});
+
+    assert.deepStrictEqual(messaging.requests[0].tokens, ["t-mom"]);
+  });
+
+  it("ignores alerts whose sender is not a member of the family", async function() {
+    await seedFamily("f1", {mom: "t-mom", grandpa: "t-grandpa"});
+    await seedFamily("f2", {stranger: "t-stranger"});
+    const messaging = fakeMessaging();
+
+    const summary = await dispatchFamilyAlert(db, messaging, "a1", {familyId: "f1", senderId: "stranger"});
+    const anonymous = await dispatchFamilyAlert(db, messaging, "a2", {familyId: "f1"});
+
+    assert.strictEqual(summary, null);
+    assert.strictEqual(anonymous, null);
+    assert.strictEqual(messaging.requests.length, 0);
+    assert.strictEqual((await db.ref("alerts/a1/dispatch").get()).val(), null);
+  });
+
+  it("prunes tokens FCM reports as unregistered and keeps transient failures", async function() {
+    await seedFamily("f1", {driver: "t-driver", mom: "t-mom", dad: "t-dad"});
+    const messaging = fakeMessaging({
+      "t-mom": "messaging/registration-token-not-registered",
+      "t-dad": "messaging/internal-error",
+    });
+
+    const summary = await dispatchFamilyAlert(db, messaging, "a1", {familyId: "f1", senderId: "driver"});
+
+    assert.deepStrictEqual(summary, {recipients: 2, successCount: 0, failureCount: 2, prunedCount: 1});
+    assert.strictEqual((await db.ref("families/f1/memberTokens/mom").get()).val(), null);
+    assert.strictEqual((await db.ref("users/mom/fcmToken").get()).val(), null);
+    assert.strictEqual((await db.ref("families/f1/memberTokens/dad").get()).val(), "t-dad");
+  });
+
+  it("keeps tokens rejected because of a malformed message", async function() {
+    await seedFamily("f1", {driver: "t-driver", mom: "t-mom"});
+    const messaging = fakeMessaging({"t-mom": "messaging/invalid-argument"});
+
+    const summary = await dispatchFamilyAlert(db, messaging, "a1", {familyId: "f1", senderId: "driver"});
+
+    assert.strictEqual(summary.prunedCount, 0);
+    assert.strictEqual((await db.ref("families/f1/memberTokens/mom").get()).val(), "t-mom");
+    assert.strictEqual((await db.ref("users/mom/fcmToken").get()).val(), "t-mom");
+  });
+
+  it("does not clear a token the device replaced while the send was in flight", async function() {
+    await seedFamily("f1", {driver: "t-driver", mom: "t-mom"});
+    const messaging = fakeMessaging({"t-mom": "messaging/registration-token-not-registered"});
+    const send = messaging.sendEachForMulticast;
+    messaging.sendEachForMulticast = async (message) => {
+      await db.ref("users/mom/fcmToken").set("t-mom-new");
+      return send(message);
+    };
+
+    await dispatchFamilyAlert(db, messaging, "a1", {familyId: "f1", senderId: "driver"});
+
+    assert.strictEqual((await db.ref("users/mom/fcmToken").get()).val(), "t-mom-new");
+  });
+
+  it("splits families larger than the multicast limit into batches", async function() {
+    const tokens = {driver: "t-driver"};
+    for (let i = 0; i < MULTICAST_LIMIT + 10; i++) {
+      tokens[`m${i}`] = `t-${i}`;
+    }
+    await seedFamily("big", tokens);
+    const messaging = fakeMessaging();
+
+    const summary = await dispatchFamilyAlert(db, messaging, "a1", {familyId: "big", senderId: "driver"});
+
+    assert.deepStrictEqual(messaging.requests.map((r) => r.tokens.length), [MULTICAST_LIMIT, 10]);
+    assert.strictEqual(summary.successCount, MULTICAST_LIMIT + 10);
+  });
+
+  it("skips the send when nobody else in the family has a token", async function() {
+    await seedFamily("f1", {driver: "t-driver"});
+    const messaging = fakeMessaging();
+
+    const summary = await dispatchFamilyAlert(db, messaging, "a1", {familyId: "f1", senderId: "driver"});
+
+    assert.strictEqual(messaging.requests.length, 0);
+    assert.strictEqual(summary.recipients, 0);
+  });
+
+  it("moves a member token between families", async function() {
+    await seedFamily("f1", {mom: "t-mom"});
+    await db.ref().update({
+      "users/mom/familyId": "f2",
+      "families/f1/memberIds/mom": null,
+      "families/f2/memberIds/mom": true,
+    });
+
+    await syncMemberToken(db, "mom", "f1");
+
+    assert.strictEqual((await db.ref("families/f1/memberTokens/mom").get()).val(), null);
+    assert.strictEqual((await db.ref("families/f2/memberTokens/mom").get()).val(), "t-mom");
+  });
+
+  it("backfills tokens written before the sync triggers were deployed", async function() {
+    await db.ref().update({
+      "users/mom/familyId": "f1",
+      "users/mom/fcmToken": "t-mom",
+      "users/dad/familyId": "f1",
+      "users/dad/fcmToken": "t-dad",
+      "users/left/familyId": "f1",
+      "users/left/fcmToken": "t-left",
+      "users/orphan/familyId": "gone",
+      "users/orphan/fcmToken": "t-orphan",
+      "families/f1/memberIds/mom": true,
+      "families/f1/memberIds/dad": true,
+    });
+
+    const written = await backfillMemberTokens(db);
+
+    assert.strictEqual(written, 2);
+    assert.deepStrictEqual((await db.ref("families/f1/memberTokens").get()).val(), {mom: "t-mom", dad: "t-dad"});
+    assert.strictEqual((await db.ref("families/gone").get()).exists(), false);
+  });
+
+  it("does not recreate a deleted family", async function() {
+    await db.ref().update({"users/mom/familyId": "gone", "users/mom/fcmToken": "t-mom"});
+
+    await syncMemberToken(db, "mom");
+
+    assert.strictEqual((await db.ref("families/gone").get()).exists(), false);
+  });
+});
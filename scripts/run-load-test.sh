@@ -0,0 +1,26 @@
+#!/usr/bin/env bash
+# Runs FamilyLoadTest against the local Realtime Database and Storage emulators.
+#
+# Requirements: firebase-tools (npm i -g firebase-tools), a JDK, and a connected Android
+# emulator (e.g. `emulator -avd ci -no-window -no-audio &`). The "demo-" project id keeps
+# the Firebase emulators fully offline; no credentials or network access are needed.
+# firebase.emulator.json opens the database and storage to the simulated users; it is never
+# deployed; firebase.json deploys the signed-in rules in database.rules.json instead.
+#
+# Usage: scripts/run-load-test.sh [key=value ...]
+#   e.g. scripts/run-load-test.sh families=1000 membersPerFamily=10 durationSeconds=600
+set -euo pipefail
+cd "$(dirname "$0")/.."
+
+ARGS="-Pandroid.testInstrumentationRunnerArguments.class=com.example.tinyreminder.loadtest.FamilyLoadTest"
+ARGS="$ARGS -Pandroid.testInstrumentationRunnerArguments.loadTest=true"
+for kv in "$@"; do
+  ARGS="$ARGS -Pandroid.testInstrumentationRunnerArguments.$kv"
+done
+
+firebase --config firebase.emulator.json emulators:exec --project demo-tinyreminder --only database,storage \
+  "./gradlew connectedAndroidTest $ARGS"
+
+mkdir -p build
+adb pull /sdcard/Android/data/com.example.tinyreminder/files/load_report.txt build/load_report.txt
+cat build/load_report.txt